@@ -3,6 +3,7 @@ package io.gdcc.spi.export;
 import java.io.InputStream;
 import java.util.Optional;
 
+import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 
@@ -50,6 +51,41 @@ public interface ExportDataProvider {
      */
     JsonArray getDatasetFileDetails();
 
+    /**
+     * A pull-based alternative to @see getDatasetFileDetails() for datasets with
+     * many files and variables: the details of each file are only created when
+     * the iteration gets to it, so an Exporter going through them once holds
+     * one file's in memory rather than the whole array.
+     *
+     * @param includeVariables - whether the "dataTables" entries need their
+     *                         "dataVariables" (and the files their "varGroups");
+     *                         without them, the rest of the details of a tabular
+     *                         file are cheap to create.
+     * @return - the same JSON objects, one per file, as the entries of
+     *         getDatasetFileDetails(); each iteration creates them again.
+     * @apiNote - the default implementation just goes through
+     *          getDatasetFileDetails(), and includes the variables either way.
+     */
+    default Iterable<JsonObject> getDatasetFileDetails(boolean includeVariables) {
+        return getDatasetFileDetails().getValuesAs(JsonObject.class);
+    }
+
+    /**
+     * @return - the same as @see getDatasetJson(), without the
+     *         datasetVersion.files array, for Exporters that get the files from
+     *         @see getDatasetFileDetails(boolean) instead.
+     */
+    default JsonObject getDatasetJsonWithoutFiles() {
+        JsonObject datasetJson = getDatasetJson();
+        JsonObject versionJson = datasetJson.getJsonObject("datasetVersion");
+        if (versionJson == null || !versionJson.containsKey("files")) {
+            return datasetJson;
+        }
+        return Json.createObjectBuilder(datasetJson)
+                .add("datasetVersion", Json.createObjectBuilder(versionJson).remove("files"))
+                .build();
+    }
+
     /**
      * 
      * @return - the subset of metadata conforming to the schema.org standard as
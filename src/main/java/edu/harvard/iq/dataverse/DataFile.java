@@ -18,6 +18,7 @@ import edu.harvard.iq.dataverse.util.FileUtil;
 import edu.harvard.iq.dataverse.util.ShapefileHandler;
 import edu.harvard.iq.dataverse.util.StringUtil;
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Objects;
@@ -131,6 +132,14 @@ public class DataFile extends DvObject implements Comparable {
     @Column(nullable = false)
     private String checksumValue;
 
+    /**
+     * When the checksum was last verified against the physical file (on
+     * publishing), if ever. Used to skip re-reading files that have been
+     * validated recently.
+     */
+    @Column(nullable = true)
+    private Timestamp checksumVerifiedTime;
+
     
     /* start: FILE REPLACE ATTRIBUTES */
     
@@ -678,6 +687,14 @@ public class DataFile extends DvObject implements Comparable {
         this.checksumValue = checksumValue;
     }
 
+    public Timestamp getChecksumVerifiedTime() {
+        return checksumVerifiedTime;
+    }
+
+    public void setChecksumVerifiedTime(Timestamp checksumVerifiedTime) {
+        this.checksumVerifiedTime = checksumVerifiedTime;
+    }
+
     public String getOriginalChecksumType() {
         return BundleUtil.getStringFromBundle("file.originalChecksumType", Arrays.asList(this.checksumType.toString()) );
     }
@@ -5,6 +5,7 @@ import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.dataaccess.DataAccess;
 import edu.harvard.iq.dataverse.dataaccess.ImageThumbConverter;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
+import edu.harvard.iq.dataverse.dataaccess.ThumbnailServiceBean;
 import edu.harvard.iq.dataverse.harvest.client.HarvestingClient;
 import edu.harvard.iq.dataverse.ingest.IngestServiceBean;
 import edu.harvard.iq.dataverse.search.SolrSearchResult;
@@ -18,11 +19,13 @@ import edu.harvard.iq.dataverse.util.SystemConfig;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +73,9 @@ public class DataFileServiceBean implements java.io.Serializable {
     
     @EJB
     StorageUseServiceBean storageUseService; 
+
+    @EJB
+    ThumbnailServiceBean thumbnailService;
     
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
@@ -402,20 +408,57 @@ public class DataFileServiceBean implements java.io.Serializable {
     }
 
     public DataFile findCheapAndEasy(Long id) {
-        DataFile dataFile;
+        if (id == null) {
+            return null;
+        }
+        return findCheapAndEasy(List.of(id)).get(id);
+    }
+
+    /**
+     * Same as {@link #findCheapAndEasy(Long)}, for a batch of files (e.g., the
+     * files on a page of search results). The number of queries does not
+     * depend on the number of files.
+     *
+     * @param ids the ids of the files to look up
+     * @return the (unmanaged) files found, by id
+     */
+    public Map<Long, DataFile> findCheapAndEasy(Collection<Long> ids) {
+        Map<Long, DataFile> dataFiles = new HashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return dataFiles;
+        }
+        String idList = joinIds(ids);
 
-        Object[] result;
+        List<Object[]> results;
 
         try {
-            result = (Object[]) em.createNativeQuery("SELECT t0.ID, t0.CREATEDATE, t0.INDEXTIME, t0.MODIFICATIONTIME, t0.PERMISSIONINDEXTIME, t0.PERMISSIONMODIFICATIONTIME, t0.PUBLICATIONDATE, t0.CREATOR_ID, t0.RELEASEUSER_ID, t0.PREVIEWIMAGEAVAILABLE, t1.CONTENTTYPE, t0.STORAGEIDENTIFIER, t1.FILESIZE, t1.INGESTSTATUS, t1.CHECKSUMVALUE, t1.RESTRICTED, t3.ID, t2.AUTHORITY, t2.IDENTIFIER, t1.CHECKSUMTYPE, t1.PREVIOUSDATAFILEID, t1.ROOTDATAFILEID, t0.AUTHORITY, T0.PROTOCOL, T0.IDENTIFIER, t2.PROTOCOL FROM DVOBJECT t0, DATAFILE t1, DVOBJECT t2, DATASET t3 WHERE ((t0.ID = " + id + ") AND (t0.OWNER_ID = t2.ID) AND (t2.ID = t3.ID) AND (t1.ID = t0.ID))").getSingleResult();
+            results = em.createNativeQuery("SELECT t0.ID, t0.CREATEDATE, t0.INDEXTIME, t0.MODIFICATIONTIME, t0.PERMISSIONINDEXTIME, t0.PERMISSIONMODIFICATIONTIME, t0.PUBLICATIONDATE, t0.CREATOR_ID, t0.RELEASEUSER_ID, t0.PREVIEWIMAGEAVAILABLE, t1.CONTENTTYPE, t0.STORAGEIDENTIFIER, t1.FILESIZE, t1.INGESTSTATUS, t1.CHECKSUMVALUE, t1.RESTRICTED, t3.ID, t2.AUTHORITY, t2.IDENTIFIER, t1.CHECKSUMTYPE, t1.PREVIOUSDATAFILEID, t1.ROOTDATAFILEID, t0.AUTHORITY, T0.PROTOCOL, T0.IDENTIFIER, t2.PROTOCOL FROM DVOBJECT t0, DATAFILE t1, DVOBJECT t2, DATASET t3 WHERE ((t0.ID IN (" + idList + ")) AND (t0.OWNER_ID = t2.ID) AND (t2.ID = t3.ID) AND (t1.ID = t0.ID))").getResultList();
         } catch (Exception ex) {
-            return null;
+            return dataFiles;
+        }
+
+        Map<Long, DataFile> tabularFiles = new HashMap<>();
+        for (Object[] result : results) {
+            DataFile dataFile = constructCheapAndEasyDataFile(result);
+            dataFiles.put(dataFile.getId(), dataFile);
+            // If content type indicates it's tabular data, we'll spend 2 extra
+            // queries (for the whole batch) looking up the data table and
+            // tabular tags objects:
+            if (MIME_TYPE_TSV.equalsIgnoreCase(dataFile.getContentType()) || MIME_TYPE_TSV_ALT.equalsIgnoreCase(dataFile.getContentType())) {
+                tabularFiles.put(dataFile.getId(), dataFile);
+            }
         }
 
-        if (result == null) {
-            return null;
+        if (!tabularFiles.isEmpty()) {
+            addCheapAndEasyDataTables(tabularFiles);
         }
 
+        return dataFiles;
+    }
+
+    private DataFile constructCheapAndEasyDataFile(Object[] result) {
+        DataFile dataFile;
+
         Integer file_id = (Integer) result[0];
 
         dataFile = new DataFile();
@@ -556,60 +599,82 @@ public class DataFileServiceBean implements java.io.Serializable {
         
         dataFile.setOwner(owner);
 
-        // If content type indicates it's tabular data, spend 2 extra queries 
-        // looking up the data table and tabular tags objects:
-        
-        if (MIME_TYPE_TSV.equalsIgnoreCase(contentType) || MIME_TYPE_TSV_ALT.equalsIgnoreCase(contentType)) {
-            Object[] dtResult;
-            try {
-                dtResult = (Object[]) em.createNativeQuery("SELECT ID, UNF, CASEQUANTITY, VARQUANTITY, ORIGINALFILEFORMAT, ORIGINALFILESIZE FROM dataTable WHERE DATAFILE_ID = " + id).getSingleResult();
-            } catch (Exception ex) {
-                dtResult = null;
+        return dataFile;
+    }
+
+    private void addCheapAndEasyDataTables(Map<Long, DataFile> tabularFiles) {
+        String idList = joinIds(tabularFiles.keySet());
+
+        List<Object[]> dtResults;
+        try {
+            dtResults = em.createNativeQuery("SELECT ID, UNF, CASEQUANTITY, VARQUANTITY, ORIGINALFILEFORMAT, ORIGINALFILESIZE, DATAFILE_ID FROM dataTable WHERE DATAFILE_ID IN (" + idList + ")").getResultList();
+        } catch (Exception ex) {
+            return;
+        }
+
+        if (dtResults.isEmpty()) {
+            return;
+        }
+
+        for (Object[] dtResult : dtResults) {
+            DataFile dataFile = tabularFiles.get(((Number) dtResult[6]).longValue());
+            if (dataFile == null) {
+                continue;
             }
-        
-            if (dtResult != null) {
-                DataTable dataTable = new DataTable(); 
+            DataTable dataTable = new DataTable(); 
 
-                dataTable.setId(((Integer) dtResult[0]).longValue());
+            dataTable.setId(((Integer) dtResult[0]).longValue());
             
-                dataTable.setUnf((String)dtResult[1]);
+            dataTable.setUnf((String)dtResult[1]);
             
-                dataTable.setCaseQuantity((Long)dtResult[2]);
+            dataTable.setCaseQuantity((Long)dtResult[2]);
             
-                dataTable.setVarQuantity((Long)dtResult[3]);
+            dataTable.setVarQuantity((Long)dtResult[3]);
             
-                dataTable.setOriginalFileFormat((String)dtResult[4]);
-                
-                dataTable.setOriginalFileSize((Long)dtResult[5]);
+            dataTable.setOriginalFileFormat((String)dtResult[4]);
                 
-                dataTable.setDataFile(dataFile);
-                dataFile.setDataTable(dataTable);
+            dataTable.setOriginalFileSize((Long)dtResult[5]);
                 
-                // tabular tags: 
+            dataTable.setDataFile(dataFile);
+            dataFile.setDataTable(dataTable);
+        }
+
+        // tabular tags: 
+
+        List<Object[]> tagResults;
+        try {
+            tagResults = em.createNativeQuery("SELECT t.TYPE, t.DATAFILE_ID FROM DATAFILETAG t WHERE t.DATAFILE_ID IN (" + idList + ")").getResultList();
+        } catch (Exception ex) {
+            logger.info("EXCEPTION looking up tags.");
+            tagResults = null;
+        }
                 
-                List<Object[]> tagResults;
-                try {
-                    tagResults = em.createNativeQuery("SELECT t.TYPE, t.DATAFILE_ID FROM DATAFILETAG t WHERE t.DATAFILE_ID = " + id).getResultList();
-                } catch (Exception ex) {
-                    logger.info("EXCEPTION looking up tags.");
-                    tagResults = null;
-                }
-                
-                if (tagResults != null) {
-                    List<String> fileTagLabels = DataFileTag.listTags();
-                    
-                    for (Object[] tagResult : tagResults) {
-                        Integer tagId = (Integer)tagResult[0];
-                        DataFileTag tag = new DataFileTag();
-                        tag.setTypeByLabel(fileTagLabels.get(tagId));
-                        tag.setDataFile(dataFile);
-                        dataFile.addTag(tag);
-                    }
+        if (tagResults != null) {
+            List<String> fileTagLabels = DataFileTag.listTags();
+            for (Object[] tagResult : tagResults) {
+                DataFile dataFile = tabularFiles.get(((Number) tagResult[1]).longValue());
+                // (tags are only looked up for files that have a data table)
+                if (dataFile == null || dataFile.getDataTable() == null) {
+                    continue;
                 }
+                Integer tagId = (Integer)tagResult[0];
+                DataFileTag tag = new DataFileTag();
+                tag.setTypeByLabel(fileTagLabels.get(tagId));
+                tag.setDataFile(dataFile);
+                dataFile.addTag(tag);
             }
         }
-        
-        return dataFile;
+    }
+
+    private static String joinIds(Collection<Long> ids) {
+        StringBuilder idList = new StringBuilder();
+        for (Long id : ids) {
+            if (idList.length() > 0) {
+                idList.append(",");
+            }
+            idList.append(id);
+        }
+        return idList.toString();
     }
     
     private List<AuthenticatedUser> retrieveFileAccessRequesters(DataFile fileIn) {
@@ -973,6 +1038,92 @@ public class DataFileServiceBean implements java.io.Serializable {
         return false;
     }
 
+    /**
+     * Same as {@link #isThumbnailAvailable(DataFile)}, for a batch of files
+     * (e.g., the files on a page of search results). The flags saved on the
+     * files are looked up with one query; only the files that were never
+     * checked are looked up in the storage, in parallel. The thumbnails that
+     * are not there yet are then generated one file at a time, as before.
+     *
+     * @param files the files to check
+     * @return whether the files have thumbnails, by id
+     */
+    public Map<Long, Boolean> areThumbnailsAvailable(Collection<DataFile> files) {
+        Map<Long, Boolean> available = new HashMap<>();
+        Map<Long, DataFile> unknown = new LinkedHashMap<>();
+        for (DataFile file : files) {
+            if (file == null || file.getId() == null) {
+                continue;
+            }
+            if (file.isPreviewImageAvailable()) {
+                available.put(file.getId(), true);
+            } else if (!FileUtil.isThumbnailSupported(file)) {
+                available.put(file.getId(), false);
+            } else {
+                unknown.put(file.getId(), file);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return available;
+        }
+
+        // (the files on a page of search results don't come with the "failed"
+        // flag, see findCheapAndEasy())
+        Map<Long, Boolean> flags = findThumbnailFlags(new ArrayList<>(unknown.keySet()));
+        List<DataFile> unchecked = new ArrayList<>();
+        for (DataFile file : unknown.values()) {
+            Boolean flag = flags.get(file.getId());
+            if (flag != null) {
+                file.setPreviewImageAvailable(flag);
+                available.put(file.getId(), flag);
+            } else {
+                unchecked.add(file);
+            }
+        }
+        if (unchecked.isEmpty()) {
+            return available;
+        }
+
+        Map<Long, Boolean> cached = thumbnailService.getCacheChecker().check(unchecked,
+                file -> ImageThumbConverter.isThumbnailCached(file, ImageThumbConverter.DEFAULT_THUMBNAIL_SIZE));
+        List<Long> cachedIds = new ArrayList<>();
+        for (DataFile file : unchecked) {
+            if (Boolean.TRUE.equals(cached.get(file.getId()))) {
+                file.setPreviewImageAvailable(true);
+                cachedIds.add(file.getId());
+                available.put(file.getId(), true);
+            } else {
+                // (generates it, and saves the flags)
+                available.put(file.getId(), isThumbnailAvailable(file));
+            }
+        }
+        if (!cachedIds.isEmpty()) {
+            em.createQuery("UPDATE DvObject o SET o.previewImageAvailable = true WHERE o.id IN :ids")
+                    .setParameter("ids", cachedIds)
+                    .executeUpdate();
+        }
+        return available;
+    }
+
+    /**
+     * @return for the files that have been checked for a thumbnail, whether
+     * they have one, by id
+     */
+    private Map<Long, Boolean> findThumbnailFlags(Collection<Long> ids) {
+        Map<Long, Boolean> flags = new HashMap<>();
+        List<Object[]> results = em.createQuery("SELECT o.id, o.previewImageAvailable, o.previewImageFail FROM DvObject o WHERE o.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList();
+        for (Object[] result : results) {
+            if (Boolean.TRUE.equals(result[1])) {
+                flags.put((Long) result[0], true);
+            } else if (Boolean.TRUE.equals(result[2])) {
+                flags.put((Long) result[0], false);
+            }
+        }
+        return flags;
+    }
+
     
     /* 
      * Methods for identifying "classes" (groupings) of files by type:
@@ -1194,6 +1345,21 @@ public class DataFileServiceBean implements java.io.Serializable {
     public void populateFileSearchCard(SolrSearchResult solrSearchResult) {
         solrSearchResult.setEntity(this.findCheapAndEasy(solrSearchResult.getEntityId()));
     }
+
+    /**
+     * Batch version of {@link #populateFileSearchCard(SolrSearchResult)}, for
+     * all the file cards on a page of search results.
+     */
+    public void populateFileSearchCards(List<SolrSearchResult> solrSearchResults) {
+        List<Long> fileIds = new ArrayList<>();
+        for (SolrSearchResult solrSearchResult : solrSearchResults) {
+            fileIds.add(solrSearchResult.getEntityId());
+        }
+        Map<Long, DataFile> dataFiles = findCheapAndEasy(fileIds);
+        for (SolrSearchResult solrSearchResult : solrSearchResults) {
+            solrSearchResult.setEntity(dataFiles.get(solrSearchResult.getEntityId()));
+        }
+    }
     
     public boolean hasBeenDeleted(DataFile df){
         Dataset dataset = df.getOwner();
@@ -135,9 +135,11 @@ import edu.harvard.iq.dataverse.makedatacount.MakeDataCountLoggingServiceBean;
 import edu.harvard.iq.dataverse.makedatacount.MakeDataCountLoggingServiceBean.MakeDataCountEntry;
 import java.util.Collections;
 import jakarta.faces.component.UIComponent;
+import jakarta.faces.component.UIData;
 import jakarta.faces.component.UIInput;
 
 import jakarta.faces.event.AjaxBehaviorEvent;
+import jakarta.faces.event.ComponentSystemEvent;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
@@ -5976,6 +5978,27 @@ public class DatasetPage implements java.io.Serializable {
         setFilePaginatorPage(event.getPage());
     }
 
+    /**
+     * Finds out whether the files on the page of the files table about to be
+     * rendered have thumbnails all at once, rather than row by row (see
+     * ThumbnailServiceWrapper.resolveThumbnailAvailability()).
+     */
+    public void resolveFileThumbnails(ComponentSystemEvent event) {
+        UIData filesTable = (UIData) event.getComponent();
+        if (fileMetadatasSearch == null || filesTable.getFirst() >= fileMetadatasSearch.size()) {
+            return;
+        }
+        int last = filesTable.getRows() > 0 ? Math.min(filesTable.getFirst() + filesTable.getRows(), fileMetadatasSearch.size()) : fileMetadatasSearch.size();
+        List<DataFile> dataFiles = new ArrayList<>();
+        for (FileMetadata fileMetadata : fileMetadatasSearch.subList(filesTable.getFirst(), last)) {
+            // (the row checks the download permission first)
+            if (fileDownloadHelper.canDownloadFile(fileMetadata)) {
+                dataFiles.add(fileMetadata.getDataFile());
+            }
+        }
+        thumbnailServiceWrapper.resolveThumbnailAvailability(dataFiles);
+    }
+
     public void refreshPaginator() {
         FacesContext facesContext = FacesContext.getCurrentInstance();
         org.primefaces.component.datatable.DataTable dt = (org.primefaces.component.datatable.DataTable) facesContext.getViewRoot().findComponent("datasetForm:tabView:filesTable");
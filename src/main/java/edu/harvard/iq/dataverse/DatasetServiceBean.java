@@ -16,6 +16,7 @@ import edu.harvard.iq.dataverse.engine.command.exception.CommandException;
 import edu.harvard.iq.dataverse.engine.command.impl.DestroyDatasetCommand;
 import edu.harvard.iq.dataverse.engine.command.impl.FinalizeDatasetPublicationCommand;
 import edu.harvard.iq.dataverse.engine.command.impl.GetDatasetStorageSizeCommand;
+import edu.harvard.iq.dataverse.export.ExportAllServiceBean;
 import edu.harvard.iq.dataverse.export.ExportService;
 import edu.harvard.iq.dataverse.globus.GlobusServiceBean;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
@@ -93,6 +94,9 @@ public class DatasetServiceBean implements java.io.Serializable {
     @EJB
     UserNotificationServiceBean userNotificationService;
 
+    @EJB
+    ExportAllServiceBean exportAllService;
+
     private static final SimpleDateFormat logFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss");
 
     @PersistenceContext(unitName = "VDCNet-ejbPU")
@@ -229,6 +233,28 @@ public class DatasetServiceBean implements java.io.Serializable {
         return em.createQuery("SELECT o.id FROM Dataset o WHERE o.harvestedFrom IS null ORDER BY o.id", Long.class).getResultList();
     }
 
+    /**
+     * A page of {@link #findAllLocalDatasetIds()}, for going through them a
+     * chunk at a time (and picking up after the last id done, if
+     * interrupted).
+     *
+     * @param afterId the ids returned are greater than this one
+     * @param limit how many ids to return at most
+     */
+    public List<Long> findLocalDatasetIdsAfter(long afterId, int limit) {
+        return em.createQuery("SELECT o.id FROM Dataset o WHERE o.harvestedFrom IS null AND o.id > :afterId ORDER BY o.id", Long.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * @return the size of {@link #findAllLocalDatasetIds()}
+     */
+    public long countLocalDatasets() {
+        return em.createQuery("SELECT COUNT(o) FROM Dataset o WHERE o.harvestedFrom IS null", Long.class).getSingleResult();
+    }
+
     public List<Long> findAllUnindexed() {
         return em.createQuery("SELECT o.id FROM Dataset o WHERE o.indexTime IS null ORDER BY o.id DESC", Long.class).getResultList();
     }
@@ -262,6 +288,38 @@ public class DatasetServiceBean implements java.io.Serializable {
         return typedQuery.getResultList();
     }
 
+    /**
+     * A page of {@link #findAllOrSubset(long, long, boolean)}, for going
+     * through a partition a chunk at a time (and picking up after the last id
+     * done, if interrupted).
+     *
+     * @param afterId the ids returned are greater than this one
+     * @param limit how many ids to return at most
+     */
+    public List<Long> findAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed, long afterId, int limit) {
+        String skipClause = skipIndexed ? "AND o.indexTime is null " : "";
+        return em.createQuery("SELECT o.id FROM Dataset o WHERE MOD( o.id, :numPartitions) = :partitionId AND o.id > :afterId " +
+                skipClause +
+                "ORDER BY o.id", Long.class)
+                .setParameter("numPartitions", Math.max(1, numPartitions))
+                .setParameter("partitionId", partitionId)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * @return the size of {@link #findAllOrSubset(long, long, boolean)}
+     */
+    public long countAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed) {
+        String skipClause = skipIndexed ? "AND o.indexTime is null " : "";
+        return em.createQuery("SELECT COUNT(o) FROM Dataset o WHERE MOD( o.id, :numPartitions) = :partitionId " +
+                skipClause, Long.class)
+                .setParameter("numPartitions", Math.max(1, numPartitions))
+                .setParameter("partitionId", partitionId)
+                .getSingleResult();
+    }
+
         /**
      * For docs, see the equivalent method on the DataverseServiceBean.
      * @param numPartitions
@@ -683,13 +741,17 @@ public class DatasetServiceBean implements java.io.Serializable {
 
     // reExportAll *forces* a reexport on all published datasets; whether they
     // have the "last export" time stamp set or not.
+    // (no transaction around the export all jobs: each dataset has its own,
+    // see ExportAllServiceBean)
     @Asynchronous
-    public void reExportAllAsync() {
-        exportAllDatasets(true);
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void reExportAllAsync(boolean restart) {
+        exportAllDatasets(true, restart);
     }
 
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void reExportAll() {
-        exportAllDatasets(true);
+        exportAllDatasets(true, false);
     }
 
 
@@ -697,18 +759,23 @@ public class DatasetServiceBean implements java.io.Serializable {
     // and trust the "last export" time stamp).
 
     @Asynchronous
-    public void exportAllAsync() {
-        exportAllDatasets(false);
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void exportAllAsync(boolean restart) {
+        exportAllDatasets(false, restart);
     }
 
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void exportAll() {
-        exportAllDatasets(false);
+        exportAllDatasets(false, false);
     }
 
-    public void exportAllDatasets(boolean forceReExport) {
-        Integer countAll = 0;
-        Integer countSuccess = 0;
-        Integer countError = 0;
+    /**
+     * Runs an export all job (see {@link ExportAllServiceBean}), logging to
+     * its own export_[time stamp].log file. If the last job of the same kind
+     * was interrupted, this one continues it, unless restart is true.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void exportAllDatasets(boolean forceReExport, boolean restart) {
         String logTimestamp = logFormatter.format(new Date());
         Logger exportLogger = Logger.getLogger("edu.harvard.iq.dataverse.harvest.client.DatasetServiceBean." + "ExportAll" + logTimestamp);
         String logFileName = System.getProperty("com.sun.aas.instanceRoot") + File.separator + "logs" + File.separator + "export_" + logTimestamp + ".log";
@@ -731,45 +798,15 @@ public class DatasetServiceBean implements java.io.Serializable {
 
         exportLogger.info("Starting an export all job");
 
-        for (Long datasetId : findAllLocalDatasetIds()) {
-            // Potentially, there's a godzillion datasets in this Dataverse.
-            // This is why we go through the list of ids here, and instantiate
-            // only one dataset at a time.
-            Dataset dataset = this.find(datasetId);
-            if (dataset != null) {
-                // Accurate "is published?" test - ?
-                // Answer: Yes, it is! We can't trust dataset.isReleased() alone; because it is a dvobject method
-                // that returns (publicationDate != null). And "publicationDate" is essentially
-                // "the first publication date"; that stays the same as versions get
-                // published and/or deaccessioned. But in combination with !isDeaccessioned()
-                // it is indeed an accurate test.
-                if (dataset.isReleased() && dataset.getReleasedVersion() != null && !dataset.isDeaccessioned()) {
-
-                    // can't trust dataset.getPublicationDate(), no.
-                    Date publicationDate = dataset.getReleasedVersion().getReleaseTime(); // we know this dataset has a non-null released version! Maybe not - SEK 8/19 (We do now! :)
-                    if (forceReExport || (publicationDate != null
-                            && (dataset.getLastExportTime() == null
-                            || dataset.getLastExportTime().before(publicationDate)))) {
-                        countAll++;
-                        try {
-                            recordService.exportAllFormatsInNewTransaction(dataset);
-                            exportLogger.info("Success exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString());
-                            countSuccess++;
-                        } catch (Exception ex) {
-                            exportLogger.log(Level.INFO, "Error exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString() + "; " + ex.getMessage(), ex);
-                            countError++;
-                        }
-                    }
-                }
-            }
-        }
-        exportLogger.info("Datasets processed: " + countAll.toString());
-        exportLogger.info("Datasets exported successfully: " + countSuccess.toString());
-        exportLogger.info("Datasets failures: " + countError.toString());
-        exportLogger.info("Finished export-all job.");
+        try {
+            exportAllService.exportAll(forceReExport, restart, exportLogger);
+        } finally {
+            exportLogger.info("Finished export-all job.");
 
-        if (fileHandlerSuceeded) {
-            fileHandler.close();
+            if (fileHandlerSuceeded) {
+                exportLogger.removeHandler(fileHandler);
+                fileHandler.close();
+            }
         }
 
     }
@@ -780,28 +817,42 @@ public class DatasetServiceBean implements java.io.Serializable {
     }
 
     public void exportDataset(Dataset dataset, boolean forceReExport) {
-        if (dataset != null) {
-            // Note that the logic for handling a dataset is similar to what is implemented in exportAllDatasets,
-            // but when only one dataset is exported we do not log in a separate export logging file
-            if (dataset.isReleased() && dataset.getReleasedVersion() != null && !dataset.isDeaccessioned()) {
-
-                // can't trust dataset.getPublicationDate(), no.
-                Date publicationDate = dataset.getReleasedVersion().getReleaseTime(); // we know this dataset has a non-null released version! Maybe not - SEK 8/19 (We do now! :)
-                if (forceReExport || (publicationDate != null
-                        && (dataset.getLastExportTime() == null
-                        || dataset.getLastExportTime().before(publicationDate)))) {
-                    try {
-                        recordService.exportAllFormatsInNewTransaction(dataset);
-                        logger.info("Success exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString());
-                    } catch (Exception ex) {
-                        logger.log(Level.INFO, "Error exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString() + "; " + ex.getMessage(), ex);
-                    }
-                }
+        // Note that the logic for handling a dataset is the same as in the
+        // export all jobs, but when only one dataset is exported we do not log
+        // in a separate export logging file
+        if (dataset != null && isExportDue(dataset, forceReExport)) {
+            try {
+                recordService.exportAllFormatsInNewTransaction(dataset);
+                logger.info("Success exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString());
+            } catch (Exception ex) {
+                logger.log(Level.INFO, "Error exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString() + "; " + ex.getMessage(), ex);
             }
         }
 
     }
 
+    /**
+     * @return true if the dataset is published, and, unless forceReExport is
+     * true, hasn't been exported since it was last published.
+     */
+    public static boolean isExportDue(Dataset dataset, boolean forceReExport) {
+        // Accurate "is published?" test - ?
+        // Answer: Yes, it is! We can't trust dataset.isReleased() alone; because it is a dvobject method
+        // that returns (publicationDate != null). And "publicationDate" is essentially
+        // "the first publication date"; that stays the same as versions get
+        // published and/or deaccessioned. But in combination with !isDeaccessioned()
+        // it is indeed an accurate test.
+        if (dataset.isReleased() && dataset.getReleasedVersion() != null && !dataset.isDeaccessioned()) {
+
+            // can't trust dataset.getPublicationDate(), no.
+            Date publicationDate = dataset.getReleasedVersion().getReleaseTime(); // we know this dataset has a non-null released version! Maybe not - SEK 8/19 (We do now! :)
+            return forceReExport || (publicationDate != null
+                    && (dataset.getLastExportTime() == null
+                    || dataset.getLastExportTime().before(publicationDate)));
+        }
+        return false;
+    }
+
     //get a string to add to save success message
     //depends on page (dataset/file) and user privleges
     public String getReminderString(Dataset dataset, boolean canPublishDataset, boolean filePage, boolean isValid) {
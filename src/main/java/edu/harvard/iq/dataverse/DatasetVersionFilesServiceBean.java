@@ -8,6 +8,8 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
+import org.eclipse.persistence.config.BatchFetchType;
+import org.eclipse.persistence.config.QueryHints;
 
 import java.io.Serializable;
 import java.sql.Timestamp;
@@ -171,7 +173,16 @@ public class DatasetVersionFilesServiceBean implements Serializable {
                 .select(fileMetadataRoot)
                 .where(createSearchCriteriaPredicate(datasetVersion, searchCriteria, criteriaBuilder, criteriaQuery, fileMetadataRoot))
                 .orderBy(createGetFileMetadatasOrder(criteriaBuilder, orderCriteria, fileMetadataRoot));
-        TypedQuery<FileMetadata> typedQuery = em.createQuery(criteriaQuery);
+        TypedQuery<FileMetadata> typedQuery = em.createQuery(criteriaQuery)
+                // everything that's needed to print the files as json, for the
+                // whole page at once rather than file by file:
+                .setHint(QueryHints.BATCH_TYPE, BatchFetchType.IN)
+                .setHint(QueryHints.BATCH, "o.dataFile")
+                .setHint(QueryHints.BATCH, "o.fileCategories")
+                .setHint(QueryHints.BATCH, "o.dataFile.dataTables")
+                .setHint(QueryHints.BATCH, "o.dataFile.dataFileTags")
+                .setHint(QueryHints.BATCH, "o.dataFile.embargo")
+                .setHint(QueryHints.BATCH, "o.dataFile.retention");
         if (limit != null) {
             typedQuery.setMaxResults(limit);
         }
@@ -319,6 +330,8 @@ public class DatasetVersionFilesServiceBean implements Serializable {
             }
             default -> orderList.add(criteriaBuilder.asc(label));
         }
+        // (so that the order is stable from one page to the next)
+        orderList.add(criteriaBuilder.asc(fileMetadataRoot.get("id")));
         return orderList;
     }
 
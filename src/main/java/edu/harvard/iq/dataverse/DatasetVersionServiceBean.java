@@ -21,8 +21,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jakarta.ejb.EJB;
@@ -1013,6 +1016,116 @@ public class DatasetVersionServiceBean implements java.io.Serializable {
         }
     }
     
+    /**
+     * Batch version of {@link #populateDatasetSearchCard(SolrSearchResult)},
+     * for all the dataset cards on a page of search results. Instead of 1 or
+     * 2 queries per card, this makes 3 queries for the page, plus the ones
+     * needed to look up all the thumbnail files at once.
+     */
+    public void populateDatasetSearchCards(List<SolrSearchResult> solrSearchResults) {
+        Set<Long> datasetVersionIds = new HashSet<>();
+        Set<Long> dataverseIds = new HashSet<>();
+        Set<Long> datasetIds = new HashSet<>();
+        Map<SolrSearchResult, Long> dataverseIdsByCard = new HashMap<>();
+
+        for (SolrSearchResult solrSearchResult : solrSearchResults) {
+            String parentId = solrSearchResult.getParent().get("id");
+            Long dataverseId;
+            try {
+                dataverseId = Long.parseLong(parentId);
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+            if (dataverseId == 0 || solrSearchResult.getDatasetVersionId() == null) {
+                continue;
+            }
+            dataverseIdsByCard.put(solrSearchResult, dataverseId);
+            dataverseIds.add(dataverseId);
+            datasetVersionIds.add(solrSearchResult.getDatasetVersionId());
+            if (solrSearchResult.getEntityId() != null) {
+                datasetIds.add(solrSearchResult.getEntityId());
+            }
+        }
+
+        if (dataverseIdsByCard.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> versionStates = new HashMap<>();
+        Map<Long, String> dataverseAliases = new HashMap<>();
+        Map<Long, Object[]> datasetResults = new HashMap<>();
+
+        try {
+            for (Object[] result : (List<Object[]>) em.createNativeQuery("SELECT t0.ID, t0.VERSIONSTATE FROM DATASETVERSION t0 WHERE t0.ID IN (" + StringUtils.join(datasetVersionIds, ",") + ")").getResultList()) {
+                versionStates.put(((Number) result[0]).longValue(), (String) result[1]);
+            }
+            for (Object[] result : (List<Object[]>) em.createNativeQuery("SELECT t1.ID, t1.ALIAS FROM DATAVERSE t1 WHERE t1.ID IN (" + StringUtils.join(dataverseIds, ",") + ")").getResultList()) {
+                dataverseAliases.put(((Number) result[0]).longValue(), (String) result[1]);
+            }
+            if (!datasetIds.isEmpty()) {
+                for (Object[] result : (List<Object[]>) em.createNativeQuery("SELECT t2.ID, t2.THUMBNAILFILE_ID, t2.USEGENERICTHUMBNAIL, t3.STORAGEIDENTIFIER FROM DATASET t2, DVOBJECT t3 WHERE t2.ID IN (" + StringUtils.join(datasetIds, ",") + ") AND t2.ID = t3.ID").getResultList()) {
+                    datasetResults.put(((Number) result[0]).longValue(), result);
+                }
+            }
+        } catch (Exception ex) {
+            logger.warning("Failed to look up the dataset search cards: " + ex.getMessage());
+            return;
+        }
+
+        Set<Long> thumbnailFileIds = new HashSet<>();
+        for (Object[] datasetResult : datasetResults.values()) {
+            if (datasetResult[1] != null) {
+                thumbnailFileIds.add(((Number) datasetResult[1]).longValue());
+            }
+        }
+        Map<Long, DataFile> thumbnailFiles = thumbnailFileIds.isEmpty() ? new HashMap<>() : datafileService.findCheapAndEasy(thumbnailFileIds);
+
+        for (Map.Entry<SolrSearchResult, Long> entry : dataverseIdsByCard.entrySet()) {
+            SolrSearchResult solrSearchResult = entry.getKey();
+            Long datasetId = solrSearchResult.getEntityId();
+            Object[] datasetResult = datasetId == null ? null : datasetResults.get(datasetId);
+
+            // Same as the inner join in populateDatasetSearchCard(): the card
+            // is left alone unless all the rows it needs were found.
+            if (!versionStates.containsKey(solrSearchResult.getDatasetVersionId())
+                    || !dataverseAliases.containsKey(entry.getValue())
+                    || (datasetId != null && datasetResult == null)) {
+                continue;
+            }
+
+            if ("DEACCESSIONED".equals(versionStates.get(solrSearchResult.getDatasetVersionId()))) {
+                solrSearchResult.setDeaccessionedState(true);
+            }
+
+            String alias = dataverseAliases.get(entry.getValue());
+            if (alias != null) {
+                solrSearchResult.setDataverseAlias(alias);
+            }
+
+            if (datasetResult != null) {
+                Dataset datasetEntity = new Dataset();
+                GlobalId globalId = PidUtil.parseAsGlobalID(solrSearchResult.getIdentifier());
+
+                datasetEntity.setProtocol(globalId.getProtocol());
+                datasetEntity.setAuthority(globalId.getAuthority());
+                datasetEntity.setIdentifier(globalId.getIdentifier());
+                if (datasetResult[3] != null) {
+                    datasetEntity.setStorageIdentifier(datasetResult[3].toString());
+                }
+                if (datasetResult[1] != null) {
+                    // the image file specifically assigned as the "icon" for
+                    // the dataset:
+                    DataFile thumbnailFile = thumbnailFiles.get(((Number) datasetResult[1]).longValue());
+                    if (thumbnailFile != null) {
+                        datasetEntity.setThumbnailFile(thumbnailFile);
+                    }
+                }
+                datasetEntity.setUseGenericThumbnail(datasetResult[2] != null && (Boolean) datasetResult[2]);
+                solrSearchResult.setEntity(datasetEntity);
+            }
+        }
+    }
+    
     /**
      * Return a list of the checksum Strings for files in the specified DatasetVersion
      * 
@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse;
 
 import edu.harvard.iq.dataverse.authorization.DataverseRole;
 import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.PermissionCacheServiceBean;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.authorization.RoleAssignmentSet;
@@ -11,18 +12,24 @@ import edu.harvard.iq.dataverse.search.IndexServiceBean;
 import edu.harvard.iq.dataverse.search.SolrIndexServiceBean;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 //import jakarta.validation.constraints.NotNull;
 
 /**
@@ -46,6 +53,10 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     SolrIndexServiceBean solrIndexService;
     @EJB
     IndexAsync indexAsync;
+    @EJB
+    PermissionCacheServiceBean permissionCacheService;
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
 
     public DataverseRole save(DataverseRole aRole) {
         if (aRole.getId() == null) {
@@ -57,6 +68,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
             return aRole;
         } else {
             DataverseRole merged = em.merge(aRole);
+            permissionCacheService.invalidateAll();
             /**
              * @todo update permissionModificationTime here.
              */
@@ -76,11 +88,13 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         } else {
             assignment = em.merge(assignment);
         }
+        permissionCacheService.invalidateDvObject(assignment.getDefinitionPoint());
         /**
          * @todo update permissionModificationTime here.
          */
         if ( createIndex ) {
-            indexAsync.indexRole(assignment);
+            RoleAssignment saved = assignment;
+            indexAfterCommit(() -> indexAsync.indexRole(saved));
         }
         return assignment;
     }
@@ -90,10 +104,36 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
          * @todo Do something with the index response. Was Solr down? Is
          * everything ok?
          */
-        IndexResponse indexResponse = solrIndexService.indexPermissionsOnSelfAndChildren(definitionPoint);
+        IndexResponse indexResponse = solrIndexService.updatePermissionsOnSelfAndChildren(definitionPoint);
         return indexResponse;
     }
 
+    /**
+     * Runs the (asynchronous) permission indexing once the current
+     * transaction is committed, so that it sees the role assignments as they
+     * are now; rather than hoping the transaction is committed within a
+     * second, as the indexing used to. Nothing is indexed if the transaction
+     * is rolled back, since the permissions didn't change then.
+     */
+    private void indexAfterCommit(Runnable indexing) {
+        if (transactionSynchronizationRegistry.getTransactionKey() == null) {
+            indexing.run();
+            return;
+        }
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    indexing.run();
+                }
+            }
+        });
+    }
+
     public DataverseRole find(Long id) {
         return em.find(DataverseRole.class, id);
     }
@@ -106,6 +146,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         em.createNamedQuery("DataverseRole.deleteById", DataverseRole.class)
             .setParameter("id", id)
             .executeUpdate();
+        permissionCacheService.invalidateAll();
     }
 
     public List<DataverseRole> findByOwnerId(Long ownerId) {
@@ -141,6 +182,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
                 .executeUpdate();
             em.refresh(role);
         }
+        permissionCacheService.invalidateDvObject(defPoint);
         em.refresh(assignee);
     }
 
@@ -149,10 +191,12 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
             ra = em.merge(ra);
         }
         em.remove(ra);
+        permissionCacheService.invalidateDvObject(ra.getDefinitionPoint());
         /**
          * @todo update permissionModificationTime here.
          */
-        indexAsync.indexRole(ra);
+        RoleAssignment revoked = ra;
+        indexAfterCommit(() -> indexAsync.indexRole(revoked));
     }
 
     // "nuclear" remove-all roles for a user or group: 
@@ -170,8 +214,9 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
 
             reindexSet.add(ra.getDefinitionPoint());
         }
+        permissionCacheService.invalidateAssignee(assignee.getIdentifier());
 
-        indexAsync.indexRoles(reindexSet);
+        indexAfterCommit(() -> indexAsync.indexRoles(reindexSet));
     }
 
     public RoleAssignmentSet roleAssignments(User user, Dataverse dv) {
@@ -230,6 +275,32 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         return ras;
     }
     
+    /**
+     * {@link #rolesAssignments(DvObject)} of many datasets of the same
+     * collection at once: the assignments inherited from the collection are
+     * only looked up once, and the ones on the datasets themselves in a few
+     * queries. (Datasets are never permission roots.)
+     *
+     * @return the role assignments of each dataset, by id
+     */
+    public Map<Long, Set<RoleAssignment>> rolesAssignmentsOfDatasets(Dataverse owner, Collection<Long> datasetIds) {
+        Set<RoleAssignment> inherited = rolesAssignments(owner);
+        Map<Long, Set<RoleAssignment>> ras = new HashMap<>();
+        List<Long> ids = new ArrayList<>(datasetIds);
+        for (int i = 0; i < ids.size(); i += 1000) {
+            List<Long> chunk = ids.subList(i, Math.min(i + 1000, ids.size()));
+            for (Long id : chunk) {
+                ras.put(id, new HashSet<>(inherited));
+            }
+            for (RoleAssignment ra : em.createQuery("SELECT r FROM RoleAssignment r WHERE r.definitionPoint.id IN :ids", RoleAssignment.class)
+                    .setParameter("ids", chunk)
+                    .getResultList()) {
+                ras.get(ra.getDefinitionPoint().getId()).add(ra);
+            }
+        }
+        return ras;
+    }
+
     /**
      * Retrieves the roles assignments for {@code user}, directly on {@code dv}.
      * No traversal on the containment hierarchy is done.
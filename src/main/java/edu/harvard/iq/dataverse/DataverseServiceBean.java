@@ -8,6 +8,7 @@ package edu.harvard.iq.dataverse;
 import edu.harvard.iq.dataverse.authorization.AuthenticationServiceBean;
 import edu.harvard.iq.dataverse.authorization.DataverseRole;
 import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.PermissionCacheServiceBean;
 import edu.harvard.iq.dataverse.authorization.groups.Group;
 import edu.harvard.iq.dataverse.authorization.groups.GroupServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
@@ -75,7 +76,7 @@ public class DataverseServiceBean implements java.io.Serializable {
     AuthenticationServiceBean authService;
     
     @EJB
-    DatasetServiceBean datasetService;
+    DvObjectServiceBean dvObjectService;
     
     @EJB
     DataverseLinkingServiceBean dataverseLinkingService;
@@ -91,6 +92,9 @@ public class DataverseServiceBean implements java.io.Serializable {
     
     @EJB
     PermissionServiceBean permissionService;
+
+    @EJB
+    PermissionCacheServiceBean permissionCacheService;
     
     @EJB
     DataverseFieldTypeInputLevelServiceBean dataverseFieldTypeInputLevelService;
@@ -114,6 +118,8 @@ public class DataverseServiceBean implements java.io.Serializable {
        
         dataverse.setModificationTime(new Timestamp(new Date().getTime()));
         Dataverse savedDataverse = em.merge(dataverse);
+        // it may have been moved, or made a permission root (or not):
+        permissionCacheService.invalidateDvObject(savedDataverse);
         return savedDataverse;
     }
     
@@ -194,6 +200,21 @@ public class DataverseServiceBean implements java.io.Serializable {
         
     }
 
+    /**
+     * The ids of {@link #findAllOrSubset(long, long, boolean)} greater than
+     * afterId, e.g. to pick up after the last one indexed.
+     */
+    public List<Long> findDataverseIdsForIndexing(long numPartitions, long partitionId, boolean skipIndexed, long afterId) {
+        String skipClause = skipIndexed ? "AND o.indexTime IS null " : "";
+        return em.createQuery("SELECT o.id FROM Dataverse o WHERE MOD( o.id, :numPartitions) = :partitionId AND o.id > :afterId " +
+                skipClause +
+                "ORDER BY o.id", Long.class)
+                .setParameter("numPartitions", Math.max(1, numPartitions))
+                .setParameter("partitionId", partitionId)
+                .setParameter("afterId", afterId)
+                .getResultList();
+    }
+
     public List<Dataverse> findByCreatorId(Long creatorId) {
         return em.createNamedQuery("Dataverse.findByCreatorId").setParameter("creatorId", creatorId).getResultList();
     }
@@ -730,40 +751,71 @@ public class DataverseServiceBean implements java.io.Serializable {
         }
     }
     
-    // function to recursively find ids of all children of a dataverse that 
-    // are also of type dataverse
-    public List<Long> findAllDataverseDataverseChildren(Long dvId) {
-        // get list of Dataverse children
-        List<Long> dataverseChildren = findIdsByOwnerId(dvId);
-        
-        if (dataverseChildren == null) {
-            return dataverseChildren;
-        } else {
-            List<Long> newChildren = new ArrayList<>();
-            for (Long childDvId : dataverseChildren) {
-                newChildren.addAll(findAllDataverseDataverseChildren(childDvId));
+    /**
+     * Batch version of {@link #populateDvSearchCard(SolrSearchResult)}: looks
+     * up the affiliations, aliases and parent aliases for all the collection
+     * cards on a page of search results in one query.
+     */
+    public void populateDvSearchCards(List<SolrSearchResult> solrSearchResults) {
+        StringBuilder idList = new StringBuilder();
+        for (SolrSearchResult solrSearchResult : solrSearchResults) {
+            if (solrSearchResult.getEntityId() != null) {
+                if (idList.length() > 0) {
+                    idList.append(",");
+                }
+                idList.append(solrSearchResult.getEntityId());
             }
-            dataverseChildren.addAll(newChildren);
-            return dataverseChildren;
         }
+
+        if (idList.length() == 0) {
+            return;
+        }
+
+        List<Object[]> searchResults;
+
+        try {
+            searchResults = em.createNativeQuery("SELECT t0.ID, t0.AFFILIATION, t0.ALIAS, t2.ALIAS FROM DATAVERSE t0 JOIN DVOBJECT t1 ON t0.ID = t1.ID LEFT JOIN DATAVERSE t2 ON t1.OWNER_ID = t2.ID WHERE t0.ID IN (" + idList + ")").getResultList();
+        } catch (Exception ex) {
+            return;
+        }
+
+        Map<Long, Object[]> searchResultsById = new HashMap<>();
+        for (Object[] searchResult : searchResults) {
+            searchResultsById.put(((Number) searchResult[0]).longValue(), searchResult);
+        }
+
+        for (SolrSearchResult solrSearchResult : solrSearchResults) {
+            Object[] searchResult = searchResultsById.get(solrSearchResult.getEntityId());
+            if (searchResult == null) {
+                continue;
+            }
+
+            if (searchResult[1] != null) {
+                solrSearchResult.setDataverseAffiliation((String) searchResult[1]);
+            }
+
+            if (searchResult[2] != null) {
+                solrSearchResult.setDataverseAlias((String) searchResult[2]);
+            }
+
+            // as in populateDvSearchCard(), the parent alias is only shown
+            // if the parent is known to Solr:
+            if (searchResult[3] != null && solrSearchResult.getParent().get("id") != null) {
+                solrSearchResult.setDataverseParentAlias((String) searchResult[3]);
+            }
+        }
+    }
+    
+    // find ids of all children of a dataverse that are also of type dataverse
+    // (at any depth)
+    public List<Long> findAllDataverseDataverseChildren(Long dvId) {
+        return dvObjectService.findDescendantIds(dvId, DvObject.DType.Dataverse);
     }
     
-    // function to recursively find ids of all children of a dataverse that are 
-    // of type dataset
+    // find ids of all children of a dataverse that are of type dataset (at 
+    // any depth)
     public List<Long> findAllDataverseDatasetChildren(Long dvId) {
-        // get list of Dataverse children
-        List<Long> dataverseChildren = findIdsByOwnerId(dvId);
-        // get list of Dataset children
-        List<Long> datasetChildren = datasetService.findIdsByOwnerId(dvId);
-        
-        if (dataverseChildren == null) {
-            return datasetChildren;
-        } else {
-            for (Long childDvId : dataverseChildren) {
-                datasetChildren.addAll(findAllDataverseDatasetChildren(childDvId));
-            }
-            return datasetChildren;
-        }
+        return dvObjectService.findDescendantIds(dvId, DvObject.DType.Dataset);
     }
     
     public String addRoleAssignmentsToChildren(Dataverse owner, ArrayList<String> rolesToInherit,
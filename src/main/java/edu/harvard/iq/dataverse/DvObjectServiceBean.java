@@ -6,6 +6,7 @@ import edu.harvard.iq.dataverse.pidproviders.PidProviderFactoryBean;
 import edu.harvard.iq.dataverse.pidproviders.PidUtil;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -25,8 +26,11 @@ import jakarta.persistence.NonUniqueResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import jakarta.persistence.StoredProcedureQuery;
+import jakarta.persistence.TypedQuery;
 
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.persistence.config.BatchFetchType;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  * Your goto bean for everything {@link DvObject}, that's not tied to any
@@ -66,6 +70,57 @@ public class DvObjectServiceBean implements java.io.Serializable {
         }
     }
 
+    /**
+     * Looks up a batch of objects (for example, the hits on a page of search
+     * results) in a constant number of queries, rather than one
+     * {@link #findDvObject(Long)} per id. The owners, creators and release
+     * users are read in batches too, as are the thumbnails and versions of
+     * the datasets; without weaving these relationships would otherwise be
+     * loaded by a separate query for every object.
+     *
+     * @param ids the ids of the objects to look up
+     * @return the objects found, by id; ids that don't exist are left out.
+     */
+    public Map<Long, DvObject> findDvObjects(Collection<Long> ids) {
+        Map<Long, DvObject> found = new HashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return found;
+        }
+
+        Map<String, List<Long>> idsByDtype = new HashMap<>();
+        for (Object[] idAndDtype : em.createQuery("SELECT o.id, o.dtype FROM DvObject o WHERE o.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()) {
+            idsByDtype.computeIfAbsent((String) idAndDtype[1], dtype -> new ArrayList<>()).add((Long) idAndDtype[0]);
+        }
+
+        for (Map.Entry<String, List<Long>> entry : idsByDtype.entrySet()) {
+            TypedQuery<? extends DvObject> query;
+            if (DvObject.DType.Dataverse.getDType().equals(entry.getKey())) {
+                query = em.createQuery("SELECT o FROM Dataverse o WHERE o.id IN :ids", Dataverse.class);
+            } else if (DvObject.DType.Dataset.getDType().equals(entry.getKey())) {
+                query = em.createQuery("SELECT o FROM Dataset o WHERE o.id IN :ids", Dataset.class)
+                        .setHint(QueryHints.BATCH, "o.thumbnailFile")
+                        .setHint(QueryHints.BATCH, "o.versions");
+            } else if (DvObject.DType.DataFile.getDType().equals(entry.getKey())) {
+                query = em.createQuery("SELECT o FROM DataFile o WHERE o.id IN :ids", DataFile.class);
+            } else {
+                logger.warning("Unknown dtype " + entry.getKey() + " for objects " + entry.getValue());
+                continue;
+            }
+            query.setParameter("ids", entry.getValue())
+                    .setHint(QueryHints.BATCH_TYPE, BatchFetchType.IN)
+                    .setHint(QueryHints.BATCH, "o.owner")
+                    .setHint(QueryHints.BATCH, "o.creator")
+                    .setHint(QueryHints.BATCH, "o.releaseUser");
+            for (DvObject dvObject : query.getResultList()) {
+                found.put(dvObject.getId(), dvObject);
+            }
+        }
+
+        return found;
+    }
+
     public List<DvObject> findAll() {
         return em.createNamedQuery("DvObject.findAll", DvObject.class).getResultList();
     }
@@ -231,6 +286,21 @@ public class DvObjectServiceBean implements java.io.Serializable {
         return savedDvObject;
     }
 
+    /**
+     * {@link #updatePermissionIndexTime(DvObject)} of many objects at once,
+     * in bulk UPDATEs.
+     */
+    public void updatePermissionIndexTimes(Collection<Long> dvObjectIds) {
+        Timestamp now = new Timestamp(new Date().getTime());
+        List<Long> ids = new ArrayList<>(dvObjectIds);
+        for (int i = 0; i < ids.size(); i += 1000) {
+            em.createQuery("UPDATE DvObject o SET o.permissionIndexTime = :now WHERE o.id IN :ids")
+                    .setParameter("now", now)
+                    .setParameter("ids", ids.subList(i, Math.min(i + 1000, ids.size())))
+                    .executeUpdate();
+        }
+    }
+
     @TransactionAttribute(REQUIRES_NEW)
     public int clearAllIndexTimes() {
         Query clearIndexTimes = em.createQuery("UPDATE DvObject o SET o.indexTime = NULL, o.permissionIndexTime = NULL");
@@ -318,6 +388,26 @@ public class DvObjectServiceBean implements java.io.Serializable {
         
     }
     
+    /**
+     * Finds all the collections or datasets under a collection, at any depth,
+     * in one query (using the dvobjectclosure table, which is maintained by
+     * database triggers).
+     *
+     * @param ancestorId the id of the collection
+     * @param dtype the type of the descendants to look for; Dataverse or
+     * Dataset (files are not in the closure table)
+     * @return the ids of the descendants, closest first
+     */
+    public List<Long> findDescendantIds(Long ancestorId, DvObject.DType dtype) {
+        List<Long> descendantIds = em.createNativeQuery("SELECT c.descendant_id FROM dvobjectclosure c, dvobject o"
+                + " WHERE c.ancestor_id = ?1 AND c.depth > 0 AND o.id = c.descendant_id AND o.dtype = ?2"
+                + " ORDER BY c.depth, c.descendant_id")
+                .setParameter(1, ancestorId)
+                .setParameter(2, dtype.getDType())
+                .getResultList();
+        return new ArrayList<>(descendantIds);
+    }
+
     /**
      * Used to calculate the dvObject tree paths for the search results on the
      * dataverse page. (In order to determine if "linked" or not).
@@ -20,6 +20,7 @@ import edu.harvard.iq.dataverse.engine.command.exception.CommandException;
 import edu.harvard.iq.dataverse.engine.command.exception.PermissionException;
 import edu.harvard.iq.dataverse.engine.command.exception.RateLimitCommandException;
 import edu.harvard.iq.dataverse.ingest.IngestServiceBean;
+import edu.harvard.iq.dataverse.pidproviders.PidOperationServiceBean;
 import edu.harvard.iq.dataverse.pidproviders.PidProviderFactoryBean;
 import edu.harvard.iq.dataverse.privateurl.PrivateUrlServiceBean;
 import edu.harvard.iq.dataverse.search.IndexBatchServiceBean;
@@ -36,6 +37,7 @@ import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import edu.harvard.iq.dataverse.storageuse.StorageUseServiceBean;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 import edu.harvard.iq.dataverse.util.ConstraintViolationUtil;
+import edu.harvard.iq.dataverse.util.DataFileValidationServiceBean;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import edu.harvard.iq.dataverse.workflow.WorkflowServiceBean;
 import java.util.Arrays;
@@ -117,6 +119,12 @@ public class EjbDataverseEngine {
     @EJB
     PidProviderFactoryBean pidProviderFactory;
 
+    @EJB
+    PidOperationServiceBean pidOperations;
+
+    @EJB
+    DataFileValidationServiceBean fileValidation;
+
     @EJB
     SettingsServiceBean settings;
     
@@ -491,6 +499,16 @@ public class EjbDataverseEngine {
                 public PidProviderFactoryBean pidProviderFactory() {
                     return pidProviderFactory;
                 }
+
+                @Override
+                public PidOperationServiceBean pidOperations() {
+                    return pidOperations;
+                }
+
+                @Override
+                public DataFileValidationServiceBean fileValidation() {
+                    return fileValidation;
+                }
                 
                 @Override
                 public SettingsServiceBean settings() {
@@ -0,0 +1,153 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Timer;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+import org.eclipse.microprofile.metrics.annotation.Metric;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Write-behind buffer for {@link edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser#getLastApiUseTime()}.
+ *
+ * Updating the timestamp used to mean merging the whole user on every
+ * authenticated API call, i.e. a row-level write on authenticateduser per
+ * call; for the busy API clients (harvesters, sync bots) that meant
+ * thousands of writes per minute to the same rows. Instead, we now keep the
+ * latest timestamp per user in memory, and write all of them in batched
+ * UPDATEs every {@link JvmSettings#API_LAST_USE_FLUSH_INTERVAL} seconds.
+ *
+ * Each node of a cluster buffers and flushes its own API calls. That's safe
+ * because an UPDATE never moves a timestamp backwards (so a node flushing
+ * an older timestamp after another node doesn't matter), and the rows are
+ * always updated in the order of their ids (so concurrent flushes can't
+ * deadlock each other).
+ *
+ * Setting the interval to 0 disables the buffer; the timestamps are then
+ * written right away, as before.
+ */
+@Singleton
+@Startup
+@Lock(READ)
+public class LastApiUseTimeBuffer {
+
+    private static final Logger logger = Logger.getLogger(LastApiUseTimeBuffer.class.getCanonicalName());
+
+    private static final int DEFAULT_FLUSH_INTERVAL = 60;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    @EJB
+    UserServiceBean userService;
+
+    @Inject
+    @Metric(name = "api_last_use_time_flush_time", absolute = true, unit = MetricUnits.NANOSECONDS,
+            description = "Displays how long does it take to write the buffered API use times to the database")
+    Timer flushTimer;
+
+    private final Map<Long, Timestamp> lastApiUseTimes = new ConcurrentHashMap<>();
+    private volatile boolean enabled = false;
+    private ScheduledFuture<?> flushTask;
+
+    @PostConstruct
+    public void init() {
+        int flushInterval = JvmSettings.API_LAST_USE_FLUSH_INTERVAL.lookupOptional(Integer.class).orElse(DEFAULT_FLUSH_INTERVAL);
+        if (flushInterval > 0) {
+            logger.info("Writing the last API use times every " + flushInterval + " seconds");
+            enabled = true;
+            flushTask = scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.SECONDS);
+        } else {
+            logger.info("Last API use times are written right away");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        enabled = false;
+        // don't lose the last few:
+        flush();
+    }
+
+    /**
+     * @param userId the id of the user that used the API
+     * @param lastApiUseTime when
+     * @return true if the time was buffered, false if the caller should
+     * write it (i.e., the buffer is disabled).
+     */
+    public boolean add(Long userId, Timestamp lastApiUseTime) {
+        if (!enabled || userId == null || lastApiUseTime == null) {
+            return false;
+        }
+        lastApiUseTimes.merge(userId, lastApiUseTime, (older, newer) -> newer.after(older) ? newer : older);
+        return true;
+    }
+
+    @Gauge(name = "api_last_use_time_buffered", absolute = true, unit = MetricUnits.NONE,
+            description = "Displays how many users have an API use time waiting to be written to the database")
+    public int getBufferedCount() {
+        return lastApiUseTimes.size();
+    }
+
+    /**
+     * Writes all the buffered timestamps to the database. Called on a
+     * schedule; it's safe to call it at any other time too.
+     */
+    public void flush() {
+        SortedMap<Long, Timestamp> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try (var timeContext = flushTimer.time()) {
+            userService.updateLastApiUseTimes(batch);
+            logger.fine("Wrote the last API use times of " + batch.size() + " users");
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "Failed to write the last API use times of " + batch.size() + " users; will retry", ex);
+            // put them back, unless a newer time came in in the meantime:
+            batch.forEach((userId, lastApiUseTime) -> lastApiUseTimes.merge(userId, lastApiUseTime,
+                    (current, failed) -> current.after(failed) ? current : failed));
+        }
+    }
+
+    /**
+     * Takes everything that's been buffered so far out of the buffer. Times
+     * added while draining stay in the buffer for the next flush.
+     *
+     * @return the buffered times, sorted by user id
+     */
+    SortedMap<Long, Timestamp> drain() {
+        SortedMap<Long, Timestamp> batch = new TreeMap<>();
+        for (Long userId : new ArrayList<>(lastApiUseTimes.keySet())) {
+            Timestamp lastApiUseTime = lastApiUseTimes.remove(userId);
+            if (lastApiUseTime != null) {
+                batch.put(userId, lastApiUseTime);
+            }
+        }
+        return batch;
+    }
+}
@@ -5,6 +5,8 @@ import edu.harvard.iq.dataverse.authorization.DataverseRole;
 import edu.harvard.iq.dataverse.authorization.providers.builtin.BuiltinUserServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.GuestUser;
 import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
+import edu.harvard.iq.dataverse.authorization.PermissionCacheServiceBean;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.groups.Group;
 import edu.harvard.iq.dataverse.authorization.groups.GroupServiceBean;
@@ -91,6 +93,9 @@ public class PermissionServiceBean {
     @EJB
     GroupServiceBean groupService;
 
+    @EJB
+    PermissionCacheServiceBean permissionCacheService;
+
     @Inject
     DataverseSession session;
 
@@ -329,9 +334,7 @@ public class PermissionServiceBean {
             }
         }
         
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(user);
-        return hasGroupPermissionsFor(ras, dvo, required);
+        return rolePermissionsFor(req, dvo).containsAll(required);
     }
 
     public boolean hasPermissionsFor(RoleAssignee ra, DvObject dvo, Set<Permission> required) {
@@ -354,14 +357,7 @@ public class PermissionServiceBean {
         
         Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(ra, dvo));
         ras.add(ra);
-        return hasGroupPermissionsFor(ras, dvo, required);
-    }
-    
-    private boolean hasGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> required) {
-        for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
-            required.removeAll(asmnt.getRole().permissions());
-        }
-        return required.isEmpty();
+        return rolePermissionsFor(ras, dvo).containsAll(required);
     }
 
     /**
@@ -380,9 +376,7 @@ public class PermissionServiceBean {
         Set<Permission> permissions = getInferredPermissions(dvo);
 
         // Add permissions gained from ras
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(req.getUser());
-        addGroupPermissionsFor(ras, dvo, permissions);
+        permissions.addAll(rolePermissionsFor(req, dvo));
 
         if (!req.getUser().isAuthenticated()) {
             permissions.removeAll(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY);
@@ -408,7 +402,7 @@ public class PermissionServiceBean {
 
         Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(ra, dvo));
         ras.add(ra);
-        addGroupPermissionsFor(ras, dvo, permissions);
+        permissions.addAll(rolePermissionsFor(ras, dvo));
 
         if ((ra instanceof User) && (!((User) ra).isAuthenticated())) {
             permissions.removeAll(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY);
@@ -416,10 +410,60 @@ public class PermissionServiceBean {
         return permissions;
     }
     
-    private void addGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> permissions) {
-        for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
+    /**
+     * The permissions the user of the request, and their groups, get from
+     * role assignments on {@code dvo} or the objects it inherits them from.
+     * Cached for the request, and in the shared cache (see
+     * {@link PermissionCache}).
+     */
+    private Set<Permission> rolePermissionsFor(DataverseRequest req, DvObject dvo) {
+        if (dvo.getId() == null) {
+            return rolePermissionsFor(rasFor(req, dvo), dvo);
+        }
+        return req.getPermissionCache().get(permissionCacheService.getCache(), dvo.getId(),
+                () -> rolePermissionsFor(rasFor(req, dvo), dvo));
+    }
+
+    private Set<RoleAssignee> rasFor(DataverseRequest req, DvObject dvo) {
+        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
+        ras.add(req.getUser());
+        return ras;
+    }
+
+    private Set<Permission> rolePermissionsFor(Set<RoleAssignee> ras, DvObject dvo) {
+        if (dvo.getId() == null) {
+            return computeRolePermissions(ras, dvo).permissions();
+        }
+        Set<String> identifiers = ras.stream().map(RoleAssignee::getIdentifier).collect(Collectors.toSet());
+        return permissionCacheService.getCache().get(identifiers, dvo.getId(), () -> computeRolePermissions(ras, dvo));
+    }
+
+    private PermissionCache.Entry computeRolePermissions(Set<RoleAssignee> ras, DvObject dvo) {
+        Set<DvObject> permAncestors = getPermissionAncestors(dvo);
+        Set<Permission> permissions = EnumSet.noneOf(Permission.class);
+        for (RoleAssignment asmnt : roleService.directRoleAssignments(ras, permAncestors)) {
             permissions.addAll(asmnt.getRole().permissions());
         }
+        Set<Long> ancestorIds = permAncestors.stream().map(DvObject::getId).filter(id -> id != null).collect(Collectors.toSet());
+        return new PermissionCache.Entry(permissions, ancestorIds);
+    }
+
+    /**
+     * Forgets the cached permissions on the object and everything under it;
+     * to be called when it's moved (role assignments are taken care of by
+     * {@link DataverseRoleServiceBean}).
+     */
+    public void invalidateCachedPermissions(DvObject dvo) {
+        permissionCacheService.invalidateDvObject(dvo);
+    }
+
+    /**
+     * Forgets the cached permissions of the role assignee; to be called when
+     * its role assignments are changed other than through
+     * {@link DataverseRoleServiceBean}.
+     */
+    public void invalidateCachedPermissions(String assigneeIdentifier) {
+        permissionCacheService.invalidateAssignee(assigneeIdentifier);
     }
 
 
@@ -9,13 +9,17 @@ import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.dataaccess.DataAccess;
 import edu.harvard.iq.dataverse.dataaccess.ImageThumbConverter;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
+import edu.harvard.iq.dataverse.dataaccess.ThumbnailServiceBean;
 import edu.harvard.iq.dataverse.dataset.DatasetUtil;
 import edu.harvard.iq.dataverse.search.SolrSearchResult;
 import edu.harvard.iq.dataverse.util.FileUtil;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -43,10 +47,13 @@ public class ThumbnailServiceWrapper implements java.io.Serializable  {
     DatasetVersionServiceBean datasetVersionService;
     @EJB
     DataFileServiceBean dataFileService;
+    @EJB
+    ThumbnailServiceBean thumbnailService;
     
     private Map<Long, String> dvobjectThumbnailsMap = new HashMap<>();
     private Map<Long, DvObject> dvobjectViewMap = new HashMap<>();
     private Map<Long, Boolean> hasThumbMap = new HashMap<>();
+    private Map<Long, Boolean> hasDatasetLogoMap = new HashMap<>();
 
     private boolean hasDownloadFilePermission(DvObject dvo) {
         return permissionService.on(dvo).has(Permission.DownloadFile) ;
@@ -141,6 +148,56 @@ public class ThumbnailServiceWrapper implements java.io.Serializable  {
         return hasThumbMap.get(entity.getId());
     }
 
+    /**
+     * Finds out whether these files have thumbnails all at once (see
+     * {@link DataFileServiceBean#areThumbnailsAvailable(Collection)}), rather
+     * than one at a time, as {@link #isThumbnailAvailable(DataFile)} is
+     * called for each of them.
+     */
+    public void resolveThumbnailAvailability(Collection<DataFile> dataFiles) {
+        List<DataFile> unresolved = new ArrayList<>();
+        for (DataFile dataFile : dataFiles) {
+            if (dataFile.getId() != null && !hasThumbMap.containsKey(dataFile.getId())) {
+                unresolved.add(dataFile);
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            hasThumbMap.putAll(dataFileService.areThumbnailsAvailable(unresolved));
+        }
+    }
+
+    /**
+     * Does the same for the cards on a page of search results: the
+     * thumbnails of the (unrestricted) files, and the logos of the datasets
+     * that don't use one of their files as the thumbnail. The storage checks
+     * for the logos are made in parallel.
+     */
+    public void resolveCardImageAvailability(List<SolrSearchResult> results) {
+        List<DataFile> dataFiles = new ArrayList<>();
+        List<Dataset> datasets = new ArrayList<>();
+        for (SolrSearchResult result : results) {
+            if (result.isHarvested() || result.getEntity() == null) {
+                continue;
+            }
+            if (result.getEntity() instanceof DataFile dataFile && !dataFile.isRestricted()) {
+                // (whether the user may download the restricted ones is
+                // checked first, see getFileCardImageAsBase64Url())
+                dataFiles.add(dataFile);
+            } else if (result.getEntity() instanceof Dataset dataset
+                    && dataset.getId() != null
+                    && !dataset.isUseGenericThumbnail()
+                    && dataset.getThumbnailFile() == null
+                    && !hasDatasetLogoMap.containsKey(dataset.getId())
+                    && !datasets.contains(dataset)) {
+                datasets.add(dataset);
+            }
+        }
+        resolveThumbnailAvailability(dataFiles);
+        if (!datasets.isEmpty()) {
+            hasDatasetLogoMap.putAll(thumbnailService.getCacheChecker().check(datasets, ThumbnailServiceWrapper::hasDatasetLogo));
+        }
+    }
+
     // it's the responsibility of the user - to make sure the search result
     // passed to this method is of the Dataset type!
     public String getDatasetCardImageAsUrl(SolrSearchResult result) {
@@ -193,17 +250,9 @@ public class ThumbnailServiceWrapper implements java.io.Serializable  {
 
         if (thumbnailFile == null) {
 
-            boolean hasDatasetLogo = false;
-            StorageIO<DvObject> storageIO = null;
-            try {
-                storageIO = DataAccess.getStorageIO(dataset);
-                if (storageIO != null && storageIO.isAuxObjectCached(DatasetUtil.datasetLogoFilenameFinal)) {
-                    // If not, return null/use the default, otherwise pass the logo URL
-                    hasDatasetLogo = true;
-                }
-            } catch (IOException ioex) {
-                logger.warning("getDatasetCardImageAsUrl(): Failed to initialize dataset StorageIO for "
-                        + dataset.getStorageIdentifier() + " (" + ioex.getMessage() + ")");
+            Boolean hasDatasetLogo = hasDatasetLogoMap.get(datasetId);
+            if (hasDatasetLogo == null) {
+                hasDatasetLogo = hasDatasetLogo(dataset);
             }
             // If no other logo we attempt to auto-select via the optimized, native
             // query-based method
@@ -218,6 +267,18 @@ public class ThumbnailServiceWrapper implements java.io.Serializable  {
         return url;
         
     }
+
+    private static boolean hasDatasetLogo(Dataset dataset) {
+        try {
+            StorageIO<DvObject> storageIO = DataAccess.getStorageIO(dataset);
+            // If not, return null/use the default, otherwise pass the logo URL
+            return storageIO != null && storageIO.isAuxObjectCached(DatasetUtil.datasetLogoFilenameFinal);
+        } catch (IOException ioex) {
+            logger.warning("getDatasetCardImageAsUrl(): Failed to initialize dataset StorageIO for "
+                    + dataset.getStorageIdentifier() + " (" + ioex.getMessage() + ")");
+            return false;
+        }
+    }
     
     // it's the responsibility of the user - to make sure the search result
     // passed to this method is of the Dataverse type!
@@ -235,6 +296,7 @@ public class ThumbnailServiceWrapper implements java.io.Serializable  {
         dvobjectThumbnailsMap = new HashMap<>();
         dvobjectViewMap = new HashMap<>();
         hasThumbMap = new HashMap<>();
+        hasDatasetLogoMap = new HashMap<>();
     }
 
     
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.sql.Timestamp;
 import java.util.Date;
@@ -27,6 +28,7 @@ import org.apache.commons.lang3.StringUtils;
 public class UserServiceBean {
 
     private static final Logger logger = Logger.getLogger(UserServiceBean.class.getCanonicalName());
+    private static final int LAST_API_USE_TIME_BATCH_SIZE = 1000;
     public static final List<String> acceptableSortKeys = Arrays.asList(
       "id", "useridentifier", "lastname", "firstname", "email", "affiliation",
       "superuser", "position", "createdtime", "lastlogintime", "lastapiusetime",
@@ -41,6 +43,9 @@ public class UserServiceBean {
 
     @EJB IndexServiceBean indexService;
 
+    @EJB
+    LastApiUseTimeBuffer lastApiUseTimeBuffer;
+
     public AuthenticatedUser find(Object pk) {
         return (AuthenticatedUser) em.find(AuthenticatedUser.class, pk);
     }
@@ -535,6 +540,44 @@ public class UserServiceBean {
     public AuthenticatedUser updateLastApiUseTime(AuthenticatedUser user) {
         //assumes that AuthenticatedUser user already exists
         user.setLastApiUseTime(new Timestamp(new Date().getTime()));
+        if (lastApiUseTimeBuffer.add(user.getId(), user.getLastApiUseTime())) {
+            // will be written with the next flush of the buffer
+            return user;
+        }
         return save(user);
     }
+
+    /**
+     * Writes the last API use times buffered by {@link LastApiUseTimeBuffer}.
+     * A time is only written if it's later than the one in the database
+     * (another node may have written a later one in the meantime).
+     *
+     * @param lastApiUseTimes the times to write, by user id; the rows are
+     * updated in the iteration order of the map, so pass a sorted one.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void updateLastApiUseTimes(Map<Long, Timestamp> lastApiUseTimes) {
+        List<Map.Entry<Long, Timestamp>> entries = new ArrayList<>(lastApiUseTimes.entrySet());
+
+        for (int start = 0; start < entries.size(); start += LAST_API_USE_TIME_BATCH_SIZE) {
+            List<Map.Entry<Long, Timestamp>> batch = entries.subList(start, Math.min(start + LAST_API_USE_TIME_BATCH_SIZE, entries.size()));
+
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) {
+                    values.append(", ");
+                }
+                values.append("(CAST(?").append(2 * i + 1).append(" AS BIGINT), CAST(?").append(2 * i + 2).append(" AS TIMESTAMP))");
+            }
+
+            Query query = em.createNativeQuery("UPDATE authenticateduser u SET lastapiusetime = v.lastapiusetime"
+                    + " FROM (VALUES " + values + ") AS v(id, lastapiusetime)"
+                    + " WHERE u.id = v.id AND (u.lastapiusetime IS NULL OR u.lastapiusetime < v.lastapiusetime)");
+            for (int i = 0; i < batch.size(); i++) {
+                query.setParameter(2 * i + 1, batch.get(i).getKey());
+                query.setParameter(2 * i + 2, batch.get(i).getValue());
+            }
+            query.executeUpdate();
+        }
+    }
 }
@@ -40,6 +40,7 @@ import jakarta.ejb.EJB;
 import jakarta.ejb.EJBException;
 import jakarta.json.*;
 import jakarta.json.JsonValue.ValueType;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
@@ -51,6 +52,7 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.ResponseBuilder;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import java.io.InputStream;
 import java.net.URI;
@@ -58,6 +60,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -698,6 +701,30 @@ public abstract class AbstractApiBean {
             .type(MediaType.APPLICATION_JSON).build();
     }
 
+    /**
+     * An OK response whose data is written to the generator as the response
+     * is sent, for results too big to be built in memory first. Same
+     * envelope as {@link #ok(JsonObjectBuilder)}.
+     *
+     * @param totalCount added as "totalCount" when not null
+     * @param dataWriter writes the value of "data"
+     */
+    protected Response okStreaming(Long totalCount, Consumer<JsonGenerator> dataWriter) {
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = Json.createGenerator(output)) {
+                generator.writeStartObject()
+                        .write("status", ApiConstants.STATUS_OK);
+                if (totalCount != null) {
+                    generator.write("totalCount", totalCount);
+                }
+                generator.writeKey("data");
+                dataWriter.accept(generator);
+                generator.writeEnd();
+            }
+        };
+        return Response.ok(stream).type(MediaType.APPLICATION_JSON).build();
+    }
+
     protected Response ok( JsonArrayBuilder bld , long totalCount) {
         return Response.ok(Json.createObjectBuilder()
                         .add("status", ApiConstants.STATUS_OK)
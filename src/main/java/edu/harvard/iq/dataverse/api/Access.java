@@ -47,6 +47,7 @@ import edu.harvard.iq.dataverse.dataaccess.DataAccess;
 import edu.harvard.iq.dataverse.dataaccess.DataAccessRequest;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.dataaccess.DataFileZipper;
+import edu.harvard.iq.dataverse.dataaccess.ZipDownloadServiceBean;
 import edu.harvard.iq.dataverse.dataaccess.GlobusAccessibleStore;
 import edu.harvard.iq.dataverse.dataaccess.OptionalAccessService;
 import edu.harvard.iq.dataverse.dataaccess.ImageThumbConverter;
@@ -195,6 +196,8 @@ public class Access extends AbstractApiBean {
     FileDownloadServiceBean fileDownloadService; 
     @EJB
     AuxiliaryFileServiceBean auxiliaryFileService;
+    @EJB
+    ZipDownloadServiceBean zipDownloadService;
     @Inject
     PermissionsWrapper permissionsWrapper;
     @Inject
@@ -845,11 +848,24 @@ public class Access extends AbstractApiBean {
         
         StreamingOutput stream = new StreamingOutput() {
 
+            private DataFileZipper zipper = null; 
+
             @Override
             public void write(OutputStream os) throws IOException,
                     WebApplicationException {
+                try {
+                    writeZip(os);
+                } finally {
+                    if (zipper != null) {
+                        // (stops reading ahead if the download has failed)
+                        zipper.close();
+                    }
+                }
+            }
+
+            private void writeZip(OutputStream os) throws IOException,
+                    WebApplicationException {
                 String fileIdParams[] = fileIds.split(",");
-                DataFileZipper zipper = null; 
                 String fileManifest = "";
                 long sizeTotal = 0L;
                 
@@ -881,7 +897,7 @@ public class Access extends AbstractApiBean {
                                     if (zipper == null) {
                                         // This is the first file we can serve - so we now know that we are going to be able 
                                         // to produce some output.
-                                        zipper = new DataFileZipper(os);
+                                        zipper = new DataFileZipper(os, zipDownloadService.getReadAhead());
                                         zipper.setFileManifest(fileManifest);
                                         response.setHeader("Content-disposition", "attachment; filename=\"dataverse_files.zip\"");
                                         response.setHeader("Content-Type", "application/zip; name=\"dataverse_files.zip\"");
@@ -922,7 +938,10 @@ public class Access extends AbstractApiBean {
                                         size = file.getFilesize();
                                     }
                                     if (sizeTotal + size < zipDownloadSizeLimit) {
-                                        sizeTotal += zipper.addFileToZipStream(file, getOriginal);
+                                        // (the file may still be read when this returns, 
+                                        // so its size is counted as recorded)
+                                        zipper.addFileToZipStream(file, getOriginal);
+                                        sizeTotal += size;
                                     } else {
                                         String fileName = file.getFileMetadata().getLabel();
                                         String mimeType = file.getContentType();
@@ -228,7 +228,7 @@ public class Datasets extends AbstractApiBean {
     @GET
     @Path("/export")
     @Produces({"application/xml", "application/json", "application/html", "application/ld+json", "*/*" })
-    public Response exportDataset(@QueryParam("persistentId") String persistentId, @QueryParam("exporter") String exporter, @Context UriInfo uriInfo, @Context HttpHeaders headers, @Context HttpServletResponse response) {
+    public Response exportDataset(@QueryParam("persistentId") String persistentId, @QueryParam("exporter") String exporter, @Context UriInfo uriInfo, @Context HttpHeaders headers, @Context Request request, @Context HttpServletResponse response) {
 
         try {
             Dataset dataset = datasetService.findByGlobalId(persistentId);
@@ -237,18 +237,31 @@ public class Datasets extends AbstractApiBean {
             }
             
             ExportService instance = ExportService.getInstance();
-            
-            InputStream is = instance.getExport(dataset, exporter);
-           
-            String mediaType = instance.getMediaType(exporter);
+
             //Export is only possible for released (non-draft) dataset versions so we can log without checking to see if this is a request for a draft 
             MakeDataCountLoggingServiceBean.MakeDataCountEntry entry = new MakeDataCountEntry(uriInfo, headers, dvRequestService, dataset);
             mdcLogService.logEntry(entry);
-            
+
+            // A client that already has the export (as kept in memory) doesn't need it again:
+            String etag = instance.getExportETag(dataset, exporter);
+            if (etag != null) {
+                Response.ResponseBuilder notModified = request.evaluatePreconditions(new EntityTag(etag));
+                if (notModified != null) {
+                    return notModified.build();
+                }
+            }
+
+            InputStream is = instance.getExport(dataset, exporter);
+           
+            String mediaType = instance.getMediaType(exporter);
+            // (null if the export is too big to be kept in memory)
+            etag = instance.getExportETag(dataset, exporter);
+
             return Response.ok()
                     .entity(is)
-                    .type(mediaType).
-                    build();
+                    .type(mediaType)
+                    .tag(etag == null ? null : new EntityTag(etag))
+                    .build();
         } catch (Exception wr) {
             logger.warning(wr.getMessage());
             return error(Response.Status.FORBIDDEN, "Export Failed");
@@ -464,12 +477,26 @@ public class Datasets extends AbstractApiBean {
             }
 
             if (excludeFiles == null ? true : !excludeFiles) {
-                requestedDatasetVersion = datasetversionService.findDeep(requestedDatasetVersion.getId());
+                // The files (there may be a great many of them) are written
+                // after the rest of the version, a page at a time, as the
+                // response is sent:
+                DatasetVersion datasetVersion = requestedDatasetVersion;
+                JsonObject versionJson = json(datasetVersion, null, false, returnOwners).build();
+                FileSearchCriteria allFiles = new FileSearchCriteria(null, null, null, null, null);
+                return okStreaming(null, generator -> {
+                    generator.writeStartObject();
+                    JsonStreamPrinter.writeEntries(generator, versionJson);
+                    generator.writeKey("files");
+                    JsonStreamPrinter.writeFileMetadatas(generator,
+                            (pageOffset, pageLimit) -> datasetVersionFilesServiceBean.getFileMetadatas(datasetVersion, pageLimit, pageOffset, allFiles, DatasetVersionFilesServiceBean.FileOrderCriteria.NameAZ),
+                            0, null);
+                    generator.writeEnd();
+                });
             }
 
             JsonObjectBuilder jsonBuilder = json(requestedDatasetVersion,
                                                  null, 
-                                                 excludeFiles == null ? true : !excludeFiles, 
+                                                 false, 
                                                  returnOwners);
             return ok(jsonBuilder);
 
@@ -513,8 +540,10 @@ public class Datasets extends AbstractApiBean {
             } catch (IllegalArgumentException e) {
                 return badRequest(BundleUtil.getStringFromBundle("datasets.api.version.files.invalid.access.status", List.of(accessStatus)));
             }
-            return ok(jsonFileMetadatas(datasetVersionFilesServiceBean.getFileMetadatas(datasetVersion, limit, offset, fileSearchCriteria, fileOrderCriteria)),
-                    datasetVersionFilesServiceBean.getFileMetadataCount(datasetVersion, fileSearchCriteria));
+            long totalCount = datasetVersionFilesServiceBean.getFileMetadataCount(datasetVersion, fileSearchCriteria);
+            return okStreaming(totalCount, generator -> JsonStreamPrinter.writeFileMetadatas(generator,
+                    (pageOffset, pageLimit) -> datasetVersionFilesServiceBean.getFileMetadatas(datasetVersion, pageLimit, pageOffset, fileSearchCriteria, fileOrderCriteria),
+                    offset == null ? 0 : offset, limit));
         }, getRequestUser(crc));
     }
 
@@ -33,14 +33,14 @@ import edu.harvard.iq.dataverse.makedatacount.MakeDataCountLoggingServiceBean.Ma
 import edu.harvard.iq.dataverse.util.FileUtil;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jakarta.inject.Inject;
@@ -69,6 +69,10 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
 
     private static final Logger logger = Logger.getLogger(DownloadInstanceWriter.class.getCanonicalName());
 
+    // More than enough for legitimate clients; beyond that, a multipart
+    // response is mostly part headers.
+    static final int MAX_RANGES = 100;
+
     @Override
     public boolean isWriteable(Class<?> clazz, Type type, Annotation[] annotation, MediaType mediaType) {
         return clazz == DownloadInstance.class;
@@ -370,48 +374,38 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                                 if (variablePositionIndex.size() > 0) {
 
                                     try {
-                                        File tempSubsetFile = File.createTempFile("tempSubsetFile", ".tmp");
-                                        TabularSubsetGenerator tabularSubsetGenerator = new TabularSubsetGenerator();
-                                        
                                         long numberOfLines = dataFile.getDataTable().getCaseQuantity();
                                         if (dataFile.getDataTable().isStoredWithVariableHeader()) {
                                             numberOfLines++;
                                         }
-                                        
-                                        tabularSubsetGenerator.subsetFile(storageIO.getInputStream(), 
-                                                tempSubsetFile.getAbsolutePath(), 
-                                                variablePositionIndex, 
-                                                numberOfLines, 
-                                                "\t");
-
-                                        if (tempSubsetFile.exists()) {
-                                            FileInputStream subsetStream = new FileInputStream(tempSubsetFile);
-                                            long subsetSize = tempSubsetFile.length();
-
-                                            InputStreamIO subsetStreamIO = new InputStreamIO(subsetStream, subsetSize);
-                                            logger.fine("successfully created subset output stream.");
-                                            
-                                            if (subsetVariableHeader != null) {
-                                                subsetVariableHeader = subsetVariableHeader.concat("\n");
-                                                subsetStreamIO.setVarHeader(subsetVariableHeader);
-                                            }
 
-                                            String tabularFileName = storageIO.getFileName();
+                                        // The subset is produced as it's written to the 
+                                        // response; its size is not known in advance:
+                                        InputStream subsetStream = TabularSubsetGenerator.openSubsetStream(storageIO,
+                                                variablePositionIndex,
+                                                numberOfLines);
 
-                                            if (tabularFileName != null && tabularFileName.endsWith(".tab")) {
-                                                tabularFileName = tabularFileName.replaceAll("\\.tab$", "-subset.tab");
-                                            } else if (tabularFileName != null && !"".equals(tabularFileName)) {
-                                                tabularFileName = tabularFileName.concat("-subset.tab");
-                                            } else {
-                                                tabularFileName = "subset.tab";
-                                            }
+                                        InputStreamIO subsetStreamIO = new InputStreamIO(subsetStream, -1);
+                                        logger.fine("successfully created subset output stream.");
+
+                                        if (subsetVariableHeader != null) {
+                                            subsetVariableHeader = subsetVariableHeader.concat("\n");
+                                            subsetStreamIO.setVarHeader(subsetVariableHeader);
+                                        }
+
+                                        String tabularFileName = storageIO.getFileName();
 
-                                            subsetStreamIO.setFileName(tabularFileName);
-                                            subsetStreamIO.setMimeType(storageIO.getMimeType());
-                                            storageIO = subsetStreamIO;
+                                        if (tabularFileName != null && tabularFileName.endsWith(".tab")) {
+                                            tabularFileName = tabularFileName.replaceAll("\\.tab$", "-subset.tab");
+                                        } else if (tabularFileName != null && !"".equals(tabularFileName)) {
+                                            tabularFileName = tabularFileName.concat("-subset.tab");
                                         } else {
-                                            storageIO = null;
+                                            tabularFileName = "subset.tab";
                                         }
+
+                                        subsetStreamIO.setFileName(tabularFileName);
+                                        subsetStreamIO.setMimeType(storageIO.getMimeType());
+                                        storageIO = subsetStreamIO;
                                     } catch (IOException ioex) {
                                         storageIO = null;
                                     }
@@ -450,8 +444,12 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
 
                 } 
 
-                try (InputStream instream = storageIO.getInputStream()) {
-                    if (instream != null) {
+                // Drivers that read ranges of the file directly (see 
+                // StorageIO.writeRange()) don't need the input stream here; 
+                // on S3, opening it would start a download of the whole object.
+                boolean readDirectly = storageIO.supportsRangeReads() && storageIO.getSize() > -1;
+                try (InputStream instream = readDirectly ? null : storageIO.getInputStream()) {
+                    if (instream != null || readDirectly) {
                         // headers:
 
                         String fileName = storageIO.getFileName();
@@ -462,8 +460,8 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                         // Encode the filename as UTF-8, then deal with spaces. "encode" changes
                         // a space to + so we change it back to a space (%20).
                         String finalFileName = URLEncoder.encode(fileName, "UTF-8").replaceAll("\\+", "%20");
+                        String contentType = mimeType + "; name=\"" + finalFileName + "\"";
                         httpHeaders.add("Content-disposition", "attachment; filename=\"" + finalFileName + "\"");
-                        httpHeaders.add("Content-Type", mimeType + "; name=\"" + finalFileName + "\"");
 
                         long contentSize;
                         
@@ -477,15 +475,14 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                         if (headers != null) {
                             rangeHeader = headers.getHeaderString("Range");
                         }
-                        long offset = 0;
-                        long leftToRead = -1L; 
-                        // Moving the "left to read" var. here; - since we may need 
-                        // to start counting our rangeHeader bytes outside the main .write()
-                        // loop, if it's a tabular file with a header. 
+                        // The parts of a multipart/byteranges response, when 
+                        // more than one range is requested: 
+                        List<byte[]> partHeaders = new ArrayList<>();
+                        byte[] closingBoundary = null;
                         
                         if ((contentSize = getContentSize(storageIO)) > 0) {
                             try {
-                                ranges = getRanges(rangeHeader, contentSize);
+                                ranges = getRangesToWrite(rangeHeader, contentSize);
                             } catch (Exception ex) {
                                 logger.fine("Exception caught processing Range header: " + ex.getLocalizedMessage());
                                 throw new ClientErrorException("Error due to Range header: " + ex.getLocalizedMessage(), Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE);
@@ -493,18 +490,34 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                             
                             if (ranges.isEmpty()) {
                                 logger.fine("Content size (retrieved from the AccessObject): " + contentSize);
+                                httpHeaders.add("Content-Type", contentType);
                                 httpHeaders.add("Content-Length", contentSize);
-                            } else  {
-                                // For now we only support a single rangeHeader.
+                            } else if (ranges.size() == 1) {
                                 long rangeContentSize = ranges.get(0).getLength();
                                 logger.fine("Content size (Range header in use): " + rangeContentSize);
+                                httpHeaders.add("Content-Type", contentType);
                                 httpHeaders.add("Content-Length", rangeContentSize);
-                                
-                                offset = ranges.get(0).getStart();
-                                leftToRead = rangeContentSize;
                                 httpHeaders.add("Accept-Ranges", "bytes");
-                                httpHeaders.add("Content-Range", "bytes "+offset+"-"+(offset+rangeContentSize-1)+"/"+contentSize);
-
+                                httpHeaders.add("Content-Range", getContentRange(ranges.get(0), contentSize));
+                            } else {
+                                // Multiple ranges: a multipart/byteranges body
+                                // (RFC 9110, 14.6), each part with its own
+                                // Content-Range:
+                                String boundary = UUID.randomUUID().toString();
+                                long multipartContentSize = 0;
+                                for (Range range : ranges) {
+                                    byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                                            + "Content-Type: " + contentType + "\r\n"
+                                            + "Content-Range: " + getContentRange(range, contentSize) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+                                    partHeaders.add(partHeader);
+                                    multipartContentSize += partHeader.length + range.getLength();
+                                }
+                                closingBoundary = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+                                multipartContentSize += closingBoundary.length;
+                                logger.fine("Content size (multiple ranges in the Range header): " + multipartContentSize);
+                                httpHeaders.add("Content-Type", "multipart/byteranges; boundary=" + boundary);
+                                httpHeaders.add("Content-Length", multipartContentSize);
+                                httpHeaders.add("Accept-Ranges", "bytes");
                             }
                         } else {
                             // Content size unknown, must be a dynamically
@@ -513,96 +526,40 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                             if (rangeHeader != null) {
                                 throw new NotFoundException("Range headers are not supported on dynamically-generated content, such as tabular subsetting.");
                             }
-                            
+                            httpHeaders.add("Content-Type", contentType);
                         }
 
                         // (the httpHeaders map must be modified *before* writing any
                         // data in the output stream!)
-                        int bufsize;
-                        byte[] bffr = new byte[4 * 8192];
-
-                        // Before writing out any bytes from the input stream, write
-                        // any extra content, such as the variable header for the 
-                        // subsettable files: 
-                        if (storageIO.getVarHeader() != null) {
-                            logger.fine("storageIO.getVarHeader().getBytes().length: " + storageIO.getVarHeader().getBytes().length);
-                            if (storageIO.getVarHeader().getBytes().length > 0) {
-                                // If a rangeHeader is not being requested, let's call that the normal case.
-                                // Write the entire line of variable headers. Later, the rest of the file
-                                // will be written.
-                                if (ranges.isEmpty()) {
-                                    logger.fine("writing the entire variable header");
-                                    outstream.write(storageIO.getVarHeader().getBytes());
-                                } else {
-                                    // Range requested. Since the output stream of a 
-                                    // tabular file is made up of the varHeader and the body of 
-                                    // the physical file, we should assume that the requested 
-                                    // rangeHeader may span any portion of the combined stream.
-                                    // Thus we may or may not have to write the header, or a 
-                                    // portion thereof. 
-                                    int headerLength = storageIO.getVarHeader().getBytes().length;
-                                    if (offset >= headerLength) {
-                                        // We can skip the entire header. 
-                                        // All we need to do is adjust the byte offset 
-                                        // in the physical file; the number of bytes
-                                        // left to write stays unchanged, since we haven't
-                                        // written anything.
-                                        logger.fine("Skipping the variable header completely.");
-                                        offset -= headerLength;
-                                    } else {
-                                        // We need to write some portion of the header; 
-                                        // Once we are done, we may or may not still have 
-                                        // some bytes left to write from the main physical file.
-                                        if (offset + leftToRead <= headerLength) {
-                                            // This is a more straightforward case - we just need to 
-                                            // write a portion of the header, and then we are done!
-                                            logger.fine("Writing this many bytes of the variable header line: " + leftToRead);
-                                            outstream.write(Arrays.copyOfRange(storageIO.getVarHeader().getBytes(), (int)offset, (int)offset + (int)leftToRead));
-                                            // set "left to read" to zero, indicating that we are done:
-                                            leftToRead = 0; 
-                                        } else {
-                                            // write the requested portion of the header:
-                                            logger.fine("Writing this many bytes of the variable header line: " + (headerLength - offset));
-                                            outstream.write(Arrays.copyOfRange(storageIO.getVarHeader().getBytes(), (int)offset, headerLength));
-                                            // and adjust the file offset and remaining number of bytes accordingly: 
-                                            leftToRead -= (headerLength - offset);
-                                            offset = 0;
-                                        }
-                                        
-                                    }
-                                }
-                            }
-                        }
 
-                        // Dynamic streams, etc. Normal operation. No leftToRead.
+                        // The output stream of a tabular file may be made up of
+                        // the variable header and the body of the physical file:
+                        byte[] varHeader = storageIO.getVarHeader() == null ? new byte[0] : storageIO.getVarHeader().getBytes();
+                        logger.fine("variable header length: " + varHeader.length);
+
                         if (ranges.isEmpty()) {
+                            // Dynamic streams, etc. Normal operation.
                             logger.fine("Normal, non-range request of file id " + dataFile.getId());
-                            while ((bufsize = instream.read(bffr)) != -1) {
-                                outstream.write(bffr, 0, bufsize);
-                            }
-                        } else if (leftToRead > 0) {
-                            // This is a rangeHeader request, and we still have bytes to read 
-                            // (for a tabular file, we may have already written enough
-                            // bytes from the variable header!)
-                            storageIO.setOffset(offset);
-                            // Thinking about it, we could just do instream.skip(offset) 
-                            // here... But I would like to have this offset functionality 
-                            // in StorageIO, for any future cases where we may not 
-                            // be able to do that on the stream directly (?) -- L.A.
-                            logger.fine("Range request of file id " + dataFile.getId());
-                            // Read a rangeHeader of bytes instead of the whole file. We'll count down as we write.
-                            // For now we only support a single rangeHeader.
-                            while ((bufsize = instream.read(bffr)) != -1) {
-                                if ((leftToRead -= bufsize) > 0) {
-                                    // Just do a normal write. Potentially lots to go. Don't break.
+                            outstream.write(varHeader);
+                            if (readDirectly) {
+                                storageIO.writeRange(0, storageIO.getSize(), outstream);
+                            } else {
+                                int bufsize;
+                                byte[] bffr = new byte[4 * 8192];
+                                while ((bufsize = instream.read(bffr)) != -1) {
                                     outstream.write(bffr, 0, bufsize);
-                                } else {
-                                    // Get those last bytes or bytes equal to bufsize. Last one. Then break.
-                                    outstream.write(bffr, 0, (int) leftToRead + bufsize);
-                                    break;
                                 }
                             }
-
+                        } else if (ranges.size() == 1) {
+                            logger.fine("Range request of file id " + dataFile.getId());
+                            writeRange(storageIO, varHeader, ranges.get(0), outstream);
+                        } else {
+                            logger.fine("Multiple range request of file id " + dataFile.getId());
+                            for (int i = 0; i < ranges.size(); i++) {
+                                outstream.write(partHeaders.get(i));
+                                writeRange(storageIO, varHeader, ranges.get(i), outstream);
+                            }
+                            outstream.write(closingBoundary);
                         }
 
                         logger.fine("di conversion param: " + di.getConversionParam() + ", value: " + di.getConversionParamValue());
@@ -626,6 +583,10 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                         outstream.close();
                         return;
                     }
+                } finally {
+                    if (readDirectly) {
+                        storageIO.closeInputStream();
+                    }
                 }
             }
         }
@@ -634,6 +595,33 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
 
     }
 
+    /**
+     * Writes a range of the content: the variable header of a tabular file
+     * (if any), followed by the physical file. The range may span any portion
+     * of the combined stream.
+     */
+    static void writeRange(StorageIO<?> storageIO, byte[] varHeader, Range range, OutputStream outstream) throws IOException {
+        long offset = range.getStart();
+        long leftToWrite = range.getLength();
+        if (offset < varHeader.length) {
+            // (a portion of) the header:
+            int headerBytes = (int) Math.min(leftToWrite, varHeader.length - offset);
+            logger.fine("Writing this many bytes of the variable header line: " + headerBytes);
+            outstream.write(varHeader, (int) offset, headerBytes);
+            leftToWrite -= headerBytes;
+            offset = 0;
+        } else {
+            offset -= varHeader.length;
+        }
+        if (leftToWrite > 0) {
+            storageIO.writeRange(offset, leftToWrite, outstream);
+        }
+    }
+
+    private static String getContentRange(Range range, long contentSize) {
+        return "bytes " + range.getStart() + "-" + range.getEnd() + "/" + contentSize;
+    }
+
     private boolean isAuxiliaryObjectCached(StorageIO storageIO, String auxiliaryTag) {
         try {
             return storageIO.isAuxObjectCached(auxiliaryTag);
@@ -756,19 +744,15 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
         if (range != null) {
             logger.fine("Range header supplied: " + range);
 
-            // Technically this regex supports multiple ranges.
-            // Below we have a check to enforce a single range.
             if (!range.matches("^bytes=\\d*-\\d*(,\\d*-\\d*)*$")) {
                 throw new RuntimeException("The format is bytes=<range-start>-<range-end> where start and end are optional.");
             }
 
             // The 6 is to remove "bytes="
             String[] parts = range.substring(6).split(",");
-            if (parts.length > 1) {
-                // Only allow a single range.
-                throw new RuntimeException("Only one range is allowed.");
+            if (parts.length > MAX_RANGES) {
+                throw new RuntimeException("At most " + MAX_RANGES + " ranges are allowed.");
             }
-            // This loop is here in case we ever want to support multiple ranges.
             for (String part : parts) {
 
                 long start = getRangeStart(part);
@@ -797,6 +781,40 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
         return ranges;
     }
 
+    /**
+     * @return the ranges of the Range header to write, whatever the driver:
+     * sorted, with the ones that overlap or touch merged (see
+     * {@link #coalesce(List)}). The input stream only goes forward; and, when
+     * the driver reads the ranges directly, overlapping ranges would have the
+     * same bytes read and sent over and over (RFC 9110, 14.2).
+     * @throws RuntimeException on any problems processing the Range header.
+     */
+    public List<Range> getRangesToWrite(String range, long fileSize) {
+        List<Range> ranges = getRanges(range, fileSize);
+        return ranges.size() > 1 ? coalesce(ranges) : ranges;
+    }
+
+    /**
+     * @return the ranges in ascending order, with the ones that overlap or
+     * touch merged into one (so that they can be read going forward through a
+     * stream).
+     */
+    public static List<Range> coalesce(List<Range> ranges) {
+        List<Range> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(Range::getStart));
+        List<Range> coalesced = new ArrayList<>();
+        for (Range range : sorted) {
+            int last = coalesced.size() - 1;
+            if (last >= 0 && range.getStart() <= coalesced.get(last).getEnd() + 1) {
+                Range previous = coalesced.get(last);
+                coalesced.set(last, new Range(previous.getStart(), Math.max(previous.getEnd(), range.getEnd())));
+            } else {
+                coalesced.add(range);
+            }
+        }
+        return coalesced;
+    }
+
     /**
      * @return Return a positive long or -1 if start does not exist.
      */
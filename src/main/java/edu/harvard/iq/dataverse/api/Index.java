@@ -27,6 +27,8 @@ import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
 import edu.harvard.iq.dataverse.search.DvObjectSolrDoc;
 import edu.harvard.iq.dataverse.search.FacetCategory;
 import edu.harvard.iq.dataverse.search.FileView;
+import edu.harvard.iq.dataverse.search.IndexAllCheckpoint;
+import edu.harvard.iq.dataverse.search.IndexAllCheckpointServiceBean;
 import edu.harvard.iq.dataverse.search.IndexBatchServiceBean;
 import edu.harvard.iq.dataverse.search.IndexResponse;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
@@ -77,6 +79,8 @@ public class Index extends AbstractApiBean {
     @EJB
     IndexBatchServiceBean indexBatchService;
     @EJB
+    IndexAllCheckpointServiceBean indexAllCheckpointService;
+    @EJB
     SolrIndexServiceBean solrIndexService;
     @EJB
     DataverseServiceBean dataverseService;
@@ -102,18 +106,25 @@ public class Index extends AbstractApiBean {
     public static String permsChanged = "permsChanged";
     public static String permsIndexed = "permsIndexed";
 
+    /**
+     * Starts "index all" (or its partition partitionIdToProcess, out of
+     * numPartitions: several servers can each run one at the same time). If
+     * the last run of the partition was interrupted, this continues it,
+     * unless restart is set. See {@link #indexStatus(String)} for the
+     * progress.
+     */
     @GET
-    public Response indexAllOrSubset(@QueryParam("numPartitions") Long numPartitionsSelected, @QueryParam("partitionIdToProcess") Long partitionIdToProcess, @QueryParam("previewOnly") boolean previewOnly) {
-        return indexAllOrSubset(numPartitionsSelected, partitionIdToProcess, false, previewOnly);
+    public Response indexAllOrSubset(@QueryParam("numPartitions") Long numPartitionsSelected, @QueryParam("partitionIdToProcess") Long partitionIdToProcess, @QueryParam("previewOnly") boolean previewOnly, @QueryParam("restart") boolean restart) {
+        return indexAllOrSubset(numPartitionsSelected, partitionIdToProcess, false, previewOnly, restart);
     }
 
     @GET
     @Path("continue")
-    public Response indexAllOrSubsetContinue(@QueryParam("numPartitions") Long numPartitionsSelected, @QueryParam("partitionIdToProcess") Long partitionIdToProcess, @QueryParam("previewOnly") boolean previewOnly) {
-        return indexAllOrSubset(numPartitionsSelected, partitionIdToProcess, true, previewOnly);
+    public Response indexAllOrSubsetContinue(@QueryParam("numPartitions") Long numPartitionsSelected, @QueryParam("partitionIdToProcess") Long partitionIdToProcess, @QueryParam("previewOnly") boolean previewOnly, @QueryParam("restart") boolean restart) {
+        return indexAllOrSubset(numPartitionsSelected, partitionIdToProcess, true, previewOnly, restart);
     }
 
-    private Response indexAllOrSubset(Long numPartitionsSelected, Long partitionIdToProcess, boolean skipIndexed, boolean previewOnly) {
+    private Response indexAllOrSubset(Long numPartitionsSelected, Long partitionIdToProcess, boolean skipIndexed, boolean previewOnly, boolean restart) {
         try {
             long numPartitions = 1;
             if (numPartitionsSelected != null) {
@@ -160,6 +171,16 @@ public class Index extends AbstractApiBean {
                 return ok(preview);
             }
 
+            // (the check that the partition isn't being indexed already and
+            // the claim are one statement, so that two calls can't both
+            // start a run)
+            IndexAllCheckpoint checkpoint = indexBatchService.claimPartition(numPartitions, partitionIdToProcess, skipIndexed, restart);
+            if (checkpoint == null) {
+                return error(Status.CONFLICT, "Partition " + partitionIdToProcess + " of " + numPartitions + " is already being indexed. "
+                        + "See /api/admin/index/status for its progress.");
+            }
+            boolean resuming = checkpoint.getLastDataverseId() > 0 || checkpoint.getLastDatasetId() > 0;
+
             JsonObjectBuilder response = Json.createObjectBuilder();
             response.add("availablePartitionIds", availablePartitionIdsBuilder);
             response.add("args", args);
@@ -167,11 +188,13 @@ public class Index extends AbstractApiBean {
              * @todo How can we expose the String returned from "index all" via
              * the API?
              */
-            Future<JsonObjectBuilder> indexAllFuture = indexBatchService.indexAllOrSubset(numPartitions, partitionIdToProcess, skipIndexed, previewOnly);
+            Future<JsonObjectBuilder> indexAllFuture = indexBatchService.indexAllOrSubset(numPartitions, partitionIdToProcess, skipIndexed, checkpoint);
             JsonObject workloadPreview = preview.build().getJsonObject("previewOfPartitionWorkload");
             int dataverseCount = workloadPreview.getInt("dataverseCount");
             int datasetCount = workloadPreview.getInt("datasetCount");
-            String status = "indexAllOrSubset has begun of " + dataverseCount + " dataverses and " + datasetCount + " datasets.";
+            String status = resuming
+                    ? "indexAllOrSubset has resumed after dataverse " + checkpoint.getLastDataverseId() + " and dataset " + checkpoint.getLastDatasetId() + "."
+                    : "indexAllOrSubset has begun of " + dataverseCount + " dataverses and " + datasetCount + " datasets.";
             response.add("message", status);
             return ok(response);
         } catch (EJBException ex) {
@@ -388,7 +411,8 @@ public class Index extends AbstractApiBean {
     }
     /**
      * Checks whether there are inconsistencies between the Solr index and 
-     * the database, and reports back the status by content type
+     * the database, and reports back the status by content type; along with
+     * the progress of the "index all" runs (right away, even without sync)
      * @param sync - optional parameter, if set, then run the command 
      * synchronously. Else, return immediately, and report the status in server.log
      * @return status report
@@ -397,15 +421,18 @@ public class Index extends AbstractApiBean {
     @Path("status")
     public Response indexStatus(@QueryParam("sync") String sync) {
         Future<JsonObjectBuilder> result = indexBatchService.indexStatus();
+        JsonArrayBuilder indexAllProgress = indexAllCheckpointService.getProgress();
         if (sync != null) {
             try {
                 JsonObjectBuilder status = result.get();
-                return ok(status);
+                return ok(status.add("indexAll", indexAllProgress));
             } catch (InterruptedException | ExecutionException e) {
                 return AbstractApiBean.error(Status.INTERNAL_SERVER_ERROR, "indexStatus method interrupted: " + e.getLocalizedMessage());
             }
         } else {
-            return ok("Index Status Batch Job initiated, check log for job status.");
+            return ok(Json.createObjectBuilder()
+                    .add("message", "Index Status Batch Job initiated, check log for job status.")
+                    .add("indexAll", indexAllProgress));
         }
     }
      /**
@@ -17,6 +17,7 @@ import jakarta.ws.rs.*;
 
 import jakarta.ws.rs.core.Response;
 
+import edu.harvard.iq.dataverse.export.ExportAllCheckpointServiceBean;
 import edu.harvard.iq.dataverse.harvest.server.OAISetServiceBean;
 import edu.harvard.iq.dataverse.harvest.server.OAISet;
 
@@ -36,6 +37,9 @@ public class Metadata extends AbstractApiBean {
     @EJB
     DatasetServiceBean datasetService;
 
+    @EJB
+    ExportAllCheckpointServiceBean exportAllCheckpointService;
+
     // The following 2 commands start export all jobs in the background, 
     // asynchronously. 
     // (These API calls should probably not be here;
@@ -44,11 +48,13 @@ public class Metadata extends AbstractApiBean {
     // datasets *that haven't been exported yet* - which is determined by
     // checking the lastexporttime value of the dataset; if it's null, or < the last 
     // publication date = "unexported" - and export them. 
+    // If the last job of the same kind was interrupted, both continue it,
+    // unless restart=true.
     @GET
     @Path("/exportAll")
     @Produces("application/json")
-    public Response exportAll() {
-        datasetService.exportAllAsync();
+    public Response exportAll(@QueryParam("restart") boolean restart) {
+        datasetService.exportAllAsync(restart);
         return this.accepted();
     }
     
@@ -57,11 +63,26 @@ public class Metadata extends AbstractApiBean {
     @GET
     @Path("/reExportAll")
     @Produces("application/json")
-    public Response reExportAll() {
-        datasetService.reExportAllAsync();
+    public Response reExportAll(@QueryParam("restart") boolean restart) {
+        datasetService.reExportAllAsync(restart);
         return this.accepted();
     }
 
+    /**
+     * The progress of the last export all job: how many datasets were
+     * exported, failed or skipped, the throughput and the estimated time left.
+     */
+    @GET
+    @Path("/exportAll/status")
+    @Produces("application/json")
+    public Response exportAllStatus() {
+        JsonObjectBuilder progress = exportAllCheckpointService.getProgress();
+        if (progress == null) {
+            return error(Response.Status.NOT_FOUND, "No export all job has been run.");
+        }
+        return ok(progress);
+    }
+
     @GET
     @Path("{id}/reExportDataset")
     public Response indexDatasetByPersistentId(@PathParam("id") String id) {
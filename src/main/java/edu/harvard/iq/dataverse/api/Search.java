@@ -16,6 +16,7 @@ import edu.harvard.iq.dataverse.search.SearchException;
 import edu.harvard.iq.dataverse.search.SearchUtil;
 import edu.harvard.iq.dataverse.search.SortBy;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
+import edu.harvard.iq.dataverse.util.QueryCountingSessionListener;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -140,7 +141,8 @@ public class Search extends AbstractApiBean {
             // users can't change these (yet anyway)
             boolean dataRelatedToMe = showMyData; //getDataRelatedToMe();
             
-            SolrQueryResponse solrQueryResponse;
+            SolrQueryResponse solrQueryResponse = null;
+            QueryCountingSessionListener.startCounting();
             try {
                 solrQueryResponse = searchService.search(createDataverseRequest(user),
                         dataverseSubtrees,
@@ -170,12 +172,22 @@ public class Search extends AbstractApiBean {
                 String message = "Exception running search for [" + query + "] with filterQueries " + filterQueries + " and paginationStart [" + paginationStart + "]: " + sb.toString();
                 logger.info(message);
                 return error(Response.Status.INTERNAL_SERVER_ERROR, message);
+            } finally {
+                if (solrQueryResponse == null) {
+                    // (the request threads are pooled, the count mustn't be
+                    // left behind on this one)
+                    QueryCountingSessionListener.stopCounting();
+                }
             }
 
             JsonArrayBuilder itemsArrayBuilder = Json.createArrayBuilder();
             List<SolrSearchResult> solrSearchResults = solrQueryResponse.getSolrSearchResults();
-            for (SolrSearchResult solrSearchResult : solrSearchResults) {
-                itemsArrayBuilder.add(solrSearchResult.json(showRelevance, showEntityIds, showApiUrls, metadataFields, getDatasetFileCount(solrSearchResult)));
+            try {
+                for (SolrSearchResult solrSearchResult : solrSearchResults) {
+                    itemsArrayBuilder.add(solrSearchResult.json(showRelevance, showEntityIds, showApiUrls, metadataFields, getDatasetFileCount(solrSearchResult)));
+                }
+            } finally {
+                searchService.recordQueriesPerSearch("api", QueryCountingSessionListener.stopCounting());
             }
 
             JsonObjectBuilder spelling_alternatives = Json.createObjectBuilder();
@@ -0,0 +1,175 @@
+package edu.harvard.iq.dataverse.authorization;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The permissions that sets of role assignees (a user and their groups) get
+ * from their role assignments on {@link edu.harvard.iq.dataverse.DvObject}s,
+ * so that they don't have to be looked up again (walking up the owners of
+ * the object, with a query for each) every time a command is submitted or a
+ * page checks what its user can do.
+ *
+ * There are two levels: a bounded cache shared by all the requests, keyed by
+ * the identifiers of the role assignees and the id of the object; and a
+ * {@link RequestLevel} one, keyed by the object only, that each request keeps
+ * (and that saves looking up the groups of its user again too).
+ *
+ * Entries are invalidated when what they were computed from changes: the
+ * role assignments on the object or one of the ancestors it inherits them
+ * from ({@link #invalidateDvObject(long)}, also used when an object is moved,
+ * or becomes a permission root); a role assignee
+ * ({@link #invalidateAssignee(String)}); or a role
+ * ({@link #invalidateAll()}). Group memberships are part of the key, so when
+ * they change, the new set of role assignees simply gets new entries. Every
+ * invalidation also invalidates all the request level caches (see
+ * {@link #getGeneration()}).
+ */
+public class PermissionCache {
+
+    record Key(Set<String> assigneeIdentifiers, long dvObjectId) {
+    }
+
+    /**
+     * @param permissions what the role assignments give
+     * @param ancestorIds the ids of the object and the ancestors it inherits
+     * role assignments from (see
+     * {@link edu.harvard.iq.dataverse.PermissionServiceBean#getPermissionAncestors})
+     */
+    public record Entry(Set<Permission> permissions, Set<Long> ancestorIds) {
+    }
+
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong requestHits = new AtomicLong();
+
+    /**
+     * @param maxSize how many entries to keep at most; 0 to not cache
+     * anything in the shared cache (the request level caches are still used)
+     * @param maxAge how long to keep an entry, as a safety net for changes made
+     * by other servers, or directly in the database
+     */
+    public PermissionCache(long maxSize, Duration maxAge) {
+        cache = maxSize > 0
+                ? Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(maxAge).recordStats().build()
+                : null;
+    }
+
+    /**
+     * @param loader computes the entry when it's not in the cache
+     * @return the permissions the role assignees have on the object through
+     * role assignments (a copy, that can be modified)
+     */
+    public Set<Permission> get(Set<String> assigneeIdentifiers, long dvObjectId, Supplier<Entry> loader) {
+        if (cache == null) {
+            return copy(loader.get().permissions());
+        }
+        Key key = new Key(Set.copyOf(assigneeIdentifiers), dvObjectId);
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            long generationBefore = generation.get();
+            entry = loader.get();
+            entry = new Entry(Collections.unmodifiableSet(copy(entry.permissions())), Set.copyOf(entry.ancestorIds()));
+            // if something was invalidated while loading, the entry may already be out of date:
+            if (generation.get() == generationBefore) {
+                cache.put(key, entry);
+                if (generation.get() != generationBefore) {
+                    cache.invalidate(key);
+                }
+            }
+        }
+        return copy(entry.permissions());
+    }
+
+    public void invalidateDvObject(long dvObjectId) {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.asMap().values().removeIf(entry -> entry.ancestorIds().contains(dvObjectId));
+        }
+    }
+
+    public void invalidateAssignee(String assigneeIdentifier) {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.assigneeIdentifiers().contains(assigneeIdentifier));
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return a number that changes every time something is invalidated, so
+     * that the request level caches know when to start over.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public long getHitCount() {
+        return cache == null ? 0 : cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache == null ? 0 : cache.stats().missCount();
+    }
+
+    public long getRequestHitCount() {
+        return requestHits.get();
+    }
+
+    public long getSize() {
+        return cache == null ? 0 : cache.estimatedSize();
+    }
+
+    private static Set<Permission> copy(Set<Permission> permissions) {
+        return permissions.isEmpty() ? EnumSet.noneOf(Permission.class) : EnumSet.copyOf(permissions);
+    }
+
+    /**
+     * The permissions the user of one request has on the objects, through
+     * role assignments (to them or their groups). Emptied when anything is
+     * invalidated in the shared cache.
+     */
+    public static class RequestLevel {
+
+        private final Map<Long, Set<Permission>> permissions = new HashMap<>();
+        private long generation = -1;
+
+        /**
+         * @param loader computes the permissions when they're not in the
+         * cache (usually, with {@link PermissionCache#get})
+         * @return the permissions (a copy, that can be modified)
+         */
+        public synchronized Set<Permission> get(PermissionCache shared, long dvObjectId, Supplier<Set<Permission>> loader) {
+            long sharedGeneration = shared.getGeneration();
+            if (generation != sharedGeneration) {
+                permissions.clear();
+                generation = sharedGeneration;
+            }
+            Set<Permission> cached = permissions.get(dvObjectId);
+            if (cached != null) {
+                shared.requestHits.incrementAndGet();
+                return copy(cached);
+            }
+            Set<Permission> loaded = copy(loader.get());
+            if (shared.getGeneration() == generation) {
+                permissions.put(dvObjectId, loaded);
+            }
+            return copy(loaded);
+        }
+    }
+}
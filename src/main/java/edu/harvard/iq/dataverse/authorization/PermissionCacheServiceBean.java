@@ -0,0 +1,265 @@
+package edu.harvard.iq.dataverse.authorization;
+
+import edu.harvard.iq.dataverse.DvObject;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryUpdatedListener;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Holds the {@link PermissionCache} of this server, and invalidates its
+ * entries when the role assignments, roles, groups or object hierarchy they
+ * were computed from change.
+ *
+ * The entries are invalidated right away, so that the transaction making
+ * the change sees it; and again once it is committed, since other requests
+ * may have cached what they still saw in the meantime. The other servers of a
+ * cluster are told to invalidate the same entries through the (Hazelcast)
+ * JCache {@link #INVALIDATION_CACHE}, which each server listens to, the way
+ * {@link edu.harvard.iq.dataverse.settings.SettingsCacheServiceBean} does for
+ * the settings. If this server can't listen to it, it doesn't share the
+ * permissions between requests at all: it could otherwise keep permissions
+ * that were revoked through another server.
+ */
+@Singleton
+@Startup
+@Lock(READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class PermissionCacheServiceBean {
+
+    private static final Logger logger = Logger.getLogger(PermissionCacheServiceBean.class.getCanonicalName());
+
+    public static final String INVALIDATION_CACHE = "permissionsInvalidationCache";
+    private static final String INVALIDATION_KEY = "invalidated";
+    private static final long DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_MAX_AGE = 600;
+
+    // the cache of this server, for the listener (which is created by the
+    // JCache provider, not the container):
+    private static volatile PermissionCache localCache;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @Inject
+    CacheManager manager;
+
+    private PermissionCache cache;
+    private Cache<String, String> invalidationCache;
+    private MutableCacheEntryListenerConfiguration<String, String> listenerConfiguration;
+
+    @PostConstruct
+    public void init() {
+        long maxSize = JvmSettings.PERMISSIONS_CACHE_MAXSIZE.lookupOptional(Long.class).orElse(DEFAULT_MAX_SIZE);
+        long maxAge = JvmSettings.PERMISSIONS_CACHE_MAXAGE.lookupOptional(Long.class).orElse(DEFAULT_MAX_AGE);
+
+        try {
+            invalidationCache = manager.getCache(INVALIDATION_CACHE);
+            if (invalidationCache == null) {
+                CompleteConfiguration<String, String> config =
+                        new MutableConfiguration<String, String>()
+                                .setTypes(String.class, String.class);
+                invalidationCache = manager.createCache(INVALIDATION_CACHE, config);
+            }
+            listenerConfiguration = new MutableCacheEntryListenerConfiguration<>(
+                    FactoryBuilder.factoryOf(InvalidationListener.class), null, false, false);
+            invalidationCache.registerCacheEntryListener(listenerConfiguration);
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to listen for permission changes on other servers; not caching the permissions across requests", ex);
+            invalidationCache = null;
+            maxSize = 0;
+        }
+
+        logger.fine("Caching the permissions of up to " + maxSize + " role assignee sets and objects, for " + maxAge + " seconds");
+        cache = new PermissionCache(maxSize, Duration.ofSeconds(maxAge));
+        localCache = cache;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (invalidationCache != null && listenerConfiguration != null) {
+            try {
+                invalidationCache.deregisterCacheEntryListener(listenerConfiguration);
+            } catch (RuntimeException ex) {
+                logger.fine("Failed to stop listening for permission changes: " + ex.getMessage());
+            }
+        }
+        if (localCache == cache) {
+            localCache = null;
+        }
+    }
+
+    public PermissionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * When the role assignments on the object change, or it moves, or stops
+     * (or starts) inheriting the role assignments of its owner.
+     */
+    public void invalidateDvObject(DvObject dvObject) {
+        if (dvObject == null || dvObject.getId() == null) {
+            return;
+        }
+        invalidate(Invalidation.DVOBJECT, dvObject.getId().toString());
+    }
+
+    /**
+     * When the role assignments of a user or group change, other than on one
+     * object, or its memberships.
+     */
+    public void invalidateAssignee(String assigneeIdentifier) {
+        invalidate(Invalidation.ASSIGNEE, assigneeIdentifier);
+    }
+
+    /**
+     * When the permissions of a role change.
+     */
+    public void invalidateAll() {
+        invalidate(Invalidation.ALL, "");
+    }
+
+    private void invalidate(Invalidation invalidation, String target) {
+        invalidation.apply(cache, target);
+        if (transactionSynchronizationRegistry.getTransactionKey() == null) {
+            broadcastInvalidation(invalidation, target);
+            return;
+        }
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                invalidation.apply(cache, target);
+                broadcastInvalidation(invalidation, target);
+            }
+        });
+    }
+
+    private void broadcastInvalidation(Invalidation invalidation, String target) {
+        if (invalidationCache == null) {
+            return;
+        }
+        try {
+            invalidationCache.put(INVALIDATION_KEY, Invalidation.message(invalidation, target));
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to tell the other servers that the permissions have changed", ex);
+        }
+    }
+
+    /**
+     * What to invalidate, as told to the other servers: the value of the
+     * entry of {@link #INVALIDATION_CACHE} is "[random id] [type] [target]"
+     * (the random id so that every put is an update).
+     */
+    enum Invalidation {
+        DVOBJECT, ASSIGNEE, ALL;
+
+        void apply(PermissionCache cache, String target) {
+            switch (this) {
+                case DVOBJECT -> cache.invalidateDvObject(Long.parseLong(target));
+                case ASSIGNEE -> cache.invalidateAssignee(target);
+                case ALL -> cache.invalidateAll();
+            }
+        }
+
+        static String message(Invalidation invalidation, String target) {
+            return UUID.randomUUID() + " " + invalidation.name() + " " + target;
+        }
+
+        /**
+         * Applies the invalidation of a message; anything that can't be
+         * parsed invalidates the whole cache.
+         */
+        static void applyMessage(PermissionCache cache, String message) {
+            String[] parts = message == null ? new String[0] : message.split(" ", 3);
+            try {
+                valueOf(parts[1]).apply(cache, parts[2]);
+            } catch (RuntimeException ex) {
+                cache.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * Invalidates the permissions of this server when another one (or this
+     * one) has changed them.
+     */
+    public static class InvalidationListener implements CacheEntryCreatedListener<String, String>,
+            CacheEntryUpdatedListener<String, String>, Serializable {
+
+        @Override
+        public void onCreated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            invalidateLocalCache(events);
+        }
+
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            invalidateLocalCache(events);
+        }
+
+        private void invalidateLocalCache(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) {
+            PermissionCache cache = localCache;
+            if (cache != null) {
+                for (CacheEntryEvent<? extends String, ? extends String> event : events) {
+                    logger.fine("Permissions changed on another server: " + event.getValue());
+                    Invalidation.applyMessage(cache, event.getValue());
+                }
+            }
+        }
+    }
+
+    @Gauge(name = "permission_cache_hits", absolute = true, unit = MetricUnits.NONE,
+            description = "Displays how many permission lookups were answered by the shared permission cache")
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Gauge(name = "permission_cache_misses", absolute = true, unit = MetricUnits.NONE,
+            description = "Displays how many permission lookups had to go to the database")
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Gauge(name = "permission_cache_request_hits", absolute = true, unit = MetricUnits.NONE,
+            description = "Displays how many permission lookups were answered by the cache of their request")
+    public long getRequestHitCount() {
+        return cache.getRequestHitCount();
+    }
+
+    @Gauge(name = "permission_cache_size", absolute = true, unit = MetricUnits.NONE,
+            description = "Displays how many entries the shared permission cache holds")
+    public long getSize() {
+        return cache.getSize();
+    }
+}
@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse.authorization.groups.impl.explicit;
 
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.RoleAssigneeServiceBean;
+import edu.harvard.iq.dataverse.authorization.PermissionCacheServiceBean;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import java.util.Collections;
@@ -34,6 +35,9 @@ public class ExplicitGroupServiceBean {
     private static final Logger logger = Logger.getLogger(ExplicitGroupServiceBean.class.getName());
     @EJB
     private RoleAssigneeServiceBean roleAssigneeSvc;
+
+    @EJB
+    private PermissionCacheServiceBean permissionCacheService;
     
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     protected EntityManager em;
@@ -92,6 +96,8 @@ public class ExplicitGroupServiceBean {
                 }
             }
             
+            // the members (may) have changed:
+            permissionCacheService.invalidateAssignee(g.getIdentifier());
             return em.merge( g );
         }    
     }
@@ -126,6 +132,7 @@ public class ExplicitGroupServiceBean {
 
     public void removeGroup(ExplicitGroup explicitGroup) {
         em.remove( explicitGroup );
+        permissionCacheService.invalidateAssignee(explicitGroup.getIdentifier());
     }
     
     /**
@@ -277,6 +284,7 @@ public class ExplicitGroupServiceBean {
         } else if (assignee instanceof ExplicitGroup) {
             em.createNativeQuery("DELETE FROM explicitgroup_explicitgroup WHERE containedexplicitgroups_id=" + ((ExplicitGroup) assignee).getId()).executeUpdate();
         }
+        permissionCacheService.invalidateAssignee(assignee.getIdentifier());
     }
     
     
@@ -0,0 +1,157 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Range;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Range;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Keeps the {@link IpRangeIndex} of the IP groups of this server, so that
+ * finding the groups of the address of a request (on every permission check)
+ * doesn't take a database query.
+ *
+ * The index is rebuilt when a group is stored or deleted through this
+ * server; the other servers of a cluster find out that the ranges changed
+ * by comparing the number and the sum of the ids of the ranges with what
+ * their index was built from, every {@value #REFRESH_INTERVAL} seconds.
+ * (The ranges of a group are replaced rather than edited in place, so
+ * every change gives them new ids.)
+ */
+@Singleton
+@Startup
+@Lock(READ)
+public class IpGroupIndexServiceBean {
+
+    private static final Logger logger = Logger.getLogger(IpGroupIndexServiceBean.class.getCanonicalName());
+
+    static final int REFRESH_INTERVAL = 30;
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private volatile IpRangeIndex index = IpRangeIndex.EMPTY;
+    private volatile String fingerprint;
+    private volatile boolean stale = true;
+    private ScheduledFuture<?> refresh;
+
+    @PostConstruct
+    public void init() {
+        refresh = scheduler.scheduleWithFixedDelay(this::refreshIfChanged, REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refresh != null) {
+            refresh.cancel(false);
+        }
+    }
+
+    /**
+     * @return the ids of the groups with a range that includes the address
+     * (see {@link IpRangeIndex#findGroupIds(IpAddress)}).
+     */
+    public long[] findGroupIdsIncludingIp(IpAddress address) {
+        if (stale) {
+            rebuild();
+        }
+        return index.findGroupIds(address);
+    }
+
+    /**
+     * Rebuilds the index the next time it's used, and once the current
+     * transaction, that changes the ranges, is committed.
+     */
+    public void invalidate() {
+        stale = true;
+        if (transactionSynchronizationRegistry.getTransactionKey() != null) {
+            transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    stale = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Rebuilds the index if the ranges were changed by another server. Called
+     * on a schedule.
+     */
+    public void refreshIfChanged() {
+        try {
+            if (!stale && !getFingerprint().equals(fingerprint)) {
+                logger.fine("The IP groups were changed by another server");
+                stale = true;
+            }
+            if (stale) {
+                rebuild();
+            }
+        } catch (Exception ex) {
+            // will try again next time
+            logger.log(Level.WARNING, "Failed to check whether the IP groups changed", ex);
+        }
+    }
+
+    private synchronized void rebuild() {
+        if (!stale) {
+            // (another thread just did)
+            return;
+        }
+        // (cleared first: if the ranges change while we read them, we'll have to read them again)
+        stale = false;
+        try {
+            String newFingerprint = getFingerprint();
+            IpRangeIndex.Builder builder = new IpRangeIndex.Builder();
+            for (IPv4Range range : em.createQuery("SELECT r FROM IPv4Range r", IPv4Range.class).getResultList()) {
+                builder.addIPv4Range(range.getBottom(), range.getTop(), range.getOwner().getId());
+            }
+            for (IPv6Range range : em.createQuery("SELECT r FROM IPv6Range r", IPv6Range.class).getResultList()) {
+                builder.addIPv6Range(range.getBottom(), range.getTop(), range.getOwner().getId());
+            }
+            index = builder.build();
+            fingerprint = newFingerprint;
+        } catch (RuntimeException ex) {
+            stale = true;
+            throw ex;
+        }
+        logger.fine("Rebuilt the IP group index: " + index);
+    }
+
+    private String getFingerprint() {
+        List<Object[]> rows = em.createNativeQuery("SELECT COUNT(*), COALESCE(SUM(id), 0) FROM ipv4range "
+                + "UNION ALL SELECT COUNT(*), COALESCE(SUM(id), 0) FROM ipv6range").getResultList();
+        StringBuilder sb = new StringBuilder();
+        for (Object[] row : rows) {
+            sb.append(row[0]).append('/').append(row[1]).append(';');
+        }
+        return sb.toString();
+    }
+}
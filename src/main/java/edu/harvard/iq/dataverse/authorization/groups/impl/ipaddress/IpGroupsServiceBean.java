@@ -3,9 +3,8 @@ package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
 import edu.harvard.iq.dataverse.RoleAssigneeServiceBean;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogRecord;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
-import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Address;
-import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Address;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -36,6 +35,9 @@ public class IpGroupsServiceBean {
 	
     @EJB
     RoleAssigneeServiceBean roleAssigneeSvc;
+
+    @EJB
+    IpGroupIndexServiceBean ipGroupIndexSvc;
     
     /**
      * Stores (inserts/updates) the passed IP group.
@@ -50,6 +52,7 @@ public class IpGroupsServiceBean {
             alr.setInfo( grp.getDisplayName() );
         }
         alr.setInfo( alr.getInfo() + "// " + grp.getRanges() );
+        ipGroupIndexSvc.invalidate();
         
         if ( grp.getId() == null ) {
             if ( grp.getPersistedGroupAlias() != null ) {
@@ -97,27 +100,26 @@ public class IpGroupsServiceBean {
         return em.createNamedQuery("IpGroup.findAll", IpGroup.class).getResultList();
     }
     
+    /**
+     * Finds the groups the address belongs to, in the in-memory index of the
+     * ranges (see {@link IpGroupIndexServiceBean}); the database is only
+     * queried for the groups found, if any.
+     * @param ipa the address
+     * @return the groups with a range that includes {@code ipa}.
+     */
     public Set<IpGroup> findAllIncludingIp( IpAddress ipa ) {
-        if ( ipa instanceof IPv4Address ) {
-            IPv4Address ip4 = (IPv4Address) ipa;
-            List<IpGroup> groupList = em.createNamedQuery("IPv4Range.findGroupsContainingAddressAsLong", IpGroup.class)
-                    .setParameter("addressAsLong", ip4.toBigInteger()).getResultList();
-            return new HashSet<>(groupList);
-
-        } else if ( ipa instanceof IPv6Address ) {
-            IPv6Address ip6 = (IPv6Address) ipa;
-            long[] ip6arr = ip6.toLongArray();
-            List<IpGroup> groupList = em.createNamedQuery("IPv6Range.findGroupsContainingABCD", IpGroup.class)
-                    .setParameter("a", ip6arr[0])
-                    .setParameter("b", ip6arr[1])
-                    .setParameter("c", ip6arr[2])
-                    .setParameter("d", ip6arr[3])
-                    .getResultList();
-            return new HashSet<>(groupList);
-
-        } else {
-            throw new IllegalArgumentException( "Unknown IpAddress type: " + ipa.getClass() + " (for IpAddress:" + ipa + ")" );
+        long[] groupIds = ipGroupIndexSvc.findGroupIdsIncludingIp(ipa);
+        if ( groupIds.length == 0 ) {
+            return Collections.emptySet();
+        }
+        Set<IpGroup> groups = new HashSet<>();
+        for ( long groupId : groupIds ) {
+            IpGroup group = em.find(IpGroup.class, groupId);
+            if ( group != null ) {
+                groups.add(group);
+            }
         }
+        return groups;
     }
     
     /**
@@ -131,6 +133,7 @@ public class IpGroupsServiceBean {
         alr.setInfo( grp.getIdentifier() );
         if ( roleAssigneeSvc.getAssignmentsFor(grp.getIdentifier()).isEmpty() ) {
             em.remove( grp );
+            ipGroupIndexSvc.invalidate();
             actionLogSvc.log(alr);
             
         } else {
@@ -0,0 +1,192 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An in-memory index of the IPv4 and IPv6 ranges of all the IP groups, to
+ * find the groups an address belongs to without going to the database.
+ *
+ * The ranges (which may overlap) are cut into disjoint segments, each with
+ * the ids of the groups whose ranges cover it; finding the segment an
+ * address is in is a binary search over their first addresses, and the ids
+ * are computed beforehand, so that a lookup doesn't allocate anything.
+ * Addresses are compared as unsigned 128 bit numbers (IPv4 addresses fit in
+ * the lower half), kept in two arrays of longs.
+ *
+ * Immutable: when the ranges change, a new index is built (see
+ * {@link IpGroupIndexServiceBean}).
+ */
+public final class IpRangeIndex {
+
+    private static final long[] NO_GROUPS = new long[0];
+
+    public static final IpRangeIndex EMPTY = new Builder().build();
+
+    private final Segments ipv4;
+    private final Segments ipv6;
+
+    private IpRangeIndex(Segments ipv4, Segments ipv6) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+    }
+
+    /**
+     * @return the ids of the groups with a range that includes the address,
+     * in ascending order; shared, so not to be modified.
+     */
+    public long[] findGroupIds(IpAddress address) {
+        if (address instanceof IPv4Address ipv4Address) {
+            return ipv4.find(0, toLong(ipv4Address));
+        } else if (address instanceof IPv6Address ipv6Address) {
+            return ipv6.find(high(ipv6Address), low(ipv6Address));
+        } else {
+            throw new IllegalArgumentException("Unknown IpAddress type: " + address.getClass() + " (for IpAddress:" + address + ")");
+        }
+    }
+
+    public int getRangeCount() {
+        return ipv4.rangeCount + ipv6.rangeCount;
+    }
+
+    static long toLong(IPv4Address address) {
+        return ((long) address.get(0) << 24) | ((long) address.get(1) << 16) | ((long) address.get(2) << 8) | address.get(3);
+    }
+
+    static long high(IPv6Address address) {
+        return word(address, 0) << 48 | word(address, 1) << 32 | word(address, 2) << 16 | word(address, 3);
+    }
+
+    static long low(IPv6Address address) {
+        return word(address, 4) << 48 | word(address, 5) << 32 | word(address, 6) << 16 | word(address, 7);
+    }
+
+    private static long word(IPv6Address address, int index) {
+        return address.get(index) & 0xffffL;
+    }
+
+    private static int compare(long high1, long low1, long high2, long low2) {
+        int result = Long.compareUnsigned(high1, high2);
+        return result != 0 ? result : Long.compareUnsigned(low1, low2);
+    }
+
+    /**
+     * The disjoint segments of one address family: segment {@code i} goes
+     * from address {@code (highs[i], lows[i])} to the one before the next
+     * segment's (or to the end of the address space), and is covered by the
+     * groups in {@code groupIds[i]} (possibly none).
+     */
+    private static final class Segments {
+
+        final long[] highs;
+        final long[] lows;
+        final long[][] groupIds;
+        final int rangeCount;
+
+        Segments(long[] highs, long[] lows, long[][] groupIds, int rangeCount) {
+            this.highs = highs;
+            this.lows = lows;
+            this.groupIds = groupIds;
+            this.rangeCount = rangeCount;
+        }
+
+        long[] find(long high, long low) {
+            // the last segment starting at or before the address:
+            int from = 0;
+            int to = highs.length - 1;
+            int found = -1;
+            while (from <= to) {
+                int middle = (from + to) >>> 1;
+                if (compare(highs[middle], lows[middle], high, low) <= 0) {
+                    found = middle;
+                    from = middle + 1;
+                } else {
+                    to = middle - 1;
+                }
+            }
+            return found < 0 ? NO_GROUPS : groupIds[found];
+        }
+    }
+
+    public static class Builder {
+
+        private final List<long[]> ipv4Ranges = new ArrayList<>();
+        private final List<long[]> ipv6Ranges = new ArrayList<>();
+
+        public Builder addIPv4Range(IPv4Address bottom, IPv4Address top, long groupId) {
+            ipv4Ranges.add(new long[]{0, toLong(bottom), 0, toLong(top), groupId});
+            return this;
+        }
+
+        public Builder addIPv6Range(IPv6Address bottom, IPv6Address top, long groupId) {
+            ipv6Ranges.add(new long[]{high(bottom), low(bottom), high(top), low(top), groupId});
+            return this;
+        }
+
+        public IpRangeIndex build() {
+            return new IpRangeIndex(segments(ipv4Ranges), segments(ipv6Ranges));
+        }
+
+        /**
+         * Sweeps over the first address of each range and the address after
+         * its last one, keeping count of the ranges of each group that cover
+         * the current segment.
+         */
+        private static Segments segments(List<long[]> ranges) {
+            // boundary address -> changes in the number of ranges of each group covering it
+            TreeMap<long[], Map<Long, Integer>> boundaries = new TreeMap<>((a, b) -> compare(a[0], a[1], b[0], b[1]));
+            for (long[] range : ranges) {
+                if (compare(range[0], range[1], range[2], range[3]) > 0) {
+                    // an empty range
+                    continue;
+                }
+                long groupId = range[4];
+                boundaries.computeIfAbsent(new long[]{range[0], range[1]}, k -> new HashMap<>()).merge(groupId, 1, Integer::sum);
+                // the address after the top one (none, if it's the last address there is):
+                long nextLow = range[3] + 1;
+                long nextHigh = nextLow == 0 ? range[2] + 1 : range[2];
+                if (!(nextLow == 0 && nextHigh == 0)) {
+                    boundaries.computeIfAbsent(new long[]{nextHigh, nextLow}, k -> new HashMap<>()).merge(groupId, -1, Integer::sum);
+                }
+            }
+
+            long[] highs = new long[boundaries.size()];
+            long[] lows = new long[boundaries.size()];
+            long[][] groupIds = new long[boundaries.size()][];
+            // segments covered by the same groups share their array:
+            Map<List<Long>, long[]> distinctGroupIds = new HashMap<>();
+            TreeMap<Long, Integer> covering = new TreeMap<>();
+            int i = 0;
+            for (Map.Entry<long[], Map<Long, Integer>> boundary : boundaries.entrySet()) {
+                boundary.getValue().forEach((groupId, change) -> {
+                    int count = covering.getOrDefault(groupId, 0) + change;
+                    if (count == 0) {
+                        covering.remove(groupId);
+                    } else {
+                        covering.put(groupId, count);
+                    }
+                });
+                highs[i] = boundary.getKey()[0];
+                lows[i] = boundary.getKey()[1];
+                List<Long> ids = new ArrayList<>(covering.keySet());
+                groupIds[i] = ids.isEmpty() ? NO_GROUPS
+                        : distinctGroupIds.computeIfAbsent(ids, k -> k.stream().mapToLong(Long::longValue).toArray());
+                i++;
+            }
+            return new Segments(highs, lows, groupIds, ranges.size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[IpRangeIndex ipv4 segments:" + ipv4.highs.length + " ipv6 segments:" + ipv6.highs.length
+                + " ranges:" + getRangeCount() + "]";
+    }
+}
@@ -0,0 +1,54 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.Dataset;
+
+import java.io.IOException;
+
+/**
+ * What it takes to generate the thumbnail of a new datafile in the
+ * background (see {@link ImageThumbConverter#generateThumbnailLater}),
+ * resolved from the (managed) DataFile on the thread that saved it, so that
+ * the thumbnail can be generated on one of the workers of the
+ * {@link ThumbnailGenerator} without touching the entity, or its persistence
+ * context.
+ *
+ * @param id the id of the datafile
+ * @param storageIdentifier the storage identifier of the datafile
+ * @param datasetAuthority the authority of the dataset, as used for the
+ * storage (see {@link Dataset#getAuthorityForFileStorage()})
+ * @param datasetIdentifier the identifier of the dataset, as used for the
+ * storage
+ * @param contentType the content type of the datafile
+ * @param filesize the size of the datafile
+ */
+public record DataFileToThumbnail(Long id, String storageIdentifier, String datasetAuthority, String datasetIdentifier,
+        String contentType, long filesize) {
+
+    public static DataFileToThumbnail of(DataFile dataFile) {
+        Dataset owner = dataFile.getOwner();
+        return new DataFileToThumbnail(dataFile.getId(), dataFile.getStorageIdentifier(),
+                owner == null ? null : owner.getAuthorityForFileStorage(),
+                owner == null ? null : owner.getIdentifierForFileStorage(),
+                dataFile.getContentType(), dataFile.getFilesize());
+    }
+
+    /**
+     * @return access to the stored datafile, through an unmanaged copy of
+     * the datafile (and of its dataset), made of these values only
+     */
+    public StorageIO<DataFile> getStorageIO() throws IOException {
+        Dataset owner = new Dataset();
+        owner.setAuthority(datasetAuthority);
+        owner.setIdentifier(datasetIdentifier);
+
+        DataFile dataFile = new DataFile();
+        dataFile.setMergeable(false);
+        dataFile.setId(id);
+        dataFile.setStorageIdentifier(storageIdentifier);
+        dataFile.setContentType(contentType);
+        dataFile.setFilesize(filesize);
+        dataFile.setOwner(owner);
+        return DataAccess.getStorageIO(dataFile, new DataAccessRequest());
+    }
+}
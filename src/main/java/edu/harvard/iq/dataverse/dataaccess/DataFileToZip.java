@@ -0,0 +1,125 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.Dataset;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * What it takes to write a datafile to a zip download (see
+ * {@link DataFileZipper}), resolved from the (managed) DataFile on the
+ * request thread, so that the file can be read ahead on another thread
+ * without touching the entity: its lazy relations (the file metadata, the
+ * data table and its variables...) can only be loaded on the thread of its
+ * persistence context.
+ *
+ * @param id the id of the datafile
+ * @param storageIdentifier the storage identifier of the datafile
+ * @param datasetAuthority the authority of the dataset, as used for the
+ * storage (see {@link Dataset#getAuthorityForFileStorage()})
+ * @param datasetIdentifier the identifier of the dataset, as used for the
+ * storage
+ * @param folderName the folder of the file in the zip, without leading
+ * slashes; null if none
+ * @param fileName the name of the file
+ * @param mimeType the content type of the file
+ * @param size the size of the file, as recorded; -1 if not known
+ * @param varHeader the variable header to write before the content of a
+ * tabular file; null if none
+ * @param original the saved original of a tabular file, to write instead
+ * (if it can be read); null if not requested, or if there's none
+ */
+public record DataFileToZip(Long id, String storageIdentifier, String datasetAuthority, String datasetIdentifier,
+        String folderName, String fileName, String mimeType, long size, String varHeader, Original original) {
+
+    /**
+     * @param fileName the name of the saved original
+     * @param mimeType its content type
+     * @param size its size, as recorded; -1 if not known
+     */
+    public record Original(String fileName, String mimeType, long size) {
+    }
+
+    public static DataFileToZip of(DataFile dataFile, boolean getOriginal) {
+        // If any of the files have non-empty DirectoryLabels we'll
+        // use them to re-create the folders in the Zipped bundle:
+        String folderName = dataFile.getFileMetadata().getDirectoryLabel();
+        if (folderName != null) {
+            // If any of the saved folder names start with with slashes,
+            // we want to remove them:
+            // (i.e., ///foo/bar will become foo/bar)
+            while (folderName.startsWith("/")) {
+                folderName = folderName.substring(1);
+            }
+        }
+
+        String fileName;
+        try {
+            fileName = dataFile.getFileMetadata().getLabel();
+        } catch (Exception ex) {
+            fileName = "unknown";
+        }
+
+        DataTable dataTable = dataFile.getDataTable();
+        // (as the drivers add it as they open the file:)
+        String varHeader = null;
+        if ("text/tab-separated-values".equals(dataFile.getContentType())
+                && dataFile.isTabularData()
+                && dataTable != null
+                && !dataTable.isStoredWithVariableHeader()) {
+            varHeader = StorageIO.generateVariableHeader(dataTable.getDataVariables());
+        }
+
+        Original original = null;
+        if (getOriginal && dataTable != null) {
+            // (as StoredOriginalFile does:)
+            String originalMimeType = dataTable.getOriginalFileFormat();
+            if (originalMimeType == null || originalMimeType.isEmpty()) {
+                originalMimeType = "application/x-unknown";
+            } else if (originalMimeType.matches("application/x-dvn-.*-zip")) {
+                originalMimeType = "application/zip";
+            }
+            original = new Original(dataFile.getOriginalFileName(), originalMimeType,
+                    dataTable.getOriginalFileSize() != null ? dataTable.getOriginalFileSize() : -1);
+        }
+
+        Dataset owner = dataFile.getOwner();
+        return new DataFileToZip(dataFile.getId(), dataFile.getStorageIdentifier(),
+                owner == null ? null : owner.getAuthorityForFileStorage(),
+                owner == null ? null : owner.getIdentifierForFileStorage(),
+                folderName, fileName, dataFile.getContentType(), dataFile.getFilesize(), varHeader, original);
+    }
+
+    /**
+     * @return access to the stored datafile, through an unmanaged copy of
+     * the datafile (and of its dataset), made of these values only
+     */
+    public StorageIO<DataFile> getStorageIO() throws IOException {
+        Dataset owner = new Dataset();
+        owner.setAuthority(datasetAuthority);
+        owner.setIdentifier(datasetIdentifier);
+
+        DataFile dataFile = new DataFile();
+        dataFile.setMergeable(false);
+        dataFile.setId(id);
+        dataFile.setStorageIdentifier(storageIdentifier);
+        dataFile.setOwner(owner);
+        return DataAccess.getStorageIO(dataFile, new DataAccessRequest());
+    }
+
+    /**
+     * Opens the stored file, or its saved original.
+     *
+     * @return null if there's no such saved original
+     */
+    public InputStream open(boolean original) throws IOException {
+        StorageIO<DataFile> storageIO = getStorageIO();
+        if (original) {
+            return storageIO.getAuxFileAsInputStream(StoredOriginalFile.SAVED_ORIGINAL_FILENAME_EXTENSION);
+        }
+        storageIO.open();
+        return storageIO.getInputStream();
+    }
+}
@@ -19,48 +19,96 @@
 */
 package edu.harvard.iq.dataverse.dataaccess;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.InputStream;
 import java.io.IOException;
 
 
 import edu.harvard.iq.dataverse.DataFile;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 
 
 /**
+ * Writes datafiles, one zip entry each, to a zip stream, in the order they
+ * are added.
+ *
+ * When created with a {@link ZipReadAhead}, the files are read ahead of the
+ * one being written, by its workers (shared by all the downloads): up to
+ * that many files are opened (and, on remote stores, start downloading)
+ * while the current one is written. The small files are also read and
+ * compressed by the workers, into memory, as long as the memory budget of
+ * the read ahead allows, and written to the zip stream as they are; the
+ * bigger ones are streamed and compressed as they are written. What the
+ * workers need to know about the files is resolved from the DataFiles as
+ * they are added (see {@link DataFileToZip}); the workers don't touch them.
+ * Files in formats that are already compressed (images, archives, etc.) are
+ * not compressed again.
  *
  * @author Leonid Andreev
  */
-public class DataFileZipper {
+public class DataFileZipper implements Closeable {
     
     private static final Logger logger = Logger.getLogger(DataFileZipper.class.getCanonicalName());
     private static final String MANIFEST_FILE_NAME = "MANIFEST.TXT";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "jar",
+            "jpg", "jpeg", "png", "gif", "webp", "mp3", "m4a", "ogg", "mp4", "m4v", "mov", "webm", "mkv",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub");
     
     private OutputStream outputStream = null; 
-    private ZipOutputStream zipOutputStream = null;
+    private ZipArchiveOutputStream zipOutputStream = null;
     
     private List<String> fileNameList = null; // the list of file names to check for duplicates
     private List<Long> zippedFilesList = null; // list of successfully zipped files, to update guestbooks and download counts (not yet implemented)
     
     private String fileManifest = "";
+    // the manifest lines of the files added after the manifest was set, in 
+    // order; the lines of the files still being read are filled in when 
+    // they are written:
+    private final List<String> manifestLines = new ArrayList<>();
     
     private Set<String> zippedFolders = null; 
 
+    private final ZipReadAhead readAhead;
+    private final Deque<PendingFile> pendingFiles = new ArrayDeque<>();
+    private volatile boolean closed = false;
+
     public DataFileZipper() {
-        fileNameList = new ArrayList<>();
-        zippedFilesList = new ArrayList<>(); 
-        zippedFolders = new HashSet<>();
+        this(null);
     }
     
     public DataFileZipper(OutputStream outputStream) {
+        this(outputStream, null);
+    }
+
+    /**
+     * @param outputStream where the zip stream is written
+     * @param readAhead reads the files ahead of the one being written; null
+     * to read them one at a time, when they are written
+     */
+    public DataFileZipper(OutputStream outputStream, ZipReadAhead readAhead) {
         this.outputStream = outputStream;
+        this.readAhead = readAhead;
         fileNameList = new ArrayList<>();
         zippedFilesList = new ArrayList<>();
         zippedFolders = new HashSet<>();
@@ -76,133 +124,62 @@ public class DataFileZipper {
     
     public void setFileManifest(String fileManifest) {
         this.fileManifest = fileManifest;
+        manifestLines.clear();
     }
     
     public String getFileManifest() {
-        return this.fileManifest; 
+        if (fileManifest == null) {
+            return null;
+        }
+        StringBuilder manifest = new StringBuilder(fileManifest);
+        for (String line : manifestLines) {
+            if (line != null) {
+                manifest.append(line);
+            }
+        }
+        return manifest.toString();
     }
     
     public void openZipStream() throws IOException {
         if (outputStream == null) {
             throw new IOException("Attempted to create a ZipOutputStream from a NULL OutputStream.");
         }
-        this.zipOutputStream = new ZipOutputStream(outputStream);
+        this.zipOutputStream = new ZipArchiveOutputStream(outputStream);
     }
     
-    public long addFileToZipStream(DataFile dataFile) throws IOException {
-        return addFileToZipStream(dataFile, false);
+    public void addFileToZipStream(DataFile dataFile) throws IOException {
+        addFileToZipStream(dataFile, false);
     }
     
-    public long addFileToZipStream(DataFile dataFile, boolean getOriginal) throws IOException {
+    /**
+     * Adds a file to the zip stream. With a read ahead, the file is only
+     * queued to be read; it's written once the files added before it have
+     * been, and when the zip stream is finalized at the latest. A failure to
+     * read it is then thrown by this method, for a later file, or by
+     * {@link #finalizeZipStream()}.
+     */
+    public void addFileToZipStream(DataFile dataFile, boolean getOriginal) throws IOException {
         if (zipOutputStream == null) {
             openZipStream();
         }
 
-        boolean createManifest = fileManifest != null;
-        
-        DataAccessRequest daReq = new DataAccessRequest();
-        StorageIO<DataFile> accessObject = DataAccess.getStorageIO(dataFile, daReq);
-
-        if (accessObject != null) {
-            Boolean gotOriginal = false;
-            if(getOriginal) {
-                StoredOriginalFile sof = new StoredOriginalFile();
-                StorageIO<DataFile> tempAccessObject = sof.retreive(accessObject);
-                if(null != tempAccessObject) { //If there is an original, use it
-                    gotOriginal = true;
-                    accessObject = tempAccessObject; 
-                } 
-            }
-            if(!gotOriginal) { //if we didn't get this from sof.retreive we have to open it
-                accessObject.open();
-            }
-
-            long byteSize = 0;
-
-            String fileName = accessObject.getFileName();
-            String mimeType = accessObject.getMimeType();
-            if (mimeType == null || mimeType.equals("")) {
-                mimeType = "application/octet-stream";
+        DataFileToZip file = DataFileToZip.of(dataFile, getOriginal);
+        PendingFile pendingFile = new PendingFile(file, reserveManifestLine());
+        if (readAhead == null) {
+            pendingFile.prepared = prepareFile(file, false);
+        } else {
+            if (readAhead.reserve(expectedSize(file))) {
+                pendingFile.reserved = expectedSize(file);
             }
+            boolean inMemory = pendingFile.reserved > -1;
+            pendingFile.future = readAhead.submit(() -> closed ? null : prepareFile(file, inMemory));
+        }
+        pendingFiles.add(pendingFile);
 
-            //if (sizeTotal + fileSize < sizeLimit) {
-            Boolean Success = true;
-
-            InputStream instream = accessObject.getInputStream();
-            if (instream == null) {
-                if (createManifest) {
-                    addToManifest(fileName
-                            + " (" + mimeType
-                            + ") COULD NOT be downloaded because an I/O error has occured. \r\n");
-                }
-
-                Success = false;
-            } else {
-                // If any of the files have non-empty DirectoryLabels we'll 
-                // use them to re-create the folders in the Zipped bundle:
-                String folderName = dataFile.getFileMetadata().getDirectoryLabel(); 
-                if (folderName != null) {
-                    // If any of the saved folder names start with with slashes,
-                    // we want to remove them: 
-                    // (i.e., ///foo/bar will become foo/bar)
-                    while (folderName.startsWith("/")) {
-                        folderName = folderName.substring(1);
-                    }
-                    if (!"".equals(folderName)) {
-                        if (!zippedFolders.contains(folderName)) {
-                            ZipEntry d = new ZipEntry(folderName + "/");
-                            zipOutputStream.putNextEntry(d);
-                            zipOutputStream.closeEntry();
-                            zippedFolders.add(folderName);
-                        }
-                        fileName = folderName + "/" + fileName;
-                    }
-                }
-                
-                String zipEntryName = checkZipEntryName(fileName);
-                
-                ZipEntry e = new ZipEntry(zipEntryName);
-                logger.fine("created new zip entry for " + zipEntryName);
-
-                zipOutputStream.putNextEntry(e);
-
-                // before writing out any bytes from the input stream, flush
-                // any extra content, such as the variable header for the 
-                // subsettable files:
-                String varHeaderLine = accessObject.getVarHeader();
-                if (varHeaderLine != null) {
-                    zipOutputStream.write(varHeaderLine.getBytes());
-                    byteSize += (varHeaderLine.getBytes().length);
-                }
-
-                byte[] data = new byte[8192];
-
-                int i = 0;
-                while ((i = instream.read(data)) > 0) {
-                    zipOutputStream.write(data, 0, i);
-                    logger.fine("wrote " + i + " bytes;");
-
-                    byteSize += i;
-                    zipOutputStream.flush();
-                }
-                instream.close();
-                zipOutputStream.closeEntry();
-                logger.fine("closed zip entry for " + zipEntryName);
-
-                if (createManifest) {
-                    addToManifest(zipEntryName + " (" + mimeType + ") " + byteSize + " bytes.\r\n");
-                }
-
-                if (byteSize > 0) {
-                    zippedFilesList.add(dataFile.getId());
-                }
-            }
-            //} else if (createManifest) {
-            //    addToManifest(fileName + " (" + mimeType + ") " + " skipped because the total size of the download bundle exceeded the limit of " + sizeLimit + " bytes.\r\n");
-            //}
-            return byteSize;
+        // the current file, and the ones being read ahead:
+        while (pendingFiles.size() > (readAhead == null ? 0 : readAhead.getWorkers())) {
+            writeFile(pendingFiles.poll());
         }
-        return 0L;
     }
     
     public void finalizeZipStream() throws IOException {
@@ -211,6 +188,10 @@ public class DataFileZipper {
         if (zipOutputStream == null) {
             openZipStream();
         }
+
+        while (!pendingFiles.isEmpty()) {
+            writeFile(pendingFiles.poll());
+        }
         
         if (createManifest) {
             String manifestEntry = MANIFEST_FILE_NAME; 
@@ -218,19 +199,307 @@ public class DataFileZipper {
                 manifestEntry = "0".concat(manifestEntry); 
             }
             
-            ZipEntry e = new ZipEntry(manifestEntry);
+            ZipArchiveEntry e = new ZipArchiveEntry(manifestEntry);
 
-            zipOutputStream.putNextEntry(e);
-            zipOutputStream.write(fileManifest.getBytes());
-            zipOutputStream.closeEntry();
+            zipOutputStream.putArchiveEntry(e);
+            zipOutputStream.write(getFileManifest().getBytes());
+            zipOutputStream.closeArchiveEntry();
         }
 
         zipOutputStream.flush();
         zipOutputStream.close();
+        close();
+    }
+
+    /**
+     * Stops reading the files that haven't been written, e.g. when the 
+     * download has failed: the ones not started are skipped, and the ones
+     * being read are dropped when they're done. The zip stream is left as
+     * it is.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (PendingFile pendingFile : pendingFiles) {
+            if (pendingFile.future != null) {
+                pendingFile.future.whenComplete((prepared, ex) -> drop(pendingFile, prepared));
+            } else {
+                drop(pendingFile, pendingFile.prepared);
+            }
+        }
+        pendingFiles.clear();
+    }
+
+    /**
+     * Releases what a file that won't be written holds.
+     */
+    private void drop(PendingFile pendingFile, PreparedFile prepared) {
+        release(pendingFile);
+        if (prepared != null && prepared.instream != null) {
+            try {
+                prepared.instream.close();
+            } catch (IOException ex) {
+                // (it was never going to be written anyway)
+            }
+        }
+    }
+
+    private void release(PendingFile pendingFile) {
+        if (pendingFile.reserved > -1) {
+            readAhead.release(pendingFile.reserved);
+            pendingFile.reserved = -1;
+        }
+    }
+
+    /**
+     * @return the size of the file as it will be written, as far as it's
+     * known before it's opened; -1 if it isn't
+     */
+    private static long expectedSize(DataFileToZip file) {
+        if (file.original() != null) {
+            return file.original().size();
+        }
+        if (file.size() < 0) {
+            return -1;
+        }
+        return file.size() + (file.varHeader() == null ? 0 : file.varHeader().getBytes().length);
     }
     
     public void addToManifest(String manifestEntry) {
-        this.fileManifest = this.fileManifest + manifestEntry; 
+        manifestLines.add(manifestEntry);
+    }
+
+    private int reserveManifestLine() {
+        manifestLines.add(null);
+        return manifestLines.size() - 1;
+    }
+
+    /**
+     * Opens the stored file, or its saved original, for reading; on the 
+     * thread reading it, so only from the values resolved when it was 
+     * added. Protected, so that the tests can serve files that are not in a 
+     * store.
+     *
+     * @return null if there's no such saved original
+     */
+    protected InputStream openFile(DataFileToZip file, boolean original) throws IOException {
+        return file.open(original);
+    }
+
+    /**
+     * Opens the file and, if it's to be read into memory, reads and
+     * compresses it.
+     */
+    private PreparedFile prepareFile(DataFileToZip file, boolean inMemory) throws IOException {
+        boolean original = false;
+        InputStream instream = null;
+        if (file.original() != null) {
+            try {
+                instream = openFile(file, true);
+                original = instream != null;
+            } catch (IOException ioex) {
+                // The original file not saved, or could not be opened.
+                logger.fine("Failed to open the stored original of the file " + file.id() + ": " + ioex.getMessage());
+            }
+        }
+        if (!original) {
+            instream = openFile(file, false);
+        }
+
+        PreparedFile prepared = new PreparedFile();
+        prepared.fileName = original ? file.original().fileName() : file.fileName();
+        prepared.mimeType = original ? file.original().mimeType() : file.mimeType();
+        if (prepared.mimeType == null || prepared.mimeType.equals("")) {
+            prepared.mimeType = "application/octet-stream";
+        }
+        prepared.instream = instream;
+        if (prepared.instream == null) {
+            return prepared;
+        }
+        prepared.compressed = isCompressedFormat(prepared.fileName, prepared.mimeType);
+
+        // before writing out any bytes from the input stream, flush
+        // any extra content, such as the variable header for the 
+        // subsettable files:
+        String varHeaderLine = original ? null : file.varHeader();
+        prepared.varHeader = varHeaderLine != null ? varHeaderLine.getBytes() : new byte[0];
+        long size = original ? file.original().size() : file.size();
+        prepared.size = size > -1 ? size + prepared.varHeader.length : -1;
+
+        if (inMemory) {
+            readAndCompress(prepared);
+        }
+        return prepared;
+    }
+
+    private void readAndCompress(PreparedFile prepared) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.max(32, prepared.compressed ? prepared.size : prepared.size / 2));
+        Deflater deflater = prepared.compressed ? null : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        long byteSize = 0;
+        try (InputStream instream = prepared.instream; 
+                OutputStream out = deflater == null ? buffer : new DeflaterOutputStream(buffer, deflater, BUFFER_SIZE)) {
+            out.write(prepared.varHeader);
+            crc.update(prepared.varHeader);
+            byteSize += prepared.varHeader.length;
+
+            byte[] data = new byte[BUFFER_SIZE];
+            int i;
+            while ((i = instream.read(data)) > 0) {
+                out.write(data, 0, i);
+                crc.update(data, 0, i);
+                byteSize += i;
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        prepared.instream = null;
+        prepared.data = buffer.toByteArray();
+        prepared.crc = crc.getValue();
+        prepared.size = byteSize;
+    }
+
+    /**
+     * Writes a file to the zip stream, in the place of the entry where it 
+     * was added.
+     */
+    private void writeFile(PendingFile pendingFile) throws IOException {
+        try {
+            writePreparedFile(pendingFile);
+        } finally {
+            // (the file is written, or the download has failed)
+            release(pendingFile);
+        }
+    }
+
+    private void writePreparedFile(PendingFile pendingFile) throws IOException {
+        PreparedFile prepared = pendingFile.prepared;
+        if (pendingFile.future != null) {
+            try {
+                prepared = pendingFile.future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading the file " + pendingFile.file.id(), ie);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException ioex) {
+                    throw ioex;
+                }
+                throw new IOException(cause.getMessage(), cause);
+            }
+        }
+        if (prepared == null) {
+            return;
+        }
+
+        boolean createManifest = fileManifest != null;
+        String fileName = prepared.fileName;
+
+        if (prepared.instream == null && prepared.data == null) {
+            if (createManifest) {
+                manifestLines.set(pendingFile.manifestLine, fileName
+                        + " (" + prepared.mimeType
+                        + ") COULD NOT be downloaded because an I/O error has occured. \r\n");
+            }
+            return;
+        }
+
+        String folderName = pendingFile.file.folderName();
+        if (folderName != null && !"".equals(folderName)) {
+            if (!zippedFolders.contains(folderName)) {
+                ZipArchiveEntry d = new ZipArchiveEntry(folderName + "/");
+                zipOutputStream.putArchiveEntry(d);
+                zipOutputStream.closeArchiveEntry();
+                zippedFolders.add(folderName);
+            }
+            fileName = folderName + "/" + fileName;
+        }
+
+        String zipEntryName = checkZipEntryName(fileName);
+
+        ZipArchiveEntry e = new ZipArchiveEntry(zipEntryName);
+        logger.fine("created new zip entry for " + zipEntryName);
+
+        long byteSize;
+        if (prepared.data != null) {
+            // read and compressed ahead:
+            e.setMethod(prepared.compressed ? ZipEntry.STORED : ZipEntry.DEFLATED);
+            e.setCrc(prepared.crc);
+            e.setSize(prepared.size);
+            e.setCompressedSize(prepared.data.length);
+            zipOutputStream.addRawArchiveEntry(e, new ByteArrayInputStream(prepared.data));
+            byteSize = prepared.size;
+        } else {
+            byteSize = streamFile(e, prepared);
+        }
+        zipOutputStream.flush();
+        logger.fine("closed zip entry for " + zipEntryName);
+
+        if (createManifest) {
+            manifestLines.set(pendingFile.manifestLine, zipEntryName + " (" + prepared.mimeType + ") " + byteSize + " bytes.\r\n");
+        }
+
+        if (byteSize > 0) {
+            zippedFilesList.add(pendingFile.file.id());
+        }
+    }
+
+    /**
+     * Compresses a file into the zip stream as it's read; files in 
+     * compressed formats are only wrapped in deflate blocks that are not 
+     * compressed (their sizes and checksum are not known in advance, as a 
+     * stored entry would need).
+     */
+    private long streamFile(ZipArchiveEntry e, PreparedFile prepared) throws IOException {
+        if (prepared.size > -1) {
+            // (so that a Zip64 entry is used if needed)
+            e.setSize(prepared.size);
+        }
+        zipOutputStream.setLevel(prepared.compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zipOutputStream.putArchiveEntry(e);
+
+        long byteSize = 0;
+        try (InputStream instream = prepared.instream) {
+            zipOutputStream.write(prepared.varHeader);
+            byteSize += prepared.varHeader.length;
+
+            byte[] data = new byte[BUFFER_SIZE];
+            int i = 0;
+            while ((i = instream.read(data)) > 0) {
+                zipOutputStream.write(data, 0, i);
+                logger.fine("wrote " + i + " bytes;");
+
+                byteSize += i;
+                zipOutputStream.flush();
+            }
+        }
+        zipOutputStream.closeArchiveEntry();
+        return byteSize;
+    }
+
+    /**
+     * @return true if the file is in a format that's already compressed, 
+     * and that would not be made any smaller by compressing it again
+     */
+    static boolean isCompressedFormat(String fileName, String mimeType) {
+        if (mimeType != null) {
+            String type = mimeType.toLowerCase(Locale.ROOT);
+            if (type.startsWith("video/") 
+                    || type.equals("image/jpeg") || type.equals("image/png") || type.equals("image/gif") 
+                    || type.equals("audio/mpeg")
+                    || type.equals("application/zip") || type.equals("application/gzip") || type.equals("application/x-gzip")
+                    || type.equals("application/x-bzip2") || type.equals("application/x-xz") 
+                    || type.equals("application/x-7z-compressed") || type.equals("application/zipped-shapefile")) {
+                return true;
+            }
+        }
+        if (fileName != null && fileName.lastIndexOf('.') > -1) {
+            String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            return COMPRESSED_EXTENSIONS.contains(extension);
+        }
+        return false;
     }
     
     // check for and process duplicates:
@@ -249,4 +518,34 @@ public class DataFileZipper {
         fileNameList.add(name);
         return name;
     }
+
+    private static class PendingFile {
+        private final DataFileToZip file;
+        private final int manifestLine;
+        // one or the other:
+        private CompletableFuture<PreparedFile> future;
+        private PreparedFile prepared;
+        // the bytes reserved in the budget of the read ahead, to read it 
+        // into memory; -1 if none:
+        private long reserved = -1;
+
+        PendingFile(DataFileToZip file, int manifestLine) {
+            this.file = file;
+            this.manifestLine = manifestLine;
+        }
+    }
+
+    private static class PreparedFile {
+        private String fileName;
+        private String mimeType;
+        private boolean compressed;
+        private byte[] varHeader;
+        // the uncompressed size, -1 if not known:
+        private long size;
+        // the input stream, if the file is to be streamed when it's written:
+        private InputStream instream;
+        // or, the entry, already compressed (or stored):
+        private byte[] data;
+        private long crc;
+    }
 }
@@ -21,6 +21,7 @@
 package edu.harvard.iq.dataverse.dataaccess;
 
 // java core imports:
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.File;
 import java.io.InputStream;
@@ -44,7 +45,9 @@ import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
@@ -191,6 +194,46 @@ public class FileAccessIO<T extends DvObject> extends StorageIO<T> {
         /*this.setStatus(200);*/
     }
     
+    @Override
+    public boolean supportsRangeReads() {
+        return true;
+    }
+
+    /**
+     * Reads the range with positional reads on the file channel, without
+     * going through (or moving) the input stream.
+     * <p>
+     * (FileChannel.transferTo() would only avoid the copy if the output were
+     * a channel itself; on the stream of a servlet response it falls back to
+     * copying through a small direct buffer, which measured slower than this.)
+     */
+    @Override
+    public void writeRange(long offset, long length, OutputStream outputStream) throws IOException {
+        if (getChannel() instanceof FileChannel fileChannel) {
+            copyRange(fileChannel, offset, length, outputStream);
+        } else {
+            try (FileChannel fileChannel = FileChannel.open(getFileSystemPath())) {
+                copyRange(fileChannel, offset, length, outputStream);
+            }
+        }
+    }
+
+    static void copyRange(FileChannel fileChannel, long offset, long length, OutputStream outputStream) throws IOException {
+        byte[] bytes = new byte[COPY_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(bytes.length, end - position));
+            int read = fileChannel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("Unexpected end of file, " + (end - position) + " bytes short");
+            }
+            outputStream.write(bytes, 0, read);
+            position += read;
+        }
+    }
+    
     @Override
     public void savePath(Path fileSystemPath) throws IOException {
         
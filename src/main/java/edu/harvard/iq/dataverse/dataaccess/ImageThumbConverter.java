@@ -25,13 +25,17 @@ import java.io.FileInputStream;
 import java.io.IOException;
 
 import java.util.Iterator;
+import java.util.concurrent.Callable;
 
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 
 import edu.harvard.iq.dataverse.DataFile;
@@ -51,6 +55,11 @@ import java.util.logging.Logger;
 
 import jakarta.enterprise.inject.spi.CDI;
 import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
 //import org.primefaces.util.Base64;
 import java.util.Base64;
 
@@ -68,6 +77,10 @@ public class ImageThumbConverter {
     public static int DEFAULT_DATASETLOGO_SIZE = 140;
     public static int DEFAULT_PREVIEW_SIZE = 400;
 
+    // PDFs read from a stream (i.e., from storage without direct file access)
+    // are kept in memory up to this size, and in a scratch file beyond it:
+    private static final long PDF_MAX_MAIN_MEMORY = 16 * 1024 * 1024;
+
     private static final Logger logger = Logger.getLogger(ImageThumbConverter.class.getCanonicalName());
 
     public ImageThumbConverter() {
@@ -129,11 +142,10 @@ public class ImageThumbConverter {
         boolean thumbnailGenerated = false;
         // Don't try to generate if there have been failures:
         if (!file.isPreviewImageFail()) {
-            if (file.getContentType().substring(0, 6).equalsIgnoreCase("image/")) {
-                thumbnailGenerated = generateImageThumbnail(storageIO, size);
-            } else if (file.getContentType().equalsIgnoreCase("application/pdf")) {
-                thumbnailGenerated = generatePDFThumbnail(storageIO, size);
-            }
+            String contentType = file.getContentType();
+            // (on one of the workers of the thumbnail generator; or, if the 
+            // same thumbnail is already being generated, we just wait for it)
+            thumbnailGenerated = generate(getThumbnailKey(file.getStorageIdentifier(), size), () -> renderThumbnail(storageIO, contentType, size));
             if (!thumbnailGenerated) {
                 file.setPreviewImageFail(true);
                 file.setPreviewImageAvailable(false);
@@ -144,6 +156,64 @@ public class ImageThumbConverter {
         return thumbnailGenerated;
     }
 
+    /**
+     * Schedules the generation of a thumbnail for a new file, on the
+     * thumbnail generator, in the background; unless it's already cached
+     * (e.g., if it was generated as the file was uploaded). The file is
+     * opened on the worker, through an unmanaged copy of the datafile.
+     */
+    public static void generateThumbnailLater(ThumbnailGenerator generator, DataFileToThumbnail file, int size) {
+        generator.generateLater(getThumbnailKey(file.storageIdentifier(), size), () -> {
+            StorageIO<DataFile> storageIO;
+            try {
+                storageIO = file.getStorageIO();
+            } catch (IOException ioex) {
+                logger.fine("Not generating the thumbnail of " + file.storageIdentifier() + ": " + ioex.getMessage());
+                return false;
+            }
+            return isThumbnailCached(storageIO, size) || renderThumbnail(storageIO, file.contentType(), size);
+        });
+    }
+
+    private static String getThumbnailKey(String storageIdentifier, int size) {
+        return storageIdentifier + "." + THUMBNAIL_SUFFIX + size;
+    }
+
+    private static boolean generate(String key, Callable<Boolean> generation) {
+        ThumbnailGenerator generator = null;
+        try {
+            generator = CDI.current().select(ThumbnailServiceBean.class).get().getGenerator();
+        } catch (IllegalStateException ise) {
+            // (no CDI container - in the unit tests, for example)
+        }
+        if (generator != null) {
+            return generator.generate(key, generation);
+        }
+        try {
+            return generation.call();
+        } catch (Exception ex) {
+            logger.warning("Failed to generate the thumbnail " + key + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /*
+     * Does the actual work of generating a thumbnail, for the supported 
+     * types (image/*, pdf); the result is saved as the "auxiliary file" with
+     * the .thumb[size] extension.
+     */
+    private static boolean renderThumbnail(StorageIO<DataFile> storageIO, String contentType, int size) {
+        if (contentType == null) {
+            return false;
+        }
+        if (contentType.toLowerCase().startsWith("image/")) {
+            return generateImageThumbnail(storageIO, size);
+        } else if (contentType.equalsIgnoreCase("application/pdf")) {
+            return generatePDFThumbnail(storageIO, size);
+        }
+        return false;
+    }
+
     // Note that this method works on ALL file types for which thumbnail 
     // generation is supported - image/*, pdf; 
     // not just on images! The type differentiation is handled inside 
@@ -215,92 +285,80 @@ public class ImageThumbConverter {
             return false;
         }
 
-        // We rely on ImageMagick to convert PDFs; so if it's not installed, 
-        // better give up right away: 
-        if (!isImageMagickInstalled()) {
-            logger.fine("Couldn't find ImageMagick");
-            return false;
-        }
-
+        // The first page is rendered right here, with PDFBox. If there is a
+        // local Path for this file, it is read from there; if not (i.e., if 
+        // it's a file that's stored by a driver that does not provide direct 
+        // file access - e.g., S3 or swift), it is read from the stream, and 
+        // kept in memory (or, if it's big, in a scratch file) while it's 
+        // being rendered.
         File sourcePdfFile = null;
 
-        // We'll to get a local Path for this file - but if that is not available 
-        // (i.e., if it's a file that's stored by a driver that does not provide 
-        // direct file access - e.g., swift), we'll save this PDF in a temp file, 
-        // will run the ImageMagick on it, and will save its output in another temp 
-        // file, and will save it as an "auxiliary" file via the driver. 
-        boolean tempFilesRequired = false;
-        File tempFile = null;
-
         try {
             Path pdfFilePath = storageIO.getFileSystemPath();
             sourcePdfFile = pdfFilePath.toFile();
             logger.fine("Opened the source pdf file as a local File.");
         } catch (UnsupportedDataAccessOperationException uoex) {
             // this means there is no direct filesystem path for this object;
-            logger.fine("Could not open source pdf file as a local file - will go the temp file route.");
-            tempFilesRequired = true;
-
+            logger.fine("Could not open source pdf file as a local file - will read it from the stream.");
         } catch (IOException ioex) {
             logger.warning(ioex.getMessage());
             // this on the other hand is likely a fatal condition :(
             return false;
         }
 
-        if (tempFilesRequired) {
-            InputStream inputStream = null;
-            try {
+        BufferedImage pageImage;
+
+        try {
+            if (sourcePdfFile != null) {
+                pageImage = renderPDFPage(sourcePdfFile, size);
+            } else {
                 storageIO.open();
-                inputStream = storageIO.getInputStream();
-            } catch (Exception ioex) {
-                logger.warning("caught Exception trying to open an input stream for " + storageIO.getDataFile().getStorageIdentifier());
-                return false;
+                try (InputStream inputStream = storageIO.getInputStream()) {
+                    pageImage = renderPDFPage(inputStream, size);
+                }
             }
+        } catch (Exception ex) {
+            logger.warning("Failed to render the first page of " + storageIO.getDataFile().getStorageIdentifier() + ": " + ex.getMessage());
+            return false;
+        }
 
-            OutputStream outputStream = null;
-            try {
-                tempFile = File.createTempFile("tempFileToRescale", ".tmp");
-                outputStream = new FileOutputStream(tempFile);
-                //Reads/transfers all bytes from the input stream to the output stream.
-                inputStream.transferTo(outputStream);
-            } catch (IOException ioex) {
-                logger.warning("GenerateImageThumb: failed to save pdf bytes in a temporary file.");
-                return false;
-            } finally {
-                IOUtils.closeQuietly(inputStream);
-                IOUtils.closeQuietly(outputStream);
-            }
-            sourcePdfFile = tempFile;
+        if (pageImage == null) {
+            return false;
         }
 
-        String imageThumbFileName = generatePDFThumbnailFromFile(sourcePdfFile.getAbsolutePath(), size);
+        return saveThumbnail(storageIO, pageImage, size);
+    }
 
-        if (imageThumbFileName == null) {
-            return false;
+    private static BufferedImage renderPDFPage(File pdfFile, int size) throws IOException {
+        try (PDDocument document = PDDocument.load(pdfFile)) {
+            return renderFirstPage(document, size);
         }
+    }
 
-        // If there was a local Path to the permanent location of the PDF file on the 
-        // filesystem, the generatePDFThumbnailFromFile() method must have already saved 
-        // the generated thumbnail as that Path with the .thumb* extension. But 
-        // if this file is stored without a local Path, we'll have to save the 
-        // generated thumbnail with via the storage driver: 
-        if (tempFilesRequired) {
-            try {
-                logger.fine("attempting to save generated pdf thumbnail, as AUX file " + THUMBNAIL_SUFFIX + size);
-                storageIO.savePathAsAux(Paths.get(imageThumbFileName), THUMBNAIL_SUFFIX + size);
-            } catch (IOException ioex) {
-                logger.warning("failed to save generated pdf thumbnail, as AUX file " + THUMBNAIL_SUFFIX + size + "!");
-                return false;
-            }
-            finally {
-                try {
-                    tempFile.delete();
-                }
-                catch (Exception e) {}
-            }
+    private static BufferedImage renderPDFPage(InputStream inputStream, int size) throws IOException {
+        try (PDDocument document = PDDocument.load(inputStream, MemoryUsageSetting.setupMixed(PDF_MAX_MAIN_MEMORY))) {
+            return renderFirstPage(document, size);
         }
+    }
 
-        return true;
+    /*
+     * Renders the first page at the size of the thumbnail (rather than at 
+     * full size, to be scaled down afterwards), on a white background - same
+     * as "-flatten" did, when we used ImageMagick for this.
+     */
+    private static BufferedImage renderFirstPage(PDDocument document, int size) throws IOException {
+        if (document.getNumberOfPages() < 1) {
+            logger.fine("PDF file without pages");
+            return null;
+        }
+        PDRectangle cropBox = document.getPage(0).getCropBox();
+        // (the longer side, whether the page is rotated or not)
+        float pageSize = Math.max(cropBox.getWidth(), cropBox.getHeight());
+        if (pageSize <= 0) {
+            return null;
+        }
+        // (a scale of 1 is 72 dpi, i.e. a pixel per point)
+        return new PDFRenderer(document).renderImage(0, size / pageSize, ImageType.RGB);
     }
 
     private static boolean generateImageThumbnail(StorageIO<DataFile> storageIO, int size) {
@@ -328,24 +386,76 @@ public class ImageThumbConverter {
      */
     private static boolean generateImageThumbnailFromInputStream(StorageIO<DataFile> storageIO, int size, InputStream inputStream) {
 
-        BufferedImage fullSizeImage;
-        boolean thumbnailGenerated = false;
+        BufferedImage sourceImage;
 
         try {
-            logger.fine("attempting to read the image file with ImageIO.read(InputStream), " + storageIO.getDataFile().getStorageIdentifier());
-            fullSizeImage = ImageIO.read(inputStream);
+            logger.fine("attempting to read the image file with an ImageReader, " + storageIO.getDataFile().getStorageIdentifier());
+            sourceImage = readImage(inputStream, size);
         } catch (Exception ioex) {
-            logger.warning("Caught exception attempting to read the image file with ImageIO.read(InputStream)");
+            logger.warning("Caught exception attempting to read the image file with an ImageReader");
             return false;
         }
 
-        if (fullSizeImage == null) {
-            logger.warning("could not read image with ImageIO.read()");
+        if (sourceImage == null) {
+            logger.warning("could not read image with an ImageReader");
             return false;
         }
 
-        int width = fullSizeImage.getWidth(null);
-        int height = fullSizeImage.getHeight(null);
+        return saveThumbnail(storageIO, sourceImage, size);
+    }
+
+    /*
+     * Reads the image, subsampled (i.e., only every n-th pixel of every n-th 
+     * row) if it is much bigger than the thumbnail: the rescaling only 
+     * needs a couple of source pixels per thumbnail pixel, so there's no 
+     * need to hold the whole full size image in memory. 
+     * The input is an InputStream, or a File. 
+     */
+    private static BufferedImage readImage(Object input, int size) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(input)) {
+            if (imageInputStream == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = getSubsampling(width, height, size);
+                logger.fine("full size image dimensions: " + width + "x" + height + ", subsampling: " + subsampling);
+
+                ImageReadParam readParam = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    readParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, readParam);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return the subsampling that still leaves at least twice the size of
+     * the thumbnail, on the longer side of the image
+     */
+    static int getSubsampling(int width, int height, int size) {
+        return Math.max(1, Math.max(width, height) / (2 * size));
+    }
+
+    /*
+     * Rescales the image, and saves the result as the thumbnail of this size
+     * (as the "auxiliary file" with the .thumb[size] extension): 
+     */
+    private static boolean saveThumbnail(StorageIO<DataFile> storageIO, BufferedImage image, int size) {
+        boolean thumbnailGenerated = false;
+
+        int width = image.getWidth(null);
+        int height = image.getHeight(null);
 
         logger.fine("image dimensions: " + width + "x" + height + "(" + storageIO.getDataFile().getStorageIdentifier() + ")");
 
@@ -381,7 +491,8 @@ public class ImageThumbConverter {
 
         try {
 
-            rescaleImage(fullSizeImage, width, height, size, outputStream);
+            rescaleImage(image, width, height, size, outputStream);
+            outputStream.close();
 
             if (tempFileRequired) {
                 storageIO.savePathAsAux(Paths.get(tempFile.getAbsolutePath()), THUMBNAIL_SUFFIX + size);
@@ -393,6 +504,7 @@ public class ImageThumbConverter {
             thumbnailGenerated = false;
         }
         finally {
+            IOUtils.closeQuietly(outputStream);
             if(tempFileRequired) {
                 try {
                     tempFile.delete();
@@ -414,6 +526,20 @@ public class ImageThumbConverter {
 
     }
 
+    /**
+     * Checks if the thumbnail of this size has already been generated;
+     * unlike {@link #isThumbnailAvailable(DataFile, int)}, doesn't generate it
+     * if not.
+     */
+    public static boolean isThumbnailCached(DataFile file, int size) {
+        try {
+            StorageIO<DataFile> storageIO = file.getStorageIO();
+            return storageIO != null && isThumbnailCached(storageIO, size);
+        } catch (IOException ioEx) {
+            return false;
+        }
+    }
+
     private static boolean isThumbnailCached(StorageIO<DataFile> storageIO, int size) {
         boolean cached;
         try {
@@ -618,20 +744,20 @@ public class ImageThumbConverter {
         }
 
         try {
-            logger.fine("attempting to read the image file " + fileLocation + " with ImageIO.read()");
-            BufferedImage fullSizeImage = ImageIO.read(new File(fileLocation));
+            logger.fine("attempting to read the image file " + fileLocation + " with an ImageReader");
+            BufferedImage sourceImage = readImage(new File(fileLocation), size);
 
-            if (fullSizeImage == null) {
-                logger.warning("could not read image with ImageIO.read()");
+            if (sourceImage == null) {
+                logger.warning("could not read image with an ImageReader");
                 return null;
             }
 
-            int width = fullSizeImage.getWidth(null);
-            int height = fullSizeImage.getHeight(null);
+            int width = sourceImage.getWidth(null);
+            int height = sourceImage.getHeight(null);
 
             logger.fine("image dimensions: " + width + "x" + height);
 
-            return rescaleImage(fullSizeImage, width, height, size, fileLocation);
+            return rescaleImage(sourceImage, width, height, size, fileLocation);
 
         } catch (Exception e) {
             logger.warning("Failed to read in an image from " + fileLocation + ": " + e.getMessage());
@@ -769,7 +895,15 @@ public class ImageThumbConverter {
         }
     }
 
-    public static String generatePDFThumbnailFromFile(String fileLocation, int size) {
+    /**
+     * Generates the thumbnail of a local PDF file, e.g. one just uploaded,
+     * on one of the workers of the thumbnail generator (like the thumbnails
+     * of the saved files), and waits for it.
+     *
+     * @return the location of the thumbnail, next to the file; null if
+     * there's none
+     */
+    public static String generatePDFThumbnailFromFile(ThumbnailGenerator generator, String fileLocation, int size) {
         logger.fine("entering generatePDFThumb");
 
         String thumbFileLocation = fileLocation + ".thumb" + size;
@@ -813,80 +947,8 @@ public class ImageThumbConverter {
             }
         }
 
-        String imageMagickExec = System.getProperty("dataverse.path.imagemagick.convert");
-
-        if (imageMagickExec != null) {
-            imageMagickExec = imageMagickExec.trim();
-        }
-
-        // default location:
-        if (imageMagickExec == null || imageMagickExec.equals("")) {
-            imageMagickExec = "/usr/bin/convert";
-        }
-
-        if (new File(imageMagickExec).exists()) {
-
-            // Based on the lessons recently learned in production: 
-            //  - use "-thumbnail" instead of "-resize";
-            //  - use "-flatten"
-            //  - use "-strip"
-            //  - (maybe?) use jpeg instead of png - ?
-            //
-            // (what we observed in production - 3.6.3, June 2014 - was that 
-            // for very large TIFF images, when processed wihout the options
-            // above, thumbnails produced were still obscenely *huge*; for ex.,
-            // for a 100MB 3000x4000 px. TIFF file, the 275 px. PNG thumbnail 
-            // produced was 5MB! - which, for a page with multiple high-res 
-            // images (Grad. School of Design dv) resulted in taking forever 
-            // to load... JPG thumbnails, similarly produced, were smaller, but 
-            // still unnecessarily large. I was never able to figure out what 
-            // was going on (full-rez color profiles still stored in the 
-            // resized version - ??), but the combination above takes care of 
-            // it and brings down the thumbnail size to under 50K, were it 
-            // belongs. :)
-            //          -- L.A. June 2014
-            String previewFileLocation = null;
-
-            // check if the "preview size" image is already available - and 
-            // if not, generate it. this 400 pixel image will be used to 
-            // generate smaller-size thumbnails.
-            previewFileLocation = fileLocation + ".thumb" + DEFAULT_PREVIEW_SIZE;
-
-            if (!((new File(previewFileLocation)).exists())) {
-                previewFileLocation = runImageMagick(imageMagickExec, fileLocation, DEFAULT_PREVIEW_SIZE, "pdf");
-            }
-
-            if (previewFileLocation == null) {
-                return null;
-            }
-
-            if (size == DEFAULT_PREVIEW_SIZE) {
-                return previewFileLocation;
-            }
-
-            // generate the thumbnail for the requested size, *using the already scaled-down
-            // 400x400 png version, above*:
-            // (the "exists()" check below appears to be unnecessary - we've already checked early on - ?)
-            if (!((new File(thumbFileLocation)).exists())) {
-                thumbFileLocation = runImageMagick(imageMagickExec, previewFileLocation, thumbFileLocation, size, "png");
-            }
-
+        if (generator.generate(thumbFileLocation, () -> renderPDFThumbnailFromFile(fileLocation, size) != null)) {
             return thumbFileLocation;
-
-            /*
-             An alternative way of handling it: 
-             while we are at it, let's generate *all* the smaller thumbnail sizes:
-            for (int s : (new int[]{DEFAULT_THUMBNAIL_SIZE, DEFAULT_CARDIMAGE_SIZE})) {
-                String thisThumbLocation = fileLocation + ".thumb" + s;
-                if (!(new File(thisThumbLocation).exists())) {
-                    thisThumbLocation = runImageMagick(imageMagickExec, previewFileLocation, thisThumbLocation, s, "png");
-                }
-            }
-                    
-            // return the location of the thumbnail for the requested size:
-            if (new File(thumbFileLocation).exists()) {
-                return thumbFileLocation;
-            }*/
         }
 
         logger.fine("returning null");
@@ -894,41 +956,19 @@ public class ImageThumbConverter {
 
     }
 
-    /*
-    private static boolean thumbnailFileExists(String fileLocation, int size) {
-        String thumbFileLocation = fileLocation + ".thumb" + size;
-        return new File(thumbFileLocation).exists();
-    }*/
-    private static String runImageMagick(String imageMagickExec, String fileLocation, int size, String format) {
-        String thumbFileLocation = fileLocation + ".thumb" + size;
-        return runImageMagick(imageMagickExec, fileLocation, thumbFileLocation, size, format);
-    }
-
-    private static String runImageMagick(String imageMagickExec, String fileLocation, String thumbFileLocation, int size, String format) {
-        String imageMagickCmd = null;
+    private static String renderPDFThumbnailFromFile(String fileLocation, int size) {
+        try {
+            BufferedImage pageImage = renderPDFPage(new File(fileLocation), size);
 
-        if ("pdf".equals(format)) {
-            imageMagickCmd = imageMagickExec + " pdf:" + fileLocation + "[0] -thumbnail " + size + "x" + size + " -flatten -strip png:" + thumbFileLocation;
-        } else {
-            imageMagickCmd = imageMagickExec + " " + format + ":" + fileLocation + " -thumbnail " + size + "x" + size + " -flatten -strip png:" + thumbFileLocation;
-        }
+            if (pageImage == null) {
+                return null;
+            }
 
-        logger.fine("ImageMagick command line: " + imageMagickCmd);
-        int exitValue = 1;
+            return rescaleImage(pageImage, pageImage.getWidth(), pageImage.getHeight(), size, fileLocation);
 
-        try {
-            Runtime runtime = Runtime.getRuntime();
-            Process process = runtime.exec(imageMagickCmd);
-            exitValue = process.waitFor();
         } catch (Exception e) {
-            exitValue = 1;
-        }
-
-        if (exitValue == 0 && new File(thumbFileLocation).exists()) {
-            logger.fine("returning " + thumbFileLocation);
-            return thumbFileLocation;
+            logger.warning("Failed to render the first page of " + fileLocation + ": " + e.getMessage());
         }
-
         return null;
     }
 
@@ -976,29 +1016,6 @@ public class ImageThumbConverter {
         return SystemConfig.getThumbnailSizeLimit(type);
     }
 
-    private static boolean isImageMagickInstalled() {
-        return findImageMagickConvert() != null;
-    }
-
-    private static String findImageMagickConvert() {
-        String imageMagickExec = System.getProperty("dataverse.path.imagemagick.convert");
-
-        if (imageMagickExec != null) {
-            imageMagickExec = imageMagickExec.trim();
-        }
-
-        // default/standard location:
-        if (imageMagickExec == null || imageMagickExec.equals("")) {
-            imageMagickExec = "/usr/bin/convert";
-        }
-
-        if (new File(imageMagickExec).exists()) {
-            return imageMagickExec;
-        }
-
-        return null;
-    }
-
     /*
        The method below takes a BufferedImage, and makes the specified color
        transparent. Turns out we don't really need to do this explicitly, since 
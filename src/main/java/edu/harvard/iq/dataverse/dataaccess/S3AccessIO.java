@@ -309,6 +309,32 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
 
         return super.getInputStream();
     }
+
+    @Override
+    public boolean supportsRangeReads() {
+        return true;
+    }
+
+    /**
+     * Gets just the range from S3 (a ranged GET), instead of reading through
+     * the whole object up to it.
+     */
+    @Override
+    public void writeRange(long offset, long length, OutputStream outputStream) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        if (offset == 0 && length == getSize()) {
+            // the whole object, no need for a range
+            copyBytes(getInputStream(), outputStream, length);
+            return;
+        }
+        try (S3Object s3object = s3.getObject(new GetObjectRequest(bucketName, key).withRange(offset, offset + length - 1))) {
+            copyBytes(s3object.getObjectContent(), outputStream, length);
+        } catch (SdkClientException sce) {
+            throw new IOException("Cannot get range of S3 object " + key + " (" + sce.getMessage() + ")");
+        }
+    }
     
     @Override
     public Channel getChannel() throws IOException {
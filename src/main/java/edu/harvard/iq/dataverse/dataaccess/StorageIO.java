@@ -27,6 +27,7 @@ import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
 import edu.harvard.iq.dataverse.util.FileUtil;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -57,6 +58,7 @@ public abstract class StorageIO<T extends DvObject> {
     static final String UPLOAD_REDIRECT = "upload-redirect";
     static final String UPLOAD_OUT_OF_BAND = "upload-out-of-band";
     protected static final String DOWNLOAD_REDIRECT = "download-redirect";
+    protected static final int COPY_BUFFER_SIZE = 64 * 1024;
 
 
     public StorageIO() {
@@ -427,6 +429,55 @@ public abstract class StorageIO<T extends DvObject> {
         }
     }
 
+    /**
+     * @return true if {@link #writeRange} reads the ranges from the storage
+     * directly, so they can be asked for in any order; false if they are read
+     * by going forward through the input stream (the default).
+     */
+    public boolean supportsRangeReads() {
+        return false;
+    }
+
+    /**
+     * Writes {@code length} bytes of the main object, starting at
+     * {@code offset}, to the output stream. open() has already been called.
+     * <p>
+     * By default the bytes are read from the input stream, skipping the ones
+     * before them. The stream only goes forward, so the ranges of one download
+     * have to be asked for in ascending order, without overlapping. Drivers
+     * that can read a range directly (a ranged GET, a positional read...)
+     * override this, and {@link #supportsRangeReads()}.
+     */
+    public void writeRange(long offset, long length, OutputStream outputStream) throws IOException {
+        InputStream inputStream = getInputStream();
+        if (inputStream == null) {
+            throw new IOException("Could not read range because the InputStream is null");
+        }
+        if (offset < this.offset) {
+            throw new IOException("Could not read range: the InputStream is already past byte " + offset);
+        }
+        inputStream.skipNBytes(offset - this.offset);
+        this.offset = offset;
+        copyBytes(inputStream, outputStream, length);
+        this.offset = offset + length;
+    }
+
+    /**
+     * Copies exactly {@code length} bytes from the input stream to the output
+     * stream.
+     */
+    protected static void copyBytes(InputStream inputStream, OutputStream outputStream, long length) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        while (length > 0) {
+            int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, length));
+            if (read == -1) {
+                throw new EOFException("Unexpected end of stream, " + length + " bytes short");
+            }
+            outputStream.write(buffer, 0, read);
+            length -= read;
+        }
+    }
+
     public void setInputStream(InputStream is) {
         in = is;
     }
@@ -538,7 +589,7 @@ public abstract class StorageIO<T extends DvObject> {
         }
     }
 
-    public String generateVariableHeader(List<DataVariable> dvs) {
+    public static String generateVariableHeader(List<DataVariable> dvs) {
         String varHeader = null;
 
         if (dvs != null) {
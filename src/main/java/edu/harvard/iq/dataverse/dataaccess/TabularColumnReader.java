@@ -0,0 +1,461 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Reads multiple columns of a tab-delimited data file in a single pass.
+ *
+ * The methods in TabularSubsetGenerator (subsetDoubleVector() etc.) re-read
+ * and re-split the entire file for every column requested, which is fine for
+ * a handful of variables, but becomes prohibitively expensive for files
+ * with thousands of columns (for example, when calculating the summary
+ * statistics and UNFs for all the variables at ingest). This reader instead
+ * splits every line once and stores the values of all the requested columns
+ * in primitive vectors.
+ *
+ * To keep the memory use bounded, the requested columns are partitioned into
+ * blocks that fit within the supplied memory budget; the file is read once
+ * per block. With a sufficient budget (or a reasonably sized file) that
+ * means a single pass.
+ *
+ * The values are parsed exactly the same way as in the subset*Vector()
+ * methods in TabularSubsetGenerator, so that the summary statistics and the
+ * UNFs calculated from these vectors are identical.
+ */
+public class TabularColumnReader {
+
+    private static final Logger logger = Logger.getLogger(TabularColumnReader.class.getCanonicalName());
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // A (very) rough estimate of the memory taken by a String value in a
+    // character vector:
+    private static final int ESTIMATED_STRING_VALUE_SIZE = 64;
+
+    public enum ColumnType {
+        DOUBLE, FLOAT, LONG, STRING
+    }
+
+    /**
+     * Receives the vectors as they are read. Each vector is only referenced
+     * by the reader until the handler returns, so the handler should not hold
+     * on to it, if it wants the memory to be reclaimed.
+     */
+    public interface ColumnHandler {
+
+        void handleColumn(ColumnVector columnVector) throws IOException;
+    }
+
+    private final File tabFile;
+    private final int numCases;
+    private final boolean skipHeader;
+    private final long memoryBudget;
+
+    /**
+     * @param tabFile the tab-delimited file
+     * @param numCases the number of observations stored in the file
+     * @param skipHeader whether the file is stored with the variable name
+     * header line
+     * @param memoryBudget the approximate amount of memory, in bytes, the
+     * vectors of a single pass are allowed to occupy
+     */
+    public TabularColumnReader(File tabFile, int numCases, boolean skipHeader, long memoryBudget) {
+        this.tabFile = tabFile;
+        this.numCases = numCases;
+        this.skipHeader = skipHeader;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Reads the requested columns, handing each fully populated vector to the
+     * handler.
+     *
+     * @param columnTypes the types of the columns, indexed by the column
+     * number; null entries are not read.
+     * @param handler the handler
+     * @return the number of passes through the file it took
+     * @throws IOException if the file cannot be read, or has fewer (or more)
+     * rows than the stored number of cases.
+     */
+    public int readColumns(ColumnType[] columnTypes, ColumnHandler handler) throws IOException {
+        List<List<Integer>> blocks = planColumnBlocks(columnTypes);
+
+        for (List<Integer> block : blocks) {
+            readColumnBlock(columnTypes, block, handler);
+        }
+
+        return blocks.size();
+    }
+
+    List<List<Integer>> planColumnBlocks(ColumnType[] columnTypes) {
+        List<List<Integer>> blocks = new ArrayList<>();
+        List<Integer> currentBlock = new ArrayList<>();
+        long currentBlockSize = 0L;
+
+        for (int i = 0; i < columnTypes.length; i++) {
+            if (columnTypes[i] == null) {
+                continue;
+            }
+            long columnSize = estimateColumnSize(columnTypes[i], numCases);
+            if (!currentBlock.isEmpty() && currentBlockSize + columnSize > memoryBudget) {
+                blocks.add(currentBlock);
+                currentBlock = new ArrayList<>();
+                currentBlockSize = 0L;
+            }
+            currentBlock.add(i);
+            currentBlockSize += columnSize;
+        }
+
+        if (!currentBlock.isEmpty()) {
+            blocks.add(currentBlock);
+        }
+
+        logger.fine("Planned " + blocks.size() + " pass(es) through the tab file, for a memory budget of " + memoryBudget + " bytes");
+        return blocks;
+    }
+
+    static long estimateColumnSize(ColumnType columnType, int numCases) {
+        // the missing value bitmap:
+        long size = numCases / 8 + 1;
+
+        switch (columnType) {
+            case DOUBLE:
+            case LONG:
+                return size + 8L * numCases;
+            case FLOAT:
+                return size + 4L * numCases;
+            default:
+                return (long) ESTIMATED_STRING_VALUE_SIZE * numCases;
+        }
+    }
+
+    private void readColumnBlock(ColumnType[] columnTypes, List<Integer> block, ColumnHandler handler) throws IOException {
+        // maps the column number to the vector for this block:
+        ColumnVector[] vectorsByColumn = new ColumnVector[columnTypes.length];
+        int lastColumn = -1;
+
+        for (Integer column : block) {
+            vectorsByColumn[column] = new ColumnVector(column, columnTypes[column], numCases);
+            lastColumn = Math.max(lastColumn, column);
+        }
+
+        try (InputStream in = new FileInputStream(tabFile);
+                LineReader lineReader = new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+
+            if (skipHeader && lineReader.readLine() == null) {
+                throw new IOException("Failed to read the variable name header line from the tab-delimited file!");
+            }
+
+            for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
+                String line = lineReader.readLine();
+                if (line == null) {
+                    throw new IOException("Tab file has fewer rows than the stored number of cases!");
+                }
+
+                int column = 0;
+                int fieldStart = 0;
+                while (column <= lastColumn) {
+                    int fieldEnd = line.indexOf('\t', fieldStart);
+                    if (fieldEnd < 0) {
+                        fieldEnd = line.length();
+                    }
+                    if (vectorsByColumn[column] != null) {
+                        vectorsByColumn[column].addValue(caseIndex, line.substring(fieldStart, fieldEnd));
+                    }
+                    if (fieldEnd == line.length() && column < lastColumn) {
+                        throw new IOException("Row " + caseIndex + " of the tab file has fewer columns than expected (" + (lastColumn + 1) + ")");
+                    }
+                    fieldStart = fieldEnd + 1;
+                    column++;
+                }
+            }
+
+            int tailIndex = numCases;
+            String nextLine;
+            while ((nextLine = lineReader.readLine()) != null) {
+                if (!"".equals(nextLine)) {
+                    throw new IOException("Tab file has more nonempty rows than the stored number of cases (" + numCases + ")! current index: " + tailIndex + ", line: " + nextLine);
+                }
+                tailIndex++;
+            }
+        }
+
+        for (Integer column : block) {
+            ColumnVector vector = vectorsByColumn[column];
+            vectorsByColumn[column] = null;
+            handler.handleColumn(vector);
+        }
+    }
+
+    /**
+     * The values of one column, stored as primitives wherever possible, with
+     * a bitmap of the missing values.
+     */
+    public static class ColumnVector {
+
+        private final int column;
+        private final ColumnType columnType;
+        private final int size;
+        private final BitSet missing;
+        private double[] doubleValues;
+        private float[] floatValues;
+        private long[] longValues;
+        private String[] stringValues;
+        private int invalidCount = 0;
+
+        ColumnVector(int column, ColumnType columnType, int size) {
+            this.column = column;
+            this.columnType = columnType;
+            this.size = size;
+            this.missing = new BitSet(size);
+
+            switch (columnType) {
+                case DOUBLE:
+                    doubleValues = new double[size];
+                    break;
+                case FLOAT:
+                    floatValues = new float[size];
+                    break;
+                case LONG:
+                    longValues = new long[size];
+                    break;
+                default:
+                    stringValues = new String[size];
+            }
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public ColumnType getColumnType() {
+            return columnType;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isMissing(int index) {
+            return missing.get(index);
+        }
+
+        void addValue(int index, String value) {
+            switch (columnType) {
+                case DOUBLE:
+                    addDoubleValue(index, value);
+                    break;
+                case FLOAT:
+                    addFloatValue(index, value);
+                    break;
+                case LONG:
+                    addLongValue(index, value);
+                    break;
+                default:
+                    addStringValue(index, value);
+            }
+        }
+
+        private void addDoubleValue(int index, String value) {
+            // Same as in TabularSubsetGenerator.subsetDoubleVector():
+            // Double("[+-]Inf") doesn't work, so these are handled
+            // separately.
+            if ("inf".equalsIgnoreCase(value) || "+inf".equalsIgnoreCase(value)) {
+                doubleValues[index] = Double.POSITIVE_INFINITY;
+            } else if ("-inf".equalsIgnoreCase(value)) {
+                doubleValues[index] = Double.NEGATIVE_INFINITY;
+            } else if (value.isEmpty()) {
+                setMissing(index);
+            } else {
+                try {
+                    doubleValues[index] = Double.parseDouble(value);
+                    if (Double.isNaN(doubleValues[index])) {
+                        invalidCount++;
+                    }
+                } catch (NumberFormatException ex) {
+                    setMissing(index);
+                }
+            }
+        }
+
+        private void addFloatValue(int index, String value) {
+            if ("inf".equalsIgnoreCase(value) || "+inf".equalsIgnoreCase(value)) {
+                floatValues[index] = Float.POSITIVE_INFINITY;
+            } else if ("-inf".equalsIgnoreCase(value)) {
+                floatValues[index] = Float.NEGATIVE_INFINITY;
+            } else if (value.isEmpty()) {
+                setMissing(index);
+            } else {
+                try {
+                    floatValues[index] = Float.parseFloat(value);
+                    if (Float.isNaN(floatValues[index])) {
+                        invalidCount++;
+                    }
+                } catch (NumberFormatException ex) {
+                    setMissing(index);
+                }
+            }
+        }
+
+        private void addLongValue(int index, String value) {
+            try {
+                longValues[index] = Long.parseLong(value);
+            } catch (NumberFormatException ex) {
+                // assume missing value
+                setMissing(index);
+            }
+        }
+
+        private void addStringValue(int index, String value) {
+            if (value.isEmpty()) {
+                // An empty string is a string missing value!
+                // An empty string in quotes is an empty string!
+                setMissing(index);
+            } else {
+                stringValues[index] = TabularSubsetGenerator.unescapeStringValue(value);
+            }
+        }
+
+        private void setMissing(int index) {
+            missing.set(index);
+            invalidCount++;
+        }
+
+        /**
+         * @return the number of missing (and NaN) values in a numeric vector
+         */
+        public int getInvalidCount() {
+            return invalidCount;
+        }
+
+        /**
+         * @return the valid (i.e., not missing and not NaN) values of a
+         * numeric vector, as doubles, in the order in which they appear in
+         * the file; to be used for calculating the summary statistics.
+         */
+        public double[] getValidValues() {
+            double[] validValues = new double[size - invalidCount];
+            int c = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (missing.get(i)) {
+                    continue;
+                }
+                double value;
+                switch (columnType) {
+                    case DOUBLE:
+                        value = doubleValues[i];
+                        break;
+                    case FLOAT:
+                        value = floatValues[i];
+                        break;
+                    case LONG:
+                        value = longValues[i];
+                        break;
+                    default:
+                        throw new IllegalStateException("Not a numeric vector (column " + column + ")");
+                }
+                if (!Double.isNaN(value)) {
+                    validValues[c++] = value;
+                }
+            }
+
+            return validValues;
+        }
+
+        /*
+         * The UNF library needs the missing values to be nulls, hence the
+         * boxed vectors below. These are only created one column at a time,
+         * when the UNF is calculated.
+         */
+        public Double[] toDoubleVector() {
+            Double[] vector = new Double[size];
+            for (int i = 0; i < size; i++) {
+                vector[i] = missing.get(i) ? null : doubleValues[i];
+            }
+            return vector;
+        }
+
+        public Float[] toFloatVector() {
+            Float[] vector = new Float[size];
+            for (int i = 0; i < size; i++) {
+                vector[i] = missing.get(i) ? null : floatValues[i];
+            }
+            return vector;
+        }
+
+        public Long[] toLongVector() {
+            Long[] vector = new Long[size];
+            for (int i = 0; i < size; i++) {
+                vector[i] = missing.get(i) ? null : longValues[i];
+            }
+            return vector;
+        }
+
+        public String[] getStringVector() {
+            return stringValues;
+        }
+    }
+
+    /**
+     * Splits the stream into lines on the new line character only (the way
+     * the Scanner, with the "\\n" delimiter, does in TabularSubsetGenerator);
+     * unlike BufferedReader.readLine() that would also treat a carriage
+     * return as a line break.
+     */
+    static class LineReader implements AutoCloseable {
+
+        private final Reader reader;
+        private final char[] buffer = new char[READ_BUFFER_SIZE];
+        private final StringBuilder lineBuilder = new StringBuilder();
+        private int position = 0;
+        private int limit = 0;
+
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        String readLine() throws IOException {
+            lineBuilder.setLength(0);
+            boolean readAnything = false;
+
+            while (true) {
+                if (position >= limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return readAnything && lineBuilder.length() > 0 ? lineBuilder.toString() : null;
+                    }
+                }
+                readAnything = true;
+
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                lineBuilder.append(buffer, start, position - start);
+
+                if (position < limit) {
+                    // skip the new line:
+                    position++;
+                    return lineBuilder.toString();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A compact binary index of the rows of an ingested tab-delimited file,
+ * stored next to it as an aux file (see {@link #AUX_TAG}), so that the
+ * columns requested in a subset can be read directly, without going through
+ * the rest of each row (see {@link TabularSubsetInputStream}).
+ *
+ * For every row (every physical line, including the variable header line if
+ * the file is stored with one), the index has the length of the row in
+ * bytes; for wide files, it also has the byte offsets, within the row, of
+ * every {@link Reader#getColumnBlockSize() column block}: of the columns number
+ * blockSize, 2 * blockSize, etc. Everything is written as variable-length
+ * integers, so the index stays a small fraction of the size of the file.
+ *
+ * The index is meant to be read from the beginning to the end, along with
+ * the rows being read, by a {@link Reader}; it's never loaded in memory as
+ * a whole.
+ */
+public class TabularRowIndex {
+
+    public static final String AUX_TAG = "rowindex";
+
+    // "DVRI"
+    static final int MAGIC = 0x44565249;
+    static final int VERSION = 1;
+
+    /**
+     * The files with fewer columns than this don't get column block offsets;
+     * reading the whole rows costs next to nothing more.
+     */
+    static final int WIDE_FILE_COLUMNS = 128;
+    static final int MIN_COLUMN_BLOCK_SIZE = 32;
+    static final int MAX_BLOCKS_PER_ROW = 256;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private TabularRowIndex() {
+    }
+
+    /**
+     * @param columns the number of variables in the file
+     * @return the size of the column blocks to index in a file that wide; 0
+     * for none
+     */
+    public static int columnBlockSizeFor(int columns) {
+        if (columns < WIDE_FILE_COLUMNS) {
+            return 0;
+        }
+        return Math.max(MIN_COLUMN_BLOCK_SIZE, (columns + MAX_BLOCKS_PER_ROW - 1) / MAX_BLOCKS_PER_ROW);
+    }
+
+    /**
+     * Indexes a tab-delimited file.
+     *
+     * @param tabFile the file, read to the end (not closed)
+     * @param fileSize the size of the file, recorded in the index, so that an
+     * index that doesn't go with the file is not used
+     * @param columnBlockSize see {@link #columnBlockSizeFor}
+     * @param out where the index is written (flushed, not closed)
+     */
+    public static void write(InputStream tabFile, long fileSize, int columnBlockSize, OutputStream out) throws IOException {
+        DataOutputStream index = new DataOutputStream(new BufferedOutputStream(out));
+        index.writeInt(MAGIC);
+        index.writeByte(VERSION);
+        index.writeLong(fileSize);
+        writeVarInt(index, columnBlockSize);
+
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int[] blockOffsets = new int[columnBlockSize > 0 ? 16 : 0];
+        int blocks = 0;
+        long rowLength = 0;
+        int column = 0;
+        long indexedSize = 0;
+        int read;
+        while ((read = tabFile.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                rowLength++;
+                if (b == '\n') {
+                    writeRow(index, rowLength, blockOffsets, blocks);
+                    indexedSize += rowLength;
+                    rowLength = 0;
+                    column = 0;
+                    blocks = 0;
+                } else if (b == '\t' && columnBlockSize > 0) {
+                    column++;
+                    if (column % columnBlockSize == 0) {
+                        if (blocks == blockOffsets.length) {
+                            blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+                        }
+                        blockOffsets[blocks++] = (int) rowLength;
+                    }
+                }
+            }
+        }
+        if (rowLength > 0) {
+            // the last line, without a newline
+            writeRow(index, rowLength, blockOffsets, blocks);
+            indexedSize += rowLength;
+        }
+        if (indexedSize != fileSize) {
+            throw new IOException("Indexed " + indexedSize + " bytes of the tab file, expected " + fileSize);
+        }
+        index.flush();
+    }
+
+    private static void writeRow(DataOutputStream index, long rowLength, int[] blockOffsets, int blocks) throws IOException {
+        writeVarLong(index, rowLength);
+        if (blockOffsets.length > 0) {
+            writeVarInt(index, blocks);
+            int previous = 0;
+            for (int i = 0; i < blocks; i++) {
+                writeVarInt(index, blockOffsets[i] - previous);
+                previous = blockOffsets[i];
+            }
+        }
+    }
+
+    /**
+     * Goes through the rows of the index, one at a time, from the first.
+     */
+    public static class Reader implements Closeable {
+
+        private final DataInputStream index;
+        private final long fileSize;
+        private final int columnBlockSize;
+        private int[] blockOffsets;
+        private int blocks;
+        private long rowStart = 0;
+        private long rowLength = 0;
+
+        /**
+         * @param in the index, as written by {@link TabularRowIndex#write};
+         * closed when the reader is
+         * @throws IOException if it's not such an index
+         */
+        public Reader(InputStream in) throws IOException {
+            index = new DataInputStream(new BufferedInputStream(in));
+            if (index.readInt() != MAGIC) {
+                throw new IOException("Not a tabular row index");
+            }
+            int version = index.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version of the tabular row index: " + version);
+            }
+            fileSize = index.readLong();
+            columnBlockSize = readVarInt(index);
+            blockOffsets = new int[columnBlockSize > 0 ? 16 : 0];
+        }
+
+        /**
+         * @return the size of the indexed file
+         */
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        /**
+         * @return how many columns there are in a column block; 0 if the
+         * index has no column block offsets
+         */
+        public int getColumnBlockSize() {
+            return columnBlockSize;
+        }
+
+        /**
+         * Moves on to the next row.
+         *
+         * @return false if there are no more rows
+         */
+        public boolean next() throws IOException {
+            rowStart += rowLength;
+            try {
+                rowLength = readVarLong(index);
+            } catch (EOFException eof) {
+                rowLength = 0;
+                return false;
+            }
+            if (columnBlockSize > 0) {
+                blocks = readVarInt(index);
+                if (blocks > blockOffsets.length) {
+                    blockOffsets = new int[blocks];
+                }
+                int offset = 0;
+                for (int i = 0; i < blocks; i++) {
+                    offset += readVarInt(index);
+                    blockOffsets[i] = offset;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the position of the current row in the file
+         */
+        public long getRowStart() {
+            return rowStart;
+        }
+
+        /**
+         * @return the length of the current row, including its newline
+         */
+        public long getRowLength() {
+            return rowLength;
+        }
+
+        /**
+         * @return the first column of the block the column is in
+         */
+        public int getBlockFirstColumn(int column) {
+            return columnBlockSize > 0 ? column / columnBlockSize * columnBlockSize : 0;
+        }
+
+        /**
+         * @return the offset, within the current row, of the first column of
+         * the block the column is in; -1 if the row doesn't have that many
+         * columns
+         */
+        public long getBlockOffset(int column) {
+            int block = columnBlockSize > 0 ? column / columnBlockSize : 0;
+            if (block == 0) {
+                return 0;
+            }
+            return block <= blocks ? blockOffsets[block - 1] : -1;
+        }
+
+        /**
+         * @return the offset, within the current row, of the block after the
+         * one the column is in; the length of the row if it's the last block
+         */
+        public long getBlockEndOffset(int column) {
+            int block = columnBlockSize > 0 ? column / columnBlockSize : 0;
+            return columnBlockSize > 0 && block < blocks ? blockOffsets[block] : rowLength;
+        }
+
+        @Override
+        public void close() throws IOException {
+            index.close();
+        }
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt tabular row index");
+        }
+        return (int) value;
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = shift == 0 ? in.readUnsignedByte() : readNextByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt tabular row index");
+    }
+
+    private static int readNextByte(DataInputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            // the end of the stream, in the middle of a number:
+            throw new IOException("Truncated tabular row index");
+        }
+        return b;
+    }
+}
@@ -20,6 +20,7 @@
 
 package edu.harvard.iq.dataverse.dataaccess;
 
+import edu.harvard.iq.dataverse.DataFile;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
@@ -27,6 +28,7 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -113,6 +115,67 @@ public class TabularSubsetGenerator implements SubsetGenerator {
 
     }
     
+    /**
+     * Subsets the tab file of an ingested DataFile as a stream, without a temp
+     * file (see {@link TabularSubsetInputStream}). If the file is stored
+     * locally and has a {@link TabularRowIndex} with column block offsets,
+     * only the parts of the rows with the requested columns are read;
+     * otherwise, the whole file is read, once.
+     *
+     * @param storageIO the tab file, opened for reading
+     * @param columns the (0-based) numbers of the columns, in the order they
+     * are wanted in
+     * @param numLines the number of rows in the file (including the variable
+     * header line, if it's stored with one)
+     */
+    public static InputStream openSubsetStream(StorageIO<DataFile> storageIO, List<Integer> columns, long numLines) throws IOException {
+        TabularRowIndex.Reader index = openRowIndex(storageIO);
+        if (index != null) {
+            logger.fine("subsetting with the row index of the tab file");
+            storageIO.closeInputStream();
+            FileChannel tabFileChannel;
+            try {
+                tabFileChannel = FileChannel.open(storageIO.getFileSystemPath());
+            } catch (IOException ioex) {
+                index.close();
+                throw ioex;
+            }
+            return new TabularSubsetInputStream(tabFileChannel, index, columns, numLines);
+        }
+        return new TabularSubsetInputStream(storageIO.getInputStream(), columns, numLines);
+    }
+
+    /**
+     * @return the reader of the row index of the tab file, if it's stored
+     * locally and has a usable one; null otherwise
+     */
+    private static TabularRowIndex.Reader openRowIndex(StorageIO<DataFile> storageIO) {
+        if (!storageIO.isLocalFile()) {
+            return null;
+        }
+        TabularRowIndex.Reader index = null;
+        try {
+            if (!storageIO.isAuxObjectCached(TabularRowIndex.AUX_TAG)) {
+                return null;
+            }
+            index = new TabularRowIndex.Reader(storageIO.getAuxFileAsInputStream(TabularRowIndex.AUX_TAG));
+            if (index.getColumnBlockSize() > 0 && index.getFileSize() == storageIO.getSize()) {
+                return index;
+            }
+            // (a narrow file, or an index that doesn't go with the file)
+            index.close();
+        } catch (IOException ioex) {
+            logger.warning("Failed to open the row index of the tab file " + storageIO.getFileName() + ": " + ioex.getMessage());
+            if (index != null) {
+                try {
+                    index.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
     /*
      * Straightforward method for subsetting a column; inefficient on large 
      * files, OK to use on small files:
@@ -287,42 +350,7 @@ public class TabularSubsetGenerator implements SubsetGenerator {
                         // An empty string in quotes is an empty string!
                         retVector[caseIndex] = null;
                     } else {
-                        // Strip the outer quotes:
-                        line[column] = line[column].replaceFirst("^\\\"", "");
-                        line[column] = line[column].replaceFirst("\\\"$", "");
-
-                        // We need to restore the special characters that
-                        // are stored in tab files escaped - quotes, new lines
-                        // and tabs. Before we do that however, we need to
-                        // take care of any escaped backslashes stored in
-                        // the tab file. I.e., "foo\t" should be transformed
-                        // to "foo<TAB>"; but "foo\\t" should be transformed
-                        // to "foo\t". This way new lines and tabs that were
-                        // already escaped in the original data are not
-                        // going to be transformed to unescaped tab and
-                        // new line characters!
-                        String[] splitTokens = line[column].split(Matcher.quoteReplacement("\\\\"), -2);
-
-                        // (note that it's important to use the 2-argument version
-                        // of String.split(), and set the limit argument to a
-                        // negative value; otherwise any trailing backslashes
-                        // are lost.)
-                        for (int i = 0; i < splitTokens.length; i++) {
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\\""), "\"");
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\t"), "\t");
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\n"), "\n");
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\r"), "\r");
-                        }
-                        // TODO:
-                        // Make (some of?) the above optional; for ex., we
-                        // do need to restore the newlines when calculating UNFs;
-                        // But if we are subsetting these vectors in order to
-                        // create a new tab-delimited file, they will
-                        // actually break things! -- L.A. Jul. 28 2014
-
-                        line[column] = StringUtils.join(splitTokens, '\\');
-
-                        retVector[caseIndex] = line[column];
+                        retVector[caseIndex] = unescapeStringValue(line[column]);
                     }
 
                 } else {
@@ -344,6 +372,51 @@ public class TabularSubsetGenerator implements SubsetGenerator {
 
     }
 
+    /**
+     * Restores a character value, as stored in a tab file, to its original 
+     * form: the outer quotes are stripped and the escaped special characters 
+     * (quotes, tabs and new lines) are restored. 
+     * 
+     * @param value a non-empty string value from a tab file column
+     * @return the unescaped value
+     */
+    static String unescapeStringValue(String value) {
+        // Strip the outer quotes:
+        value = value.replaceFirst("^\\\"", "");
+        value = value.replaceFirst("\\\"$", "");
+
+        // We need to restore the special characters that
+        // are stored in tab files escaped - quotes, new lines
+        // and tabs. Before we do that however, we need to
+        // take care of any escaped backslashes stored in
+        // the tab file. I.e., "foo\t" should be transformed
+        // to "foo<TAB>"; but "foo\\t" should be transformed
+        // to "foo\t". This way new lines and tabs that were
+        // already escaped in the original data are not
+        // going to be transformed to unescaped tab and
+        // new line characters!
+        String[] splitTokens = value.split(Matcher.quoteReplacement("\\\\"), -2);
+
+        // (note that it's important to use the 2-argument version
+        // of String.split(), and set the limit argument to a
+        // negative value; otherwise any trailing backslashes
+        // are lost.)
+        for (int i = 0; i < splitTokens.length; i++) {
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\\""), "\"");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\t"), "\t");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\n"), "\n");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\r"), "\r");
+        }
+        // TODO:
+        // Make (some of?) the above optional; for ex., we
+        // do need to restore the newlines when calculating UNFs;
+        // But if we are subsetting these vectors in order to
+        // create a new tab-delimited file, they will
+        // actually break things! -- L.A. Jul. 28 2014
+
+        return StringUtils.join(splitTokens, '\\');
+    }
+
     private static void skipFirstLine(Scanner scanner) {
         if (!scanner.hasNext()) {
             throw new RuntimeException("Failed to read the variable name header line from the tab-delimited file!");
@@ -0,0 +1,315 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The requested columns of a tab-delimited file, produced as they are read:
+ * each row of the stream has the fields of the columns, in the order in which
+ * they were requested, separated by tabs (the same as
+ * {@link TabularSubsetGenerator#subsetFile(InputStream, String, List, Long, String)}
+ * writes, without the temp file).
+ *
+ * The rows are split at the byte level, and only up to the last column
+ * requested. When the file is local and has a {@link TabularRowIndex} with
+ * column block offsets (i.e. a wide file), only the column blocks spanning
+ * the requested columns are read from each row, with positional reads;
+ * otherwise the file is read from the beginning to the end.
+ *
+ * The number of rows is checked as the stream is read: an IOException is
+ * thrown if the file has fewer rows than expected, or more non-empty ones.
+ */
+public class TabularSubsetInputStream extends InputStream {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // how much of the subset to produce at a time
+    private static final int OUTPUT_CHUNK_SIZE = 32 * 1024;
+
+    private final int[] columns;
+    private final int firstColumn;
+    private final int lastColumn;
+    private final long numLines;
+
+    // read from the beginning to the end:
+    private final InputStream tabFile;
+    private final byte[] readBuffer;
+    private int readPos = 0;
+    private int readLimit = 0;
+
+    // or, the column blocks read directly:
+    private final FileChannel tabFileChannel;
+    private final TabularRowIndex.Reader index;
+
+    // the current row, starting with the column rowFirstColumn:
+    private byte[] row = new byte[1024];
+    private int rowLength;
+    private int rowFirstColumn;
+    private boolean rowBlank;
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+
+    private byte[] output = new byte[OUTPUT_CHUNK_SIZE + 1024];
+    private int outputPos = 0;
+    private int outputLimit = 0;
+
+    private long linesDone = 0;
+    private boolean finished = false;
+
+    /**
+     * Reads the file from the beginning to the end.
+     *
+     * @param tabFile the tab-delimited file; closed when this stream is
+     * @param columns the (0-based) numbers of the columns, in the order they
+     * are wanted in
+     * @param numLines the number of rows in the file (including the variable
+     * header line, if it's stored with one)
+     */
+    public TabularSubsetInputStream(InputStream tabFile, List<Integer> columns, long numLines) {
+        this(tabFile, null, null, columns, numLines);
+    }
+
+    /**
+     * Reads the column blocks of the requested columns directly.
+     *
+     * @param tabFileChannel the tab-delimited file; closed when this stream is
+     * @param index the index of the file, with column block offsets; closed
+     * when this stream is
+     * @param columns see {@link #TabularSubsetInputStream(InputStream, List, long)}
+     * @param numLines see {@link #TabularSubsetInputStream(InputStream, List, long)}
+     */
+    public TabularSubsetInputStream(FileChannel tabFileChannel, TabularRowIndex.Reader index, List<Integer> columns, long numLines) {
+        this(null, tabFileChannel, index, columns, numLines);
+    }
+
+    private TabularSubsetInputStream(InputStream tabFile, FileChannel tabFileChannel, TabularRowIndex.Reader index, List<Integer> columns, long numLines) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("No columns to subset");
+        }
+        this.tabFile = tabFile;
+        this.readBuffer = tabFile != null ? new byte[READ_BUFFER_SIZE] : null;
+        this.tabFileChannel = tabFileChannel;
+        this.index = index;
+        this.columns = columns.stream().mapToInt(Integer::intValue).toArray();
+        this.firstColumn = Arrays.stream(this.columns).min().getAsInt();
+        this.lastColumn = Arrays.stream(this.columns).max().getAsInt();
+        this.numLines = numLines;
+        this.fieldStarts = new int[lastColumn + 1];
+        this.fieldEnds = new int[lastColumn + 1];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (outputPos == outputLimit && !fillOutput()) {
+            return -1;
+        }
+        return output[outputPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (outputPos == outputLimit && !fillOutput()) {
+            return -1;
+        }
+        int n = Math.min(len, outputLimit - outputPos);
+        System.arraycopy(output, outputPos, b, off, n);
+        outputPos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (InputStream in = tabFile; FileChannel channel = tabFileChannel; TabularRowIndex.Reader rowIndex = index) {
+            finished = true;
+        }
+    }
+
+    /**
+     * @return false at the end of the subset
+     */
+    private boolean fillOutput() throws IOException {
+        outputPos = 0;
+        outputLimit = 0;
+        if (finished) {
+            return false;
+        }
+        while (outputLimit < OUTPUT_CHUNK_SIZE && linesDone < numLines) {
+            if (!(index != null ? readRowDirectly() : readRow())) {
+                throw new IOException("Tab file has fewer rows than the determined number of cases (" + numLines + ")");
+            }
+            splitRow();
+            writeSubsetRow();
+            linesDone++;
+        }
+        if (linesDone == numLines) {
+            checkNoMoreRows();
+            finished = true;
+        }
+        return outputLimit > 0;
+    }
+
+    /**
+     * Reads the next row into the row buffer, up to the end of the last
+     * column requested; the rest of it is skipped.
+     *
+     * @return false if there are no more rows
+     */
+    private boolean readRow() throws IOException {
+        rowLength = 0;
+        rowFirstColumn = 0;
+        boolean started = false;
+        boolean copying = true;
+        int tabs = 0;
+        while (true) {
+            if (readPos == readLimit) {
+                readLimit = tabFile.read(readBuffer);
+                readPos = 0;
+                if (readLimit == -1) {
+                    readLimit = 0;
+                    return started;
+                }
+            }
+            if (!started) {
+                started = true;
+                rowBlank = readBuffer[readPos] == '\n';
+            }
+            int i = readPos;
+            if (copying) {
+                while (i < readLimit && readBuffer[i] != '\n' && !(readBuffer[i] == '\t' && tabs == lastColumn)) {
+                    if (readBuffer[i] == '\t') {
+                        tabs++;
+                    }
+                    i++;
+                }
+                appendToRow(readBuffer, readPos, i - readPos);
+                if (i < readLimit && readBuffer[i] == '\t') {
+                    // the end of the last column requested
+                    copying = false;
+                    i++;
+                }
+            }
+            if (!copying) {
+                while (i < readLimit && readBuffer[i] != '\n') {
+                    i++;
+                }
+            }
+            if (i < readLimit) {
+                readPos = i + 1;
+                return true;
+            }
+            readPos = i;
+        }
+    }
+
+    /**
+     * Reads the column blocks of the next row that span the requested
+     * columns into the row buffer.
+     *
+     * @return false if there are no more rows
+     */
+    private boolean readRowDirectly() throws IOException {
+        if (!index.next()) {
+            return false;
+        }
+        long start = index.getBlockOffset(firstColumn);
+        if (start < 0) {
+            throw new IOException("Row " + linesDone + " of the tab file has fewer columns than expected (" + (lastColumn + 1) + ")");
+        }
+        long end = index.getBlockEndOffset(lastColumn);
+        rowFirstColumn = index.getBlockFirstColumn(firstColumn);
+        rowLength = 0;
+        int length = (int) (end - start);
+        ensureRowCapacity(length);
+        ByteBuffer buffer = ByteBuffer.wrap(row, 0, length);
+        long position = index.getRowStart() + start;
+        while (buffer.hasRemaining()) {
+            int read = tabFileChannel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("Unexpected end of the tab file, at byte " + position);
+            }
+            position += read;
+        }
+        rowLength = length;
+        if (end == index.getRowLength() && rowLength > 0 && row[rowLength - 1] == '\n') {
+            rowLength--;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the fields of the requested columns in the row buffer.
+     */
+    private void splitRow() throws IOException {
+        int column = rowFirstColumn;
+        int fieldStart = 0;
+        for (int i = 0; i < rowLength && column <= lastColumn; i++) {
+            if (row[i] == '\t') {
+                fieldStarts[column] = fieldStart;
+                fieldEnds[column] = i;
+                column++;
+                fieldStart = i + 1;
+            }
+        }
+        if (column == lastColumn) {
+            fieldStarts[column] = fieldStart;
+            fieldEnds[column] = rowLength;
+        } else if (column < lastColumn) {
+            throw new IOException("Row " + linesDone + " of the tab file has fewer columns than expected (" + (lastColumn + 1) + ")");
+        }
+    }
+
+    private void writeSubsetRow() {
+        for (int i = 0; i < columns.length; i++) {
+            int column = columns[i];
+            int length = fieldEnds[column] - fieldStarts[column];
+            ensureOutputCapacity(length + 1);
+            System.arraycopy(row, fieldStarts[column], output, outputLimit, length);
+            outputLimit += length;
+            output[outputLimit++] = (byte) (i < columns.length - 1 ? '\t' : '\n');
+        }
+    }
+
+    private void checkNoMoreRows() throws IOException {
+        if (index != null) {
+            // (a row of one byte is just the newline)
+            while (index.next()) {
+                if (index.getRowLength() > 1) {
+                    throw new IOException("Tab file has extra nonempty rows than the determined number of cases (" + numLines + ")");
+                }
+            }
+            return;
+        }
+        while (readRow()) {
+            if (!rowBlank) {
+                throw new IOException("Tab file has extra nonempty rows than the determined number of cases (" + numLines + ")");
+            }
+        }
+    }
+
+    private void appendToRow(byte[] bytes, int offset, int length) {
+        ensureRowCapacity(rowLength + length);
+        System.arraycopy(bytes, offset, row, rowLength, length);
+        rowLength += length;
+    }
+
+    private void ensureRowCapacity(int capacity) {
+        if (capacity > row.length) {
+            row = Arrays.copyOf(row, Math.max(capacity, row.length * 2));
+        }
+    }
+
+    private void ensureOutputCapacity(int length) {
+        if (outputLimit + length > output.length) {
+            output = Arrays.copyOf(output, Math.max(outputLimit + length, output.length * 2));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DvObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Checks the storage for the thumbnails (or logos) of a page of objects in
+ * parallel. With remote storage, each check is a request (e.g., an S3 HEAD),
+ * so checking the cards of a page of search results one after the other adds
+ * up.
+ *
+ * The calling thread takes part in the checks, so that they are done even if
+ * the executor has no thread to spare.
+ */
+public class ThumbnailCacheChecker {
+
+    private static final Logger logger = Logger.getLogger(ThumbnailCacheChecker.class.getCanonicalName());
+
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * @param executor where to run the checks (in the application server, a
+     * managed executor)
+     * @param parallelism how many checks to make at the same time, per page
+     */
+    public ThumbnailCacheChecker(Executor executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @param objects the objects to check
+     * @param isCached checks one of them
+     * @return the result of the checks, by object id (an object whose check
+     * failed, or was not made because this thread was interrupted, is not in
+     * the map)
+     */
+    public <T extends DvObject> Map<Long, Boolean> check(List<T> objects, Predicate<T> isCached) {
+        Map<Long, Boolean> cached = new ConcurrentHashMap<>();
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(objects.size());
+        Runnable checker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < objects.size()) {
+                T object = objects.get(i);
+                try {
+                    cached.put(object.getId(), isCached.test(object));
+                } catch (RuntimeException ex) {
+                    logger.fine("Failed to check the storage of " + object.getId() + ": " + ex.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        for (int helpers = Math.min(parallelism, objects.size()) - 1; helpers > 0; helpers--) {
+            try {
+                executor.execute(checker);
+            } catch (RejectedExecutionException ex) {
+                break;
+            }
+        }
+        checker.run();
+        // (a helper that hasn't started by now finds nothing left to check,
+        // this only waits for the checks in progress)
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,167 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates thumbnails on a bounded number of workers, so that a page
+ * showing many files that don't have their thumbnails yet doesn't decode
+ * (and render) all of them at the same time.
+ *
+ * The same thumbnail (the same key: a file, and a size) is only generated
+ * once at a time: a request for a thumbnail that is already being generated
+ * waits for that generation. And the thumbnails somebody is waiting for go
+ * ahead of the ones generated in the background (when the files are
+ * uploaded).
+ */
+public class ThumbnailGenerator {
+
+    private static final Logger logger = Logger.getLogger(ThumbnailGenerator.class.getCanonicalName());
+
+    private final Executor executor;
+    private final int workers;
+
+    // (guarded by the queue)
+    private final Deque<Task> queue = new ArrayDeque<>();
+    private int running;
+
+    private final Map<Object, Task> inProgress = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor where to run the workers (in the application server, a
+     * managed executor)
+     * @param workers how many thumbnails to generate at the same time
+     */
+    public ThumbnailGenerator(Executor executor, int workers) {
+        this.executor = executor;
+        this.workers = Math.max(1, workers);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Generates a thumbnail, unless it's already being generated, and waits
+     * until it's done.
+     *
+     * @param key the thumbnail
+     * @param generation generates it; returns whether it was generated
+     * @return whether the thumbnail was generated (false if the generation
+     * failed, or if this thread was interrupted while waiting)
+     */
+    public boolean generate(Object key, Callable<Boolean> generation) {
+        try {
+            return submit(key, generation, true).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            // (not expected, see run())
+            return false;
+        }
+    }
+
+    /**
+     * Generates a thumbnail in the background, unless it's already being
+     * generated.
+     */
+    public void generateLater(Object key, Callable<Boolean> generation) {
+        submit(key, generation, false);
+    }
+
+    CompletableFuture<Boolean> submit(Object key, Callable<Boolean> generation, boolean urgent) {
+        Task task = new Task(key, generation);
+        Task existing = inProgress.putIfAbsent(key, task);
+        if (existing != null) {
+            if (urgent) {
+                synchronized (queue) {
+                    // (somebody's waiting for it now)
+                    if (queue.remove(existing)) {
+                        queue.addFirst(existing);
+                    }
+                }
+            }
+            return existing.result;
+        }
+
+        boolean startWorker;
+        synchronized (queue) {
+            if (urgent) {
+                queue.addFirst(task);
+            } else {
+                queue.addLast(task);
+            }
+            startWorker = running < workers;
+            if (startWorker) {
+                running++;
+            }
+        }
+        if (startWorker) {
+            try {
+                executor.execute(this::work);
+            } catch (RejectedExecutionException ex) {
+                logger.fine("Generating the thumbnail " + key + " on this thread: " + ex.getMessage());
+                synchronized (queue) {
+                    running--;
+                    if (!queue.remove(task)) {
+                        // (already taken by another worker)
+                        return task.result;
+                    }
+                }
+                run(task);
+            }
+        }
+        return task.result;
+    }
+
+    private void work() {
+        while (true) {
+            Task task;
+            synchronized (queue) {
+                task = queue.pollFirst();
+                if (task == null) {
+                    running--;
+                    return;
+                }
+            }
+            run(task);
+        }
+    }
+
+    private void run(Task task) {
+        boolean generated = false;
+        try {
+            generated = Boolean.TRUE.equals(task.generation.call());
+        } catch (Throwable ex) {
+            // (including errors, e.g. a stack overflow rendering a malformed
+            // PDF, so that this worker goes on)
+            logger.log(Level.WARNING, "Failed to generate the thumbnail " + task.key, ex);
+        } finally {
+            // (a request coming in between these two still gets this result,
+            // which is the current one)
+            task.result.complete(generated);
+            inProgress.remove(task.key, task);
+        }
+    }
+
+    private static class Task {
+        final Object key;
+        final Callable<Boolean> generation;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Task(Object key, Callable<Boolean> generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.FileUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Holds the {@link ThumbnailGenerator} of this server, used by
+ * {@link ImageThumbConverter}, so that the number of thumbnails generated at
+ * the same time is bounded on the server, not per request; and the
+ * {@link ThumbnailCacheChecker} used to find which thumbnails of a page
+ * already exist.
+ */
+@Singleton
+@Lock(READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class ThumbnailServiceBean {
+
+    private static final Logger logger = Logger.getLogger(ThumbnailServiceBean.class.getCanonicalName());
+
+    private static final int DEFAULT_WORKERS = 4;
+
+    // (the storage checks mostly wait for the storage, they're cheap here)
+    private static final int CACHE_CHECKS_PER_PAGE = 8;
+
+    // The sizes shown on the dataset pages and in the search results:
+    private static final int[] PREGENERATED_SIZES = {ImageThumbConverter.DEFAULT_THUMBNAIL_SIZE, ImageThumbConverter.DEFAULT_CARDIMAGE_SIZE};
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    private ThumbnailGenerator generator;
+    private ThumbnailCacheChecker cacheChecker;
+    private boolean pregenerate;
+
+    @PostConstruct
+    public void init() {
+        int workers = JvmSettings.THUMBNAIL_WORKERS.lookupOptional(Integer.class).orElse(DEFAULT_WORKERS);
+        generator = new ThumbnailGenerator(executorService, workers);
+        cacheChecker = new ThumbnailCacheChecker(executorService, CACHE_CHECKS_PER_PAGE);
+        pregenerate = JvmSettings.THUMBNAIL_PREGENERATE.lookupOptional(Boolean.class).orElse(true);
+        logger.fine("Generating up to " + generator.getWorkers() + " thumbnails at the same time"
+                + (pregenerate ? ", and as the files are uploaded" : ""));
+    }
+
+    public ThumbnailGenerator getGenerator() {
+        return generator;
+    }
+
+    public ThumbnailCacheChecker getCacheChecker() {
+        return cacheChecker;
+    }
+
+    /**
+     * Generates the thumbnails of newly saved files in the background, so
+     * that they're ready by the time the dataset page or the search results
+     * show them.
+     */
+    public void generateThumbnailsLater(List<DataFile> dataFiles) {
+        if (!pregenerate) {
+            return;
+        }
+        for (DataFile dataFile : dataFiles) {
+            if (!FileUtil.isThumbnailSupported(dataFile) || dataFile.isTabularData()) {
+                continue;
+            }
+            // (the workers don't touch the entity)
+            DataFileToThumbnail file = DataFileToThumbnail.of(dataFile);
+            for (int size : PREGENERATED_SIZES) {
+                ImageThumbConverter.generateThumbnailLater(generator, file, size);
+            }
+        }
+    }
+}
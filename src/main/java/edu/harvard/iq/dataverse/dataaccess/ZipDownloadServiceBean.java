@@ -0,0 +1,55 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Holds the {@link ZipReadAhead} of this server, used by the zip downloads
+ * (see {@link DataFileZipper}), so that the number of files read ahead, and
+ * the memory they take, are bounded on the server, not per download.
+ */
+@Singleton
+@Lock(READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class ZipDownloadServiceBean {
+
+    private static final Logger logger = Logger.getLogger(ZipDownloadServiceBean.class.getCanonicalName());
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final long DEFAULT_PREFETCH_MAX_SIZE = 8 * 1024 * 1024;
+    private static final long DEFAULT_PREFETCH_BUDGET = 64 * 1024 * 1024;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    private ZipReadAhead readAhead;
+
+    @PostConstruct
+    public void init() {
+        int parallelism = JvmSettings.ZIP_DOWNLOAD_PARALLELISM.lookupOptional(Integer.class).orElse(DEFAULT_PARALLELISM);
+        if (parallelism > 1) {
+            readAhead = new ZipReadAhead(executorService, parallelism,
+                    JvmSettings.ZIP_DOWNLOAD_PREFETCH_MAX_SIZE.lookupOptional(Long.class).orElse(DEFAULT_PREFETCH_MAX_SIZE),
+                    JvmSettings.ZIP_DOWNLOAD_PREFETCH_BUDGET.lookupOptional(Long.class).orElse(DEFAULT_PREFETCH_BUDGET));
+            logger.fine("Reading up to " + readAhead.getWorkers() + " files of the zip downloads ahead");
+        }
+    }
+
+    /**
+     * @return the read ahead of the zip downloads; null if they read their
+     * files one at a time
+     */
+    public ZipReadAhead getReadAhead() {
+        return readAhead;
+    }
+}
@@ -0,0 +1,136 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Reads the files of the zip downloads ahead (see {@link DataFileZipper}),
+ * on a bounded number of workers for the whole server, so that many
+ * downloads at the same time don't each start their own threads; and keeps
+ * the budget of the bytes they hold in memory, read ahead, in all.
+ *
+ * The files are read in the order they are submitted. A worker never waits
+ * for a download: a file that doesn't fit in the budget is only opened
+ * ahead, and streamed as it's written.
+ */
+public class ZipReadAhead {
+
+    private static final Logger logger = Logger.getLogger(ZipReadAhead.class.getCanonicalName());
+
+    private final Executor executor;
+    private final int workers;
+    private final long prefetchMaxSize;
+    private final long budget;
+
+    // (guarded by the queue)
+    private final Deque<Runnable> queue = new ArrayDeque<>();
+    private int running;
+
+    // (guarded by this)
+    private long reserved;
+
+    /**
+     * @param executor where to run the workers (in the application server, a
+     * managed executor)
+     * @param workers how many files to read at the same time, for all the
+     * downloads; also how many files each download reads ahead of the one
+     * it's writing
+     * @param prefetchMaxSize the size of the biggest files to read into
+     * memory
+     * @param budget how many bytes the files read into memory may take, for
+     * all the downloads
+     */
+    public ZipReadAhead(Executor executor, int workers, long prefetchMaxSize, long budget) {
+        this.executor = executor;
+        this.workers = Math.max(1, workers);
+        this.prefetchMaxSize = prefetchMaxSize;
+        this.budget = budget;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Reserves room for a file of that size to be read into memory, if it's
+     * small enough and there's room left; to be released once it's written
+     * (or dropped).
+     *
+     * @return whether the file is to be read into memory
+     */
+    public synchronized boolean reserve(long size) {
+        if (size < 0 || size > prefetchMaxSize || reserved + size > budget) {
+            return false;
+        }
+        reserved += size;
+        return true;
+    }
+
+    public synchronized void release(long size) {
+        reserved -= size;
+    }
+
+    synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * Reads a file, on one of the workers once the files submitted before it
+     * have been taken; or, if the executor won't take any more, on this
+     * thread.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> read) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                result.complete(read.call());
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        };
+
+        boolean startWorker;
+        synchronized (queue) {
+            queue.addLast(task);
+            startWorker = running < workers;
+            if (startWorker) {
+                running++;
+            }
+        }
+        if (startWorker) {
+            try {
+                executor.execute(this::work);
+            } catch (RejectedExecutionException ex) {
+                logger.fine("Reading the file on this thread: " + ex.getMessage());
+                synchronized (queue) {
+                    running--;
+                    if (!queue.remove(task)) {
+                        // (already taken by another worker)
+                        return result;
+                    }
+                }
+                task.run();
+            }
+        }
+        return result;
+    }
+
+    private void work() {
+        while (true) {
+            Runnable task;
+            synchronized (queue) {
+                task = queue.pollFirst();
+                if (task == null) {
+                    running--;
+                    return;
+                }
+            }
+            task.run();
+        }
+    }
+}
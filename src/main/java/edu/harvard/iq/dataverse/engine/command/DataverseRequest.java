@@ -1,6 +1,7 @@
 package edu.harvard.iq.dataverse.engine.command;
 
 import edu.harvard.iq.dataverse.api.AbstractApiBean;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.authorization.users.User;
@@ -25,6 +26,7 @@ public class DataverseRequest {
     private final IpAddress sourceAddress;
     private final String invocationId;
     private final HttpServletRequest httpServletRequest;
+    private final PermissionCache.RequestLevel permissionCache = new PermissionCache.RequestLevel();
     
     private static final String undefined = "0.0.0.0";
     
@@ -169,6 +171,14 @@ public class DataverseRequest {
         return sourceAddress;
     }
 
+    /**
+     * @return The permissions the user of this request was found to have, so
+     * far (see {@link edu.harvard.iq.dataverse.PermissionServiceBean}).
+     */
+    public PermissionCache.RequestLevel getPermissionCache() {
+        return permissionCache;
+    }
+
     @Override
     public String toString() {
         return "[DataverseRequest user:" + getUser() + "@" + getSourceAddress() + "]";                
@@ -17,15 +17,23 @@ import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.exception.CommandException;
 import edu.harvard.iq.dataverse.engine.command.exception.CommandExecutionException;
 import edu.harvard.iq.dataverse.engine.command.exception.IllegalCommandException;
+import edu.harvard.iq.dataverse.pidproviders.PidOperationExecutor;
+import edu.harvard.iq.dataverse.pidproviders.PidOperationServiceBean;
 import edu.harvard.iq.dataverse.pidproviders.PidProvider;
 import edu.harvard.iq.dataverse.pidproviders.PidUtil;
+import edu.harvard.iq.dataverse.pidproviders.PreparedPidCall;
 import edu.harvard.iq.dataverse.pidproviders.doi.fake.FakeDOIProvider;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.util.stream.Collectors.joining;
@@ -229,17 +237,78 @@ public abstract class AbstractDatasetCommand<T> extends AbstractCommand<T> {
                 ctxt.systemConfig().isFilePIDsEnabledForCollection(getDataset().getOwner()) &&
                 pidGenerator.canCreatePidsLike(getDataset().getGlobalId());
         if (shouldRegister) {
+            // The files that were registered by an earlier attempt that didn't
+            // complete (with the identifiers they still have) don't need to be
+            // registered again - and, since their ids now exist in the registry,
+            // they would get new ones if we tried.
+            Map<Long, String> registered = ctxt.pidOperations().findCompleted(theDataset.getId(), PidOperationServiceBean.REGISTER);
+            // The identifiers are checked, and generated when needed, here, one
+            // file after the other: a new one must not be one that was just
+            // given to another file, which the database doesn't know about yet.
+            // Only the calls to the provider that create them run concurrently,
+            // prepared from the files; the files are updated back on this thread.
+            List<PreparedPidCall> calls = new ArrayList<>();
+            Map<PreparedPidCall, DataFile> filesToRegister = new IdentityHashMap<>();
             for (DataFile dataFile : theDataset.getFiles()) {
                 logger.fine(dataFile.getId() + " is registered?: " + dataFile.isIdentifierRegistered());
                 if (!dataFile.isIdentifierRegistered()) {
-                    // pre-register a persistent id
-                    registerFileExternalIdentifier(dataFile, pidGenerator, ctxt, true);
+                    if (PidOperationServiceBean.isCompleted(registered, dataFile)) {
+                        dataFile.setGlobalIdCreateTime(getTimestamp());
+                        dataFile.setIdentifierRegistered(true);
+                    } else {
+                        // pre-register a persistent id
+                        PreparedPidCall call = registerFileExternalIdentifier(dataFile, pidGenerator, ctxt, true);
+                        if (call != null) {
+                            calls.add(call);
+                            filesToRegister.put(call, dataFile);
+                        }
+                    }
                 }
             }
+            Set<PreparedPidCall> created = ConcurrentHashMap.newKeySet();
+            try {
+                ctxt.pidOperations().getExecutor(pidGenerator).execute(calls, call -> {
+                    try {
+                        if (!call.make()) {
+                            return false;
+                        }
+                        created.add(call);
+                    } catch (Exception ex) {
+                        // (the file is left unregistered)
+                        logger.info("Call to globalIdServiceBean.createIdentifier failed: " + ex);
+                    }
+                    return true;
+                }, completedCalls -> {
+                    List<DataFile> registeredFiles = new ArrayList<>();
+                    for (PreparedPidCall call : completedCalls) {
+                        if (created.contains(call)) {
+                            DataFile dataFile = filesToRegister.get(call);
+                            dataFile.setGlobalIdCreateTime(getTimestamp());
+                            dataFile.setIdentifierRegistered(true);
+                            registeredFiles.add(dataFile);
+                        }
+                    }
+                    ctxt.pidOperations().recordCompleted(theDataset.getId(), PidOperationServiceBean.REGISTER, registeredFiles);
+                });
+            } catch (PidOperationExecutor.PidOperationException ex) {
+                throw new CommandException(BundleUtil.getStringFromBundle("file.register.error", pidGenerator.getProviderInformation()), this);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CommandException(BundleUtil.getStringFromBundle("file.register.error", pidGenerator.getProviderInformation()), this);
+            }
+            ctxt.pidOperations().clearCompleted(theDataset.getId(), PidOperationServiceBean.REGISTER);
         }
     }
 
-    private void registerFileExternalIdentifier(DataFile dataFile, PidProvider pidProvider, CommandContext ctxt, boolean retry) throws CommandException {
+    /**
+     * Makes sure the identifier of the file isn't registered already,
+     * generating a new one if it is, and prepares the call to the provider
+     * that creates it (see {@link PidProvider#prepareCreateIdentifier}).
+     *
+     * @return the call, or null if it couldn't be prepared (the file is left
+     * unregistered)
+     */
+    private PreparedPidCall registerFileExternalIdentifier(DataFile dataFile, PidProvider pidProvider, CommandContext ctxt, boolean retry) throws CommandException {
 
         if (!dataFile.isIdentifierRegistered()) {
 
@@ -270,11 +339,10 @@ public abstract class AbstractDatasetCommand<T> extends AbstractCommand<T> {
                 }
                 // Invariant: DataFile identifier does not exist in the remote registry
                 try {
-                    pidProvider.createIdentifier(dataFile);
-                    dataFile.setGlobalIdCreateTime(getTimestamp());
-                    dataFile.setIdentifierRegistered(true);
+                    return pidProvider.prepareCreateIdentifier(dataFile);
                 } catch (Throwable ex) {
                     logger.info("Call to globalIdServiceBean.createIdentifier failed: " + ex);
+                    return null;
                 }
 
             } catch (Throwable e) {
@@ -90,6 +90,8 @@ public class ChangeUserIdentifierCommand extends AbstractVoidCommand {
         for(RoleAssignment ra : raList) {
             ra.setAssigneeIdentifier("@" + newIdentifier);
         }
+        ctxt.permissions().invalidateCachedPermissions("@" + oldIdentifier);
+        ctxt.permissions().invalidateCachedPermissions("@" + newIdentifier);
     }
     
     @Override
@@ -20,22 +20,31 @@ import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.RequiredPermissions;
 import edu.harvard.iq.dataverse.engine.command.exception.CommandException;
 import edu.harvard.iq.dataverse.export.ExportService;
+import edu.harvard.iq.dataverse.pidproviders.PidOperationServiceBean;
 import edu.harvard.iq.dataverse.pidproviders.PidProvider;
 import edu.harvard.iq.dataverse.pidproviders.PidUtil;
+import edu.harvard.iq.dataverse.pidproviders.PreparedPidCall;
 import edu.harvard.iq.dataverse.privateurl.PrivateUrl;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 import edu.harvard.iq.dataverse.workflow.WorkflowContext.TriggerType;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.engine.command.Command;
+import edu.harvard.iq.dataverse.util.DataFileToValidate;
+import edu.harvard.iq.dataverse.util.DataFileValidationPipeline;
 import edu.harvard.iq.dataverse.util.FileUtil;
 import java.util.ArrayList;
 import java.util.concurrent.Future;
@@ -63,6 +72,9 @@ public class FinalizeDatasetPublicationCommand extends AbstractPublishDatasetCom
     List<Dataverse> dataversesToIndex = new ArrayList<>();
     
     public static final String FILE_VALIDATION_ERROR = "FILE VALIDATION ERROR";
+
+    // how often (ms) to record the progress of the file validation on the lock
+    private static final long VALIDATION_PROGRESS_INTERVAL = 5000;
     
     public FinalizeDatasetPublicationCommand(Dataset aDataset, DataverseRequest aRequest) {
         this( aDataset, aRequest, false );
@@ -343,21 +355,65 @@ public class FinalizeDatasetPublicationCommand extends AbstractPublishDatasetCom
 
             long datasetSize = DatasetUtil.getDownloadSizeNumeric(dataset.getLatestVersion(), false);
             if (maxDatasetSize == -1 || datasetSize < maxDatasetSize) {
+                Timestamp validationTime = new Timestamp(new Date().getTime());
+                long skipVerifiedWithin = TimeUnit.HOURS.toMillis(JvmSettings.FILES_VALIDATION_SKIP_VERIFIED_WITHIN.lookupOptional(Long.class).orElse(0L));
+
+                List<DataFile> dataFilesToValidate = new ArrayList<>();
                 for (DataFile dataFile : dataset.getFiles()) {
                     // TODO: Should we validate all the files in the dataset, or only
                     // the files that haven't been published previously?
                     // (the decision was made to validate all the files on every
                     // major release; we can revisit the decision if there's any
                     // indication that this makes publishing take significantly longer.
+                    // Files that were validated recently, e.g. when the previous
+                    // major version was published, can be skipped by configuring
+                    // dataverse.files.validation-skip-verified-within)
                     String driverId = FileUtil.getStorageDriver(dataFile);
                     if(StorageIO.isDataverseAccessible(driverId) && (maxFileSize == -1 || dataFile.getFilesize() < maxFileSize)) {
-                        FileUtil.validateDataFileChecksum(dataFile);
+                        if (dataFile.getChecksumVerifiedTime() != null
+                                && validationTime.getTime() - dataFile.getChecksumVerifiedTime().getTime() < skipVerifiedWithin) {
+                            logger.fine("Checksum Validation skipped for this datafile: " + dataFile.getId() + ", because it was last verified at " + dataFile.getChecksumVerifiedTime());
+                        } else {
+                            dataFilesToValidate.add(dataFile);
+                        }
                     }
                     else {
                         String message = "Checksum Validation skipped for this datafile: " + dataFile.getId() + ", because of the size of the datafile limit (set to " + maxFileSize + " ); ";
                         logger.info(message);
                     }
                 }
+
+                DatasetLock lock = dataset.getLockFor(DatasetLock.Reason.finalizePublication);
+                String lockInfo = lock == null ? null : lock.getInfo();
+                long[] lastProgressReport = {System.currentTimeMillis()};
+
+                DataFileValidationPipeline pipeline = ctxt.fileValidation().getPipeline();
+                // (the files are read on other threads, which mustn't touch
+                // the entities)
+                List<DataFileToValidate> filesToValidate = new ArrayList<>();
+                for (DataFile dataFile : dataFilesToValidate) {
+                    filesToValidate.add(DataFileToValidate.of(dataFile));
+                }
+                pipeline.validate(filesToValidate, (done, total) -> {
+                    // let the users following the progress of the publication
+                    // know how far along we are (but don't write the lock on
+                    // every file):
+                    if (lock != null && done < total && System.currentTimeMillis() - lastProgressReport[0] >= VALIDATION_PROGRESS_INTERVAL) {
+                        String progress = BundleUtil.getStringFromBundle("dataset.publish.file.validation.progress", List.of(String.valueOf(done), String.valueOf(total)));
+                        lock.setInfo(lockInfo == null ? progress : lockInfo + " " + progress);
+                        ctxt.datasets().updateDatasetLock(lock);
+                        lastProgressReport[0] = System.currentTimeMillis();
+                    }
+                });
+
+                if (lock != null && !Objects.equals(lock.getInfo(), lockInfo)) {
+                    lock.setInfo(lockInfo);
+                    ctxt.datasets().updateDatasetLock(lock);
+                }
+                for (DataFile dataFile : dataFilesToValidate) {
+                    dataFile.setChecksumVerifiedTime(validationTime);
+                }
+                logger.info("Validated " + dataFilesToValidate.size() + " datafiles of the dataset " + dataset.getId());
             }
             else {
                 String message = "Checksum Validation skipped for this dataset: " + dataset.getId() + ", because of the size of the dataset limit (set to " + maxDatasetSize + " ); ";
@@ -402,16 +458,36 @@ public class FinalizeDatasetPublicationCommand extends AbstractPublishDatasetCom
             if (registerGlobalIdsForFiles 
                     && dataset.getLatestVersion().getMinorVersionNumber() != null
                     && dataset.getLatestVersion().getMinorVersionNumber().equals((long) 0)) {
-                // A false return value indicates a failure in calling the service
+                // The files that were publicized already, by an earlier
+                // attempt that didn't complete, don't need to be done again:
+                Map<Long, String> publicized = ctxt.pidOperations().findCompleted(dataset.getId(), PidOperationServiceBean.PUBLICIZE);
+                // The calls to the provider are prepared here, from the
+                // files; only the calls themselves run concurrently, and
+                // the files are updated back on this thread.
+                List<PreparedPidCall> calls = new ArrayList<>();
+                Map<PreparedPidCall, DataFile> filesToPublicize = new IdentityHashMap<>();
                 for (DataFile df : dataset.getFiles()) {
-                    logger.log(Level.FINE, "registering global id for file {0}", df.getId());
-                    // A false return value indicates a failure in calling the service
-                    if (!pidProvider.publicizeIdentifier(df)) {
-                        throw new Exception();
+                    if (PidOperationServiceBean.isCompleted(publicized, df)) {
+                        df.setGlobalIdCreateTime(getTimestamp());
+                        df.setIdentifierRegistered(true);
+                    } else {
+                        logger.log(Level.FINE, "registering global id for file {0}", df.getId());
+                        PreparedPidCall call = pidProvider.preparePublicizeIdentifier(df);
+                        calls.add(call);
+                        filesToPublicize.put(call, df);
                     }
-                    df.setGlobalIdCreateTime(getTimestamp());
-                    df.setIdentifierRegistered(true);
                 }
+                // A false return value indicates a failure in calling the service
+                ctxt.pidOperations().getExecutor(pidProvider).execute(calls, PreparedPidCall::make, completedCalls -> {
+                    List<DataFile> publicizedFiles = new ArrayList<>();
+                    for (PreparedPidCall call : completedCalls) {
+                        DataFile df = filesToPublicize.get(call);
+                        df.setGlobalIdCreateTime(getTimestamp());
+                        df.setIdentifierRegistered(true);
+                        publicizedFiles.add(df);
+                    }
+                    ctxt.pidOperations().recordCompleted(dataset.getId(), PidOperationServiceBean.PUBLICIZE, publicizedFiles);
+                });
             }
             if (!pidProvider.publicizeIdentifier(dataset)) {
                 throw new Exception();
@@ -419,6 +495,8 @@ public class FinalizeDatasetPublicationCommand extends AbstractPublishDatasetCom
             dataset.setGlobalIdCreateTime(new Date()); // TODO these two methods should be in the responsibility of the
                                                        // pidProvider.
             dataset.setIdentifierRegistered(true);
+            // (committed along with the files, so the next major version gets them publicized again)
+            ctxt.pidOperations().clearCompleted(dataset.getId(), PidOperationServiceBean.PUBLICIZE);
         } catch (Throwable e) {
             logger.warning("Failed to publicize the identifier " + dataset.getGlobalId().asString()
                     + ", or to publicize a file in the dataset; notifying the user(s), unlocking the dataset");
@@ -300,11 +300,13 @@ public class MoveDataverseCommand extends AbstractVoidCommand {
         
         //REindex datasets linked to moved dv
         if (moved.getDatasetLinkingDataverses() != null && !moved.getDatasetLinkingDataverses().isEmpty()) {
+            List<Dataset> linkedDatasets = new ArrayList<>();
             for (DatasetLinkingDataverse dld : moved.getDatasetLinkingDataverses()) {
                 Dataset linkedDS = ctxt.datasets().find(dld.getDataset().getId());
-                ctxt.index().asyncIndexDataset(linkedDS, true);
+                linkedDatasets.add(linkedDS);
 
             }
+            ctxt.index().asyncIndexDatasetList(linkedDatasets, true);
         }
     }
 }
@@ -48,8 +48,8 @@ public class DDIExporter implements XMLExporter {
             XMLStreamWriter xmlw = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream);
             xmlw.writeStartDocument();
             xmlw.flush();
-            DdiExportUtil.datasetJson2ddi(dataProvider.getDatasetJson(), dataProvider.getDatasetFileDetails(),
-                    outputStream);
+            DdiExportUtil.datasetJson2ddi(dataProvider.getDatasetJsonWithoutFiles(), dataProvider.getDatasetFileDetails(false),
+                    dataProvider.getDatasetFileDetails(true), outputStream);
         } catch (XMLStreamException xse) {
             throw new ExportException("Caught XMLStreamException performing DDI export", xse);
         }
@@ -0,0 +1,120 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where an export all job is at (see {@link ExportAllCheckpointServiceBean}):
+ * the local datasets are gone through in the order of their ids, a chunk at a
+ * time, so that the job can continue after the last chunk that was done.
+ */
+public class ExportAllCheckpoint {
+
+    /**
+     * A job that hasn't made progress for this long is taken to have been
+     * interrupted (e.g. by a restart), and can be resumed. (Longer than for
+     * "index all": a chunk with a few big datasets can take a while to export.)
+     */
+    static final long STALE_AFTER = TimeUnit.MINUTES.toMillis(30);
+
+    private final boolean forceReExport;
+    private final Timestamp startTime;
+    private final Timestamp updateTime;
+    private final Timestamp finishTime;
+    private final long datasetCount;
+    private final long lastDatasetId;
+    private final long datasetsExported;
+    private final long datasetsFailed;
+    private final long datasetsSkipped;
+
+    public ExportAllCheckpoint(boolean forceReExport, Timestamp startTime, Timestamp updateTime, Timestamp finishTime, long datasetCount,
+            long lastDatasetId, long datasetsExported, long datasetsFailed, long datasetsSkipped) {
+        this.forceReExport = forceReExport;
+        this.startTime = startTime;
+        this.updateTime = updateTime;
+        this.finishTime = finishTime;
+        this.datasetCount = datasetCount;
+        this.lastDatasetId = lastDatasetId;
+        this.datasetsExported = datasetsExported;
+        this.datasetsFailed = datasetsFailed;
+        this.datasetsSkipped = datasetsSkipped;
+    }
+
+    /**
+     * @return true for a reExportAll job, false for an exportAll one (which
+     * skips the datasets exported since they were last published)
+     */
+    public boolean isForceReExport() {
+        return forceReExport;
+    }
+
+    public Timestamp getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return when the job last made progress
+     */
+    public Timestamp getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * @return null if the job isn't done
+     */
+    public Timestamp getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * @return how many local datasets there were, when the job started
+     */
+    public long getDatasetCount() {
+        return datasetCount;
+    }
+
+    public long getLastDatasetId() {
+        return lastDatasetId;
+    }
+
+    public long getDatasetsExported() {
+        return datasetsExported;
+    }
+
+    public long getDatasetsFailed() {
+        return datasetsFailed;
+    }
+
+    /**
+     * @return how many datasets didn't need to be exported (not published,
+     * deaccessioned, or already exported)
+     */
+    public long getDatasetsSkipped() {
+        return datasetsSkipped;
+    }
+
+    /**
+     * @return how many datasets were gone through
+     */
+    public long getDatasetsDone() {
+        return datasetsExported + datasetsFailed + datasetsSkipped;
+    }
+
+    public boolean isFinished() {
+        return finishTime != null;
+    }
+
+    /**
+     * @return true if the job is still going, on this server or another one
+     */
+    public boolean isRunning(long now) {
+        return !isFinished() && now - updateTime.getTime() < STALE_AFTER;
+    }
+
+    /**
+     * @return true if starting the job again would continue this one
+     */
+    public boolean canResume(boolean forceReExport) {
+        return !isFinished() && this.forceReExport == forceReExport;
+    }
+}
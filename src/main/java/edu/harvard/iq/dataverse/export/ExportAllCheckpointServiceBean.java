@@ -0,0 +1,158 @@
+package edu.harvard.iq.dataverse.export;
+
+import edu.harvard.iq.dataverse.search.IndexAllCheckpoint;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Keeps the checkpoint of the export all jobs (see
+ * {@link ExportAllServiceBean}), in the exportallcheckpoint table: one row,
+ * for the last job, written in its own transaction after each chunk of
+ * datasets, so that a job interrupted by a restart can continue where it
+ * stopped; on the same server or any other.
+ */
+@Stateless
+public class ExportAllCheckpointServiceBean {
+
+    private static final int ID = 1;
+
+    private static final String COLUMNS = "forcereexport, starttime, updatetime, finishtime, datasetcount, lastdatasetid, "
+            + "datasetsexported, datasetsfailed, datasetsskipped";
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
+    /**
+     * @return the checkpoint of the last job; null if there was none.
+     */
+    public ExportAllCheckpoint find() {
+        List<Object[]> rows = em.createNativeQuery("SELECT " + COLUMNS + " FROM exportallcheckpoint WHERE id = ?1")
+                .setParameter(1, ID)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        return new ExportAllCheckpoint((Boolean) row[0], (Timestamp) row[1], (Timestamp) row[2], (Timestamp) row[3],
+                ((Number) row[4]).longValue(), ((Number) row[5]).longValue(), ((Number) row[6]).longValue(),
+                ((Number) row[7]).longValue(), ((Number) row[8]).longValue());
+    }
+
+    /**
+     * Starts a new job, replacing the checkpoint of the previous one; unless
+     * that one is still running. The check and the claim are one statement,
+     * so that two servers (or two calls on one) can't both start a job.
+     *
+     * @return the checkpoint of the new job; null if another job is running
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ExportAllCheckpoint begin(boolean forceReExport, long datasetCount) {
+        long now = System.currentTimeMillis();
+        int claimed = em.createNativeQuery("INSERT INTO exportallcheckpoint (id, forcereexport, starttime, updatetime, datasetcount) "
+                + "VALUES (?1, ?2, ?3, ?3, ?4) "
+                + "ON CONFLICT (id) DO UPDATE SET forcereexport = EXCLUDED.forcereexport, starttime = EXCLUDED.starttime, "
+                + "updatetime = EXCLUDED.updatetime, finishtime = NULL, datasetcount = EXCLUDED.datasetcount, "
+                + "lastdatasetid = 0, datasetsexported = 0, datasetsfailed = 0, datasetsskipped = 0 "
+                + "WHERE exportallcheckpoint.finishtime IS NOT NULL OR exportallcheckpoint.updatetime < ?5")
+                .setParameter(1, ID)
+                .setParameter(2, forceReExport)
+                .setParameter(3, new Timestamp(now))
+                .setParameter(4, datasetCount)
+                .setParameter(5, new Timestamp(now - ExportAllCheckpoint.STALE_AFTER))
+                .executeUpdate();
+        return claimed == 0 ? null : find();
+    }
+
+    /**
+     * Picks up the interrupted job; unless another server (or another call
+     * on this one) has picked it up already, or it wasn't interrupted after
+     * all. Like {@link #begin}, in one statement.
+     *
+     * @return the checkpoint of the job; null if it's running
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ExportAllCheckpoint resume(boolean forceReExport) {
+        long now = System.currentTimeMillis();
+        int claimed = em.createNativeQuery("UPDATE exportallcheckpoint SET updatetime = ?2 "
+                + "WHERE id = ?1 AND finishtime IS NULL AND forcereexport = ?3 AND updatetime < ?4")
+                .setParameter(1, ID)
+                .setParameter(2, new Timestamp(now))
+                .setParameter(3, forceReExport)
+                .setParameter(4, new Timestamp(now - ExportAllCheckpoint.STALE_AFTER))
+                .executeUpdate();
+        return claimed == 0 ? null : find();
+    }
+
+    /**
+     * Records that the datasets up to lastDatasetId were gone through.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void recordChunk(long lastDatasetId, long exported, long failed, long skipped) {
+        em.createNativeQuery("UPDATE exportallcheckpoint SET lastdatasetid = ?2, datasetsexported = datasetsexported + ?3, "
+                + "datasetsfailed = datasetsfailed + ?4, datasetsskipped = datasetsskipped + ?5, updatetime = ?6 WHERE id = ?1")
+                .setParameter(1, ID)
+                .setParameter(2, lastDatasetId)
+                .setParameter(3, exported)
+                .setParameter(4, failed)
+                .setParameter(5, skipped)
+                .setParameter(6, new Timestamp(System.currentTimeMillis()))
+                .executeUpdate();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void finish() {
+        em.createNativeQuery("UPDATE exportallcheckpoint SET updatetime = ?2, finishtime = ?2 WHERE id = ?1")
+                .setParameter(1, ID)
+                .setParameter(2, new Timestamp(System.currentTimeMillis()))
+                .executeUpdate();
+    }
+
+    /**
+     * @return the progress of the last job, with its throughput (in datasets
+     * gone through per second) and the estimated time left, for the status
+     * API; null if there was no job.
+     */
+    public JsonObjectBuilder getProgress() {
+        ExportAllCheckpoint checkpoint = find();
+        if (checkpoint == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long done = checkpoint.getDatasetsDone();
+        long end = checkpoint.isFinished() ? checkpoint.getFinishTime().getTime() : now;
+        Double datasetsPerSecond = IndexAllCheckpoint.getObjectsPerSecond(done, end - checkpoint.getStartTime().getTime());
+        Long etaSeconds = checkpoint.isFinished() ? Long.valueOf(0)
+                : IndexAllCheckpoint.getEtaSeconds(checkpoint.getDatasetCount() - done, datasetsPerSecond);
+
+        JsonObjectBuilder json = Json.createObjectBuilder()
+                .add("forceReExport", checkpoint.isForceReExport())
+                .add("state", checkpoint.isFinished() ? "done" : checkpoint.isRunning(now) ? "running" : "interrupted")
+                .add("startTime", checkpoint.getStartTime().toInstant().toString())
+                .add("lastUpdateTime", checkpoint.getUpdateTime().toInstant().toString())
+                .add("lastDatasetId", checkpoint.getLastDatasetId())
+                .add("datasets", Json.createObjectBuilder()
+                        .add("total", checkpoint.getDatasetCount())
+                        .add("exported", checkpoint.getDatasetsExported())
+                        .add("failed", checkpoint.getDatasetsFailed())
+                        .add("skipped", checkpoint.getDatasetsSkipped()));
+        if (checkpoint.isFinished()) {
+            json.add("finishTime", checkpoint.getFinishTime().toInstant().toString());
+        }
+        if (datasetsPerSecond != null) {
+            json.add("datasetsPerSecond", Math.round(datasetsPerSecond * 100) / 100.0);
+        }
+        if (etaSeconds != null) {
+            json.add("etaSeconds", etaSeconds);
+            json.add("estimatedCompletionTime", new Timestamp(now + etaSeconds * 1000).toInstant().toString());
+        }
+        return json;
+    }
+}
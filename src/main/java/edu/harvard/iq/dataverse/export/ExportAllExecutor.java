@@ -0,0 +1,150 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Exports many datasets concurrently, for the export all jobs (see
+ * {@link ExportAllServiceBean}): up to a number of workers at the same time
+ * in all, and up to a (per storage driver) number at the same time on the
+ * datasets of each store, since that's where the exports are cached.
+ *
+ * A dataset whose store is busy waits, without holding up the datasets of
+ * the other stores behind it; the datasets are taken from the iterator (so
+ * they can be loaded as they're needed) as long as fewer than the number of
+ * workers are waiting.
+ *
+ * The results are handed to a listener on the calling thread, which can
+ * safely use the database.
+ */
+public class ExportAllExecutor {
+
+    @FunctionalInterface
+    public interface Export<T> {
+        void export(T dataset) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ExportListener<T> {
+        /**
+         * @param failure null if the dataset was exported
+         */
+        void exported(T dataset, Throwable failure);
+    }
+
+    private final ExecutorService executor;
+    private final int workers;
+    private final ToIntFunction<String> parallelismOf;
+
+    /**
+     * @param executor where to run the exports (in the application server, a
+     * managed executor)
+     * @param workers how many datasets to export at the same time
+     * @param parallelismOf how many datasets of a given storage driver to
+     * export at the same time
+     */
+    public ExportAllExecutor(ExecutorService executor, int workers, ToIntFunction<String> parallelismOf) {
+        this.executor = executor;
+        this.workers = Math.max(1, workers);
+        this.parallelismOf = parallelismOf;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Exports all the datasets; a failure is reported to the listener, and
+     * doesn't stop the others.
+     *
+     * @param datasets the datasets to export
+     * @param driverOf the storage driver of a dataset
+     * @param export exports one dataset; runs on the executor's threads
+     * @param listener called on this thread as each dataset is done
+     * @throws InterruptedException if interrupted while waiting for the
+     * workers; the exports still running are cancelled
+     */
+    public <T> void execute(Iterator<T> datasets, Function<T, String> driverOf, Export<T> export, ExportListener<T> listener)
+            throws InterruptedException {
+        ExecutorCompletionService<Result<T>> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<Result<T>>, String> running = new HashMap<>();
+        Map<String, Integer> runningPerDriver = new HashMap<>();
+        Map<String, Integer> parallelism = new HashMap<>();
+        List<T> waiting = new ArrayList<>();
+        List<String> waitingDrivers = new ArrayList<>();
+        try {
+            while (true) {
+                while (running.size() < workers) {
+                    T next = null;
+                    String nextDriver = null;
+                    for (int i = 0; i < waiting.size(); i++) {
+                        String driverId = waitingDrivers.get(i);
+                        if (hasRoom(driverId, runningPerDriver, parallelism)) {
+                            next = waiting.remove(i);
+                            nextDriver = waitingDrivers.remove(i);
+                            break;
+                        }
+                    }
+                    if (next == null) {
+                        if (waiting.size() >= workers || !datasets.hasNext()) {
+                            break;
+                        }
+                        T dataset = datasets.next();
+                        String driverId = driverOf.apply(dataset);
+                        if (!hasRoom(driverId, runningPerDriver, parallelism)) {
+                            waiting.add(dataset);
+                            waitingDrivers.add(driverId);
+                            continue;
+                        }
+                        next = dataset;
+                        nextDriver = driverId;
+                    }
+                    T dataset = next;
+                    running.put(completionService.submit(() -> {
+                        try {
+                            export.export(dataset);
+                            return new Result<>(dataset, null);
+                        } catch (Exception ex) {
+                            return new Result<>(dataset, ex);
+                        }
+                    }), nextDriver);
+                    runningPerDriver.merge(nextDriver, 1, Integer::sum);
+                }
+                if (running.isEmpty()) {
+                    // (nothing is waiting either: with nothing running, every store has room)
+                    return;
+                }
+                Future<Result<T>> done = completionService.take();
+                String driverId = running.remove(done);
+                runningPerDriver.merge(driverId, -1, Integer::sum);
+                Result<T> result;
+                try {
+                    result = done.get();
+                } catch (ExecutionException ex) {
+                    // (only an Error gets here; the export's exceptions are in its result)
+                    throw new IllegalStateException(ex.getCause());
+                }
+                listener.exported(result.dataset(), result.failure());
+            }
+        } finally {
+            running.keySet().forEach(future -> future.cancel(true));
+        }
+    }
+
+    private record Result<T>(T dataset, Throwable failure) {
+    }
+
+    private boolean hasRoom(String driverId, Map<String, Integer> runningPerDriver, Map<String, Integer> parallelism) {
+        int limit = parallelism.computeIfAbsent(driverId, id -> Math.max(1, parallelismOf.applyAsInt(id)));
+        return runningPerDriver.getOrDefault(driverId, 0) < limit;
+    }
+}
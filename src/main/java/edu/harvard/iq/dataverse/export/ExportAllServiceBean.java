@@ -0,0 +1,159 @@
+package edu.harvard.iq.dataverse.export;
+
+import edu.harvard.iq.dataverse.Dataset;
+import edu.harvard.iq.dataverse.DatasetServiceBean;
+import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
+import edu.harvard.iq.dataverse.search.IndexAllCheckpoint;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the export all jobs (exportAll and reExportAll, see
+ * {@link DatasetServiceBean#exportAllDatasets(boolean, boolean)}).
+ *
+ * The local datasets are gone through in the order of their ids, in chunks
+ * of {@value #CHUNK_SIZE}; the datasets of a chunk that need to be exported
+ * are exported concurrently by an {@link ExportAllExecutor}, each in its own
+ * transaction, with the number of workers and the parallelism per storage
+ * driver configured with {@link JvmSettings#EXPORT_WORKERS} and
+ * {@link JvmSettings#FILES_DRIVER_EXPORT_PARALLELISM}. The formats of a
+ * dataset are still created one after the other: they share the data
+ * provider of the dataset (see {@link ExportService#exportAllFormats}), and
+ * some are made from the others.
+ *
+ * After each chunk the progress is checkpointed (see
+ * {@link ExportAllCheckpointServiceBean}), and the throughput logged; if the
+ * last job was interrupted, the next one of the same kind continues after its
+ * last chunk.
+ */
+@Stateless
+public class ExportAllServiceBean {
+
+    private static final Logger logger = Logger.getLogger(ExportAllServiceBean.class.getCanonicalName());
+
+    static final int CHUNK_SIZE = 100;
+    static final int DEFAULT_WORKERS = 4;
+
+    @EJB
+    DatasetServiceBean datasetService;
+
+    @EJB
+    OAIRecordServiceBean recordService;
+
+    @EJB
+    ExportAllCheckpointServiceBean checkpointService;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    /**
+     * Runs an export all job, unless one is already running (on this server
+     * or another one).
+     *
+     * @param forceReExport export all the published datasets, not just the
+     * ones that haven't been exported since they were last published
+     * @param restart start over, even if the last job of the same kind was
+     * interrupted
+     * @param exportLogger where to log the datasets exported, the failures and
+     * the progress
+     */
+    // (no transaction around the whole job: each dataset has its own)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void exportAll(boolean forceReExport, boolean restart, Logger exportLogger) {
+        ExportAllCheckpoint checkpoint = checkpointService.find();
+        if (checkpoint != null && checkpoint.isRunning(System.currentTimeMillis())) {
+            exportLogger.info("An export all job is already running (last progress at " + checkpoint.getUpdateTime() + "); not starting another one.");
+            return;
+        }
+        // (checked again as the job is claimed: another server may have
+        // started, or resumed, one since)
+        boolean resume = !restart && checkpoint != null && checkpoint.canResume(forceReExport);
+        checkpoint = resume ? checkpointService.resume(forceReExport)
+                : checkpointService.begin(forceReExport, datasetService.countLocalDatasets());
+        if (checkpoint == null) {
+            exportLogger.info("An export all job was just started by another server; not starting another one.");
+            return;
+        }
+        if (resume) {
+            exportLogger.info("Resuming the export all job started at " + checkpoint.getStartTime() + " after dataset id " + checkpoint.getLastDatasetId());
+        }
+
+        int workers = JvmSettings.EXPORT_WORKERS.lookupOptional(Integer.class).orElse(DEFAULT_WORKERS);
+        ExportAllExecutor executor = new ExportAllExecutor(executorService, workers,
+                driverId -> JvmSettings.FILES_DRIVER_EXPORT_PARALLELISM.lookupOptional(Integer.class, driverId)
+                        .orElse(JvmSettings.FILES_EXPORT_PARALLELISM.lookupOptional(Integer.class).orElse(workers)));
+        exportLogger.info("Exporting " + (checkpoint.getDatasetCount() - checkpoint.getDatasetsDone()) + " of " + checkpoint.getDatasetCount()
+                + " local datasets with " + executor.getWorkers() + " workers" + (forceReExport ? " (forced re-export)" : ""));
+
+        long startTime = System.currentTimeMillis();
+        long lastDatasetId = checkpoint.getLastDatasetId();
+        long countExported = 0;
+        long countFailed = 0;
+        long countSkipped = 0;
+        List<Long> datasetIds;
+        while (!(datasetIds = datasetService.findLocalDatasetIdsAfter(lastDatasetId, CHUNK_SIZE)).isEmpty()) {
+            // Potentially, there's a godzillion datasets in this Dataverse.
+            // This is why we go through the ids a chunk at a time, and
+            // instantiate a dataset only when a worker is ready for it.
+            Iterator<Dataset> datasets = datasetIds.stream()
+                    .map(datasetId -> findDatasetToExport(datasetId, forceReExport))
+                    .filter(Objects::nonNull)
+                    .iterator();
+            long[] chunkCounts = new long[2];
+            try {
+                executor.execute(datasets, Dataset::getEffectiveStorageDriverId, recordService::exportAllFormatsInNewTransaction, (dataset, failure) -> {
+                    if (failure == null) {
+                        exportLogger.info("Success exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString());
+                        chunkCounts[0]++;
+                    } else {
+                        exportLogger.log(Level.INFO, "Error exporting dataset: " + dataset.getDisplayName() + " " + dataset.getGlobalId().asString()
+                                + "; " + failure.getMessage(), failure);
+                        chunkCounts[1]++;
+                    }
+                });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                exportLogger.warning("The export all job was interrupted; it will resume after dataset id " + lastDatasetId + " when started again.");
+                return;
+            }
+            lastDatasetId = datasetIds.get(datasetIds.size() - 1);
+            long chunkSkipped = datasetIds.size() - chunkCounts[0] - chunkCounts[1];
+            checkpointService.recordChunk(lastDatasetId, chunkCounts[0], chunkCounts[1], chunkSkipped);
+            countExported += chunkCounts[0];
+            countFailed += chunkCounts[1];
+            countSkipped += chunkSkipped;
+
+            long done = countExported + countFailed + countSkipped;
+            Double datasetsPerSecond = IndexAllCheckpoint.getObjectsPerSecond(done, System.currentTimeMillis() - startTime);
+            exportLogger.info("Progress: " + (checkpoint.getDatasetsDone() + done) + " of " + checkpoint.getDatasetCount() + " datasets done, up to id "
+                    + lastDatasetId + (datasetsPerSecond == null ? "" : String.format("; %.2f datasets/s", datasetsPerSecond)));
+        }
+        checkpointService.finish();
+
+        exportLogger.info("Datasets processed: " + (countExported + countFailed));
+        exportLogger.info("Datasets exported successfully: " + countExported);
+        exportLogger.info("Datasets failures: " + countFailed);
+        exportLogger.info("Datasets skipped: " + countSkipped);
+        logger.fine("Export all job finished in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * @return the dataset, if it needs to be exported (see
+     * {@link DatasetServiceBean#isExportDue(Dataset, boolean)}); null if not
+     */
+    private Dataset findDatasetToExport(Long datasetId, boolean forceReExport) {
+        Dataset dataset = datasetService.find(datasetId);
+        return dataset != null && DatasetServiceBean.isExportDue(dataset, forceReExport) ? dataset : null;
+    }
+}
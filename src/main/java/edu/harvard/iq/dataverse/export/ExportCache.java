@@ -0,0 +1,169 @@
+package edu.harvard.iq.dataverse.export;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The bytes of the cached metadata exports (the export_[format].cached aux
+ * objects, see {@link ExportService}) that were read lately, so that serving
+ * them again doesn't take a round trip to the storage (e.g. a GET from S3) for
+ * every OAI GetRecord, export API call or dataset page.
+ *
+ * The entries are keyed by the dataset, its released version and the time
+ * it was last exported, as well as the format; so when another server
+ * exports the dataset again, its new last export time makes this server miss
+ * (and read the new export) rather than serve the old one. The exports
+ * created through this server are also invalidated right away. The size of
+ * the entries is bounded in bytes, and the exports too big to be worth
+ * keeping are read from the storage every time.
+ *
+ * Each entry has a strong ETag (a digest of its bytes), so that the clients
+ * that already have the export don't have to download it again.
+ */
+public class ExportCache {
+
+    /**
+     * @param lastExportTime in ms, 0 if the dataset was never exported
+     */
+    public record Key(long datasetId, long versionId, long lastExportTime, String formatName) {
+    }
+
+    /**
+     * An export, in memory.
+     */
+    public static final class CachedExport {
+        private final byte[] bytes;
+        private final String etag;
+        private final LocalDate readOn;
+
+        CachedExport(byte[] bytes, LocalDate readOn) {
+            this.bytes = bytes;
+            this.etag = digest(bytes);
+            this.readOn = readOn;
+        }
+
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        public int getSize() {
+            return bytes.length;
+        }
+
+        /**
+         * @return the entity tag (without the quotes) of the export
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * @return the day the export was read from the storage (the DDI
+         * export has to be checked for embargoes that ended since, once a day)
+         */
+        public LocalDate getReadOn() {
+            return readOn;
+        }
+    }
+
+    private final Cache<Key, CachedExport> cache;
+    private final int maxEntrySize;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maxSize how many bytes of exports to keep at most; 0 to not cache
+     * anything
+     * @param maxEntrySize how big an export can be, in bytes, to be cached
+     * @param maxAge how long to keep an export, as a safety net for changes
+     * made directly in the database or the storage
+     */
+    public ExportCache(long maxSize, int maxEntrySize, Duration maxAge) {
+        this.maxEntrySize = maxEntrySize;
+        cache = maxSize > 0 && maxEntrySize > 0
+                ? Caffeine.newBuilder().maximumWeight(maxSize).<Key, CachedExport>weigher((key, export) -> export.getSize())
+                        .expireAfterWrite(maxAge).build()
+                : null;
+    }
+
+    public static Key key(long datasetId, Long versionId, Date lastExportTime, String formatName) {
+        return new Key(datasetId, versionId == null ? 0 : versionId, lastExportTime == null ? 0 : lastExportTime.getTime(), formatName);
+    }
+
+    /**
+     * @return the export, if it's cached; null if not
+     */
+    public CachedExport get(Key key) {
+        return cache == null ? null : cache.getIfPresent(key);
+    }
+
+    /**
+     * Reads the export into the cache, if it's small enough.
+     *
+     * @param key see {@link #key}
+     * @param inputStream the export, as read from the storage; consumed (and
+     * closed) unless it's too big, in which case a stream with the whole
+     * export (what was read of it, then the rest) is returned instead.
+     * @return the export, either cached or not; null if inputStream is
+     */
+    public InputStream read(Key key, InputStream inputStream) throws IOException {
+        if (cache == null || inputStream == null) {
+            return inputStream;
+        }
+        long generationBefore = generation.get();
+        byte[] bytes = inputStream.readNBytes(maxEntrySize + 1);
+        if (bytes.length > maxEntrySize) {
+            return new SequenceInputStream(new ByteArrayInputStream(bytes), inputStream);
+        }
+        inputStream.close();
+        CachedExport export = new CachedExport(bytes, LocalDate.now());
+        // if the dataset was exported again while reading, this may already be out of date:
+        if (generation.get() == generationBefore) {
+            cache.put(key, export);
+            if (generation.get() != generationBefore) {
+                cache.invalidate(key);
+            }
+        }
+        return export.getInputStream();
+    }
+
+    /**
+     * Forgets the exports of the dataset in that format; when it's exported
+     * again or its export is deleted.
+     */
+    public void invalidate(long datasetId, String formatName) {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.datasetId() == datasetId && key.formatName().equals(formatName));
+        }
+    }
+
+    /**
+     * Forgets all the exports of the dataset.
+     */
+    public void invalidate(long datasetId) {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.datasetId() == datasetId);
+        }
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes), 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
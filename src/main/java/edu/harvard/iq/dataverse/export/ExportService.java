@@ -32,6 +32,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
@@ -59,10 +60,19 @@ public class ExportService {
     private static ExportService service;
     private ServiceLoader<Exporter> loader;
     private Map<String, Exporter> exporterMap = new HashMap<>();
+    private final ExportCache exportCache;
 
     private static final Logger logger = Logger.getLogger(ExportService.class.getCanonicalName());
 
+    private static final long DEFAULT_CACHE_MAX_SIZE = 64;
+    private static final long DEFAULT_CACHE_MAX_AGE = 3600;
+
     private ExportService() {
+        long cacheMaxSize = JvmSettings.EXPORT_CACHE_MAXSIZE.lookupOptional(Long.class).orElse(DEFAULT_CACHE_MAX_SIZE) * 1024 * 1024;
+        long cacheMaxAge = JvmSettings.EXPORT_CACHE_MAXAGE.lookupOptional(Long.class).orElse(DEFAULT_CACHE_MAX_AGE);
+        // (an export bigger than a tenth of the cache would push out too many others)
+        exportCache = new ExportCache(cacheMaxSize, (int) Math.min(Integer.MAX_VALUE - 1, cacheMaxSize / 10), Duration.ofSeconds(cacheMaxAge));
+
         /*
          * Step 1 - find the EXPORTERS dir and add all jar files there to a class loader
          */
@@ -128,7 +138,14 @@ public class ExportService {
     }
 
     public InputStream getExport(Dataset dataset, String formatName) throws ExportException, IOException {
-        // first we will try to locate an already existing, cached export
+        // first we will try the exports kept in memory:
+        ExportCache.Key cacheKey = getCacheKey(dataset, formatName);
+        ExportCache.CachedExport cachedExport = getFromMemory(cacheKey, formatName);
+        if (cachedExport != null) {
+            return cachedExport.getInputStream();
+        }
+
+        // then we will try to locate an already existing, cached export
         // for this format:
 
         InputStream exportInputStream = getCachedExportFormat(dataset, formatName);
@@ -188,7 +205,7 @@ public class ExportService {
         }
 
         if (exportInputStream != null) {
-            return exportInputStream;
+            return exportCache.read(cacheKey, exportInputStream);
         }
 
         // if it doesn't exist, we'll try to run the export:
@@ -198,7 +215,7 @@ public class ExportService {
         exportInputStream = getCachedExportFormat(dataset, formatName);
 
         if (exportInputStream != null) {
-            return exportInputStream;
+            return exportCache.read(cacheKey, exportInputStream);
         }
 
         // if there is no cached export still - we have to give up and throw
@@ -207,6 +224,32 @@ public class ExportService {
 
     }
 
+    /**
+     * @return the entity tag of the export of the dataset in the format, if
+     * it's kept in memory (see {@link ExportCache}); null if not, e.g. before
+     * it's first read with {@link #getExport(Dataset, String)}, or if it's too
+     * big to be kept.
+     */
+    public String getExportETag(Dataset dataset, String formatName) {
+        ExportCache.CachedExport cachedExport = getFromMemory(getCacheKey(dataset, formatName), formatName);
+        return cachedExport == null ? null : cachedExport.getETag();
+    }
+
+    private static ExportCache.Key getCacheKey(Dataset dataset, String formatName) {
+        DatasetVersion releasedVersion = dataset.getReleasedVersion();
+        return ExportCache.key(dataset.getId(), releasedVersion == null ? null : releasedVersion.getId(), dataset.getLastExportTime(), formatName);
+    }
+
+    private ExportCache.CachedExport getFromMemory(ExportCache.Key cacheKey, String formatName) {
+        ExportCache.CachedExport cachedExport = exportCache.get(cacheKey);
+        // The DDI export has to be checked for embargoes that ended since it
+        // was read (see below); that can only have changed on another day:
+        if (cachedExport != null && formatName.equals(DDIExporter.PROVIDER_NAME) && !cachedExport.getReadOn().equals(LocalDate.now())) {
+            return null;
+        }
+        return cachedExport;
+    }
+
     public String getExportAsString(Dataset dataset, String formatName) {
         InputStream inputStream = null;
         InputStreamReader inp = null;
@@ -290,6 +333,7 @@ public class ExportService {
                 String formatName = e.getFormatName();
                 clearCachedExport(dataset, formatName);
             }
+            exportCache.invalidate(dataset.getId());
 
             dataset.setLastExportTime(null);
         } catch (IOException ex) {
@@ -413,12 +457,14 @@ public class ExportService {
             throw new ExportException("IO Exception thrown before exporting as " + "export_" + format + ".cached");
         } finally {
             IOUtils.closeQuietly(outputStream);
+            exportCache.invalidate(dataset.getId(), format);
         }
 
     }
 
     private void clearCachedExport(Dataset dataset, String format) throws IOException {
         try {
+            exportCache.invalidate(dataset.getId(), format);
             StorageIO<Dataset> storageIO = getStorageIO(dataset);
             storageIO.deleteAuxObject("export_" + format + ".cached");
 
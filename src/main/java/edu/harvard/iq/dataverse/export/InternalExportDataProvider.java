@@ -48,6 +48,14 @@ public class InternalExportDataProvider implements ExportDataProvider {
         return jsonRepresentation;
     }
 
+    @Override
+    public JsonObject getDatasetJsonWithoutFiles() {
+        if (jsonRepresentation != null) {
+            return ExportDataProvider.super.getDatasetJsonWithoutFiles();
+        }
+        return JsonPrinter.jsonAsDatasetDto(dv, false).build();
+    }
+
     @Override
     public JsonObject getDatasetSchemaDotOrg() {
         if (schemaDotOrgRepresentation == null) {
@@ -81,6 +89,13 @@ public class InternalExportDataProvider implements ExportDataProvider {
         return jab.build();
     }
     
+    @Override
+    public Iterable<JsonObject> getDatasetFileDetails(boolean includeVariables) {
+        return () -> dv.getFileMetadatas().stream()
+                .map(fileMetadata -> JsonPrinter.json(fileMetadata.getDataFile(), fileMetadata, true, false, includeVariables).build())
+                .iterator();
+    }
+
     @Override
     public Optional<InputStream> getPrerequisiteInputStream() {
         return Optional.ofNullable(is);
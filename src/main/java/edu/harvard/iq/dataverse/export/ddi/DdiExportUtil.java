@@ -96,7 +96,9 @@ public class DdiExportUtil {
     
     // "short" ddi, without the "<fileDscr>"  and "<dataDscr>/<var>" sections:
     public static void datasetJson2ddi(JsonObject datasetDtoAsJson, OutputStream outputStream) throws XMLStreamException {
-        logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        }
         Gson gson = new Gson();
         DatasetDTO datasetDto = gson.fromJson(datasetDtoAsJson.toString(), DatasetDTO.class);
         dtoddi(datasetDto, outputStream);
@@ -128,7 +130,22 @@ public class DdiExportUtil {
     
     // "full" ddi, with the the "<fileDscr>"  and "<dataDscr>/<var>" sections: 
     public static void datasetJson2ddi(JsonObject datasetDtoAsJson, JsonArray fileDetails, OutputStream outputStream) throws XMLStreamException {
-        logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        Iterable<JsonObject> files = fileDetails.getValuesAs(JsonObject.class);
+        datasetJson2ddi(datasetDtoAsJson, files, files, outputStream);
+    }
+
+    /**
+     * The "full" ddi, going through the details of the files once for each
+     * section, so that they don't all need to be in memory at once (see
+     * ExportDataProvider.getDatasetFileDetails(boolean)); only the
+     * {@code <dataDscr>} section needs their variables. The files in the
+     * dataset json, if any, aren't used.
+     */
+    public static void datasetJson2ddi(JsonObject datasetDtoAsJson, Iterable<JsonObject> fileDetails,
+            Iterable<JsonObject> fileDetailsWithVariables, OutputStream outputStream) throws XMLStreamException {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        }
         Gson gson = new Gson();
         DatasetDTO datasetDto = gson.fromJson(datasetDtoAsJson.toString(), DatasetDTO.class);
         
@@ -143,7 +160,7 @@ public class DdiExportUtil {
         }
         createStdyDscr(xmlw, datasetDto);
         createFileDscr(xmlw, fileDetails);
-        createDataDscr(xmlw, fileDetails);
+        createDataDscr(xmlw, fileDetailsWithVariables);
         createOtherMatsFromFileMetadatas(xmlw, fileDetails);
         xmlw.writeEndElement(); // codeBook
         xmlw.flush();
@@ -1405,12 +1422,11 @@ public class DdiExportUtil {
     // otherMat, or a fileDscr section. 
     // -- L.A. 4.5 
     
-    private static void createOtherMatsFromFileMetadatas(XMLStreamWriter xmlw, JsonArray fileDetails) throws XMLStreamException {
+    private static void createOtherMatsFromFileMetadatas(XMLStreamWriter xmlw, Iterable<JsonObject> fileDetails) throws XMLStreamException {
         // The preferred URL for this dataverse, for cooking up the file access API links:
         String dataverseUrl = SystemConfig.getDataverseSiteUrlStatic();
         
-        for (int i=0;i<fileDetails.size();i++) {
-            JsonObject fileJson = fileDetails.getJsonObject(i);
+        for (JsonObject fileJson : fileDetails) {
             // We'll continue using the scheme we've used before, in DVN2-3: non-tabular files are put into otherMat,
             // tabular ones - in fileDscr sections. (fileDscr sections have special fields for numbers of variables
             // and observations, etc.)
@@ -1519,18 +1535,13 @@ public class DdiExportUtil {
     // plus, the structure of file-level metadata is currently being re-designed, 
     // so we probably should not invest any time into it right now). -- L.A. 4.5
     
-    public static void createDataDscr(XMLStreamWriter xmlw, JsonArray fileDetails) throws XMLStreamException {
-
-        if (fileDetails.isEmpty()) {
-            return;
-        }
+    public static void createDataDscr(XMLStreamWriter xmlw, Iterable<JsonObject> fileDetails) throws XMLStreamException {
 
         boolean tabularData = false;
 
         // we're not writing the opening <dataDscr> tag until we find an actual 
         // tabular datafile.
-        for (int i=0;i<fileDetails.size();i++) {
-            JsonObject fileJson = fileDetails.getJsonObject(i);
+        for (JsonObject fileJson : fileDetails) {
 
             /**
              * Previously (in Dataverse 5.3 and below) the dataDscr section was
@@ -1840,10 +1851,9 @@ public class DdiExportUtil {
 
     }
     
-    private static void createFileDscr(XMLStreamWriter xmlw, JsonArray fileDetails) throws XMLStreamException {
+    private static void createFileDscr(XMLStreamWriter xmlw, Iterable<JsonObject> fileDetails) throws XMLStreamException {
         String dataverseUrl = SystemConfig.getDataverseSiteUrlStatic();
-        for (int i =0;i<fileDetails.size();i++) {
-            JsonObject fileJson = fileDetails.getJsonObject(i);
+        for (JsonObject fileJson : fileDetails) {
             //originalFileFormat is one of several keys that only exist for tabular data
             if (fileJson.containsKey("originalFileFormat")) {
                 JsonObject dt = null;
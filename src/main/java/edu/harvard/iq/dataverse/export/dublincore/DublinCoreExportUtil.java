@@ -24,6 +24,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import jakarta.json.JsonObject;
 import javax.xml.stream.XMLOutputFactory;
@@ -57,7 +58,9 @@ public class DublinCoreExportUtil {
 
         
     public static void datasetJson2dublincore(JsonObject datasetDtoAsJson, OutputStream outputStream, String dcFlavor) throws XMLStreamException {
-        logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        }
         Gson gson = new Gson();
         DatasetDTO datasetDto = gson.fromJson(datasetDtoAsJson.toString(), DatasetDTO.class);
         //try {
@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse.export.openaire;
 
 import java.io.OutputStream;
 import java.util.*;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jakarta.json.JsonObject;
@@ -41,7 +42,9 @@ public class OpenAireExportUtil {
     public static String FunderType = "Funder";
 
     public static void datasetJson2openaire(JsonObject datasetDtoAsJson, OutputStream outputStream) throws XMLStreamException {
-        logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        }
         Gson gson = new Gson();
         DatasetDTO datasetDto = gson.fromJson(datasetDtoAsJson.toString(), DatasetDTO.class);
 
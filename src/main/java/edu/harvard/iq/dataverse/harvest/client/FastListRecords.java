@@ -0,0 +1,393 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandler;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipInputStream;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * The client side of the OAI-PMH ListRecords verb, for harvesting the
+ * records with one request per page of records, instead of a GetRecord
+ * call per record (see {@link FastGetRecord}).
+ *
+ * The responses are parsed as they are read, with an event-driven parser:
+ * {@link #next()} returns each record as soon as it has been read, with its
+ * metadata (the contents of the metadata section, re-serialized as is) saved
+ * in a temp file, and requests the next page, with the resumption token of
+ * the last one, once the records of a page have all been read.
+ */
+public class FastListRecords implements Closeable {
+
+    private static final String USER_AGENT = "XOAI Service Provider v5 (Dataverse)";
+
+    private final String baseURL;
+    private final String metadataPrefix;
+    private final String setName;
+    private final Date fromDate;
+    private final Map<String, String> customHeaders;
+    private final HttpClient httpClient;
+
+    private final XMLInputFactory xmlInputFactory;
+    private final XMLOutputFactory xmlOutputFactory;
+    private final XMLEventFactory xmlEventFactory;
+
+    private InputStream pageStream;
+    private XMLEventReader page;
+    private String resumptionToken;
+    private boolean started;
+    private boolean finished;
+    private int pageCount;
+
+    /**
+     * @param oaiHandler the configured OaiHandler running this harvest (for
+     * the server URL, the metadata prefix, the set, etc.)
+     * @param httpClient jdk HttpClient used to make http requests
+     */
+    public FastListRecords(OaiHandler oaiHandler, HttpClient httpClient) {
+        this.baseURL = oaiHandler.getBaseOaiUrl();
+        this.metadataPrefix = oaiHandler.getMetadataPrefix();
+        this.setName = oaiHandler.getSetName();
+        this.fromDate = oaiHandler.getFromDate();
+        this.customHeaders = oaiHandler.getCustomHeaders();
+        this.httpClient = httpClient;
+
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        xmlOutputFactory = XMLOutputFactory.newInstance();
+        // (the metadata may use prefixes declared on the enclosing OAI
+        // elements; these are declared again in the saved metadata)
+        xmlOutputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+        xmlEventFactory = XMLEventFactory.newInstance();
+    }
+
+    /**
+     * @return the next record, or null when there are no more
+     * @throws IOException if a request failed, or the server responded with
+     * an OAI error (other than "noRecordsMatch", which means there are no
+     * records to harvest), or with a malformed response
+     */
+    public HarvestedRecord next() throws IOException {
+        while (!finished) {
+            if (page == null) {
+                openNextPage();
+            }
+            try {
+                HarvestedRecord record = readRecord();
+                if (record != null) {
+                    return record;
+                }
+            } catch (XMLStreamException ex) {
+                throw new IOException("Malformed ListRecords response (page " + pageCount + "): " + ex.getMessage(), ex);
+            }
+            closePage();
+            if (StringUtils.isEmpty(resumptionToken)) {
+                finished = true;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of pages requested so far
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        closePage();
+    }
+
+    String getRequestURL() {
+        StringBuilder requestURL = new StringBuilder(baseURL);
+        requestURL.append("?verb=ListRecords");
+        if (started) {
+            requestURL.append("&resumptionToken=").append(encode(resumptionToken));
+        } else {
+            requestURL.append("&metadataPrefix=").append(encode(metadataPrefix));
+            if (fromDate != null) {
+                // (the granularity of the harvesting client is seconds)
+                requestURL.append("&from=").append(encode(fromDate.toInstant().truncatedTo(ChronoUnit.SECONDS).toString()));
+            }
+            if (!StringUtils.isEmpty(setName)) {
+                requestURL.append("&set=").append(encode(setName));
+            }
+        }
+        return requestURL.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private void openNextPage() throws IOException {
+        if (httpClient == null) {
+            throw new IOException("Null Http Client, cannot make a ListRecords call to obtain the metadata.");
+        }
+
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(getRequestURL()))
+                .GET()
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", "compress, gzip");
+
+        if (customHeaders != null) {
+            for (String headerName : customHeaders.keySet()) {
+                requestBuilder.header(headerName, customHeaders.get(headerName));
+            }
+        }
+
+        started = true;
+        resumptionToken = null;
+        pageCount++;
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while requesting ListRecords page " + pageCount);
+        }
+
+        if (response.statusCode() != HTTP_OK) {
+            response.body().close();
+            throw new IOException("ListRecords request failed. HTTP error code " + response.statusCode());
+        }
+
+        pageStream = decode(response);
+        try {
+            page = xmlInputFactory.createXMLEventReader(pageStream);
+        } catch (XMLStreamException ex) {
+            closePage();
+            throw new IOException("Failed to parse the ListRecords response: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        InputStream in = response.body();
+        Optional<String> contentEncoding = response.headers().firstValue("Content-Encoding");
+        if (contentEncoding.isPresent()) {
+            if (contentEncoding.get().equals("compress")) {
+                ZipInputStream zis = new ZipInputStream(in);
+                zis.getNextEntry();
+                return zis;
+            } else if (contentEncoding.get().equals("gzip")) {
+                return new GZIPInputStream(in);
+            } else if (contentEncoding.get().equals("deflate")) {
+                return new InflaterInputStream(in);
+            }
+        }
+        return in;
+    }
+
+    private void closePage() {
+        if (page != null) {
+            try {
+                page.close();
+            } catch (XMLStreamException ex) {
+                // seems OK to ignore;
+            }
+            page = null;
+        }
+        if (pageStream != null) {
+            try {
+                pageStream.close();
+            } catch (IOException ex) {
+                // seems OK to ignore;
+            }
+            pageStream = null;
+        }
+    }
+
+    /**
+     * Reads the page up to the end of the next record.
+     *
+     * @return null at the end of the page
+     */
+    private HarvestedRecord readRecord() throws XMLStreamException, IOException {
+        while (page.hasNext()) {
+            XMLEvent event = page.nextEvent();
+            if (!event.isStartElement()) {
+                continue;
+            }
+            StartElement element = event.asStartElement();
+            String name = element.getName().getLocalPart();
+            if (name.equals("error")) {
+                String errorCode = getAttribute(element, "code");
+                String errorMessageText = page.getElementText();
+                if ("noRecordsMatch".equals(errorCode)) {
+                    // (nothing new since the last harvest)
+                    return null;
+                }
+                throw new IOException("ListRecords error code: " + errorCode + "; ListRecords error message: " + errorMessageText);
+            } else if (name.equals("record")) {
+                return processRecord();
+            } else if (name.equals("resumptionToken")) {
+                resumptionToken = page.getElementText().trim();
+            }
+        }
+        return null;
+    }
+
+    private HarvestedRecord processRecord() throws XMLStreamException, IOException {
+        String identifier = null;
+        String dateStamp = null;
+        boolean deleted = false;
+        File metadataFile = null;
+        // (the depth of the elements in the record: its header, metadata and
+        // about sections are at 1. Only the header's own identifier and
+        // datestamp are read: the about section, e.g. the provenance of a
+        // record the server harvested from elsewhere, has some of its own.)
+        int depth = 0;
+        boolean inHeader = false;
+        try {
+            while (page.hasNext()) {
+                XMLEvent event = page.nextEvent();
+                if (event.isStartElement()) {
+                    StartElement element = event.asStartElement();
+                    String name = element.getName().getLocalPart();
+                    depth++;
+                    if (depth == 1 && name.equals("header")) {
+                        inHeader = true;
+                        deleted = "deleted".equals(getAttribute(element, "status"));
+                    } else if (depth == 1 && name.equals("metadata")) {
+                        // (up to its end element)
+                        metadataFile = saveMetadata();
+                        depth--;
+                    } else if (inHeader && depth == 2 && name.equals("identifier")) {
+                        identifier = page.getElementText().trim();
+                        depth--;
+                    } else if (inHeader && depth == 2 && name.equals("datestamp")) {
+                        dateStamp = page.getElementText().trim();
+                        depth--;
+                    }
+                } else if (event.isEndElement()) {
+                    if (depth == 0) {
+                        // (the end of the record)
+                        if (identifier == null) {
+                            throw new XMLStreamException("record without an identifier", event.getLocation());
+                        }
+                        HarvestedRecord record = new HarvestedRecord(identifier, parseDateStamp(dateStamp), deleted, metadataFile);
+                        metadataFile = null;
+                        return record;
+                    }
+                    depth--;
+                    if (depth == 0) {
+                        inHeader = false;
+                    }
+                }
+            }
+            throw new XMLStreamException("unexpected end of document in a record");
+        } finally {
+            if (metadataFile != null) {
+                metadataFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Saves the contents of the metadata section (which has just been
+     * started) in a temp file.
+     *
+     * @return the file, or null if the metadata section was empty
+     */
+    private File saveMetadata() throws XMLStreamException, IOException {
+        File metadataFile = File.createTempFile("meta", ".tmp");
+        boolean saved = false;
+        boolean written = false;
+        try (OutputStream out = new FileOutputStream(metadataFile)) {
+            XMLEventWriter writer = xmlOutputFactory.createXMLEventWriter(out, "UTF-8");
+            writer.add(xmlEventFactory.createStartDocument("UTF-8", "1.0"));
+            // (the metadata record may have metadata elements of its own)
+            int depth = 0;
+            while (true) {
+                XMLEvent event = page.nextEvent();
+                if (event.getEventType() == XMLStreamConstants.END_DOCUMENT) {
+                    throw new XMLStreamException("unexpected end of document in the metadata section");
+                } else if (event.isStartElement()) {
+                    depth++;
+                    written = true;
+                } else if (event.isEndElement()) {
+                    if (depth == 0) {
+                        break;
+                    }
+                    depth--;
+                } else if (depth == 0) {
+                    // (the white space around the record, or comments)
+                    continue;
+                }
+                writer.add(event);
+            }
+            writer.add(xmlEventFactory.createEndDocument());
+            writer.close();
+            saved = written;
+        } finally {
+            if (!saved) {
+                metadataFile.delete();
+            }
+        }
+        return saved ? metadataFile : null;
+    }
+
+    private static String getAttribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    /**
+     * @return the datestamp (a day, or a time in UTC), or null if it's
+     * missing or malformed
+     */
+    static Date parseDateStamp(String dateStamp) {
+        if (StringUtils.isEmpty(dateStamp)) {
+            return null;
+        }
+        try {
+            if (dateStamp.length() == 10) {
+                return Date.from(LocalDate.parse(dateStamp).atStartOfDay(ZoneOffset.UTC).toInstant());
+            }
+            return Date.from(Instant.parse(dateStamp));
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
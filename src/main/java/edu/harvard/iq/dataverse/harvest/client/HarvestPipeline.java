@@ -0,0 +1,165 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A bounded producer/consumer pipeline for harvesting: the calling thread
+ * reads the records (from the responses of the remote server, as they
+ * arrive), and hands them over through a bounded queue to a number of
+ * workers, which retrieve their metadata if needed, and import them. So the
+ * requests to the remote server, the parsing of the responses, and the
+ * imports (each committed in its own transaction) all overlap.
+ *
+ * Two records with the same key (their OAI identifier) are never processed
+ * at the same time; the second one waits until the first one is done.
+ *
+ * @param <T> the records
+ */
+public class HarvestPipeline<T> {
+
+    @FunctionalInterface
+    public interface Source<T> {
+        /**
+         * @return the next record, or null when there are no more
+         */
+        T next() throws Exception;
+    }
+
+    private final Executor executor;
+    private final int workers;
+    private final int queueSize;
+
+    /**
+     * @param executor where to run the workers (in the application server, a
+     * managed executor)
+     * @param workers how many records to process at the same time
+     * @param queueSize how many records may be read ahead of the workers
+     */
+    public HarvestPipeline(Executor executor, int workers, int queueSize) {
+        this.executor = executor;
+        this.workers = Math.max(1, workers);
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Processes all the records, and returns once they are all done. When
+     * reading the records fails (or is stopped), the records read so far are
+     * still processed, then the exception is thrown.
+     *
+     * @param source reads the records; called on this thread
+     * @param keyOf the key of a record
+     * @param processor processes a record; called on the workers' threads,
+     * and expected to handle (and record) its own failures
+     * @throws Exception what the source threw; or else the first exception
+     * the processor didn't handle
+     */
+    public void run(Source<T> source, Function<T, Object> keyOf, Consumer<T> processor) throws Exception {
+        BlockingQueue<Item<T>> queue = new ArrayBlockingQueue<>(queueSize);
+        Set<Object> inProgress = new HashSet<>();
+        AtomicReference<Throwable> processorFailure = new AtomicReference<>();
+
+        int started = 0;
+        CountDownLatch done = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        Item<T> item;
+                        while ((item = queue.take()) != Item.END) {
+                            try {
+                                processor.accept(item.record());
+                            } catch (Throwable ex) {
+                                // (so that this worker goes on)
+                                processorFailure.compareAndSet(null, ex);
+                            } finally {
+                                synchronized (inProgress) {
+                                    inProgress.remove(item.key());
+                                    inProgress.notifyAll();
+                                }
+                            }
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+                started++;
+            } catch (RejectedExecutionException ex) {
+                if (started == 0) {
+                    throw ex;
+                }
+                // (fewer workers, then)
+                done.countDown();
+            }
+        }
+
+        try {
+            T record;
+            while ((record = source.next()) != null) {
+                Object key = keyOf.apply(record);
+                synchronized (inProgress) {
+                    while (inProgress.contains(key)) {
+                        inProgress.wait();
+                    }
+                    inProgress.add(key);
+                }
+                queue.put(new Item<>(record, key));
+            }
+        } finally {
+            // (the records already read are still processed, even if this
+            // thread is interrupted)
+            boolean interrupted = Thread.interrupted();
+            int ended = 0;
+            while (ended < started) {
+                try {
+                    queue.put(Item.end());
+                    ended++;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Throwable failure = processorFailure.get();
+        if (failure instanceof Error error) {
+            throw error;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private record Item<T>(T record, Object key) {
+        @SuppressWarnings("rawtypes")
+        static final Item END = new Item<>(null, null);
+
+        @SuppressWarnings("unchecked")
+        static <T> Item<T> end() {
+            return END;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import java.io.File;
+import java.util.Date;
+
+/**
+ * A record to be harvested: its OAI header and, when it came with a
+ * ListRecords response, its metadata, saved in a temp file. Without one
+ * (from ListIdentifiers), the metadata is retrieved with a GetRecord call
+ * when the record is processed.
+ *
+ * @param identifier the OAI identifier
+ * @param dateStamp the datestamp of the record
+ * @param deleted whether the header has the status "deleted"
+ * @param metadataFile the metadata (the contents of the metadata section),
+ * or null
+ */
+public record HarvestedRecord(String identifier, Date dateStamp, boolean deleted, File metadataFile) {
+}
@@ -15,6 +15,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -27,6 +28,7 @@ import jakarta.ejb.EJB;
 import jakarta.ejb.EJBException;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.Timer;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.inject.Named;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -40,6 +42,7 @@ import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandler;
 import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandlerException;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.InputStream;
@@ -80,6 +83,8 @@ public class HarvesterServiceBean {
     EjbDataverseEngine engineService;
     @EJB
     IndexServiceBean indexService;
+    @Resource
+    ManagedExecutorService executorService;
     
     private static final Logger logger = Logger.getLogger("edu.harvard.iq.dataverse.harvest.client.HarvesterServiceBean");
     private static final SimpleDateFormat logFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss");
@@ -88,6 +93,7 @@ public class HarvesterServiceBean {
     public static final String HARVEST_RESULT_FAILED="failed";
     public static final String DATAVERSE_PROPRIETARY_METADATA_FORMAT="dataverse_json";
     public static final String DATAVERSE_PROPRIETARY_METADATA_API="/api/datasets/export?exporter="+DATAVERSE_PROPRIETARY_METADATA_FORMAT+"&persistentId=";
+    private static final int DEFAULT_HARVEST_WORKERS = 4;
 
     public HarvesterServiceBean() {
 
@@ -155,9 +161,10 @@ public class HarvesterServiceBean {
         PrintWriter importCleanupLog = new PrintWriter(new FileWriter(System.getProperty("com.sun.aas.instanceRoot") + File.separator + "logs/harvest_cleanup_" + harvestingClientConfig.getName() + "_" + logTimestamp + ".txt"));
         
         
-        List<Long> harvestedDatasetIds = new ArrayList<>();
-        List<String> failedIdentifiers = new ArrayList<>();
-        List<String> deletedIdentifiers = new ArrayList<>();
+        // (added to by the workers of the harvest pipeline)
+        List<Long> harvestedDatasetIds = Collections.synchronizedList(new ArrayList<>());
+        List<String> failedIdentifiers = Collections.synchronizedList(new ArrayList<>());
+        List<String> deletedIdentifiers = Collections.synchronizedList(new ArrayList<>());
         
         Date harvestStartTime = new Date();
         
@@ -230,32 +237,67 @@ public class HarvesterServiceBean {
         // We will use this jdk http client to make direct calls to the remote 
         // OAI (or remote Dataverse API) to obtain the metadata records 
         httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
+        final HttpClient client = httpClient;
+        
+        // The records are read on this thread, and processed (retrieved, if 
+        // needed, and imported) by the workers of the pipeline, so that the 
+        // requests to the remote server and the imports overlap. 
+        String clientName = harvestingClient.getName();
+        int workers = JvmSettings.HARVEST_CLIENT_WORKERS.lookupOptional(Integer.class, clientName)
+                .orElse(JvmSettings.HARVEST_WORKERS.lookupOptional(Integer.class).orElse(DEFAULT_HARVEST_WORKERS));
+        HarvestPipeline<HarvestedRecord> pipeline = new HarvestPipeline<>(executorService, workers, workers * 2);
+        
+        // With ListRecords, the metadata records come with the responses, a 
+        // page at a time; otherwise, ListIdentifiers lists them, and each one 
+        // is retrieved with a separate GetRecord call (by the workers). The 
+        // proprietary Dataverse metadata can only be retrieved one record at 
+        // a time, from the native API of the remote server. 
+        boolean listRecords = !DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())
+                && JvmSettings.HARVEST_CLIENT_LIST_RECORDS.lookupOptional(Boolean.class, clientName)
+                        .orElse(JvmSettings.HARVEST_LIST_RECORDS.lookupOptional(Boolean.class).orElse(true));
+        hdLogger.log(Level.INFO, "Harvesting with " + (listRecords ? "ListRecords" : "ListIdentifiers/GetRecord") + ", " + pipeline.getWorkers() + " workers");
         
+        FastListRecords listedRecords = null;
         try {
-            for (Iterator<Header> idIter = oaiHandler.runListIdentifiers(); idIter.hasNext();) {
-                // Before each iteration, check if this harvesting job needs to be aborted:
+            HarvestPipeline.Source<HarvestedRecord> source;
+            if (listRecords) {
+                listedRecords = oaiHandler.runListRecords(httpClient);
+                source = listedRecords::next;
+            } else {
+                Iterator<Header> idIter = oaiHandler.runListIdentifiers();
+                source = () -> {
+                    if (!idIter.hasNext()) {
+                        return null;
+                    }
+                    Header h = idIter.next();
+                    return new HarvestedRecord(h.getIdentifier(), Date.from(h.getDatestamp()), h.isDeleted(), null);
+                };
+            }
+            
+            pipeline.run(() -> {
+                // Before each record, check if this harvesting job needs to be aborted:
                 if (checkIfStoppingJob(harvestingClient)) {
                     throw new StopHarvestException("Harvesting stopped by external request");
                 }
-
-                Header h = idIter.next();
-                String identifier = h.getIdentifier();
-                Date dateStamp = Date.from(h.getDatestamp());
+                return source.next();
+            }, HarvestedRecord::identifier, record -> {
+                String identifier = record.identifier();
+                Date dateStamp = record.dateStamp();
                 
                 hdLogger.info("processing identifier: " + identifier + ", date: " + dateStamp);
                 
-                if (h.isDeleted()) {
-                    hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListIdentifiers.");
-
+                if (record.deleted()) {
+                    hdLogger.info("Deleting harvesting dataset for " + identifier + ", per " + (listRecords ? "ListRecords." : "ListIdentifiers."));
+                    
                     deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
-                    continue;
+                    return;
                 }
-
+                
                 MutableBoolean getRecordErrorOccurred = new MutableBoolean(false);
-
-                // Retrieve and process this record with a separate GetRecord call:
                 
-                Long datasetId = processRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, identifier, getRecordErrorOccurred, deletedIdentifiers, dateStamp, httpClient);
+                // Retrieve (unless already listed) and process this record:
+                
+                Long datasetId = processRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, identifier, record.metadataFile(), getRecordErrorOccurred, deletedIdentifiers, dateStamp, client);
                 
                 if (datasetId != null) {
                     harvestedDatasetIds.add(datasetId);
@@ -266,25 +308,42 @@ public class HarvesterServiceBean {
                     //can be uncommented out for testing failure handling:
                     //throw new IOException("Exception occured, stopping harvest");
                 }
-            }
+            });
         } catch (OaiHandlerException e) {
-            throw new IOException("Failed to run ListIdentifiers: " + e.getMessage());
+            throw new IOException("Failed to run " + (listRecords ? "ListRecords" : "ListIdentifiers") + ": " + e.getMessage());
+        } catch (IOException | StopHarvestException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while harvesting");
+        } catch (Exception e) {
+            throw new IOException("Failed to harvest the records: " + e.getMessage(), e);
+        } finally {
+            if (listedRecords != null) {
+                hdLogger.log(Level.INFO, "ListRecords pages requested: " + listedRecords.getPageCount());
+                listedRecords.close();
+            }
         }
 
         logCompletedOaiHarvest(hdLogger, harvestingClient);
 
     }    
     
-    private Long processRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, String identifier, MutableBoolean recordErrorOccurred, List<String> deletedIdentifiers, Date dateStamp, HttpClient httpClient) {
+    /**
+     * @param metadataFile the metadata record, if it came with ListRecords; 
+     * otherwise it is retrieved with GetRecord (or the native API)
+     */
+    private Long processRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, String identifier, File metadataFile, MutableBoolean recordErrorOccurred, List<String> deletedIdentifiers, Date dateStamp, HttpClient httpClient) {
         String errMessage = null;
         Dataset harvestedDataset = null;
-        logGetRecord(hdLogger, oaiHandler, identifier);
-        File tempFile = null;
+        File tempFile = metadataFile;
         
         try {
             boolean deleted = false;
             
-            if (DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
+            if (tempFile != null) {
+                // (already retrieved, with ListRecords)
+            } else if (DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
                 // Make direct call to obtain the proprietary Dataverse metadata
                 // in JSON from the remote Dataverse server:
                 String metadataApiUrl = oaiHandler.getProprietaryDataverseMetadataURL(identifier);
@@ -292,6 +351,7 @@ public class HarvesterServiceBean {
                 tempFile = retrieveProprietaryDataverseMetadata(httpClient, metadataApiUrl);
                 
             } else {
+                logGetRecord(hdLogger, oaiHandler, identifier);
                 FastGetRecord record = oaiHandler.runGetRecord(identifier, httpClient);
                 errMessage = record.getErrorMessage();
                 deleted = record.isDeleted();
@@ -306,7 +366,7 @@ public class HarvesterServiceBean {
                 
                 deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger); 
             } else {
-                hdLogger.info("Successfully retrieved GetRecord response.");
+                hdLogger.info(metadataFile != null ? "Successfully retrieved the record with ListRecords." : "Successfully retrieved GetRecord response.");
 
                 PrintWriter cleanupLog;
                 harvestedDataset = importService.doImportHarvestedDataset(dataverseRequest, 
@@ -25,6 +25,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 
@@ -35,6 +37,7 @@ import jakarta.persistence.TemporalType;
  * @author Gustavo Durand
  */
 @Entity
+@Table(indexes = {@Index(columnList="setname, globalid"), @Index(columnList="globalid")})
 public class OAIRecord implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -13,6 +13,7 @@ import io.gdcc.spi.export.ExportException;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -356,6 +357,119 @@ public class OAIRecordServiceBean implements java.io.Serializable {
         }
     }
     
+    /**
+     * Retrieves a single page of the records in the set, sorted by the
+     * global id, for the ListIdentifiers and ListRecords OAI verbs.
+     * When the identifier of the last record on the previous page is known,
+     * the page is looked up with a keyset query (the offset is then ignored);
+     * otherwise with the offset. Either way, only the records on the page are
+     * retrieved from the database.
+     *
+     * @param setName the name of the OAI set (null or empty for the default set)
+     * @param from optional lower bound of the last update time
+     * @param until optional upper bound of the last update time
+     * @param afterGlobalId the global id of the last record on the previous page, or null
+     * @param offset the offset of the page, used when afterGlobalId is null
+     * @param limit the maximum number of records to return
+     * @return the page of records
+     */
+    public List<OAIRecord> findOaiRecordsPageBySetName(String setName, Instant from, Instant until, String afterGlobalId, int offset, int limit) {
+        if (setName == null) {
+            setName = "";
+        }
+
+        String queryString = "SELECT object(h) from OAIRecord h where h.setName = :setName";
+        queryString += afterGlobalId != null ? " and h.globalId > :afterGlobalId" : "";
+        queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
+        queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
+        queryString += " order by h.globalId";
+
+        logger.fine("Query: "+queryString+"; afterGlobalId: "+afterGlobalId+", offset: "+offset+", limit: "+limit);
+
+        TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
+        query.setParameter("setName", setName);
+
+        if (afterGlobalId != null) {
+            query.setParameter("afterGlobalId", afterGlobalId);
+        } else if (offset > 0) {
+            query.setFirstResult(offset);
+        }
+
+        if (from != null) {
+            query.setParameter("from",Date.from(from),TemporalType.TIMESTAMP);
+        }
+
+        if (until != null) {
+            query.setParameter("until",Date.from(until),TemporalType.TIMESTAMP);
+        }
+
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    public int countOaiRecordsBySetName(String setName, Instant from, Instant until) {
+        if (setName == null) {
+            setName = "";
+        }
+
+        String queryString = "SELECT count(h) from OAIRecord h where h.setName = :setName";
+        queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
+        queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
+
+        TypedQuery<Long> query = em.createQuery(queryString, Long.class);
+        query.setParameter("setName", setName);
+
+        if (from != null) {
+            query.setParameter("from",Date.from(from),TemporalType.TIMESTAMP);
+        }
+
+        if (until != null) {
+            query.setParameter("until",Date.from(until),TemporalType.TIMESTAMP);
+        }
+
+        return query.getSingleResult().intValue();
+    }
+
+    /**
+     * Finds the records for the given global ids in the named sets *other*
+     * than the one specified. Used to list all the sets a record belongs to
+     * in the headers of a ListIdentifiers/ListRecords page, without having
+     * to look up every record that is not in the set.
+     *
+     * @param setName the name of the set being harvested
+     * @param globalIds the global ids of the records on the page
+     * @param from optional lower bound of the last update time
+     * @param until optional upper bound of the last update time
+     * @return the records, sorted by the global id
+     */
+    public List<OAIRecord> findOaiRecordsNotInThisSet(String setName, Collection<String> globalIds, Instant from, Instant until) {
+        if (globalIds == null || globalIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (setName == null) {
+            setName = "";
+        }
+
+        String queryString = "SELECT object(h) from OAIRecord h where h.globalId in :globalIds"
+                + " and h.setName is not null and h.setName != '' and h.setName != :setName";
+        queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
+        queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
+        queryString += " order by h.globalId";
+
+        TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
+        query.setParameter("globalIds", globalIds);
+        query.setParameter("setName", setName);
+
+        if (from != null) {
+            query.setParameter("from",Date.from(from),TemporalType.TIMESTAMP);
+        }
+
+        if (until != null) {
+            query.setParameter("until",Date.from(until),TemporalType.TIMESTAMP);
+        }
+
+        return query.getResultList();
+    }
+
     // This method is to only get the records NOT marked as "deleted":
     public List<OAIRecord> findActiveOaiRecordsBySetName(String setName) {
         
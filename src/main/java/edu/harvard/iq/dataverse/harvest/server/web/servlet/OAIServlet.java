@@ -27,6 +27,7 @@ import io.gdcc.spi.export.Exporter;
 import io.gdcc.spi.export.XMLExporter;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
 import edu.harvard.iq.dataverse.harvest.server.OAISetServiceBean;
+import edu.harvard.iq.dataverse.harvest.server.xoai.DataverseResumptionTokenFormat;
 import edu.harvard.iq.dataverse.harvest.server.xoai.DataverseXoaiItemRepository;
 import edu.harvard.iq.dataverse.harvest.server.xoai.DataverseXoaiSetRepository;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
@@ -35,7 +36,6 @@ import edu.harvard.iq.dataverse.util.SystemConfig;
 import io.gdcc.xoai.exceptions.BadVerbException;
 import io.gdcc.xoai.exceptions.OAIException;
 import io.gdcc.xoai.model.oaipmh.Granularity;
-import io.gdcc.xoai.services.impl.SimpleResumptionTokenFormat;
 import org.apache.commons.lang3.StringUtils;
 
 
@@ -116,6 +116,7 @@ public class OAIServlet extends HttpServlet {
     private Context xoaiContext;
     private SetRepository setRepository;
     private ItemRepository itemRepository;
+    private DataverseResumptionTokenFormat resumptionTokenFormat;
     private RepositoryConfiguration repositoryConfiguration;
     private Repository xoaiRepository;
     private DataProvider dataProvider;
@@ -130,7 +131,9 @@ public class OAIServlet extends HttpServlet {
         }
         
         setRepository = new DataverseXoaiSetRepository(setService);
-        itemRepository = new DataverseXoaiItemRepository(recordService, datasetService, SystemConfig.getDataverseSiteUrlStatic());
+        resumptionTokenFormat = new DataverseResumptionTokenFormat();
+        resumptionTokenFormat.withGranularity(Granularity.Second);
+        itemRepository = new DataverseXoaiItemRepository(recordService, datasetService, SystemConfig.getDataverseSiteUrlStatic(), resumptionTokenFormat);
 
         repositoryConfiguration = createRepositoryConfiguration(); 
                                 
@@ -209,7 +212,7 @@ public class OAIServlet extends HttpServlet {
                 .withCompression("gzip")
                 .withCompression("deflate")
                 .withGranularity(Granularity.Lenient)
-                .withResumptionTokenFormat(new SimpleResumptionTokenFormat().withGranularity(Granularity.Second))
+                .withResumptionTokenFormat(resumptionTokenFormat)
                 .withRepositoryName(repositoryName)
                 .withBaseUrl(systemConfig.getDataverseSiteUrl()+"/oai")
                 .withEarliestDate(recordService.getEarliestDate())
@@ -0,0 +1,124 @@
+package edu.harvard.iq.dataverse.harvest.server.xoai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.gdcc.xoai.exceptions.BadResumptionTokenException;
+import io.gdcc.xoai.model.oaipmh.ResumptionToken;
+import io.gdcc.xoai.services.impl.SimpleResumptionTokenFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.logging.Logger;
+
+/**
+ * Extends the standard XOAI resumption token with a "page cursor": the
+ * identifier of the last record served on the previous page, and the
+ * complete list size. This allows the item repository to look up the next
+ * page with a keyset query ("globalId > :lastId order by globalId"), instead
+ * of re-reading the whole set and skipping to the offset on every page.
+ *
+ * The XOAI token value only has room for the offset, set, from, until and
+ * metadata prefix, so the cursor is appended to the standard (base64-encoded)
+ * token after a '.' (a character that's not part of the base64 alphabet).
+ * The cursors are handed between the item repository and this formatter
+ * through a small cache, keyed by the token value. Since the cursor travels
+ * with the token, it does not matter which node of a cluster serves the
+ * next page.
+ *
+ * Tokens without a cursor (i.e., issued by older versions) are still
+ * accepted; the repository falls back to the offset in that case.
+ */
+public class DataverseResumptionTokenFormat extends SimpleResumptionTokenFormat {
+
+    private static final Logger logger = Logger.getLogger(DataverseResumptionTokenFormat.class.getCanonicalName());
+
+    private static final String CURSOR_SEPARATOR = ".";
+    private static final long MAX_CACHED_CURSORS = 10000;
+
+    private final Cache<ResumptionToken.Value, PageCursor> cursors = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_CURSORS)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    public DataverseResumptionTokenFormat() {
+        super();
+    }
+
+    @Override
+    public String format(ResumptionToken.Value value) {
+        String token = super.format(value);
+        PageCursor cursor = cursors.getIfPresent(value);
+
+        if (cursor == null) {
+            return token;
+        }
+        return token + CURSOR_SEPARATOR + cursor.encode();
+    }
+
+    @Override
+    public ResumptionToken.Value parse(String resumptionToken) throws BadResumptionTokenException {
+        if (resumptionToken == null || !resumptionToken.contains(CURSOR_SEPARATOR)) {
+            return super.parse(resumptionToken);
+        }
+
+        int separatorIndex = resumptionToken.lastIndexOf(CURSOR_SEPARATOR);
+        ResumptionToken.Value value = super.parse(resumptionToken.substring(0, separatorIndex));
+        cursors.put(value, PageCursor.decode(resumptionToken.substring(separatorIndex + 1)));
+
+        return value;
+    }
+
+    /**
+     * Called by the item repository once a page has been assembled.
+     *
+     * @param nextValue the value of the token for the next page
+     * @param cursor the cursor to encode in that token
+     */
+    public void rememberCursor(ResumptionToken.Value nextValue, PageCursor cursor) {
+        cursors.put(nextValue, cursor);
+    }
+
+    /**
+     * @param value the value of the token of the page requested
+     * @return the cursor that came with this token, or null if none.
+     */
+    public PageCursor getCursor(ResumptionToken.Value value) {
+        return cursors.getIfPresent(value);
+    }
+
+    public static class PageCursor {
+
+        private final String lastIdentifier;
+        private final int completeListSize;
+
+        public PageCursor(String lastIdentifier, int completeListSize) {
+            this.lastIdentifier = lastIdentifier;
+            this.completeListSize = completeListSize;
+        }
+
+        public String getLastIdentifier() {
+            return lastIdentifier;
+        }
+
+        public int getCompleteListSize() {
+            return completeListSize;
+        }
+
+        String encode() {
+            String cursor = completeListSize + ":" + lastIdentifier;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String encoded) throws BadResumptionTokenException {
+            try {
+                String cursor = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+                int separatorIndex = cursor.indexOf(':');
+                return new PageCursor(cursor.substring(separatorIndex + 1), Integer.parseInt(cursor.substring(0, separatorIndex)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+                logger.fine("Failed to decode the page cursor of a resumption token: " + encoded);
+                throw new BadResumptionTokenException(ex);
+            }
+        }
+    }
+}
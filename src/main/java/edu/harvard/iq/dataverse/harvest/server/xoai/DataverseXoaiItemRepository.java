@@ -13,6 +13,7 @@ import edu.harvard.iq.dataverse.export.ExportService;
 import io.gdcc.spi.export.ExportException;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecord;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
+import edu.harvard.iq.dataverse.harvest.server.xoai.DataverseResumptionTokenFormat.PageCursor;
 import edu.harvard.iq.dataverse.util.StringUtil;
 import io.gdcc.xoai.dataprovider.exceptions.handler.HandlerException;
 import io.gdcc.xoai.dataprovider.exceptions.handler.NoMetadataFormatsException;
@@ -41,11 +42,17 @@ public class DataverseXoaiItemRepository implements ItemRepository {
     private final OAIRecordServiceBean recordService;
     private final DatasetServiceBean datasetService;
     private final String serverUrl; 
+    private final DataverseResumptionTokenFormat resumptionTokenFormat;
 
     public DataverseXoaiItemRepository (OAIRecordServiceBean recordService, DatasetServiceBean datasetService, String serverUrl) {
+        this(recordService, datasetService, serverUrl, null);
+    }
+    
+    public DataverseXoaiItemRepository (OAIRecordServiceBean recordService, DatasetServiceBean datasetService, String serverUrl, DataverseResumptionTokenFormat resumptionTokenFormat) {
         this.recordService = recordService;
         this.datasetService = datasetService;
         this.serverUrl = serverUrl; 
+        this.resumptionTokenFormat = resumptionTokenFormat;
     }
     
     @Override
@@ -124,23 +131,35 @@ public class DataverseXoaiItemRepository implements ItemRepository {
         Instant from = resumptionToken.getFrom();
         Instant until = resumptionToken.getUntil();
         
-        boolean hasMore = false; 
+        // If this is a request for the next page, and the resumption token 
+        // came with the identifier of the last record on the previous page, 
+        // we can look up the page with a keyset query. Otherwise (this is the 
+        // first page, or an old-style token), we'll use the offset:
+        PageCursor cursor = resumptionTokenFormat == null ? null : resumptionTokenFormat.getCursor(resumptionToken);
+        String afterGlobalId = cursor == null ? null : cursor.getLastIdentifier();
         
         logger.fine("calling " + (fullItems ? "getItems" : "getItemIdentifiers")
                 + "; offset=" + offset
+                + ", afterGlobalId=" + afterGlobalId
                 + ", length=" + maxResponseLength
                 + ", setSpec=" + setSpec
                 + ", from=" + from
                 + ", until=" + until);
 
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsBySetName(setSpec, from, until);
+        // One extra record is requested, to find out if there are more pages:
+        List<OAIRecord> oaiRecords = recordService.findOaiRecordsPageBySetName(setSpec, from, until, afterGlobalId, offset, maxResponseLength + 1);
         
         List<DataverseXoaiItem> xoaiItems = new ArrayList<>();
 
         if (oaiRecords != null && !oaiRecords.isEmpty()) {
-            logger.fine("total " + oaiRecords.size() + " records returned");
+            boolean hasMore = oaiRecords.size() > maxResponseLength;
             
-            for (int i = offset; i < offset + maxResponseLength && i < oaiRecords.size(); i++) {
+            // The complete list size is only counted on the first page; it 
+            // is then passed along in the cursor:
+            int completeListSize = cursor != null ? cursor.getCompleteListSize() 
+                    : recordService.countOaiRecordsBySetName(setSpec, from, until);
+            
+            for (int i = 0; i < maxResponseLength && i < oaiRecords.size(); i++) {
                 OAIRecord record = oaiRecords.get(i);
                 DataverseXoaiItem xoaiItem = new DataverseXoaiItem(record);
                 
@@ -154,14 +173,26 @@ public class DataverseXoaiItemRepository implements ItemRepository {
                 xoaiItems.add(xoaiItem);
             }
             
-            // Run a second pass, looking for records in this set that occur
+            // Run a second pass, looking for records on this page that occur
             // in *other* sets. Then we'll add these multiple sets to the 
             // formatted output in the header:
             addExtraSets(xoaiItems, setSpec, from, until);
             
-            hasMore = offset + maxResponseLength < oaiRecords.size();
+            if (hasMore && resumptionTokenFormat != null) {
+                String lastGlobalId = oaiRecords.get(xoaiItems.size() - 1).getGlobalId();
+                resumptionTokenFormat.rememberCursor(resumptionToken.next(xoaiItems.size()), 
+                        new PageCursor(lastGlobalId, completeListSize));
+            }
+            
+            // (the XOAI library only issues the next resumption token if 
+            // the complete list size is greater than the page size; so it 
+            // must account for the new records added since the first page, 
+            // if any)
+            if (hasMore && completeListSize <= offset + xoaiItems.size()) {
+                completeListSize = offset + xoaiItems.size() + 1;
+            }
             
-            ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, oaiRecords.size());
+            ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, completeListSize);
             logger.fine("returning result with " + xoaiItems.size() + " items.");
             return result;
         }
@@ -173,7 +204,13 @@ public class DataverseXoaiItemRepository implements ItemRepository {
         
         List<DataverseXoaiItem> xoaiItems = (List<DataverseXoaiItem>)xoaiItemsList;
         
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsNotInThisSet(setSpec, from, until);
+        List<String> globalIds = new ArrayList<>();
+        for (DataverseXoaiItem xoaiItem : xoaiItems) {
+            globalIds.add(xoaiItem.getIdentifier());
+        }
+        
+        // Only the records for the identifiers on this page are looked up:
+        List<OAIRecord> oaiRecords = recordService.findOaiRecordsNotInThisSet(setSpec, globalIds, from, until);
         
         if (oaiRecords == null || oaiRecords.isEmpty()) {
             return;
@@ -24,10 +24,12 @@ import edu.harvard.iq.dataverse.*;
 import edu.harvard.iq.dataverse.authorization.AuthenticationServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.util.BundleUtil;
+import edu.harvard.iq.dataverse.util.FileUtil;
 
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 import jakarta.ejb.ActivationConfigProperty;
 import jakarta.ejb.EJB;
@@ -58,6 +60,7 @@ public class IngestMessageBean implements MessageListener {
     @EJB DatasetServiceBean datasetService;
     @EJB DataFileServiceBean datafileService;
     @EJB IngestServiceBean ingestService;
+    @EJB IngestSchedulerServiceBean ingestSchedulerService;
     @EJB UserNotificationServiceBean userNotificationService;
     @EJB AuthenticationServiceBean authenticationServiceBean;
 
@@ -88,74 +91,60 @@ public class IngestMessageBean implements MessageListener {
 
             authenticatedUser = authenticationServiceBean.findByID(ingestMessage.getAuthenticatedUserId());
 
-            Iterator<Long> iter = ingestMessage.getFileIds().iterator();
-            Long datafile_id = null;
+            List<DataFile> dataFiles = new ArrayList<>();
+            for (Long datafile_id : ingestMessage.getFileIds()) {
+                DataFile datafile = datafileService.find(datafile_id);
+                if (datafile != null) {
+                    dataFiles.add(datafile);
+                } else {
+                    logger.warning("Datafile id " + datafile_id + " to be ingested no longer exists; skipping.");
+                }
+            }
+
+            // The files are ingested in parallel (bounded on this server, and
+            // smallest first) by the ingest scheduler. The dataset version
+            // UNF is then recalculated once, when they're all done, instead
+            // of by each file's transaction.
+            IngestScheduler scheduler = ingestSchedulerService.getScheduler();
+            boolean parallel = dataFiles.size() > 1 && scheduler.getDatasetParallelism() > 1;
 
-            boolean ingestWithErrors = false;
+            boolean[] ingestWithErrors = {false};
 
             StringBuilder sbIngestedFiles = new StringBuilder();
             sbIngestedFiles.append("<ul>");
-            
-            while (iter.hasNext()) {
-                datafile_id = iter.next();
-
-                logger.fine("Start ingest job;");
-                try {
-
-                    DataFile datafile = datafileService.find(datafile_id);
 
-                    if (ingestService.ingestAsTabular(datafile_id)) {
-                        //Thread.sleep(10000);
+            final IngestMessage message = ingestMessage;
+            try {
+                scheduler.ingestAll(dataFiles, DataFile::getFilesize, IngestMessageBean::ingestedPathName, datafile -> {
+                    logger.fine("Start ingest job;");
+                    return ingestService.ingestAsTabular(datafile.getId(), !parallel);
+                }, (datafile, successful, failure) -> {
+                    if (failure != null) {
+                        ingestWithErrors[0] = true;
+                        recordIngestFailure(message, datafile.getId(), failure, sbIngestedFiles);
+                    } else if (successful) {
                         logger.fine("Finished ingest job;");
                         // We used to list the successfully ingested files in the "success"
                         // and "mixed success and failure" emails. Now we never list successfully
                         // ingested files so this line is commented out.
                         // sbIngestedFiles.append(String.format("<li>%s</li>", datafile.getCurrentName()));
                     } else {
-                        logger.warning("Error occurred during ingest job for file id " + datafile_id + "!");
+                        logger.warning("Error occurred during ingest job for file id " + datafile.getId() + "!");
                         sbIngestedFiles.append(String.format("<li>%s</li>", datafile.getCurrentName()));
-                        ingestWithErrors = true;
+                        ingestWithErrors[0] = true;
                     }
+                });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                logger.warning("Interrupted while waiting for the ingest of the files of dataset id " + ingestMessage.getDatasetId());
+                ingestWithErrors[0] = true;
+            }
 
+            if (parallel) {
+                try {
+                    ingestService.recalculateLatestVersionUNF(ingestMessage.getDatasetId());
                 } catch (Exception ex) {
-                    //ex.printStackTrace();
-                    // TODO: 
-                    // this solution is working - but it would be cleaner to instead
-                    // make sure that all the exceptions are interrupted and appropriate
-                    // action taken still on the ingest service side. 
-                    // -- L.A. Aug. 13 2014; 
-                    logger.info("Unknown exception occurred  during ingest (supressed stack trace); re-setting ingest status.");
-                    if (datafile_id != null) {
-                        logger.fine("looking up datafile for id " + datafile_id);
-                        DataFile datafile = datafileService.find(datafile_id);
-                        if (datafile != null) {
-
-                            ingestWithErrors = true;
-
-                            sbIngestedFiles.append(String.format("<li>%s</li>", datafile.getCurrentName()));
-
-                            datafile.SetIngestProblem();
-                            IngestReport errorReport = new IngestReport();
-                            errorReport.setFailure();
-                            if (ex.getMessage() != null) {
-                                errorReport.setReport(BundleUtil.getStringFromBundle("file.ingest.saveFailed.detail.message") + ex.getMessage());
-                            } else {
-                                errorReport.setReport(BundleUtil.getStringFromBundle("file.ingest.saveFailed.message"));
-                            }
-                            errorReport.setDataFile(datafile);
-                            datafile.setIngestReport(errorReport);
-                            datafile.setDataTables(null);
-
-                            logger.info("trying to save datafile and the failed ingest report, id=" + datafile_id);
-                            datafile = datafileService.save(datafile);
-
-                            if (ingestMessage.getDatasetId() != null) {
-                                //logger.info("attempting to remove dataset lock for dataset " + dataset.getId());
-                                //datasetService.removeDatasetLock(dataset.getId());
-                                ingestService.sendFailNotification(ingestMessage.getDatasetId());
-                            }
-                        }
-                    }
+                    logger.warning("Failed to recalculate the UNF of the dataset id " + ingestMessage.getDatasetId() + " after ingest: " + ex.getMessage());
                 }
             }
 
@@ -164,7 +153,7 @@ public class IngestMessageBean implements MessageListener {
             userNotificationService.sendNotification(
                     authenticatedUser,
                     Timestamp.from(Instant.now()),
-                    !ingestWithErrors ? UserNotification.Type.INGESTCOMPLETED : UserNotification.Type.INGESTCOMPLETEDWITHERRORS,
+                    !ingestWithErrors[0] ? UserNotification.Type.INGESTCOMPLETED : UserNotification.Type.INGESTCOMPLETEDWITHERRORS,
                     ingestMessage.getDatasetId(),
                     sbIngestedFiles.toString(),
                     true
@@ -189,6 +178,51 @@ public class IngestMessageBean implements MessageListener {
             }
         }
     }
- 
-    
+
+    /**
+     * The name (with the folder) that the file will have once ingested.
+     * Two files that would get the same one are not ingested at the same
+     * time, so that the second one is renamed.
+     */
+    private static String ingestedPathName(DataFile datafile) {
+        FileMetadata fileMetadata = datafile.getFileMetadata();
+        return IngestUtil.makePathName(fileMetadata.getDirectoryLabel(), FileUtil.replaceExtension(fileMetadata.getLabel(), "tab"));
+    }
+
+    private void recordIngestFailure(IngestMessage ingestMessage, Long datafile_id, Throwable ex, StringBuilder sbIngestedFiles) {
+        // TODO: 
+        // this solution is working - but it would be cleaner to instead
+        // make sure that all the exceptions are interrupted and appropriate
+        // action taken still on the ingest service side. 
+        // -- L.A. Aug. 13 2014; 
+        logger.info("Unknown exception occurred  during ingest (supressed stack trace); re-setting ingest status.");
+        logger.fine("looking up datafile for id " + datafile_id);
+        DataFile datafile = datafileService.find(datafile_id);
+        if (datafile != null) {
+
+            sbIngestedFiles.append(String.format("<li>%s</li>", datafile.getCurrentName()));
+
+            datafile.SetIngestProblem();
+            IngestReport errorReport = new IngestReport();
+            errorReport.setFailure();
+            if (ex.getMessage() != null) {
+                errorReport.setReport(BundleUtil.getStringFromBundle("file.ingest.saveFailed.detail.message") + ex.getMessage());
+            } else {
+                errorReport.setReport(BundleUtil.getStringFromBundle("file.ingest.saveFailed.message"));
+            }
+            errorReport.setDataFile(datafile);
+            datafile.setIngestReport(errorReport);
+            datafile.setDataTables(null);
+
+            logger.info("trying to save datafile and the failed ingest report, id=" + datafile_id);
+            datafile = datafileService.save(datafile);
+
+            if (ingestMessage.getDatasetId() != null) {
+                //logger.info("attempting to remove dataset lock for dataset " + dataset.getId());
+                //datasetService.removeDatasetLock(dataset.getId());
+                ingestService.sendFailNotification(ingestMessage.getDatasetId());
+            }
+        }
+    }
+
 }
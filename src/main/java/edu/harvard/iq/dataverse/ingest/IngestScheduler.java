@@ -0,0 +1,240 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs the tabular ingests of this server, one task per file: up to a number
+ * of files at the same time in all, and up to a (smaller) number at the same
+ * time of the files of one dataset, i.e. of one {@link IngestMessage}, so
+ * that a big deposit doesn't keep the other datasets waiting.
+ *
+ * The waiting files of all the datasets are started in the order of their
+ * size, so that small files go ahead of the huge ones; but a file doesn't
+ * get overtaken for ever: it only waits behind files queued after it while
+ * they are smaller by more than (by default) a megabyte per second it has
+ * already waited.
+ *
+ * Files of the same dataset with the same conflict key (e.g. the name they
+ * will have once ingested) are not ingested at the same time.
+ *
+ * The results are handed to a listener on the calling thread, which can
+ * safely use the database.
+ */
+public class IngestScheduler {
+
+    /**
+     * How much smaller a file queued later has to be to go first, per
+     * millisecond a file has waited (1 MB per second).
+     */
+    public static final long DEFAULT_BYTES_PER_MILLI = 1000;
+
+    @FunctionalInterface
+    public interface Ingest<T> {
+        /**
+         * @return false if the ingest failed (and that has been recorded)
+         */
+        boolean ingest(T file) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface IngestListener<T> {
+        /**
+         * @param failure what the ingest threw, or null
+         */
+        void ingested(T file, boolean successful, Throwable failure);
+    }
+
+    private static final Comparator<Task<?>> BY_PRIORITY = Comparator.<Task<?>>comparingLong(task -> task.priority)
+            .thenComparingLong(task -> task.sequence);
+
+    private final Executor executor;
+    private final int workers;
+    private final int datasetParallelism;
+    private final long bytesPerMilli;
+    private final LongSupplier clock;
+
+    // (all guarded by this)
+    private final TreeSet<Task<?>> waiting = new TreeSet<>(BY_PRIORITY);
+    private int running;
+    private long sequence;
+
+    /**
+     * @param executor where to run the ingests (in the application server, a
+     * managed executor)
+     * @param workers how many files to ingest at the same time
+     * @param datasetParallelism how many files of one dataset to ingest at
+     * the same time
+     */
+    public IngestScheduler(Executor executor, int workers, int datasetParallelism) {
+        this(executor, workers, datasetParallelism, DEFAULT_BYTES_PER_MILLI, System::currentTimeMillis);
+    }
+
+    IngestScheduler(Executor executor, int workers, int datasetParallelism, long bytesPerMilli, LongSupplier clock) {
+        this.executor = executor;
+        this.workers = Math.max(1, workers);
+        this.datasetParallelism = Math.max(1, Math.min(this.workers, datasetParallelism));
+        this.bytesPerMilli = Math.max(1, bytesPerMilli);
+        this.clock = clock;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getDatasetParallelism() {
+        return datasetParallelism;
+    }
+
+    /**
+     * Ingests the files of one dataset, and returns once they are all done;
+     * a failure is reported to the listener, and doesn't stop the others.
+     *
+     * @param files the files to ingest
+     * @param sizeOf the size of a file
+     * @param conflictKeyOf a key that the file mustn't share with another
+     * file ingested at the same time; may be null
+     * @param ingest ingests one file; runs on the executor's threads
+     * @param listener called on this thread as each file is done
+     * @throws InterruptedException if interrupted while waiting; the files
+     * not started yet are dropped (and not reported to the listener), the
+     * ones being ingested are left to finish
+     */
+    public <T> void ingestAll(List<T> files, ToLongFunction<T> sizeOf, Function<T, Object> conflictKeyOf,
+            Ingest<T> ingest, IngestListener<T> listener) throws InterruptedException {
+        Batch batch = new Batch();
+        List<Task<T>> tasks = new ArrayList<>(files.size());
+        long now = clock.getAsLong();
+        List<Task<?>> startable;
+        synchronized (this) {
+            for (T file : files) {
+                long size = Math.max(0, sizeOf.applyAsLong(file));
+                // (in bytes: the time it was queued at counts for as many as
+                // could have been overtaken since)
+                Task<T> task = new Task<>(batch, file, ingest, conflictKeyOf.apply(file),
+                        now * bytesPerMilli + size, sequence++);
+                tasks.add(task);
+                waiting.add(task);
+            }
+            startable = takeStartable();
+        }
+        start(startable);
+
+        int remaining = tasks.size();
+        try {
+            while (remaining > 0) {
+                @SuppressWarnings("unchecked")
+                Task<T> task = (Task<T>) batch.done.take();
+                remaining--;
+                listener.ingested(task.file, task.successful, task.failure);
+            }
+        } finally {
+            if (remaining > 0) {
+                synchronized (this) {
+                    waiting.removeIf(task -> task.batch == batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the waiting files that can be started now, in order.
+     */
+    private synchronized List<Task<?>> takeStartable() {
+        List<Task<?>> startable = new ArrayList<>();
+        Iterator<Task<?>> iterator = waiting.iterator();
+        while (running < workers && iterator.hasNext()) {
+            Task<?> task = iterator.next();
+            Batch batch = task.batch;
+            if (batch.running >= datasetParallelism
+                    || (task.conflictKey != null && batch.busyKeys.contains(task.conflictKey))) {
+                continue;
+            }
+            iterator.remove();
+            running++;
+            batch.running++;
+            if (task.conflictKey != null) {
+                batch.busyKeys.add(task.conflictKey);
+            }
+            startable.add(task);
+        }
+        return startable;
+    }
+
+    // (not holding the lock, in case the executor runs the task right here)
+    private void start(List<Task<?>> tasks) {
+        for (Task<?> task : tasks) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ex) {
+                task.failure = ex;
+                finished(task);
+            }
+        }
+    }
+
+    private void finished(Task<?> task) {
+        synchronized (this) {
+            running--;
+            task.batch.running--;
+            if (task.conflictKey != null) {
+                task.batch.busyKeys.remove(task.conflictKey);
+            }
+        }
+        task.batch.done.add(task);
+        start(takeStartable());
+    }
+
+    /**
+     * The files of one dataset.
+     */
+    private static class Batch {
+        final BlockingQueue<Task<?>> done = new LinkedBlockingQueue<>();
+        // (guarded by the scheduler)
+        final Set<Object> busyKeys = new HashSet<>();
+        int running;
+    }
+
+    private class Task<T> implements Runnable {
+        final Batch batch;
+        final T file;
+        final Ingest<T> ingest;
+        final Object conflictKey;
+        final long priority;
+        final long sequence;
+        volatile boolean successful;
+        volatile Throwable failure;
+
+        Task(Batch batch, T file, Ingest<T> ingest, Object conflictKey, long priority, long sequence) {
+            this.batch = batch;
+            this.file = file;
+            this.ingest = ingest;
+            this.conflictKey = conflictKey;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            try {
+                successful = ingest.ingest(file);
+            } catch (Throwable ex) {
+                failure = ex;
+            } finally {
+                finished(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Holds the {@link IngestScheduler} of this server, shared by all the
+ * instances of {@link IngestMessageBean}, so that the number of files
+ * ingested at the same time is bounded on the server, not per message.
+ */
+@Singleton
+@Lock(READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class IngestSchedulerServiceBean {
+
+    private static final Logger logger = Logger.getLogger(IngestSchedulerServiceBean.class.getCanonicalName());
+
+    private static final int DEFAULT_WORKERS = 4;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    private IngestScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        int workers = JvmSettings.INGEST_WORKERS.lookupOptional(Integer.class).orElse(DEFAULT_WORKERS);
+        int datasetParallelism = JvmSettings.INGEST_DATASET_PARALLELISM.lookupOptional(Integer.class).orElse(workers);
+        scheduler = new IngestScheduler(executorService, workers, datasetParallelism);
+        logger.fine("Ingesting up to " + scheduler.getWorkers() + " files at the same time, up to "
+                + scheduler.getDatasetParallelism() + " of the same dataset");
+    }
+
+    public IngestScheduler getScheduler() {
+        return scheduler;
+    }
+}
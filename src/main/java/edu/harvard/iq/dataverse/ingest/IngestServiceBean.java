@@ -46,7 +46,10 @@ import edu.harvard.iq.dataverse.dataaccess.DataAccess;
 import edu.harvard.iq.dataverse.dataaccess.DataAccessOption;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.dataaccess.ImageThumbConverter;
+import edu.harvard.iq.dataverse.dataaccess.ThumbnailServiceBean;
 import edu.harvard.iq.dataverse.dataaccess.S3AccessIO;
+import edu.harvard.iq.dataverse.dataaccess.TabularColumnReader;
+import edu.harvard.iq.dataverse.dataaccess.TabularRowIndex;
 import edu.harvard.iq.dataverse.dataaccess.TabularSubsetGenerator;
 import edu.harvard.iq.dataverse.datasetutility.FileExceedsMaxSizeException;
 import static edu.harvard.iq.dataverse.datasetutility.FileSizeChecker.bytesToHumanReadable;
@@ -88,6 +91,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
@@ -154,6 +158,8 @@ public class IngestServiceBean {
     @EJB
     StorageUseServiceBean storageUseService; 
     @EJB
+    ThumbnailServiceBean thumbnailService;
+    @EJB
     SystemConfig systemConfig;
 
     @Resource(lookup = "java:app/jms/queue/ingest")
@@ -553,6 +559,10 @@ public class IngestServiceBean {
             // uploaded on the Create form, we first save the dataset, and 
             // then add the files to it. - L.A. 
             storageUseService.incrementStorageSizeRecursively(dataset.getId(), totalBytesSaved);
+            
+            // Now that the files are in their permanent storage, their 
+            // thumbnails can be generated, in the background:
+            thumbnailService.generateThumbnailsLater(ret);
         }
 
         return ret;
@@ -715,15 +725,86 @@ public class IngestServiceBean {
     }
 
     public void produceSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
+        produceSummaryStatistics(dataFile, generatedTabularFile, true);
+    }
+
+    /**
+     * @param recalculateVersionUnf false when other files of the version are
+     * being ingested at the same time; the version UNF is then recalculated
+     * once they are all done (see {@link #recalculateLatestVersionUNF(Long)})
+     */
+    public void produceSummaryStatistics(DataFile dataFile, File generatedTabularFile, boolean recalculateVersionUnf) throws IOException {
         /*
         logger.info("Skipping summary statistics and UNF.");
          */
-        produceDiscreteNumericSummaryStatistics(dataFile, generatedTabularFile); 
-        produceContinuousSummaryStatistics(dataFile, generatedTabularFile);
-        produceCharacterSummaryStatistics(dataFile, generatedTabularFile);
+        produceColumnSummaryStatistics(dataFile, generatedTabularFile);
         
         recalculateDataFileUNF(dataFile);
-        recalculateDatasetVersionUNF(dataFile.getFileMetadata().getDatasetVersion());
+        if (recalculateVersionUnf) {
+            recalculateDatasetVersionUNF(dataFile.getFileMetadata().getDatasetVersion());
+        }
+    }
+    
+    /**
+     * Calculates the summary statistics and the UNFs for all the variables
+     * of the generated tab file. Same as running the 3 produce*SummaryStatistics
+     * methods below, but reads all the columns in a single pass through the
+     * file (or as few passes as the memory budget allows), instead of re-reading
+     * the whole file for every variable.
+     */
+    public void produceColumnSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
+        List<DataVariable> dataVariables = dataFile.getDataTable().getDataVariables();
+        TabularColumnReader.ColumnType[] columnTypes = new TabularColumnReader.ColumnType[dataVariables.size()];
+        
+        for (int i = 0; i < dataVariables.size(); i++) {
+            DataVariable dataVariable = dataVariables.get(i);
+            if (dataVariable.isIntervalDiscrete() && dataVariable.isTypeNumeric()) {
+                columnTypes[i] = TabularColumnReader.ColumnType.LONG;
+            } else if (dataVariable.isIntervalContinuous()) {
+                // See the note about calculating UNFs from *floats* below. 
+                if ("float".equals(dataVariable.getFormat())) {
+                    columnTypes[i] = TabularColumnReader.ColumnType.FLOAT;
+                } else {
+                    columnTypes[i] = TabularColumnReader.ColumnType.DOUBLE;
+                }
+            } else if (dataVariable.isTypeCharacter()) {
+                columnTypes[i] = TabularColumnReader.ColumnType.STRING;
+            }
+        }
+        
+        long memoryBudget = JvmSettings.INGEST_SUMSTATS_MEMORY_BUDGET.lookupOptional(Long.class)
+                .map(megabytes -> megabytes * 1024L * 1024L)
+                .orElse(Runtime.getRuntime().maxMemory() / 4);
+        
+        TabularColumnReader columnReader = new TabularColumnReader(generatedTabularFile,
+                dataFile.getDataTable().getCaseQuantity().intValue(),
+                dataFile.getDataTable().isStoredWithVariableHeader(),
+                memoryBudget);
+        
+        int passes = columnReader.readColumns(columnTypes, columnVector -> {
+            int i = columnVector.getColumn();
+            switch (columnVector.getColumnType()) {
+                case LONG:
+                    assignContinuousSummaryStatistics(dataVariables.get(i), 
+                            SumStatCalculator.calculateSummaryStatistics(columnVector.getValidValues(), columnVector.getInvalidCount()));
+                    calculateUNF(dataFile, i, columnVector.toLongVector());
+                    break;
+                case FLOAT:
+                    assignContinuousSummaryStatistics(dataVariables.get(i), 
+                            SumStatCalculator.calculateSummaryStatistics(columnVector.getValidValues(), columnVector.getInvalidCount()));
+                    calculateUNF(dataFile, i, columnVector.toFloatVector());
+                    break;
+                case DOUBLE:
+                    assignContinuousSummaryStatistics(dataVariables.get(i), 
+                            SumStatCalculator.calculateSummaryStatistics(columnVector.getValidValues(), columnVector.getInvalidCount()));
+                    calculateUNF(dataFile, i, columnVector.toDoubleVector());
+                    break;
+                default:
+                    calculateUNF(dataFile, i, columnVector.getStringVector());
+            }
+        });
+        
+        logger.fine("Calculated summary statistics and UNFs for " + dataVariables.size() + " variables in " + passes + " pass(es) through the tab file");
     }
     
     public void produceContinuousSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
@@ -922,6 +1003,18 @@ public class IngestServiceBean {
         IngestUtil.recalculateDatasetVersionUNF(version);
     }
 
+    /**
+     * Recalculates the UNF of the latest version of the dataset (the one the
+     * files were ingested into), after its files have been ingested in
+     * parallel.
+     */
+    public void recalculateLatestVersionUNF(Long datasetId) {
+        Dataset dataset = datasetService.find(datasetId);
+        if (dataset != null) {
+            recalculateDatasetVersionUNF(dataset.getLatestVersion());
+        }
+    }
+
     public void sendFailNotification(Long dataset_id) {
         FacesMessage facesMessage = new FacesMessage(BundleUtil.getStringFromBundle("ingest.failed"));
         /* commented out push channel message:
@@ -932,6 +1025,15 @@ public class IngestServiceBean {
     
     
     public boolean ingestAsTabular(Long datafile_id) {
+        return ingestAsTabular(datafile_id, true);
+    }
+
+    /**
+     * @param recalculateVersionUnf false when other files of the dataset are
+     * being ingested at the same time (the version would otherwise be
+     * updated concurrently by all their transactions)
+     */
+    public boolean ingestAsTabular(Long datafile_id, boolean recalculateVersionUnf) {
         DataFile dataFile = fileService.find(datafile_id);
         boolean ingestSuccessful = false;
         boolean forceTypeCheck = false;
@@ -1093,7 +1195,7 @@ public class IngestServiceBean {
                 dataFile.getDataTable().setStoredWithVariableHeader(storingWithVariableHeader);
                 
                 try {
-                    produceSummaryStatistics(dataFile, tabFile);
+                    produceSummaryStatistics(dataFile, tabFile, recalculateVersionUnf);
                     produceFrequencyStatistics(dataFile, tabFile);
                     postIngestTasksSuccessful = true;
                 } catch (IOException postIngestEx) {
@@ -1189,6 +1291,8 @@ public class IngestServiceBean {
                     dataFile = fileService.save(dataFile);
                     logger.fine("saved data file after updating the size");
 
+                    saveTabularRowIndex(dataAccess, tabFile, dataFile.getDataTable().getVarQuantity());
+
                     // delete the temp tab-file:
                     tabFile.delete();
                     /*end of save as backup */
@@ -1236,6 +1340,35 @@ public class IngestServiceBean {
         return inputStream;
     }
 
+    /**
+     * Saves a TabularRowIndex of a wide tab file as an aux file, so that the
+     * columns of subsets can be read without going through the whole rows.
+     * The index is optional: if it can't be produced, subsetting reads the
+     * whole file, so the ingest does not fail.
+     */
+    private void saveTabularRowIndex(StorageIO<DataFile> dataAccess, File tabFile, Long varQuantity) {
+        // Only local files are subset with positional reads:
+        int columnBlockSize = varQuantity == null ? 0 : TabularRowIndex.columnBlockSizeFor(varQuantity.intValue());
+        if (!dataAccess.isLocalFile() || columnBlockSize == 0) {
+            return;
+        }
+        Path indexPath = null;
+        try {
+            indexPath = Files.createTempFile("rowIndex", ".tmp");
+            try (InputStream in = new FileInputStream(tabFile); OutputStream out = Files.newOutputStream(indexPath)) {
+                TabularRowIndex.write(in, tabFile.length(), columnBlockSize, out);
+            }
+            dataAccess.savePathAsAux(indexPath, TabularRowIndex.AUX_TAG);
+            logger.fine("Saved the row index of the tab file as an aux file " + TabularRowIndex.AUX_TAG);
+        } catch (IOException ioex) {
+            logger.warning("Failed to save the row index of the tab file: " + ioex.getMessage());
+        } finally {
+            if (indexPath != null) {
+                indexPath.toFile().delete();
+            }
+        }
+    }
+
     private void restoreIngestedDataFile(DataFile dataFile, TabularDataIngest tabDataIngest, long originalSize, String originalFileName, String originalContentType) {
         dataFile.setDataTables(null);
         if (tabDataIngest != null && tabDataIngest.getDataTable() != null) {
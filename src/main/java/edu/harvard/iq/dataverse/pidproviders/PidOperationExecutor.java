@@ -0,0 +1,207 @@
+package edu.harvard.iq.dataverse.pidproviders;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a PID operation (registering, publicizing, ...) on many objects, e.g.
+ * on all the files of a dataset, with a bounded number of concurrent calls to
+ * the provider, retries and an optional rate limit. Works with any
+ * {@link PidProvider}; the limits are configured per provider:
+ * <ul>
+ * <li>{@link JvmSettings#PID_PROVIDER_PARALLELISM}: how many calls to run at
+ * the same time (per {@link #execute} call)</li>
+ * <li>{@link JvmSettings#PID_PROVIDER_MAX_ATTEMPTS}: how many times to try an
+ * operation that failed</li>
+ * <li>{@link JvmSettings#PID_PROVIDER_MAX_REQUESTS_PER_SECOND}: how many calls
+ * to make per second at most (across all the {@link #execute} calls on this
+ * executor), 0 for no limit</li>
+ * </ul>
+ *
+ * The completed objects are handed to a listener, on the calling thread, in
+ * batches; that's where a caller checkpoints its progress (see
+ * {@link PidOperationServiceBean#recordCompleted}), so that an interrupted
+ * publication doesn't have to start over.
+ */
+public class PidOperationExecutor {
+
+    private static final Logger logger = Logger.getLogger(PidOperationExecutor.class.getCanonicalName());
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final int COMPLETED_BATCH_SIZE = 100;
+    private static final long RETRY_DELAY = 1000;
+
+    /**
+     * An operation on one object (or one {@link PreparedPidCall}).
+     */
+    @FunctionalInterface
+    public interface PidOperation<T> {
+        /**
+         * @return true if it worked; false if it failed and may be retried
+         * (the way {@link PidProvider#publicizeIdentifier(edu.harvard.iq.dataverse.DvObject)} reports
+         * a failed call to the provider)
+         * @throws Exception a failure that is not worth retrying
+         */
+        boolean apply(T item) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface CompletionListener<T> {
+        void completed(List<T> items);
+    }
+
+    /**
+     * The operation failed on {@link #getItem()}, and was given up on.
+     */
+    public static class PidOperationException extends Exception {
+        private final Object item;
+
+        public PidOperationException(Object item, Throwable cause) {
+            super("PID operation failed on " + item, cause);
+            this.item = item;
+        }
+
+        public Object getItem() {
+            return item;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int maxAttempts;
+    private final long retryDelay;
+    private final long permitInterval;
+    private long nextPermit = System.nanoTime();
+
+    /**
+     * @param executor where to run the calls (in the application server, a
+     * managed executor)
+     * @param parallelism how many calls to run at the same time
+     * @param maxAttempts how many times to try each object
+     * @param retryDelay how long (ms) to wait before the first retry; doubled
+     * on every further retry
+     * @param maxRequestsPerSecond 0 for no limit
+     */
+    public PidOperationExecutor(ExecutorService executor, int parallelism, int maxAttempts, long retryDelay, double maxRequestsPerSecond) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelay = retryDelay;
+        this.permitInterval = maxRequestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond) : 0;
+    }
+
+    /**
+     * An executor with the limits configured for the provider.
+     */
+    public static PidOperationExecutor forProvider(PidProvider pidProvider, ExecutorService executor) {
+        String providerId = pidProvider.getId();
+        return new PidOperationExecutor(executor,
+                JvmSettings.PID_PROVIDER_PARALLELISM.lookupOptional(Integer.class, providerId).orElse(DEFAULT_PARALLELISM),
+                JvmSettings.PID_PROVIDER_MAX_ATTEMPTS.lookupOptional(Integer.class, providerId).orElse(DEFAULT_MAX_ATTEMPTS),
+                RETRY_DELAY,
+                JvmSettings.PID_PROVIDER_MAX_REQUESTS_PER_SECOND.lookupOptional(Double.class, providerId).orElse(0.0));
+    }
+
+    /**
+     * Runs the operation on all the objects, stopping at the first one that
+     * can't be done.
+     *
+     * @param items the objects to run the operation on. Since the operation
+     * runs on other threads, these shouldn't be managed entities, whose lazy
+     * relations can only be loaded on the thread of their persistence context;
+     * see {@link PreparedPidCall}.
+     * @param operation the operation; runs on the executor's threads
+     * @param listener called on this thread with the objects the operation
+     * was done on, in batches of up to {@value #COMPLETED_BATCH_SIZE}. Also
+     * called with the objects completed before a failure.
+     * @throws PidOperationException if the operation failed on one of the
+     * objects (with its exception as the cause, if it threw one)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <T> void execute(List<T> items, PidOperation<T> operation, CompletionListener<T> listener)
+            throws PidOperationException, InterruptedException {
+        ExecutorCompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<T>> running = new ArrayList<>();
+        List<T> completed = new ArrayList<>();
+        Iterator<T> pending = items.iterator();
+        try {
+            while (running.size() < parallelism && pending.hasNext()) {
+                running.add(submit(completionService, pending.next(), operation));
+            }
+            while (!running.isEmpty()) {
+                Future<T> done = completionService.take();
+                running.remove(done);
+                try {
+                    completed.add(done.get());
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof PidOperationException pidEx) {
+                        throw pidEx;
+                    }
+                    throw new PidOperationException(null, ex.getCause());
+                }
+                if (completed.size() >= COMPLETED_BATCH_SIZE) {
+                    listener.completed(List.copyOf(completed));
+                    completed.clear();
+                }
+                if (pending.hasNext()) {
+                    running.add(submit(completionService, pending.next(), operation));
+                }
+            }
+        } finally {
+            running.forEach(future -> future.cancel(true));
+            if (!completed.isEmpty()) {
+                listener.completed(List.copyOf(completed));
+            }
+        }
+    }
+
+    private <T> Future<T> submit(ExecutorCompletionService<T> completionService, T item, PidOperation<T> operation) {
+        return completionService.submit(() -> {
+            for (int attempt = 1; ; attempt++) {
+                acquirePermit();
+                boolean success;
+                try {
+                    success = operation.apply(item);
+                } catch (Exception ex) {
+                    throw new PidOperationException(item, ex);
+                }
+                if (success) {
+                    return item;
+                }
+                if (attempt >= maxAttempts) {
+                    logger.warning("PID operation failed on " + item + "; gave up after " + attempt + " attempts");
+                    throw new PidOperationException(item, null);
+                }
+                logger.log(Level.FINE, "PID operation failed on {0} (attempt {1}); retrying", new Object[]{item, attempt});
+                Thread.sleep(retryDelay << (attempt - 1));
+            }
+        });
+    }
+
+    private void acquirePermit() throws InterruptedException {
+        if (permitInterval == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permit = Math.max(now, nextPermit);
+            nextPermit = permit + permitInterval;
+            wait = permit - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package edu.harvard.iq.dataverse.pidproviders;
+
+import edu.harvard.iq.dataverse.DvObject;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Runs PID operations on many objects concurrently (see
+ * {@link PidOperationExecutor}), and keeps the checkpoints that let an
+ * interrupted run pick up where it stopped.
+ *
+ * A checkpoint is a row in pidoperationcheckpoint: the operation was done on
+ * the object, which had the given global id at the time. The rows are
+ * written in their own transactions as the operation progresses, so they
+ * survive the failure (or a crash) of the command running it; and they're
+ * cleared in the command's transaction, once its results are committed
+ * along with it.
+ */
+@Singleton
+@Lock(READ)
+public class PidOperationServiceBean {
+
+    public static final String REGISTER = "register";
+    public static final String PUBLICIZE = "publicize";
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    private final Map<String, PidOperationExecutor> executors = new ConcurrentHashMap<>();
+
+    /**
+     * @return the executor for the operations on the provider; the same one
+     * for every caller, so that its rate limit covers all of them.
+     */
+    public PidOperationExecutor getExecutor(PidProvider pidProvider) {
+        return executors.computeIfAbsent(pidProvider.getId(), providerId -> PidOperationExecutor.forProvider(pidProvider, executorService));
+    }
+
+    /**
+     * @return the ids of the objects of the dataset (the dataset itself, or
+     * its files) the operation was done on, mapped to their global ids at the
+     * time
+     */
+    public Map<Long, String> findCompleted(Long datasetId, String operation) {
+        Map<Long, String> completed = new HashMap<>();
+        List<Object[]> rows = em.createNativeQuery("SELECT dvobject_id, globalid FROM pidoperationcheckpoint WHERE dataset_id = ?1 AND operation = ?2")
+                .setParameter(1, datasetId)
+                .setParameter(2, operation)
+                .getResultList();
+        for (Object[] row : rows) {
+            completed.put(((Number) row[0]).longValue(), (String) row[1]);
+        }
+        return completed;
+    }
+
+    /**
+     * Records that the operation was done on the objects (the ones that
+     * haven't been saved yet can't be, and are skipped), in a new
+     * transaction.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void recordCompleted(Long datasetId, String operation, List<? extends DvObject> dvObjects) {
+        if (datasetId == null) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (DvObject dvObject : dvObjects) {
+            if (dvObject.getId() == null) {
+                continue;
+            }
+            em.createNativeQuery("INSERT INTO pidoperationcheckpoint (dvobject_id, operation, dataset_id, globalid, completiontime) "
+                    + "VALUES (?1, ?2, ?3, ?4, ?5) "
+                    + "ON CONFLICT (dvobject_id, operation) DO UPDATE SET globalid = EXCLUDED.globalid, completiontime = EXCLUDED.completiontime")
+                    .setParameter(1, dvObject.getId())
+                    .setParameter(2, operation)
+                    .setParameter(3, datasetId)
+                    .setParameter(4, dvObject.getGlobalId() == null ? null : dvObject.getGlobalId().asString())
+                    .setParameter(5, now)
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * Removes the checkpoints of the operation, in the caller's transaction.
+     */
+    public void clearCompleted(Long datasetId, String operation) {
+        em.createNativeQuery("DELETE FROM pidoperationcheckpoint WHERE dataset_id = ?1 AND operation = ?2")
+                .setParameter(1, datasetId)
+                .setParameter(2, operation)
+                .executeUpdate();
+    }
+
+    /**
+     * @return true if there's a checkpoint saying the operation was done on
+     * the object, with the global id it has now.
+     */
+    public static boolean isCompleted(Map<Long, String> completed, DvObject dvObject) {
+        String globalId = completed.get(dvObject.getId());
+        return globalId != null && dvObject.getGlobalId() != null && globalId.equals(dvObject.getGlobalId().asString());
+    }
+}
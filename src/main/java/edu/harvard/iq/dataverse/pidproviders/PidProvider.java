@@ -53,7 +53,33 @@ public interface PidProvider {
     String getIdentifier(DvObject dvObject);
     
     boolean publicizeIdentifier(DvObject studyIn);
-    
+
+    /**
+     * Prepares {@link #createIdentifier(DvObject)} for an object whose
+     * identifier is assigned already, so that the call to the provider can be
+     * made on another thread. By default there's nothing to separate: the
+     * provider is called right away, on this thread.
+     */
+    default PreparedPidCall prepareCreateIdentifier(DvObject dvObject) throws Throwable {
+        createIdentifier(dvObject);
+        return new PreparedPidCall(PreparedPidCall.globalIdOf(dvObject), () -> true);
+    }
+
+    /**
+     * Prepares {@link #publicizeIdentifier(DvObject)}, the way
+     * {@link #prepareCreateIdentifier(DvObject)} does. By default the provider
+     * is called right away, on this thread.
+     *
+     * @throws IllegalStateException if the provider was called right away,
+     * and failed
+     */
+    default PreparedPidCall preparePublicizeIdentifier(DvObject dvObject) {
+        if (!publicizeIdentifier(dvObject)) {
+            throw new IllegalStateException("Failed to publicize " + PreparedPidCall.globalIdOf(dvObject));
+        }
+        return new PreparedPidCall(PreparedPidCall.globalIdOf(dvObject), () -> true);
+    }
+
     boolean updateIdentifier(DvObject dvObject);
     
     boolean isGlobalIdUnique(GlobalId globalId);
@@ -0,0 +1,33 @@
+package edu.harvard.iq.dataverse.pidproviders;
+
+import edu.harvard.iq.dataverse.DvObject;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A call to a PID provider about one object, prepared from the object on the
+ * thread that has it (see {@link PidProvider#prepareCreateIdentifier} and
+ * {@link PidProvider#preparePublicizeIdentifier}), so that it can be made on
+ * another thread (see {@link PidOperationExecutor}): it only holds plain
+ * values, never the entity, whose lazy relations can only be loaded on the
+ * thread of its persistence context.
+ *
+ * @param globalId the global id the call is about
+ * @param call makes the call; returns true if it worked, false if it failed
+ * and may be retried
+ */
+public record PreparedPidCall(String globalId, Callable<Boolean> call) {
+
+    public static String globalIdOf(DvObject dvObject) {
+        return dvObject.getGlobalId() == null ? null : dvObject.getGlobalId().asString();
+    }
+
+    public boolean make() throws Exception {
+        return call.call();
+    }
+
+    @Override
+    public String toString() {
+        return globalId;
+    }
+}
@@ -58,20 +58,28 @@ public class DOIDataCiteRegisterService {
      * https://support.datacite.org/docs/mds-api-guide#doi-states
      */
     public String reserveIdentifier(String identifier, Map<String, String> metadata, DvObject dvObject) throws IOException {
-        String retString = "";
-        String xmlMetadata = getMetadataFromDvObject(identifier, metadata, dvObject);
+        return reserveIdentifier(getMetadataFromDvObject(identifier, metadata, dvObject));
+    }
 
-        retString = client.postMetadata(xmlMetadata);
-        
-        return retString;
+    /**
+     * Reserves the identifier with the metadata built already (see
+     * {@link #getMetadataFromDvObject}); doesn't need the DvObject, so it can
+     * be called from any thread.
+     */
+    public String reserveIdentifier(String xmlMetadata) throws IOException {
+        return client.postMetadata(xmlMetadata);
     }
 
     public String registerIdentifier(String identifier, Map<String, String> metadata, DvObject dvObject) throws IOException {
-        String retString = "";
-        String xmlMetadata = getMetadataFromDvObject(identifier, metadata, dvObject);
-        String target = metadata.get("_target");
-        
-        retString = client.postMetadata(xmlMetadata);
+        return registerIdentifier(identifier, getMetadataFromDvObject(identifier, metadata, dvObject), metadata.get("_target"));
+    }
+
+    /**
+     * Registers the identifier with the metadata built already, the way
+     * {@link #reserveIdentifier(String)} does.
+     */
+    public String registerIdentifier(String identifier, String xmlMetadata, String target) throws IOException {
+        String retString = client.postMetadata(xmlMetadata);
         client.postUrl(identifier.substring(identifier.indexOf(":") + 1), target);
 
         return retString;
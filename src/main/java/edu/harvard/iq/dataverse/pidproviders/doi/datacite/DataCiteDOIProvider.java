@@ -16,6 +16,7 @@ import edu.harvard.iq.dataverse.DatasetVersion;
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.FileMetadata;
 import edu.harvard.iq.dataverse.GlobalId;
+import edu.harvard.iq.dataverse.pidproviders.PreparedPidCall;
 import edu.harvard.iq.dataverse.pidproviders.doi.AbstractDOIProvider;
 import jakarta.json.JsonObject;
 
@@ -99,6 +100,31 @@ public class DataCiteDOIProvider extends AbstractDOIProvider {
         }
     }
 
+    /**
+     * Builds the DataCite metadata here, from the object, and leaves only the
+     * request to DataCite for the call.
+     */
+    @Override
+    public PreparedPidCall prepareCreateIdentifier(DvObject dvObject) {
+        if (dvObject.getIdentifier() == null || dvObject.getIdentifier().isEmpty()) {
+            dvObject = generatePid(dvObject);
+        }
+        String identifier = getIdentifier(dvObject);
+        Map<String, String> metadata = getMetadataForCreateIndicator(dvObject);
+        metadata.put("_status", DRAFT);
+        String xmlMetadata = DOIDataCiteRegisterService.getMetadataFromDvObject(identifier, metadata, dvObject);
+        return new PreparedPidCall(PreparedPidCall.globalIdOf(dvObject), () -> {
+            try {
+                String retString = doiDataCiteRegisterService.reserveIdentifier(xmlMetadata);
+                logger.log(Level.FINE, "create DOI identifier retString : " + retString);
+                return true;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Identifier not created: create failed", e);
+                throw e;
+            }
+        });
+    }
+
     @Override
     public Map<String, String> getIdentifierMetadata(DvObject dvObject) {
         logger.log(Level.FINE, "getIdentifierMetadata");
@@ -214,6 +240,33 @@ public class DataCiteDOIProvider extends AbstractDOIProvider {
         }
     }
 
+    /**
+     * Builds the DataCite metadata here, from the object, the way
+     * {@link #prepareCreateIdentifier(DvObject)} does.
+     */
+    @Override
+    public PreparedPidCall preparePublicizeIdentifier(DvObject dvObject) {
+        if (dvObject.getIdentifier() == null || dvObject.getIdentifier().isEmpty()) {
+            dvObject = generatePid(dvObject);
+        }
+        String identifier = getIdentifier(dvObject);
+        Map<String, String> metadata = getUpdateMetadata(dvObject);
+        metadata.put("_status", FINDABLE);
+        metadata.put("datacite.publicationyear", generateYear(dvObject));
+        metadata.put("_target", getTargetUrl(dvObject));
+        String xmlMetadata = DOIDataCiteRegisterService.getMetadataFromDvObject(identifier, metadata, dvObject);
+        String target = metadata.get("_target");
+        return new PreparedPidCall(PreparedPidCall.globalIdOf(dvObject), () -> {
+            try {
+                doiDataCiteRegisterService.registerIdentifier(identifier, xmlMetadata, target);
+                return true;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "modifyMetadata failed: " + e.getMessage(), e);
+                return false;
+            }
+        });
+    }
+
     @Override
     public List<String> getProviderInformation() {
         return List.of(getId(), "https://status.datacite.org");
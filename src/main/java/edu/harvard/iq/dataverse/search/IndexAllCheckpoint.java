@@ -0,0 +1,165 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where an "index all" run of a partition is at (see
+ * {@link IndexAllCheckpointServiceBean}): the dataverses are indexed one by
+ * one, in the order of their ids, then the datasets are added to the
+ * indexing queue, in the order of their ids too; so that the run can continue
+ * after the last of each that was done.
+ */
+public class IndexAllCheckpoint {
+
+    /**
+     * A run that hasn't made progress for this long is taken to have been
+     * interrupted (e.g. by a restart), and can be resumed.
+     */
+    static final long STALE_AFTER = TimeUnit.MINUTES.toMillis(10);
+
+    private final long numPartitions;
+    private final long partitionId;
+    private final boolean skipIndexed;
+    private final Timestamp startTime;
+    private final Timestamp updateTime;
+    private final Timestamp finishTime;
+    private final long dataverseCount;
+    private final long datasetCount;
+    private final long lastDataverseId;
+    private final long lastDatasetId;
+    private final long dataversesIndexed;
+    private final long dataverseFailures;
+    private final long datasetsQueued;
+
+    public IndexAllCheckpoint(long numPartitions, long partitionId, boolean skipIndexed, Timestamp startTime, Timestamp updateTime,
+            Timestamp finishTime, long dataverseCount, long datasetCount, long lastDataverseId, long lastDatasetId,
+            long dataversesIndexed, long dataverseFailures, long datasetsQueued) {
+        this.numPartitions = numPartitions;
+        this.partitionId = partitionId;
+        this.skipIndexed = skipIndexed;
+        this.startTime = startTime;
+        this.updateTime = updateTime;
+        this.finishTime = finishTime;
+        this.dataverseCount = dataverseCount;
+        this.datasetCount = datasetCount;
+        this.lastDataverseId = lastDataverseId;
+        this.lastDatasetId = lastDatasetId;
+        this.dataversesIndexed = dataversesIndexed;
+        this.dataverseFailures = dataverseFailures;
+        this.datasetsQueued = datasetsQueued;
+    }
+
+    public long getNumPartitions() {
+        return numPartitions;
+    }
+
+    public long getPartitionId() {
+        return partitionId;
+    }
+
+    public boolean isSkipIndexed() {
+        return skipIndexed;
+    }
+
+    public Timestamp getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return when the run last made progress
+     */
+    public Timestamp getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * @return when all the dataverses were indexed and all the datasets
+     * queued; null if the run isn't done. (The datasets are indexed later, by
+     * the indexing queue workers.)
+     */
+    public Timestamp getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * @return how many dataverses there were to index, when the run started
+     */
+    public long getDataverseCount() {
+        return dataverseCount;
+    }
+
+    /**
+     * @return how many datasets there were to index, when the run started
+     */
+    public long getDatasetCount() {
+        return datasetCount;
+    }
+
+    public long getLastDataverseId() {
+        return lastDataverseId;
+    }
+
+    public long getLastDatasetId() {
+        return lastDatasetId;
+    }
+
+    public long getDataversesIndexed() {
+        return dataversesIndexed;
+    }
+
+    public long getDataverseFailures() {
+        return dataverseFailures;
+    }
+
+    public long getDatasetsQueued() {
+        return datasetsQueued;
+    }
+
+    public boolean isFinished() {
+        return finishTime != null;
+    }
+
+    /**
+     * @return true if the run is still going, on this server or another one
+     */
+    public boolean isRunning(long now) {
+        return !isFinished() && now - updateTime.getTime() < STALE_AFTER;
+    }
+
+    /**
+     * @return true if starting the run again would continue this one
+     */
+    public boolean canResume(boolean skipIndexed) {
+        return !isFinished() && this.skipIndexed == skipIndexed;
+    }
+
+    /**
+     * @param done how many objects were indexed
+     * @param elapsedMillis in how long
+     * @return how many objects were indexed per second; null if it's too
+     * early to say
+     */
+    public static Double getObjectsPerSecond(long done, long elapsedMillis) {
+        if (done <= 0 || elapsedMillis <= 0) {
+            return null;
+        }
+        return done * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @param remaining how many objects are left to index
+     * @param objectsPerSecond see {@link #getObjectsPerSecond(long, long)}
+     * @return how many seconds it will take to index them, at that rate;
+     * null if it can't be estimated
+     */
+    public static Long getEtaSeconds(long remaining, Double objectsPerSecond) {
+        if (remaining <= 0) {
+            return 0L;
+        }
+        if (objectsPerSecond == null || objectsPerSecond <= 0) {
+            return null;
+        }
+        return (long) Math.ceil(remaining / objectsPerSecond);
+    }
+}
@@ -0,0 +1,225 @@
+package edu.harvard.iq.dataverse.search;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the checkpoints of the "index all" runs (see
+ * {@link IndexBatchServiceBean#indexAllOrSubset(long, long, boolean, boolean)}),
+ * in the indexallcheckpoint table: one row per partition, written in its own
+ * transaction after each dataverse indexed and each chunk of datasets queued,
+ * so that a run interrupted by a restart can continue where it stopped; on
+ * the same server or any other.
+ *
+ * The datasets are indexed by the indexing queue workers (see
+ * {@link IndexQueueProcessingServiceBean}) of all the servers, after the run
+ * queued them; how far along they are is told by their index times.
+ */
+@Stateless
+public class IndexAllCheckpointServiceBean {
+
+    private static final String COLUMNS = "numpartitions, partitionid, skipindexed, starttime, updatetime, finishtime, dataversecount, datasetcount, "
+            + "lastdataverseid, lastdatasetid, dataversesindexed, dataversefailures, datasetsqueued";
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
+    @EJB
+    IndexQueueServiceBean indexQueueService;
+
+    /**
+     * @return the checkpoint of the last run of the partition; null if there
+     * was none.
+     */
+    public IndexAllCheckpoint find(long numPartitions, long partitionId) {
+        List<Object[]> rows = em.createNativeQuery("SELECT " + COLUMNS + " FROM indexallcheckpoint WHERE numpartitions = ?1 AND partitionid = ?2")
+                .setParameter(1, numPartitions)
+                .setParameter(2, partitionId)
+                .getResultList();
+        return rows.isEmpty() ? null : toCheckpoint(rows.get(0));
+    }
+
+    public List<IndexAllCheckpoint> findAll() {
+        List<Object[]> rows = em.createNativeQuery("SELECT " + COLUMNS + " FROM indexallcheckpoint ORDER BY numpartitions, partitionid")
+                .getResultList();
+        List<IndexAllCheckpoint> checkpoints = new ArrayList<>();
+        for (Object[] row : rows) {
+            checkpoints.add(toCheckpoint(row));
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Starts a new run of the partition, replacing the checkpoint of the
+     * previous one; unless that one is still running. The check and the
+     * claim are one statement, so that two servers (or two calls on one)
+     * can't both start a run of the partition.
+     *
+     * @return the checkpoint of the new run; null if another run of the
+     * partition is running
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public IndexAllCheckpoint begin(long numPartitions, long partitionId, boolean skipIndexed, long dataverseCount, long datasetCount) {
+        long now = System.currentTimeMillis();
+        int claimed = em.createNativeQuery("INSERT INTO indexallcheckpoint (numpartitions, partitionid, skipindexed, starttime, updatetime, dataversecount, datasetcount) "
+                + "VALUES (?1, ?2, ?3, ?4, ?4, ?5, ?6) "
+                + "ON CONFLICT (numpartitions, partitionid) DO UPDATE SET skipindexed = EXCLUDED.skipindexed, starttime = EXCLUDED.starttime, "
+                + "updatetime = EXCLUDED.updatetime, finishtime = NULL, dataversecount = EXCLUDED.dataversecount, datasetcount = EXCLUDED.datasetcount, "
+                + "lastdataverseid = 0, lastdatasetid = 0, dataversesindexed = 0, dataversefailures = 0, datasetsqueued = 0 "
+                + "WHERE indexallcheckpoint.finishtime IS NOT NULL OR indexallcheckpoint.updatetime < ?7")
+                .setParameter(1, numPartitions)
+                .setParameter(2, partitionId)
+                .setParameter(3, skipIndexed)
+                .setParameter(4, new Timestamp(now))
+                .setParameter(5, dataverseCount)
+                .setParameter(6, datasetCount)
+                .setParameter(7, new Timestamp(now - IndexAllCheckpoint.STALE_AFTER))
+                .executeUpdate();
+        return claimed == 0 ? null : find(numPartitions, partitionId);
+    }
+
+    /**
+     * Picks up the interrupted run of the partition; unless another server
+     * (or another call on this one) has picked it up already, or it wasn't
+     * interrupted after all. Like {@link #begin}, in one statement.
+     *
+     * @return the checkpoint of the run; null if it's running
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public IndexAllCheckpoint resume(long numPartitions, long partitionId, boolean skipIndexed) {
+        long now = System.currentTimeMillis();
+        int claimed = em.createNativeQuery("UPDATE indexallcheckpoint SET updatetime = ?3 "
+                + "WHERE numpartitions = ?1 AND partitionid = ?2 AND finishtime IS NULL AND skipindexed = ?4 AND updatetime < ?5")
+                .setParameter(1, numPartitions)
+                .setParameter(2, partitionId)
+                .setParameter(3, new Timestamp(now))
+                .setParameter(4, skipIndexed)
+                .setParameter(5, new Timestamp(now - IndexAllCheckpoint.STALE_AFTER))
+                .executeUpdate();
+        return claimed == 0 ? null : find(numPartitions, partitionId);
+    }
+
+    /**
+     * Records that the dataverse was indexed (or failed to be).
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void recordDataverse(long numPartitions, long partitionId, long dataverseId, boolean failed) {
+        em.createNativeQuery("UPDATE indexallcheckpoint SET lastdataverseid = ?3, updatetime = ?4, "
+                + (failed ? "dataversefailures = dataversefailures + 1 " : "dataversesindexed = dataversesindexed + 1 ")
+                + "WHERE numpartitions = ?1 AND partitionid = ?2")
+                .setParameter(1, numPartitions)
+                .setParameter(2, partitionId)
+                .setParameter(3, dataverseId)
+                .setParameter(4, new Timestamp(System.currentTimeMillis()))
+                .executeUpdate();
+    }
+
+    /**
+     * Adds the datasets to the indexing queue, and records it, in the same
+     * transaction: a chunk is either queued and checkpointed, or neither.
+     *
+     * @param datasetIds in ascending order
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void queueDatasets(long numPartitions, long partitionId, List<Long> datasetIds) {
+        if (datasetIds.isEmpty()) {
+            return;
+        }
+        indexQueueService.enqueue(datasetIds, false);
+        em.createNativeQuery("UPDATE indexallcheckpoint SET lastdatasetid = ?3, datasetsqueued = datasetsqueued + ?4, updatetime = ?5 "
+                + "WHERE numpartitions = ?1 AND partitionid = ?2")
+                .setParameter(1, numPartitions)
+                .setParameter(2, partitionId)
+                .setParameter(3, Collections.max(datasetIds))
+                .setParameter(4, datasetIds.size())
+                .setParameter(5, new Timestamp(System.currentTimeMillis()))
+                .executeUpdate();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void finish(long numPartitions, long partitionId) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        em.createNativeQuery("UPDATE indexallcheckpoint SET updatetime = ?3, finishtime = ?3 WHERE numpartitions = ?1 AND partitionid = ?2")
+                .setParameter(1, numPartitions)
+                .setParameter(2, partitionId)
+                .setParameter(3, now)
+                .executeUpdate();
+    }
+
+    /**
+     * @return the progress of the runs, with their throughput (in objects
+     * indexed per second) and the estimated time left, for the status API.
+     */
+    public JsonArrayBuilder getProgress() {
+        long now = System.currentTimeMillis();
+        JsonArrayBuilder progress = Json.createArrayBuilder();
+        for (IndexAllCheckpoint checkpoint : findAll()) {
+            Object[] indexed = (Object[]) em.createNativeQuery("SELECT COUNT(*), MAX(indextime) FROM dvobject "
+                    + "WHERE dtype = 'Dataset' AND MOD(id, ?1) = ?2 AND indextime >= ?3")
+                    .setParameter(1, checkpoint.getNumPartitions())
+                    .setParameter(2, checkpoint.getPartitionId())
+                    .setParameter(3, checkpoint.getStartTime())
+                    .getSingleResult();
+            long datasetsIndexed = Math.min(((Number) indexed[0]).longValue(), checkpoint.getDatasetCount());
+            Timestamp lastDatasetIndexTime = (Timestamp) indexed[1];
+            progress.add(toJson(checkpoint, datasetsIndexed, lastDatasetIndexTime, now));
+        }
+        return progress;
+    }
+
+    private static JsonObjectBuilder toJson(IndexAllCheckpoint checkpoint, long datasetsIndexed, Timestamp lastDatasetIndexTime, long now) {
+        long done = checkpoint.getDataversesIndexed() + checkpoint.getDataverseFailures() + datasetsIndexed;
+        long remaining = checkpoint.getDataverseCount() + checkpoint.getDatasetCount() - done;
+        // once everything is indexed, the rate is the one it was done at:
+        long end = remaining <= 0 && lastDatasetIndexTime != null ? lastDatasetIndexTime.getTime() : now;
+        Double objectsPerSecond = IndexAllCheckpoint.getObjectsPerSecond(done, end - checkpoint.getStartTime().getTime());
+        Long etaSeconds = IndexAllCheckpoint.getEtaSeconds(remaining, objectsPerSecond);
+
+        JsonObjectBuilder json = Json.createObjectBuilder()
+                .add("numPartitions", checkpoint.getNumPartitions())
+                .add("partitionId", checkpoint.getPartitionId())
+                .add("skipIndexed", checkpoint.isSkipIndexed())
+                .add("state", remaining <= 0 ? "done" : checkpoint.isFinished() ? "indexing queued datasets"
+                        : checkpoint.isRunning(now) ? "running" : "interrupted")
+                .add("startTime", checkpoint.getStartTime().toInstant().toString())
+                .add("lastUpdateTime", checkpoint.getUpdateTime().toInstant().toString())
+                .add("dataverses", Json.createObjectBuilder()
+                        .add("total", checkpoint.getDataverseCount())
+                        .add("indexed", checkpoint.getDataversesIndexed())
+                        .add("failed", checkpoint.getDataverseFailures()))
+                .add("datasets", Json.createObjectBuilder()
+                        .add("total", checkpoint.getDatasetCount())
+                        .add("queued", checkpoint.getDatasetsQueued())
+                        .add("indexed", datasetsIndexed));
+        if (checkpoint.isFinished()) {
+            json.add("finishTime", checkpoint.getFinishTime().toInstant().toString());
+        }
+        if (objectsPerSecond != null) {
+            json.add("objectsPerSecond", Math.round(objectsPerSecond * 100) / 100.0);
+        }
+        if (etaSeconds != null) {
+            json.add("etaSeconds", etaSeconds);
+            json.add("estimatedCompletionTime", new Timestamp(now + etaSeconds * 1000).toInstant().toString());
+        }
+        return json;
+    }
+
+    private static IndexAllCheckpoint toCheckpoint(Object[] row) {
+        return new IndexAllCheckpoint(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), (Boolean) row[2],
+                (Timestamp) row[3], (Timestamp) row[4], (Timestamp) row[5], ((Number) row[6]).longValue(), ((Number) row[7]).longValue(),
+                ((Number) row[8]).longValue(), ((Number) row[9]).longValue(), ((Number) row[10]).longValue(),
+                ((Number) row[11]).longValue(), ((Number) row[12]).longValue());
+    }
+}
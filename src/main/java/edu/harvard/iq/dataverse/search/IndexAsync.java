@@ -3,12 +3,16 @@ package edu.harvard.iq.dataverse.search;
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.RoleAssignment;
 import java.util.Collection;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import jakarta.ejb.Asynchronous;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 
+/**
+ * Updates the permissions in Solr after role assignments change. Called once
+ * the transaction that changed them is committed (see
+ * DataverseRoleServiceBean), so there's no need to wait for it here.
+ */
 @Stateless
 public class IndexAsync {
 
@@ -19,24 +23,14 @@ public class IndexAsync {
 
     @Asynchronous
     public void indexRole(RoleAssignment roleAssignment) {
-        try {
-            Thread.sleep(1000); //we wait to ensure a nested native query are up to date
-        } catch (InterruptedException ex) {
-            Logger.getLogger(IndexAsync.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        IndexResponse indexResponse = solrIndexService.indexPermissionsOnSelfAndChildren(roleAssignment.getDefinitionPoint());
+        IndexResponse indexResponse = solrIndexService.updatePermissionsOnSelfAndChildren(roleAssignment.getDefinitionPoint());
         logger.fine("output from indexing operations: " + indexResponse);
     }
     
     @Asynchronous 
     public void indexRoles(Collection<DvObject> dvObjects) {
-        try {
-            Thread.sleep(1000); //we wait to ensure a nested native query are up to date
-        } catch (InterruptedException ex) {
-            Logger.getLogger(IndexAsync.class.getName()).log(Level.SEVERE, null, ex);
-        }
         for (DvObject dvObject : dvObjects) {
-            IndexResponse indexResponse = solrIndexService.indexPermissionsOnSelfAndChildren(dvObject);
+            IndexResponse indexResponse = solrIndexService.updatePermissionsOnSelfAndChildren(dvObject);
             logger.fine("output from permission indexing operations (dvobject " + dvObject.getId() + ": " + indexResponse);
         }
     }
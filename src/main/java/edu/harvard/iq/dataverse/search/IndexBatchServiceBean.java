@@ -15,6 +15,8 @@ import jakarta.ejb.AsyncResult;
 import jakarta.ejb.Asynchronous;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.inject.Named;
 import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
@@ -45,6 +47,11 @@ public class IndexBatchServiceBean {
     DvObjectServiceBean dvObjectService;
     @EJB
     SystemConfig systemConfig;
+    @EJB
+    IndexAllCheckpointServiceBean indexAllCheckpointService;
+
+    // how many datasets to add to the indexing queue (and checkpoint) at a time
+    private static final int DATASET_CHUNK_SIZE = 1000;
     
     @Asynchronous
     public Future<JsonObjectBuilder> indexStatus() {
@@ -103,20 +110,55 @@ public class IndexBatchServiceBean {
 
     
     @Asynchronous
-    public Future<JsonObjectBuilder> indexAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed, boolean previewOnly) {
+    // (no transaction around the whole run: each step has its own)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public Future<JsonObjectBuilder> indexAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed, boolean restart) {
+        JsonObjectBuilder response = Json.createObjectBuilder();
+        IndexAllCheckpoint checkpoint = claimPartition(numPartitions, partitionId, skipIndexed, restart);
+        String status = checkpoint == null
+                ? "Partition " + partitionId + " of " + numPartitions + " is already being indexed; not starting another run."
+                : indexPartition(numPartitions, partitionId, skipIndexed, checkpoint);
+        response.add("responseFromIndexAllOrSubset", status);
+        return new AsyncResult<>(response);
+    }
+
+    /**
+     * Runs index all on a partition already claimed (see
+     * {@link #claimPartition(long, long, boolean, boolean)}).
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public Future<JsonObjectBuilder> indexAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed, IndexAllCheckpoint checkpoint) {
         JsonObjectBuilder response = Json.createObjectBuilder();
-        indexAllOrSubset(numPartitions, partitionId, skipIndexed);
-        String status = "indexAllOrSubset has begun";
+        String status = indexPartition(numPartitions, partitionId, skipIndexed, checkpoint);
         response.add("responseFromIndexAllOrSubset", status);
         return new AsyncResult<>(response);
     }
 
+    /**
+     * Claims the partition for a run of index all: picks up the interrupted
+     * run of the partition, unless restart is true; or begins a new one.
+     *
+     * @return the checkpoint of the run; null if the partition is already
+     * being indexed (by this server or another one)
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public IndexAllCheckpoint claimPartition(long numPartitions, long partitionId, boolean skipIndexed, boolean restart) {
+        IndexAllCheckpoint checkpoint = indexAllCheckpointService.find(numPartitions, partitionId);
+        if (!restart && checkpoint != null && checkpoint.canResume(skipIndexed)) {
+            return indexAllCheckpointService.resume(numPartitions, partitionId, skipIndexed);
+        }
+        return indexAllCheckpointService.begin(numPartitions, partitionId, skipIndexed,
+                dataverseService.findDataverseIdsForIndexing(numPartitions, partitionId, skipIndexed, 0).size(),
+                datasetService.countAllOrSubset(numPartitions, partitionId, skipIndexed));
+    }
+
     public JsonObjectBuilder indexAllOrSubsetPreview(long numPartitions, long partitionId, boolean skipIndexed) {
         JsonObjectBuilder response = Json.createObjectBuilder();
         JsonObjectBuilder previewOfWorkload = Json.createObjectBuilder();
         JsonObjectBuilder dvContainerIds = Json.createObjectBuilder();
         
-        List<Long> dataverseIds = dataverseService.findDataverseIdsForIndexing(skipIndexed);
+        List<Long> dataverseIds = dataverseService.findDataverseIdsForIndexing(numPartitions, partitionId, skipIndexed, 0);
         
         JsonArrayBuilder dataverseIdsJson = Json.createArrayBuilder();
         //List<Dataverse> dataverses = dataverseService.findAllOrSubset(numPartitions, partitionId, skipIndexed);
@@ -140,7 +182,19 @@ public class IndexBatchServiceBean {
         return response;
     }
 
-    public Future<String> indexAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed) {
+    /**
+     * Indexes the dataverses of the partition (the ones whose id MOD
+     * numPartitions is partitionId), and adds its datasets to the indexing
+     * queue, a chunk of {@value #DATASET_CHUNK_SIZE} at a time, for the
+     * indexing queue workers of all the servers to index them. Several
+     * servers can each run a partition at the same time.
+     *
+     * The progress is checkpointed (see
+     * {@link IndexAllCheckpointServiceBean}) as it goes: if the run picks up
+     * an interrupted one (see {@link #claimPartition}), it continues after
+     * the last dataverse indexed and the last chunk of datasets queued.
+     */
+    private String indexPartition(long numPartitions, long partitionId, boolean skipIndexed, IndexAllCheckpoint checkpoint) {
         long indexAllTimeBegin = System.currentTimeMillis();
         String status;
 
@@ -172,15 +226,17 @@ public class IndexBatchServiceBean {
             resultOfClearingIndexTimes = "Solr index was not cleared before indexing.";
         }
 
-        // List<Dataverse> dataverses = dataverseService.findAllOrSubset(numPartitions, partitionId, skipIndexed);
-        // Note: no support for "partitions" in this experimental branch. 
-        // The method below returns the ids of all the unindexed dataverses.
-        List<Long> dataverseIds = dataverseIds = dataverseService.findDataverseIdsForIndexing(skipIndexed);
+        if (checkpoint.getLastDataverseId() > 0 || checkpoint.getLastDatasetId() > 0) {
+            logger.info("resuming index all of partition " + partitionId + " of " + numPartitions + " after dataverse id " + checkpoint.getLastDataverseId()
+                    + " and dataset id " + checkpoint.getLastDatasetId());
+        }
+
+        List<Long> dataverseIds = dataverseService.findDataverseIdsForIndexing(numPartitions, partitionId, skipIndexed, checkpoint.getLastDataverseId());
         
         int dataverseIndexCount = 0;
         int dataverseFailureCount = 0;
-        //for (Dataverse dataverse : dataverses) {
         for (Long id : dataverseIds) {
+            boolean failed = false;
             try {
                 dataverseIndexCount++;
                 Dataverse dataverse = dataverseService.find(id);
@@ -190,30 +246,34 @@ public class IndexBatchServiceBean {
             } catch (Exception e) {
                 //We want to keep running even after an exception so throw some more info into the log
                 dataverseFailureCount++;
+                failed = true;
                 logger.info("FAILURE indexing dataverse " + dataverseIndexCount + " of " + dataverseIds.size() + " (id=" + id + ") Exception info: " + e.getMessage());
             }
+            indexAllCheckpointService.recordDataverse(numPartitions, partitionId, id, failed);
         }
 
         int datasetIndexCount = 0;
-        int datasetFailureCount = 0;
-        List<Long> datasetIds = datasetService.findAllOrSubsetOrderByFilesOwned(skipIndexed);
-        for (Long id : datasetIds) {
-            datasetIndexCount++;
-            logger.info("indexing dataset " + datasetIndexCount + " of " + datasetIds.size() + " (id=" + id + ")");
-            indexService.indexDatasetInNewTransaction(id);
+        long lastDatasetId = checkpoint.getLastDatasetId();
+        List<Long> datasetIds;
+        while (!(datasetIds = datasetService.findAllOrSubset(numPartitions, partitionId, skipIndexed, lastDatasetId, DATASET_CHUNK_SIZE)).isEmpty()) {
+            indexAllCheckpointService.queueDatasets(numPartitions, partitionId, datasetIds);
+            datasetIndexCount += datasetIds.size();
+            lastDatasetId = datasetIds.get(datasetIds.size() - 1);
+            logger.info("queued " + datasetIndexCount + " datasets for indexing (up to id=" + lastDatasetId + ")");
         }
+        indexAllCheckpointService.finish(numPartitions, partitionId);
         logger.info("done iterating through all datasets");
 
         long indexAllTimeEnd = System.currentTimeMillis();
         String timeElapsed = "index all took " + (indexAllTimeEnd - indexAllTimeBegin) + " milliseconds";
         logger.info(timeElapsed);
-        if (datasetFailureCount + dataverseFailureCount > 0){
-            String failureMessage = "There were index failures. " + dataverseFailureCount + " dataverse(s) and " + datasetFailureCount + " dataset(s) failed to index. Please check the log for more information.";
+        if (dataverseFailureCount > 0){
+            String failureMessage = "There were index failures. " + dataverseFailureCount + " dataverse(s) failed to index. Please check the log for more information.";
             logger.info(failureMessage);            
         }
-        status = dataverseIndexCount + " dataverses and " + datasetIndexCount + " datasets indexed. " + timeElapsed + ". " + resultOfClearingIndexTimes + "\n";
+        status = dataverseIndexCount + " dataverses indexed and " + datasetIndexCount + " datasets queued for indexing. " + timeElapsed + ". " + resultOfClearingIndexTimes + "\n";
         logger.info(status);
-        return new AsyncResult<>(status);
+        return status;
     }
         
     @Asynchronous
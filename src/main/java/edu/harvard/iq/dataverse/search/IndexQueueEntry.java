@@ -0,0 +1,46 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.sql.Timestamp;
+
+/**
+ * A request to index a dataset, as taken from the indexing queue (see
+ * {@link IndexQueueServiceBean#claim(int)}).
+ */
+public class IndexQueueEntry {
+
+    private final Long datasetId;
+    private final boolean doNormalSolrDocCleanUp;
+    private final Timestamp requestTime;
+    private final long generation;
+
+    public IndexQueueEntry(Long datasetId, boolean doNormalSolrDocCleanUp, Timestamp requestTime, long generation) {
+        this.datasetId = datasetId;
+        this.doNormalSolrDocCleanUp = doNormalSolrDocCleanUp;
+        this.requestTime = requestTime;
+        this.generation = generation;
+    }
+
+    public Long getDatasetId() {
+        return datasetId;
+    }
+
+    public boolean isDoNormalSolrDocCleanUp() {
+        return doNormalSolrDocCleanUp;
+    }
+
+    /**
+     * @return when the dataset was (first) requested to be indexed
+     */
+    public Timestamp getRequestTime() {
+        return requestTime;
+    }
+
+    /**
+     * @return how many times the request was made (or merged into) when it
+     * was claimed; if that changed by the time the indexing is done, the
+     * dataset has to be indexed again.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,119 @@
+package edu.harvard.iq.dataverse.search;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Indexes the datasets in the indexing queue (see
+ * {@link IndexQueueServiceBean}): {@link JvmSettings#MAX_ASYNC_INDEXES}
+ * workers per server each take a batch of datasets off the queue, index
+ * them (see {@link IndexServiceBean#indexQueuedDatasets(List)}) and take the
+ * next batch, until the queue is empty; then they check it again every
+ * {@link JvmSettings#SOLR_INDEX_QUEUE_POLL_INTERVAL} milliseconds.
+ *
+ * This replaces the in-memory queue and the semaphore that used to limit the
+ * number of @Asynchronous indexing calls: the requests made while a server
+ * was down, or restarting, are no longer lost.
+ */
+@Singleton
+@Startup
+@Lock(READ)
+public class IndexQueueProcessingServiceBean {
+
+    private static final Logger logger = Logger.getLogger(IndexQueueProcessingServiceBean.class.getCanonicalName());
+
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_BATCH_SIZE = 10;
+    private static final int DEFAULT_POLL_INTERVAL = 1000;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    @EJB
+    IndexQueueServiceBean indexQueueService;
+
+    @EJB
+    IndexServiceBean indexService;
+
+    private final List<ScheduledFuture<?>> workers = new ArrayList<>();
+    private int batchSize;
+
+    @PostConstruct
+    public void init() {
+        int workerCount = JvmSettings.MAX_ASYNC_INDEXES.lookupOptional(Integer.class).orElse(DEFAULT_WORKERS);
+        batchSize = Math.max(1, JvmSettings.SOLR_INDEX_QUEUE_BATCH_SIZE.lookupOptional(Integer.class).orElse(DEFAULT_BATCH_SIZE));
+        int pollInterval = Math.max(1, JvmSettings.SOLR_INDEX_QUEUE_POLL_INTERVAL.lookupOptional(Integer.class).orElse(DEFAULT_POLL_INTERVAL));
+        if (workerCount > 0) {
+            logger.info("Starting " + workerCount + " indexing queue workers, taking up to " + batchSize + " datasets at a time");
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(scheduler.scheduleWithFixedDelay(this::work, pollInterval, pollInterval, TimeUnit.MILLISECONDS));
+            }
+        } else {
+            logger.warning("No indexing queue workers on this server; the datasets will only be indexed by the other servers of the cluster, if any");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // (what's been claimed and not completed will be claimed again after a while)
+        workers.forEach(worker -> worker.cancel(false));
+    }
+
+    /**
+     * Indexes the datasets in the queue until there are none left, or until
+     * Solr can't be reached. Called on a schedule by each worker.
+     */
+    public void work() {
+        try {
+            List<IndexQueueEntry> entries;
+            while (!(entries = indexQueueService.claim(batchSize)).isEmpty()) {
+                Set<IndexQueueEntry> toRetry = new HashSet<>(indexService.indexQueuedDatasets(entries));
+                List<IndexQueueEntry> completed = new ArrayList<>(entries);
+                completed.removeAll(toRetry);
+                indexQueueService.complete(completed);
+                if (!toRetry.isEmpty()) {
+                    indexQueueService.release(new ArrayList<>(toRetry));
+                    // give Solr some time
+                    break;
+                }
+            }
+        } catch (Exception ex) {
+            // will try again next time
+            logger.log(Level.WARNING, "Failed to index the datasets in the indexing queue", ex);
+        }
+    }
+
+    @Gauge(name = "index_queue_depth", absolute = true, unit = MetricUnits.NONE,
+            description = "Displays how many datasets are waiting to be indexed, or being indexed")
+    public long getQueueDepth() {
+        return indexQueueService.getDepth();
+    }
+
+    @Gauge(name = "index_queue_lag", absolute = true, unit = MetricUnits.MILLISECONDS,
+            description = "Displays how long has the dataset that waited the longest been waiting to be indexed")
+    public long getQueueLag() {
+        Timestamp oldest = indexQueueService.getOldestRequestTime();
+        return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.getTime());
+    }
+}
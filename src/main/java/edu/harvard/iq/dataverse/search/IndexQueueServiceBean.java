@@ -0,0 +1,173 @@
+package edu.harvard.iq.dataverse.search;
+
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The indexing queue: the datasets waiting to be (re)indexed, in the
+ * indexqueue table. Only the ids are stored; the datasets are looked up when
+ * they're indexed, by {@link IndexQueueProcessingServiceBean}.
+ *
+ * There's at most one row per dataset. A new request for a dataset that's
+ * already waiting is merged into its row; one made while the dataset is being
+ * indexed is kept (the "generation" of the row goes up), and the dataset is
+ * indexed again afterwards.
+ *
+ * Being in the database, the queue survives a restart, and is shared by the
+ * servers of a cluster: each one claims rows to work on with
+ * SELECT ... FOR UPDATE SKIP LOCKED, so no two servers index the same
+ * dataset at the same time (and claiming never waits for the rows locked by
+ * a transaction that's queueing datasets). A claim that's older than
+ * {@link #CLAIM_TIMEOUT} is taken to be left over from a server that went
+ * down, and the dataset can be claimed again.
+ */
+@Stateless
+public class IndexQueueServiceBean {
+
+    private static final Logger logger = Logger.getLogger(IndexQueueServiceBean.class.getCanonicalName());
+
+    static final long CLAIM_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
+    // A request that's still waiting absorbs the new one. If the dataset is
+    // being indexed, the new one replaces it, to be picked up after.
+    static final String ENQUEUE = "INSERT INTO indexqueue (dataset_id, donormalsolrdoccleanup, requesttime) VALUES (?1, ?2, ?3) "
+            + "ON CONFLICT (dataset_id) DO UPDATE SET generation = indexqueue.generation + 1, "
+            + "donormalsolrdoccleanup = CASE WHEN indexqueue.claimtime IS NULL "
+            + "THEN indexqueue.donormalsolrdoccleanup OR EXCLUDED.donormalsolrdoccleanup ELSE EXCLUDED.donormalsolrdoccleanup END, "
+            + "requesttime = CASE WHEN indexqueue.claimtime IS NULL THEN indexqueue.requesttime ELSE EXCLUDED.requesttime END";
+
+    static final String CLAIM = "WITH claimed AS (UPDATE indexqueue SET claimtime = ?1 WHERE dataset_id IN ("
+            + "SELECT dataset_id FROM indexqueue WHERE claimtime IS NULL OR claimtime < ?2 "
+            + "ORDER BY requesttime LIMIT ?3 FOR UPDATE SKIP LOCKED) "
+            + "RETURNING dataset_id, donormalsolrdoccleanup, requesttime, generation) "
+            + "SELECT dataset_id, donormalsolrdoccleanup, requesttime, generation FROM claimed ORDER BY requesttime";
+
+    static final String COMPLETE = "DELETE FROM indexqueue WHERE dataset_id = ?1 AND generation = ?2";
+
+    static final String UNCLAIM = "UPDATE indexqueue SET claimtime = NULL WHERE dataset_id = ?1";
+
+    /**
+     * Asks for the dataset to be indexed, in the caller's transaction (so
+     * that it's indexed once the changes that made it necessary are
+     * committed; and not at all if they're rolled back).
+     *
+     * The row of the dataset stays locked until the caller's transaction
+     * ends. A transaction that queues more than one dataset should use
+     * {@link #enqueue(Collection, boolean)}, which locks them in a consistent
+     * order.
+     */
+    public void enqueue(Long datasetId, boolean doNormalSolrDocCleanUp) {
+        if (datasetId == null) {
+            logger.fine("Not queueing a dataset that hasn't been saved for indexing");
+            return;
+        }
+        em.createNativeQuery(ENQUEUE)
+                .setParameter(1, datasetId)
+                .setParameter(2, doNormalSolrDocCleanUp)
+                .setParameter(3, new Timestamp(System.currentTimeMillis()))
+                .executeUpdate();
+    }
+
+    /**
+     * Asks for the datasets to be indexed, the way
+     * {@link #enqueue(Long, boolean)} does. Their rows are locked in
+     * ascending order of the dataset ids, like everywhere else rows of the
+     * queue are locked one by one, so that two transactions queueing
+     * overlapping sets of datasets (or completing them) can't deadlock.
+     */
+    public void enqueue(Collection<Long> datasetIds, boolean doNormalSolrDocCleanUp) {
+        for (Long datasetId : new TreeSet<>(datasetIds.stream().filter(Objects::nonNull).toList())) {
+            enqueue(datasetId, doNormalSolrDocCleanUp);
+        }
+    }
+
+    /**
+     * Takes the datasets that have waited the longest (and that no other
+     * server is indexing) off the queue, for this server to index them. Once
+     * done, the caller has to {@link #complete} or {@link #release} them.
+     *
+     * @param limit how many datasets to take at most
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<IndexQueueEntry> claim(int limit) {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = em.createNativeQuery(CLAIM)
+                .setParameter(1, new Timestamp(now))
+                .setParameter(2, new Timestamp(now - CLAIM_TIMEOUT))
+                .setParameter(3, limit)
+                .getResultList();
+        List<IndexQueueEntry> entries = new ArrayList<>();
+        for (Object[] row : rows) {
+            entries.add(new IndexQueueEntry(((Number) row[0]).longValue(), (Boolean) row[1], (Timestamp) row[2], ((Number) row[3]).longValue()));
+        }
+        return entries;
+    }
+
+    /**
+     * Removes the datasets that were indexed from the queue; unless they were
+     * requested again in the meantime, in which case they're put back.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void complete(List<IndexQueueEntry> entries) {
+        for (IndexQueueEntry entry : inLockOrder(entries)) {
+            int deleted = em.createNativeQuery(COMPLETE)
+                    .setParameter(1, entry.getDatasetId())
+                    .setParameter(2, entry.getGeneration())
+                    .executeUpdate();
+            if (deleted == 0) {
+                unclaim(entry);
+            }
+        }
+    }
+
+    /**
+     * Puts the datasets back in the queue, to be indexed later.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void release(List<IndexQueueEntry> entries) {
+        inLockOrder(entries).forEach(this::unclaim);
+    }
+
+    private static List<IndexQueueEntry> inLockOrder(List<IndexQueueEntry> entries) {
+        List<IndexQueueEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(IndexQueueEntry::getDatasetId));
+        return sorted;
+    }
+
+    private void unclaim(IndexQueueEntry entry) {
+        em.createNativeQuery(UNCLAIM)
+                .setParameter(1, entry.getDatasetId())
+                .executeUpdate();
+    }
+
+    /**
+     * @return how many datasets are waiting to be indexed, or being indexed
+     */
+    public long getDepth() {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM indexqueue").getSingleResult()).longValue();
+    }
+
+    /**
+     * @return when the dataset that has waited the longest (and isn't being
+     * indexed yet) was requested to be indexed; null if there's none.
+     */
+    public Timestamp getOldestRequestTime() {
+        return (Timestamp) em.createNativeQuery("SELECT MIN(requesttime) FROM indexqueue WHERE claimtime IS NULL").getSingleResult();
+    }
+}
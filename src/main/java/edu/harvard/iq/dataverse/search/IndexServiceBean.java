@@ -26,6 +26,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -38,9 +40,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -135,6 +135,9 @@ public class IndexServiceBean {
     @EJB
     DatasetFieldServiceBean datasetFieldService;
 
+    @EJB
+    IndexQueueServiceBean indexQueueService;
+
     public static final String solrDocIdentifierDataverse = "dataverse_";
     public static final String solrDocIdentifierFile = "datafile_";
     public static final String solrDocIdentifierDataset = "dataset_";
@@ -339,127 +342,116 @@ public class IndexServiceBean {
     @TransactionAttribute(REQUIRES_NEW)
     public void indexDatasetInNewTransaction(Long datasetId) { //Dataset dataset) {
         boolean doNormalSolrDocCleanUp = false;
-        Dataset dataset = datasetService.findDeep(datasetId);
-        asyncIndexDataset(dataset, doNormalSolrDocCleanUp);
-        dataset = null;
+        indexQueueService.enqueue(datasetId, doNormalSolrDocCleanUp);
     }
-    
-    // The following two variables are only used in the synchronized getNextToIndex method and do not need to be synchronized themselves
-
-    // nextToIndex contains datasets mapped by dataset id that were added for future indexing while the indexing was already ongoing for a given dataset
-    // (if there already was a dataset scheduled for indexing, it is overwritten and only the most recently requested version is kept in the map)
-    private static final Map<Long, Dataset> NEXT_TO_INDEX = new ConcurrentHashMap<>();
-    // indexingNow is a set of dataset ids of datasets being indexed asynchronously right now
-    private static final Map<Long, Boolean> INDEXING_NOW = new ConcurrentHashMap<>();
-    // semaphore for async indexing
-    private static final Semaphore ASYNC_INDEX_SEMAPHORE = new Semaphore(JvmSettings.MAX_ASYNC_INDEXES.lookupOptional(Integer.class).orElse(4), true);
-    
+
+    // How many Solr documents to send in one add call when indexing queued
+    // datasets (a dataset has one per version indexed, plus one per file in it):
+    private static final int SOLR_ADD_BATCH_SIZE = 1000;
+
     @Inject
-    @Metric(name = "index_permit_wait_time", absolute = true, unit = MetricUnits.NANOSECONDS,
-            description = "Displays how long does it take to receive a permit to index a dataset")
-    Timer indexPermitWaitTimer;
+    @Metric(name = "index_queue_wait_time", absolute = true, unit = MetricUnits.NANOSECONDS,
+            description = "Displays how long a dataset waits in the indexing queue before it is indexed")
+    Timer indexQueueWaitTimer;
     
     @Inject
     @Metric(name = "index_time", absolute = true, unit = MetricUnits.NANOSECONDS,
             description = "Displays how long does it take to index a dataset")
     Timer indexTimer;
-    
-    /**
-     * Try to acquire a permit from the semaphore avoiding too many parallel indexes, potentially overwhelming Solr.
-     * This method will time the duration waiting for the permit, allowing indexing performance to be measured.
-     * @throws InterruptedException
-     */
-    private void acquirePermitFromSemaphore() throws InterruptedException {
-        try (var timeContext = indexPermitWaitTimer.time()) {
-            ASYNC_INDEX_SEMAPHORE.acquire();
-        }
-    }
-
-    // When you pass null as Dataset parameter to this method, it indicates that the indexing of the dataset with "id" has finished
-    // Pass non-null Dataset to schedule it for indexing
-    synchronized private static Dataset getNextToIndex(Long id, Dataset d) {
-        if (d == null) { // -> indexing of the dataset with id has finished
-            Dataset next = NEXT_TO_INDEX.remove(id);
-            if (next == null) { // -> no new indexing jobs were requested while indexing was ongoing
-                // the job can be stopped now
-                INDEXING_NOW.remove(id);
-            }
-            return next;
-        }
-        // index job is requested for a non-null dataset
-        if (INDEXING_NOW.containsKey(id)) { // -> indexing job is already ongoing, and a new job should not be started by the current thread -> return null
-            NEXT_TO_INDEX.put(id, d);
-            return null;
-        }
-        // otherwise, start a new job
-        INDEXING_NOW.put(id, true);
-        return d;
-    }
 
     /**
-     * Indexes a dataset asynchronously.
-     * 
-     * Note that this method implement a synchronized skipping mechanism. When an
-     * indexing job is already running for a given dataset in the background, the
-     * new call will not index that dataset, but will delegate the execution to
-     * the already running job. The running job will pick up the requested indexing
-     * once that it is finished with the ongoing indexing. If another indexing is
-     * requested before the ongoing indexing is finished, only the indexing that is
-     * requested most recently will be picked up for the next indexing.
+     * Indexes a dataset asynchronously: adds it to the indexing queue (see
+     * {@link IndexQueueServiceBean}), in the caller's transaction, for
+     * {@link IndexQueueProcessingServiceBean} to pick up.
      * 
-     * In other words: we can have at most one indexing ongoing for the given
-     * dataset, and at most one (most recent) request for reindexing of the same
-     * dataset. All requests that come between the most recent one and the ongoing
-     * one are skipped for the optimization reasons. For a more in depth discussion,
-     * see the pull request: https://github.com/IQSS/dataverse/pull/9558
+     * The queue holds at most one request per dataset: while a request is
+     * waiting, new ones for the same dataset are merged into it. A request
+     * made while the dataset is being indexed waits for that indexing to
+     * finish, and then the dataset is indexed again. In other words: we can
+     * have at most one indexing ongoing for the given dataset, and at most one
+     * (most recent) request for reindexing of the same dataset. For the
+     * original discussion, see the pull request:
+     * https://github.com/IQSS/dataverse/pull/9558
      * 
      * @param dataset                The dataset to be indexed.
      * @param doNormalSolrDocCleanUp Flag for normal Solr doc clean up.
      */
-    @Asynchronous
     public void asyncIndexDataset(Dataset dataset, boolean doNormalSolrDocCleanUp) {
-        try {
-            acquirePermitFromSemaphore();
-            doAsyncIndexDataset(dataset, doNormalSolrDocCleanUp);
-        } catch (InterruptedException e) {
-            String failureLogText = "Indexing failed: interrupted. You can kickoff a re-index of this dataset with: \r\n curl http://localhost:8080/api/admin/index/datasets/" + dataset.getId().toString();
-            failureLogText += "\r\n" + e.getLocalizedMessage();
-            LoggingUtil.writeOnSuccessFailureLog(null, failureLogText, dataset);
-        } finally {
-            ASYNC_INDEX_SEMAPHORE.release();
-        }
+        indexQueueService.enqueue(dataset.getId(), doNormalSolrDocCleanUp);
+    }
+
+    public void asyncIndexDatasetList(List<Dataset> datasets, boolean doNormalSolrDocCleanUp) {
+        indexQueueService.enqueue(datasets.stream().map(Dataset::getId).toList(), true);
     }
 
-    private void doAsyncIndexDataset(Dataset dataset, boolean doNormalSolrDocCleanUp) {
-        Long id = dataset.getId();
-        Dataset next = getNextToIndex(id, dataset); // if there is an ongoing index job for this dataset, next is null (ongoing index job will reindex the newest version after current indexing finishes)
-        while (next != null) {
+    /**
+     * Indexes the datasets taken from the indexing queue, sending their Solr
+     * documents in batched add calls (of up to {@value #SOLR_ADD_BATCH_SIZE}
+     * documents) rather than one per dataset version. The deletes and the
+     * permission documents still go to Solr as each dataset is indexed.
+     * 
+     * A dataset that can't be indexed is logged (see
+     * {@link LoggingUtil#writeOnSuccessFailureLog}) and dropped, as before.
+     * But if Solr can't be reached, the datasets of the failed batch are
+     * returned, to be tried again later.
+     * 
+     * @return the entries to put back in the queue
+     */
+    public List<IndexQueueEntry> indexQueuedDatasets(List<IndexQueueEntry> entries) {
+        List<IndexQueueEntry> toRetry = new ArrayList<>();
+        List<SolrInputDocument> solrDocs = new ArrayList<>();
+        List<IndexQueueEntry> pending = new ArrayList<>();
+        for (IndexQueueEntry entry : entries) {
+            Dataset dataset = datasetService.findDeep(entry.getDatasetId());
+            if (dataset == null) {
+                logger.fine("dataset " + entry.getDatasetId() + " no longer exists; not indexing it");
+                continue;
+            }
+            indexQueueWaitTimer.update(Duration.between(entry.getRequestTime().toInstant(), Instant.now()));
             // Time context will automatically start on creation and stop when leaving the try block
             try (var timeContext = indexTimer.time()) {
-                indexDataset(next, doNormalSolrDocCleanUp);
-            } catch (Exception e) { // catch all possible exceptions; otherwise when something unexpected happes the dataset wold remain locked and impossible to reindex
+                doIndexDataset(dataset, entry.isDoNormalSolrDocCleanUp(), solrDocs);
+                pending.add(entry);
+            } catch (Exception e) { // catch all possible exceptions; otherwise one dataset would stop the indexing of the whole batch
                 String failureLogText = "Indexing failed. You can kickoff a re-index of this dataset with: \r\n curl http://localhost:8080/api/admin/index/datasets/" + dataset.getId().toString();
                 failureLogText += "\r\n" + e.getLocalizedMessage();
                 LoggingUtil.writeOnSuccessFailureLog(null, failureLogText, dataset);
             }
-            next = getNextToIndex(id, null); // if dataset was not changed during the indexing (and no new job was requested), next is null and loop can be stopped
+            if (solrDocs.size() >= SOLR_ADD_BATCH_SIZE) {
+                toRetry.addAll(addQueuedSolrDocs(solrDocs, pending));
+            }
         }
+        toRetry.addAll(addQueuedSolrDocs(solrDocs, pending));
+        return toRetry;
     }
 
-    @Asynchronous
-    public void asyncIndexDatasetList(List<Dataset> datasets, boolean doNormalSolrDocCleanUp) {
-        for(Dataset dataset : datasets) {
-            try {
-                acquirePermitFromSemaphore();
-                doAsyncIndexDataset(dataset, true);
-            } catch (InterruptedException e) {
-                String failureLogText = "Indexing failed: interrupted. You can kickoff a re-index of this dataset with: \r\n curl http://localhost:8080/api/admin/index/datasets/" + dataset.getId().toString();
-                failureLogText += "\r\n" + e.getLocalizedMessage();
-                LoggingUtil.writeOnSuccessFailureLog(null, failureLogText, dataset);
-            } finally {
-                ASYNC_INDEX_SEMAPHORE.release();
+    /**
+     * Sends the documents of the pending datasets to Solr, and clears both lists.
+     * 
+     * @return the pending datasets, if Solr couldn't be reached
+     */
+    private List<IndexQueueEntry> addQueuedSolrDocs(List<SolrInputDocument> solrDocs, List<IndexQueueEntry> pending) {
+        List<IndexQueueEntry> toRetry = new ArrayList<>();
+        try {
+            if (!solrDocs.isEmpty()) {
+                solrClientService.getSolrClient().add(solrDocs);
+            }
+            for (IndexQueueEntry entry : pending) {
+                updateLastIndexedTime(entry.getDatasetId());
+            }
+        } catch (SolrServerException | IOException ex) {
+            logger.log(Level.WARNING, "Failed to send the documents of " + pending.size() + " datasets to Solr; will try again", ex);
+            toRetry.addAll(pending);
+        } catch (Exception ex) {
+            for (IndexQueueEntry entry : pending) {
+                String failureLogText = "Indexing failed. You can kickoff a re-index of this dataset with: \r\n curl http://localhost:8080/api/admin/index/datasets/" + entry.getDatasetId();
+                failureLogText += "\r\n" + ex.getLocalizedMessage();
+                LoggingUtil.writeOnSuccessFailureLog(null, failureLogText, em.find(Dataset.class, entry.getDatasetId()));
             }
         }
+        solrDocs.clear();
+        pending.clear();
+        return toRetry;
     }
     
     public void indexDvObject(DvObject objectIn) throws  SolrServerException, IOException {
@@ -471,11 +463,15 @@ public class IndexServiceBean {
     }
 
     public void indexDataset(Dataset dataset, boolean doNormalSolrDocCleanUp) throws  SolrServerException, IOException {
-        doIndexDataset(dataset, doNormalSolrDocCleanUp);
+        doIndexDataset(dataset, doNormalSolrDocCleanUp, null);
         updateLastIndexedTime(dataset.getId());
     }
     
-    private void doIndexDataset(Dataset dataset, boolean doNormalSolrDocCleanUp) throws  SolrServerException, IOException {
+    /**
+     * @param solrDocs where to put the Solr documents of the dataset, for the
+     * caller to send them along with others; null to send them right away
+     */
+    private void doIndexDataset(Dataset dataset, boolean doNormalSolrDocCleanUp, Collection<SolrInputDocument> solrDocs) throws  SolrServerException, IOException {
         logger.fine("indexing dataset " + dataset.getId());
         /**
          * @todo should we use solrDocIdentifierDataset or
@@ -650,7 +646,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.DRAFT, true);
                 IndexableDataset indexableDraftVersion = new IndexableDataset(latestVersion);
-                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion);
+                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion, null, solrDocs);
                 results.append("The latest version is a working copy (latestVersionState: ")
                         .append(latestVersionStateString).append(") and indexing was attempted for ")
                         .append(solrIdDraftDataset).append(" (limited discoverability). Result: ")
@@ -704,7 +700,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.DEACCESSIONED, true);
                 IndexableDataset indexableDeaccessionedVersion = new IndexableDataset(latestVersion);
-                String indexDeaccessionedVersionResult = addOrUpdateDataset(indexableDeaccessionedVersion);
+                String indexDeaccessionedVersionResult = addOrUpdateDataset(indexableDeaccessionedVersion, null, solrDocs);
                 results.append("No draft version. Attempting to index as deaccessioned. Result: ").append(indexDeaccessionedVersionResult).append("\n");
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, false);
@@ -758,7 +754,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, true);
                 IndexableDataset indexableReleasedVersion = new IndexableDataset(releasedVersion);
-                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion);
+                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, null, solrDocs);
                 results.append("Attempted to index " + solrIdPublished).append(". Result: ").append(indexReleasedVersionResult).append("\n");
 
                 desiredCards.put(DatasetVersion.VersionState.DRAFT, false);
@@ -813,10 +809,10 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, true);
                 IndexableDataset indexableReleasedVersion = new IndexableDataset(releasedVersion);
-                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, datafilesInDraftVersion);
+                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, datafilesInDraftVersion, solrDocs);
                 results.append("There is a published version we will attempt to index. Result: ").append(indexReleasedVersionResult).append("\n");
 
-                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion);
+                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion, null, solrDocs);
                 results.append("The latest version is a working copy (latestVersionState: ")
                         .append(latestVersionStateString).append(") and will be indexed as ")
                         .append(solrIdDraftDataset).append(" (limited visibility). Result: ").append(indexDraftResult).append("\n");
@@ -916,11 +912,6 @@ public class IndexServiceBean {
         return indexResponse;
     }
 
-    private String addOrUpdateDataset(IndexableDataset indexableDataset) throws  SolrServerException, IOException {
-        String result = addOrUpdateDataset(indexableDataset, null);
-        return result;
-    }
-
     public SolrInputDocuments toSolrDocs(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion) throws  SolrServerException, IOException {
         IndexableDataset.DatasetState state = indexableDataset.getDatasetState();
         Dataset dataset = indexableDataset.getDatasetVersion().getDataset();
@@ -1676,9 +1667,13 @@ public class IndexServiceBean {
         return new SolrInputDocuments(docs, msg, datasetId);
     }
     
-    private String addOrUpdateDataset(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion) throws  SolrServerException, IOException {   
+    private String addOrUpdateDataset(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion, Collection<SolrInputDocument> solrDocs) throws  SolrServerException, IOException {   
         final SolrInputDocuments docs = toSolrDocs(indexableDataset, datafilesInDraftVersion);
 
+        if (solrDocs != null) {
+            solrDocs.addAll(docs.getDocuments());
+            return docs.getMessage() + " (queued)";
+        }
         try {
             solrClientService.getSolrClient().add(docs.getDocuments());
         } catch (SolrServerException | IOException ex) {
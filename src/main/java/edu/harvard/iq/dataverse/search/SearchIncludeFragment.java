@@ -25,6 +25,7 @@ import edu.harvard.iq.dataverse.authorization.users.GuestUser;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import edu.harvard.iq.dataverse.util.BundleUtil;
+import edu.harvard.iq.dataverse.util.QueryCountingSessionListener;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -225,6 +226,15 @@ public class SearchIncludeFragment implements java.io.Serializable {
     }
 
     public void search(boolean onlyDataRelatedToMe) {
+        QueryCountingSessionListener.startCounting();
+        try {
+            doSearch(onlyDataRelatedToMe);
+        } finally {
+            searchService.recordQueriesPerSearch("page", QueryCountingSessionListener.stopCounting());
+        }
+    }
+
+    private void doSearch(boolean onlyDataRelatedToMe) {
         logger.fine("search called");
 
         // wildcard/browse (*) unless user supplies a query
@@ -473,6 +483,11 @@ public class SearchIncludeFragment implements java.io.Serializable {
              * solrSearchResult.setCitation method but only the dataset card in
              * the UI (currently) shows this "citation" field.
              */
+            // The cards are populated by type, one batch per page, rather
+            // than with one or more queries per card:
+            List<SolrSearchResult> dataverseCards = new ArrayList<>();
+            List<SolrSearchResult> datasetCards = new ArrayList<>();
+            List<SolrSearchResult> fileCards = new ArrayList<>();
             for (SolrSearchResult solrSearchResult : searchResults) {
                 if (solrSearchResult.getEntityId() == null) {
                     // avoiding EJBException a la https://redmine.hmdc.harvard.edu/issues/3809
@@ -485,7 +500,7 @@ public class SearchIncludeFragment implements java.io.Serializable {
                 // (we'll review this later!)
                 
                 if (solrSearchResult.getType().equals("dataverses")) {
-                    dataverseService.populateDvSearchCard(solrSearchResult);
+                    dataverseCards.add(solrSearchResult);
                     
                     /*
                     Dataverses cannot be harvested yet.
@@ -494,7 +509,7 @@ public class SearchIncludeFragment implements java.io.Serializable {
                     }*/
 
                 } else if (solrSearchResult.getType().equals("datasets")) {
-                    datasetVersionService.populateDatasetSearchCard(solrSearchResult);
+                    datasetCards.add(solrSearchResult);
 
                     // @todo - the 3 lines below, should they be moved inside
                     // searchServiceBean.search()?
@@ -504,13 +519,22 @@ public class SearchIncludeFragment implements java.io.Serializable {
                     }
                     
                 } else if (solrSearchResult.getType().equals("files")) {
-                    dataFileService.populateFileSearchCard(solrSearchResult);
+                    fileCards.add(solrSearchResult);
 
                     /**
                      * @todo: show DataTable variables
                      */
                 }
             }
+            if (!dataverseCards.isEmpty()) {
+                dataverseService.populateDvSearchCards(dataverseCards);
+            }
+            if (!datasetCards.isEmpty()) {
+                datasetVersionService.populateDatasetSearchCards(datasetCards);
+            }
+            if (!fileCards.isEmpty()) {
+                dataFileService.populateFileSearchCards(fileCards);
+            }
 
             
             setDisplayCardValues();
@@ -1417,6 +1441,10 @@ public class SearchIncludeFragment implements java.io.Serializable {
     
     public void setDisplayCardValues() {
 
+        // (checking the thumbnails of the whole page at once, rather than
+        // card by card below)
+        thumbnailServiceWrapper.resolveCardImageAvailability(searchResultsList);
+
         Set<Long> harvestedDatasetIds = null;
         for (SolrSearchResult result : searchResultsList) {
             //logger.info("checking DisplayImage for the search result " + i++);
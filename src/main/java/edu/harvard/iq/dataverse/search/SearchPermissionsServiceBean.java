@@ -17,6 +17,8 @@ import edu.harvard.iq.dataverse.authorization.groups.GroupServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -83,12 +85,35 @@ public class SearchPermissionsServiceBean {
     }
 
     public List<String> findDvObjectPerms(DvObject dvObject) {
-        List<String> permStrings = new ArrayList<>();
         resetRoleAssigneeCache();
-        Set<RoleAssignment> roleAssignments = rolesSvc.rolesAssignments(dvObject);
+        List<String> permStrings = toPermStrings(dvObject.getId(), rolesSvc.rolesAssignments(dvObject), getRequiredSearchPermission(dvObject));
+        resetRoleAssigneeCache();
+        return permStrings;
+    }
+
+    /**
+     * {@link #findDvObjectPerms(DvObject)} of many datasets of the same
+     * collection at once (see
+     * {@link DataverseRoleServiceBean#rolesAssignmentsOfDatasets(Dataverse, Collection)}),
+     * without loading the datasets.
+     *
+     * @return the permission strings of each dataset, by id
+     */
+    public Map<Long, List<String>> findDatasetPerms(Dataverse owner, Collection<Long> datasetIds) {
+        Map<Long, List<String>> permStrings = new HashMap<>();
+        resetRoleAssigneeCache();
+        for (Map.Entry<Long, Set<RoleAssignment>> roleAssignments : rolesSvc.rolesAssignmentsOfDatasets(owner, datasetIds).entrySet()) {
+            permStrings.put(roleAssignments.getKey(), toPermStrings(roleAssignments.getKey(), roleAssignments.getValue(), Permission.ViewUnpublishedDataset));
+        }
+        resetRoleAssigneeCache();
+        return permStrings;
+    }
+
+    private List<String> toPermStrings(Long dvObjectId, Set<RoleAssignment> roleAssignments, Permission requiredSearchPermission) {
+        List<String> permStrings = new ArrayList<>();
         for (RoleAssignment roleAssignment : roleAssignments) {
-            logger.fine("role assignment on dvObject " + dvObject.getId() + ": " + roleAssignment.getAssigneeIdentifier());
-            if (roleAssignment.getRole().permissions().contains(getRequiredSearchPermission(dvObject))) {
+            logger.fine("role assignment on dvObject " + dvObjectId + ": " + roleAssignment.getAssigneeIdentifier());
+            if (roleAssignment.getRole().permissions().contains(requiredSearchPermission)) {
                 RoleAssignee userOrGroup = getRoleAssignee(roleAssignment.getAssigneeIdentifier());
                 String indexableUserOrGroupPermissionString = getIndexableStringForUserOrGroup(userOrGroup);
                 if (indexableUserOrGroupPermissionString != null) {
@@ -96,7 +121,6 @@ public class SearchPermissionsServiceBean {
                 }
             }
         }
-        resetRoleAssigneeCache();
         return permStrings;
     }
 
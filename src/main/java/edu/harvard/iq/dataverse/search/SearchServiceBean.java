@@ -10,6 +10,7 @@ import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.settings.FeatureFlags;
 import edu.harvard.iq.dataverse.util.BundleUtil;
+import edu.harvard.iq.dataverse.util.QueryCountingSessionListener;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import java.io.IOException;
 import java.lang.reflect.Field;
@@ -47,6 +48,9 @@ import org.apache.solr.client.solrj.response.RangeFacet;
 import org.apache.solr.client.solrj.response.SpellCheckResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Metric;
 
 @Stateless
 @Named
@@ -77,6 +81,23 @@ public class SearchServiceBean {
     SolrClientService solrClientService;
     @Inject
     ThumbnailServiceWrapper thumbnailServiceWrapper;
+
+    @Inject
+    @Metric(name = "search_queries_per_request", absolute = true, unit = MetricUnits.NONE,
+            description = "Displays how many database queries it takes to serve a page of search results")
+    Histogram searchQueriesHistogram;
+
+    /**
+     * Records how many database queries were made to serve a page of search
+     * results, as counted by {@link QueryCountingSessionListener}.
+     *
+     * @param source what the search was served to ("page" or "api")
+     * @param queries the number of queries
+     */
+    public void recordQueriesPerSearch(String source, int queries) {
+        logger.fine(source + " search made " + queries + " database queries");
+        searchQueriesHistogram.update(queries);
+    }
     
     /**
      * Import note: "onlyDatatRelatedToMe" relies on filterQueries for providing
@@ -464,6 +485,20 @@ public class SearchServiceBean {
         Map<String, String> staticSolrFieldFriendlyNamesBySolrField = new HashMap<>();
         String baseUrl = systemConfig.getDataverseSiteUrl();
 
+        Map<Long, DvObject> entities = null;
+        if (retrieveEntities) {
+            // look the entities up for the whole page at once, rather than
+            // one query (or several) per hit:
+            List<Long> entityIds = new ArrayList<>();
+            for (SolrDocument solrDocument : docs) {
+                Long entityId = (Long) solrDocument.getFieldValue(SearchFields.ENTITY_ID);
+                if (entityId != null) {
+                    entityIds.add(entityId);
+                }
+            }
+            entities = dvObjectService.findDvObjects(entityIds);
+        }
+
         //Going through the results
         for (SolrDocument solrDocument : docs) {
             String id = (String) solrDocument.getFieldValue(SearchFields.ID);
@@ -553,8 +588,8 @@ public class SearchServiceBean {
 //            logger.info(id + ": " + description);
             solrSearchResult.setId(id);
             solrSearchResult.setEntityId(entityid);
-            if (retrieveEntities) {
-                solrSearchResult.setEntity(dvObjectService.findDvObject(entityid));
+            if (entities != null) {
+                solrSearchResult.setEntity(entities.get(entityid));
             }
             solrSearchResult.setIdentifier(identifier);
             solrSearchResult.setPersistentUrl(persistentUrl);
@@ -597,7 +632,7 @@ public class SearchServiceBean {
             } else if (type.equals("datasets")) {
                 solrSearchResult.setHtmlUrl(baseUrl + "/dataset.xhtml?globalId=" + identifier);
                 solrSearchResult.setApiUrl(baseUrl + "/api/datasets/" + entityid);
-                solrSearchResult.setImageUrl(thumbnailServiceWrapper.getDatasetCardImageAsUrl(solrSearchResult));
+                // (the image url is set below, for the whole page at once)
                 //Image url now set via thumbnail api
                 //solrSearchResult.setImageUrl(baseUrl + "/api/access/dsCardImage/" + datasetVersionId);
                 // No, we don't want to set the base64 thumbnails here.
@@ -646,7 +681,7 @@ public class SearchServiceBean {
                 }
                 solrSearchResult.setHtmlUrl(baseUrl + "/dataset.xhtml?persistentId=" + parentGlobalId);
                 solrSearchResult.setDownloadUrl(baseUrl + "/api/access/datafile/" + entityid);
-                solrSearchResult.setImageUrl(thumbnailServiceWrapper.getFileCardImageAsUrl(solrSearchResult));
+                // (the image url is set below, for the whole page at once)
                 /**
                  * @todo We are not yet setting the API URL for files because
                  * not all files have metadata. Only subsettable files (those
@@ -700,6 +735,17 @@ public class SearchServiceBean {
             solrSearchResult.setParent(parent);
             solrSearchResults.add(solrSearchResult);
         }
+        if (retrieveEntities) {
+            // (the card images of the whole page are checked at once)
+            thumbnailServiceWrapper.resolveCardImageAvailability(solrSearchResults);
+            for (SolrSearchResult solrSearchResult : solrSearchResults) {
+                if (solrSearchResult.getType().equals("datasets")) {
+                    solrSearchResult.setImageUrl(thumbnailServiceWrapper.getDatasetCardImageAsUrl(solrSearchResult));
+                } else if (solrSearchResult.getType().equals("files")) {
+                    solrSearchResult.setImageUrl(thumbnailServiceWrapper.getFileCardImageAsUrl(solrSearchResult));
+                }
+            }
+        }
         Map<String, List<String>> spellingSuggestionsByToken = new HashMap<>();
         SpellCheckResponse spellCheckResponse = queryResponse.getSpellCheckResponse();
         if (spellCheckResponse != null) {
@@ -4,6 +4,7 @@ import edu.harvard.iq.dataverse.api.Util;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.common.SolrInputDocument;
@@ -57,6 +58,25 @@ public class SearchUtil {
         return solrInputDocument;
     }
 
+    /**
+     * @param solrId the Solr id of the content document (e.g.
+     * "datafile_123_draft")
+     * @param dvObjectId the id of the object
+     * @param permissions who should be able to find it
+     * @return an atomic update of its permission document (see
+     * {@link #createSolrDoc(DvObjectSolrDoc)}). Sets all the fields of a full
+     * permission document, so that if it was missing (Solr then creates it
+     * from the update) it's complete, and joins with the content document.
+     */
+    public static SolrInputDocument createPermissionUpdate(String solrId, Long dvObjectId, List<String> permissions) {
+        SolrInputDocument solrInputDocument = new SolrInputDocument();
+        solrInputDocument.addField(SearchFields.ID, solrId + IndexServiceBean.discoverabilityPermissionSuffix);
+        solrInputDocument.addField(SearchFields.DEFINITION_POINT, Map.of("set", solrId));
+        solrInputDocument.addField(SearchFields.DEFINITION_POINT_DVOBJECT_ID, Map.of("set", dvObjectId));
+        solrInputDocument.addField(SearchFields.DISCOVERABLE_BY, Map.of("set", permissions));
+        return solrInputDocument;
+    }
+
     public static String getTimestampOrNull(Timestamp timestamp) {
         if (timestamp == null) {
             return null;
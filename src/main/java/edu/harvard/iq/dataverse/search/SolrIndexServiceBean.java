@@ -15,16 +15,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Named;
 import jakarta.json.Json;
 import jakarta.json.JsonObjectBuilder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrInputDocument;
@@ -35,6 +39,22 @@ public class SolrIndexServiceBean {
 
     private static final Logger logger = Logger.getLogger(SolrIndexServiceBean.class.getCanonicalName());
 
+    /**
+     * How many permission updates to send to Solr at a time (see
+     * {@link #updatePermissionsOnSelfAndChildren(DvObject)}); an update is a
+     * few dozen bytes, so Solr takes thousands per request just as fast as a
+     * few (see PermissionUpdateBenchmark).
+     */
+    static final int PERMISSION_UPDATE_BATCH_SIZE = 5000;
+
+    /**
+     * How many datasets to look up the files of at a time.
+     */
+    private static final int DATASET_CHUNK_SIZE = 200;
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
     @EJB
     DvObjectServiceBean dvObjectService;
     @EJB
@@ -438,6 +458,102 @@ public class SolrIndexServiceBean {
                 + ": " + numObjects);
     }
 
+    /**
+     * Updates the permissions in Solr after the role assignments on the
+     * definition point changed: the same permission documents as
+     * {@link #indexPermissionsOnSelfAndChildren(DvObject)}, but only the
+     * discoverableBy field of the ones that can have changed, with atomic
+     * updates.
+     *
+     * The published cards (and their files) are always discoverable by the
+     * public group, whatever the role assignments, so only the unpublished
+     * ones (the draft, or the deaccessioned version of a dataset that was
+     * never published) are updated. Their files are found with one query per
+     * chunk of datasets, and get the permissions of their dataset, which are
+     * looked up without loading the datasets (see
+     * {@link SearchPermissionsServiceBean#findDatasetPerms(Dataverse, Collection)}).
+     */
+    public IndexResponse updatePermissionsOnSelfAndChildren(DvObject definitionPoint) {
+        Dataverse owner;
+        String scope;
+        if (definitionPoint.isInstanceofDataverse()) {
+            owner = (Dataverse) definitionPoint;
+            scope = "o.owner_id = ?1 AND o.dtype = 'Dataset'";
+        } else if (definitionPoint.isInstanceofDataset()) {
+            owner = (Dataverse) definitionPoint.getOwner();
+            scope = "o.id = ?1";
+        } else {
+            return indexPermissionsForOneDvObject(definitionPoint);
+        }
+
+        List<SolrInputDocument> docs = new ArrayList<>();
+        Set<Long> updatedIds = new HashSet<>();
+        long numFiles = 0;
+        try {
+            // We don't create a Solr "primary/content" doc for the root dataverse
+            // so don't create a Solr "permission" doc either.
+            if (definitionPoint.isInstanceofDataverse() && !definitionPoint.equals(dataverseService.findRootDataverse())) {
+                Dataverse dataverse = (Dataverse) definitionPoint;
+                if (!dataverse.isReleased()) {
+                    docs.add(SearchUtil.createPermissionUpdate(IndexServiceBean.solrDocIdentifierDataverse + dataverse.getId(), dataverse.getId(), searchPermissionsService.findDataversePerms(dataverse)));
+                }
+                updatedIds.add(dataverse.getId());
+            } else if (definitionPoint.isInstanceofDataset()) {
+                updatedIds.add(definitionPoint.getId());
+            }
+
+            // the unpublished cards: latest version DRAFT, or DEACCESSIONED without a RELEASED one
+            // (see SearchPermissionsServiceBean.getDesiredCards)
+            List<Object[]> cards = em.createNativeQuery("SELECT l.dataset_id, l.id, l.versionstate FROM ("
+                    + "SELECT DISTINCT ON (v.dataset_id) v.dataset_id, v.id, v.versionstate FROM datasetversion v JOIN dvobject o ON o.id = v.dataset_id "
+                    + "WHERE " + scope + " ORDER BY v.dataset_id, v.versionnumber DESC, v.minorversionnumber DESC) l "
+                    + "WHERE l.versionstate = 'DRAFT' OR (l.versionstate = 'DEACCESSIONED' "
+                    + "AND NOT EXISTS (SELECT 1 FROM datasetversion r WHERE r.dataset_id = l.dataset_id AND r.versionstate = 'RELEASED')) "
+                    + "ORDER BY l.dataset_id")
+                    .setParameter(1, definitionPoint.getId())
+                    .getResultList();
+            Map<Long, Long> datasetIdByVersionId = new LinkedHashMap<>();
+            Map<Long, String> suffixByVersionId = new HashMap<>();
+            for (Object[] card : cards) {
+                Long versionId = ((Number) card[1]).longValue();
+                datasetIdByVersionId.put(versionId, ((Number) card[0]).longValue());
+                suffixByVersionId.put(versionId, getDatasetOrDataFileSolrEnding(DatasetVersion.VersionState.valueOf((String) card[2])));
+            }
+            Map<Long, List<String>> permsByDatasetId = searchPermissionsService.findDatasetPerms(owner, datasetIdByVersionId.values());
+
+            List<Long> versionIds = new ArrayList<>(datasetIdByVersionId.keySet());
+            for (int i = 0; i < versionIds.size(); i += DATASET_CHUNK_SIZE) {
+                List<Long> chunk = versionIds.subList(i, Math.min(i + DATASET_CHUNK_SIZE, versionIds.size()));
+                for (Long versionId : chunk) {
+                    Long datasetId = datasetIdByVersionId.get(versionId);
+                    docs.add(SearchUtil.createPermissionUpdate(IndexServiceBean.solrDocIdentifierDataset + datasetId + suffixByVersionId.get(versionId), datasetId, permsByDatasetId.get(datasetId)));
+                }
+                List<Object[]> files = em.createNativeQuery("SELECT datasetversion_id, datafile_id FROM filemetadata WHERE datasetversion_id IN ("
+                        + chunk.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")")
+                        .getResultList();
+                for (Object[] file : files) {
+                    Long versionId = ((Number) file[0]).longValue();
+                    Long fileId = ((Number) file[1]).longValue();
+                    docs.add(SearchUtil.createPermissionUpdate(IndexServiceBean.solrDocIdentifierFile + fileId + suffixByVersionId.get(versionId), fileId,
+                            permsByDatasetId.get(datasetIdByVersionId.get(versionId))));
+                    numFiles++;
+                    if (docs.size() >= PERMISSION_UPDATE_BATCH_SIZE) {
+                        persistToSolr(docs);
+                        docs.clear();
+                    }
+                }
+                logger.fine("Progress: " + numFiles + " files permissions updated");
+            }
+            persistToSolr(docs);
+            updatedIds.addAll(datasetIdByVersionId.values());
+            dvObjectService.updatePermissionIndexTimes(updatedIds);
+        } catch (SolrServerException | IOException ex) {
+            return new IndexResponse("problem updating permissions for " + definitionPoint + ": " + ex);
+        }
+        logger.fine("Updated permissions for " + numFiles + " files and " + updatedIds.size() + " datasets/collections");
+        return new IndexResponse("Number of dvObject permissions updated for " + definitionPoint + ": " + updatedIds.size());
+    }
+
     private String reindexFilesInBatches(List<DataFile> filesToReindexPermissionsFor) {
         List<SolrInputDocument> docs = new ArrayList<>();
         Map<Long, List<Long>> byParentId = new HashMap<>();
@@ -52,10 +52,20 @@ public enum JvmSettings {
     GUESTBOOK_AT_REQUEST(SCOPE_FILES, "guestbook-at-request"),
     GLOBUS_CACHE_MAXAGE(SCOPE_FILES, "globus-cache-maxage"),
     GLOBUS_TASK_MONITORING_SERVER(SCOPE_FILES, "globus-monitoring-server"),
+    FILES_VALIDATION_PARALLELISM(SCOPE_FILES, "validation-parallelism"),
+    FILES_VALIDATION_SKIP_VERIFIED_WITHIN(SCOPE_FILES, "validation-skip-verified-within"),
+    FILES_EXPORT_PARALLELISM(SCOPE_FILES, "export-parallelism"),
+    ZIP_DOWNLOAD_PARALLELISM(SCOPE_FILES, "zip-download-parallelism"),
+    ZIP_DOWNLOAD_PREFETCH_MAX_SIZE(SCOPE_FILES, "zip-download-prefetch-max-size"),
+    ZIP_DOWNLOAD_PREFETCH_BUDGET(SCOPE_FILES, "zip-download-prefetch-budget"),
+    THUMBNAIL_WORKERS(SCOPE_FILES, "thumbnail-workers"),
+    THUMBNAIL_PREGENERATE(SCOPE_FILES, "thumbnail-pregenerate"),
 
     //STORAGE DRIVER SETTINGS
     SCOPE_DRIVER(SCOPE_FILES),
     DISABLE_S3_TAGGING(SCOPE_DRIVER, "disable-tagging"),
+    FILES_DRIVER_VALIDATION_PARALLELISM(SCOPE_DRIVER, "validation-parallelism"),
+    FILES_DRIVER_EXPORT_PARALLELISM(SCOPE_DRIVER, "export-parallelism"),
     
     // SOLR INDEX SETTINGS
     SCOPE_SOLR(PREFIX, "solr"),
@@ -69,6 +79,11 @@ public enum JvmSettings {
     SCOPE_SOLR_CONCURENCY(SCOPE_SOLR, "concurrency"),
     MAX_ASYNC_INDEXES(SCOPE_SOLR_CONCURENCY, "max-async-indexes"),
 
+    // INDEXING QUEUE
+    SCOPE_SOLR_INDEX_QUEUE(SCOPE_SOLR, "index-queue"),
+    SOLR_INDEX_QUEUE_BATCH_SIZE(SCOPE_SOLR_INDEX_QUEUE, "batch-size"),
+    SOLR_INDEX_QUEUE_POLL_INTERVAL(SCOPE_SOLR_INDEX_QUEUE, "poll-interval"),
+
     // RSERVE CONNECTION
     SCOPE_RSERVE(PREFIX, "rserve"),
     RSERVE_HOST(SCOPE_RSERVE, "host"),
@@ -77,10 +92,26 @@ public enum JvmSettings {
     RSERVE_PASSWORD(SCOPE_RSERVE, "password"),
     RSERVE_TEMPDIR(SCOPE_RSERVE, "tempdir"),
     
+    // INGEST SETTINGS
+    SCOPE_INGEST(PREFIX, "ingest"),
+    INGEST_SUMSTATS_MEMORY_BUDGET(SCOPE_INGEST, "sumstats-memory-budget"),
+    INGEST_WORKERS(SCOPE_INGEST, "workers"),
+    INGEST_DATASET_PARALLELISM(SCOPE_INGEST, "dataset-parallelism"),
+
+    // HARVESTING CLIENT SETTINGS
+    SCOPE_HARVEST(PREFIX, "harvest"),
+    HARVEST_WORKERS(SCOPE_HARVEST, "workers"),
+    HARVEST_LIST_RECORDS(SCOPE_HARVEST, "list-records"),
+    SCOPE_HARVEST_CLIENTS(SCOPE_HARVEST, "client"),
+    SCOPE_HARVEST_CLIENT(SCOPE_HARVEST_CLIENTS),
+    HARVEST_CLIENT_WORKERS(SCOPE_HARVEST_CLIENT, "workers"),
+    HARVEST_CLIENT_LIST_RECORDS(SCOPE_HARVEST_CLIENT, "list-records"),
+
     // API SETTINGS
     SCOPE_API(PREFIX, "api"),
     API_SIGNING_SECRET(SCOPE_API, "signing-secret"),
     API_ALLOW_INCOMPLETE_METADATA(SCOPE_API, "allow-incomplete-metadata"),
+    API_LAST_USE_FLUSH_INTERVAL(SCOPE_API, "last-use-flush-interval"),
 
     // SIGNPOSTING SETTINGS
     SCOPE_SIGNPOSTING(PREFIX, "signposting"),
@@ -111,6 +142,9 @@ public enum JvmSettings {
     PID_PROVIDER_DATAFILE_PID_FORMAT(SCOPE_PID_PROVIDER, "datafile-pid-format"),
     PID_PROVIDER_MANAGED_LIST(SCOPE_PID_PROVIDER, "managed-list"),
     PID_PROVIDER_EXCLUDED_LIST(SCOPE_PID_PROVIDER, "excluded-list"),
+    PID_PROVIDER_PARALLELISM(SCOPE_PID_PROVIDER, "parallelism"),
+    PID_PROVIDER_MAX_ATTEMPTS(SCOPE_PID_PROVIDER, "max-attempts"),
+    PID_PROVIDER_MAX_REQUESTS_PER_SECOND(SCOPE_PID_PROVIDER, "max-requests-per-second"),
 
         
     // PROVIDER EZID - these settings were formerly kept together with DataCite ones
@@ -198,6 +232,13 @@ public enum JvmSettings {
     LEGACY_HANDLENET_KEY_PATH(SCOPE_LEGACY_PID_HANDLENET_KEY, "path", "dataverse.handlenet.admcredfile"),
     LEGACY_HANDLENET_KEY_PASSPHRASE(SCOPE_LEGACY_PID_HANDLENET_KEY, "passphrase", "dataverse.handlenet.admprivphrase"),
 
+    // EXPORT SETTINGS
+    SCOPE_EXPORT(PREFIX, "export"),
+    EXPORT_WORKERS(SCOPE_EXPORT, "workers"),
+    SCOPE_EXPORT_CACHE(SCOPE_EXPORT, "cache"),
+    EXPORT_CACHE_MAXSIZE(SCOPE_EXPORT_CACHE, "max-size"),
+    EXPORT_CACHE_MAXAGE(SCOPE_EXPORT_CACHE, "max-age"),
+
     // SPI SETTINGS
     SCOPE_SPI(PREFIX, "spi"),
     SCOPE_EXPORTERS(SCOPE_SPI, "exporters"),
@@ -236,6 +277,17 @@ public enum JvmSettings {
     OIDC_PKCE_CACHE_MAXSIZE(SCOPE_OIDC_PKCE, "max-cache-size"),
     OIDC_PKCE_CACHE_MAXAGE(SCOPE_OIDC_PKCE, "max-cache-age"),
 
+    // PERMISSIONS SETTINGS
+    SCOPE_PERMISSIONS(PREFIX, "permissions"),
+    SCOPE_PERMISSIONS_CACHE(SCOPE_PERMISSIONS, "cache"),
+    PERMISSIONS_CACHE_MAXSIZE(SCOPE_PERMISSIONS_CACHE, "max-size"),
+    PERMISSIONS_CACHE_MAXAGE(SCOPE_PERMISSIONS_CACHE, "max-age"),
+
+    // DATABASE SETTINGS CACHE
+    SCOPE_SETTINGS(PREFIX, "settings"),
+    SCOPE_SETTINGS_CACHE(SCOPE_SETTINGS, "cache"),
+    SETTINGS_CACHE_MAXAGE(SCOPE_SETTINGS_CACHE, "max-age"),
+
     // UI SETTINGS
     SCOPE_UI(PREFIX, "ui"),
     UI_ALLOW_REVIEW_INCOMPLETE(SCOPE_UI, "allow-review-for-incomplete"),
@@ -256,6 +308,7 @@ public enum JvmSettings {
     // STORAGE USE SETTINGS
     SCOPE_STORAGEUSE(PREFIX, "storageuse"),
     STORAGEUSE_DISABLE_UPDATES(SCOPE_STORAGEUSE, "disable-storageuse-increments"),
+    STORAGEUSE_FOLD_INTERVAL(SCOPE_STORAGEUSE, "fold-interval"),
     ;
 
     private static final String SCOPE_SEPARATOR = ".";
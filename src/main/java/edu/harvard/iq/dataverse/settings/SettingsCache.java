@@ -0,0 +1,178 @@
+package edu.harvard.iq.dataverse.settings;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * All the database settings (the {@link Setting} table), in memory, so that
+ * reading one doesn't take a query.
+ *
+ * The settings are loaded all at once, and again after they have been
+ * invalidated (see {@link SettingsCacheServiceBean}), or are older than the
+ * max age; the latter is only a safety net, for changes made directly in
+ * the database, or invalidations that didn't reach this server. Every load
+ * gets a new version number. What's loaded is only kept for the next
+ * lookups if the loader says it may be (e.g., not if it was loaded in a
+ * transaction that changed the settings, and isn't committed yet).
+ *
+ * The values parsed from the settings (numbers, JSON objects, etc.) are
+ * memoized too, by the parser and the value they were parsed from, until
+ * the settings are invalidated.
+ */
+public class SettingsCache {
+
+    private static final String LANG_SEPARATOR = "\u0000";
+
+    private record Snapshot(long version, long loadedAt, Map<String, String> values) {
+    }
+
+    private record ParsedKey(String parser, String value) {
+    }
+
+    private final Supplier<Collection<Setting>> loader;
+    private final BooleanSupplier keepLoaded;
+    private final long maxAgeMillis;
+    private final Clock clock;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private final ConcurrentMap<ParsedKey, Optional<Object>> parsed = new ConcurrentHashMap<>();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * @param loader reads all the settings from the database
+     * @param maxAge how long to keep the settings for, if they are not
+     * invalidated
+     */
+    public SettingsCache(Supplier<Collection<Setting>> loader, Duration maxAge) {
+        this(loader, () -> true, maxAge, Clock.systemUTC());
+    }
+
+    /**
+     * @param loader reads all the settings from the database
+     * @param keepLoaded whether the settings the loader just read (on this
+     * thread) may be kept for the other lookups; if not, they're only used
+     * for the lookup that loaded them
+     * @param maxAge how long to keep the settings for, if they are not
+     * invalidated
+     */
+    public SettingsCache(Supplier<Collection<Setting>> loader, BooleanSupplier keepLoaded, Duration maxAge) {
+        this(loader, keepLoaded, maxAge, Clock.systemUTC());
+    }
+
+    SettingsCache(Supplier<Collection<Setting>> loader, Duration maxAge, Clock clock) {
+        this(loader, () -> true, maxAge, clock);
+    }
+
+    SettingsCache(Supplier<Collection<Setting>> loader, BooleanSupplier keepLoaded, Duration maxAge, Clock clock) {
+        this.loader = loader;
+        this.keepLoaded = keepLoaded;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * @return the setting (with no language), or {@code null}
+     */
+    public String get(String name) {
+        return getSnapshot().values().get(name);
+    }
+
+    /**
+     * @return the setting in the language, or {@code null}
+     */
+    public String get(String name, String lang) {
+        return getSnapshot().values().get(name + LANG_SEPARATOR + lang);
+    }
+
+    /**
+     * Parses a setting value, or returns what it was parsed into already.
+     *
+     * @param parserName identifies the parser (and what it parses into),
+     * e.g. "long"
+     * @param value the setting value; {@code null} is not parsed
+     * @param parser parses the value; may return {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T parse(String parserName, String value, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        return (T) parsed.computeIfAbsent(new ParsedKey(parserName, value), key -> Optional.ofNullable(parser.apply(value)))
+                .orElse(null);
+    }
+
+    /**
+     * Makes the next lookup load the settings again.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+        parsed.clear();
+    }
+
+    /**
+     * @return the version of the settings last loaded
+     */
+    public long getVersion() {
+        Snapshot current = snapshot;
+        return current != null ? current.version() : version.get();
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && clock.millis() - current.loadedAt() < maxAgeMillis) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && clock.millis() - current.loadedAt() < maxAgeMillis) {
+                return current;
+            }
+            if (current != null) {
+                // too old; the values may have been changed in the database
+                version.incrementAndGet();
+                parsed.clear();
+            }
+            long loadingVersion = version.get();
+            Snapshot loaded = new Snapshot(loadingVersion, clock.millis(), load());
+            // (unless invalidated while loading; then the next lookup
+            // loads again, but this one can still use what it's got)
+            if (version.get() == loadingVersion && keepLoaded.getAsBoolean()) {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    private Map<String, String> load() {
+        loadCount.incrementAndGet();
+        Map<String, String> values = new HashMap<>();
+        for (Setting setting : loader.get()) {
+            if (setting.getContent() == null) {
+                continue;
+            }
+            if (setting.getLang() == null) {
+                values.put(setting.getName(), setting.getContent());
+            } else {
+                values.put(setting.getName() + LANG_SEPARATOR + setting.getLang(), setting.getContent());
+            }
+        }
+        return Map.copyOf(values);
+    }
+}
@@ -0,0 +1,197 @@
+package edu.harvard.iq.dataverse.settings;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryUpdatedListener;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Holds the {@link SettingsCache} of this server, loaded at startup, and
+ * invalidates it when the settings are changed through
+ * {@link SettingsServiceBean}.
+ *
+ * The cache is invalidated right away, so that the transaction making the
+ * change sees it; and again once it is committed, since other requests may
+ * have loaded what they still saw in the meantime. What the transaction
+ * making the change loads in the meantime is not kept: it would serve its
+ * uncommitted changes to every other request (or, if rolled back, changes
+ * that never were). The other servers of a
+ * cluster are told to invalidate theirs through an entry of the (Hazelcast)
+ * JCache {@link #INVALIDATION_CACHE}, which each server listens to.
+ */
+@Singleton
+@Startup
+@Lock(READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class SettingsCacheServiceBean {
+
+    private static final Logger logger = Logger.getLogger(SettingsCacheServiceBean.class.getCanonicalName());
+
+    public static final String INVALIDATION_CACHE = "settingsInvalidationCache";
+    private static final String INVALIDATION_KEY = "invalidated";
+    // (a resource of the transactions that have invalidated the settings)
+    private static final String INVALIDATED_RESOURCE = SettingsCacheServiceBean.class.getName() + ".invalidated";
+    private static final long DEFAULT_MAX_AGE = 60;
+
+    // the cache of this server, for the listener (which is created by the
+    // JCache provider, not the container):
+    private static volatile SettingsCache localCache;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @Inject
+    CacheManager manager;
+
+    private SettingsCache cache;
+    private Cache<String, String> invalidationCache;
+    private MutableCacheEntryListenerConfiguration<String, String> listenerConfiguration;
+
+    @PostConstruct
+    public void init() {
+        long maxAge = JvmSettings.SETTINGS_CACHE_MAXAGE.lookupOptional(Long.class).orElse(DEFAULT_MAX_AGE);
+        cache = new SettingsCache(() -> em.createNamedQuery("Setting.findAll", Setting.class).getResultList(),
+                () -> !invalidatedInThisTransaction(), Duration.ofSeconds(maxAge));
+        localCache = cache;
+
+        try {
+            invalidationCache = manager.getCache(INVALIDATION_CACHE);
+            if (invalidationCache == null) {
+                CompleteConfiguration<String, String> config =
+                        new MutableConfiguration<String, String>()
+                                .setTypes(String.class, String.class);
+                invalidationCache = manager.createCache(INVALIDATION_CACHE, config);
+            }
+            listenerConfiguration = new MutableCacheEntryListenerConfiguration<>(
+                    FactoryBuilder.factoryOf(InvalidationListener.class), null, false, false);
+            invalidationCache.registerCacheEntryListener(listenerConfiguration);
+        } catch (RuntimeException ex) {
+            // the settings are still cached; only for up to the max age, if
+            // changed on another server
+            logger.log(Level.WARNING, "Failed to listen for settings changes on other servers", ex);
+            invalidationCache = null;
+        }
+
+        // load them all now, rather than on the first request:
+        cache.get(SettingsServiceBean.Key.SiteUrl.toString());
+        logger.fine("Loaded the settings (version " + cache.getVersion() + "), caching them for up to " + maxAge + " seconds");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (invalidationCache != null && listenerConfiguration != null) {
+            try {
+                invalidationCache.deregisterCacheEntryListener(listenerConfiguration);
+            } catch (RuntimeException ex) {
+                logger.fine("Failed to stop listening for settings changes: " + ex.getMessage());
+            }
+        }
+        if (localCache == cache) {
+            localCache = null;
+        }
+    }
+
+    public SettingsCache getCache() {
+        return cache;
+    }
+
+    /**
+     * When a setting is set or deleted.
+     */
+    public void invalidate() {
+        cache.invalidate();
+        if (transactionSynchronizationRegistry.getTransactionKey() == null) {
+            broadcastInvalidation();
+            return;
+        }
+        if (invalidatedInThisTransaction()) {
+            // (invalidated again once committed already)
+            return;
+        }
+        transactionSynchronizationRegistry.putResource(INVALIDATED_RESOURCE, Boolean.TRUE);
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                cache.invalidate();
+                broadcastInvalidation();
+            }
+        });
+    }
+
+    private boolean invalidatedInThisTransaction() {
+        return transactionSynchronizationRegistry.getTransactionKey() != null
+                && transactionSynchronizationRegistry.getResource(INVALIDATED_RESOURCE) != null;
+    }
+
+    private void broadcastInvalidation() {
+        if (invalidationCache == null) {
+            return;
+        }
+        try {
+            // a new value every time, so that every put is an update:
+            invalidationCache.put(INVALIDATION_KEY, UUID.randomUUID().toString());
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to tell the other servers that the settings have changed", ex);
+        }
+    }
+
+    /**
+     * Invalidates the settings of this server when another one (or this one)
+     * has changed them.
+     */
+    public static class InvalidationListener implements CacheEntryCreatedListener<String, String>,
+            CacheEntryUpdatedListener<String, String>, Serializable {
+
+        @Override
+        public void onCreated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            invalidateLocalCache();
+        }
+
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            invalidateLocalCache();
+        }
+
+        private void invalidateLocalCache() {
+            SettingsCache cache = localCache;
+            if (cache != null) {
+                logger.fine("Settings changed on another server; invalidating the settings cache");
+                cache.invalidate();
+            }
+        }
+    }
+}
@@ -26,8 +26,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * Service bean accessing a persistent hash map, used as settings in the application.
@@ -692,13 +694,20 @@ public class SettingsServiceBean {
     
     @EJB
     ActionLogServiceBean actionLogSvc;
+
+    @EJB
+    SettingsCacheServiceBean settingsCache;
     
     /**
      * Basic functionality - get the name, return the setting, or {@code null}.
+     * The settings are read from memory (see {@link SettingsCache}).
      * @param name of the setting
      * @return the actual setting, or {@code null}.
      */
     public String get( String name ) {
+        if (settingsCache != null) {
+            return settingsCache.getCache().get(name);
+        }
         List<Setting> tokens = em.createNamedQuery("Setting.findByName", Setting.class)
                 .setParameter("name", name )
                 .getResultList();
@@ -717,6 +726,25 @@ public class SettingsServiceBean {
     public String getValueForKey( Key key ) {
         return get(key.toString());
     }
+
+    /**
+     * Parses the value of a setting, only once for as long as it's not 
+     * changed: the same parser (by name) called on the same value returns 
+     * what it returned the first time.
+     * @param key Enum value of the name.
+     * @param parserName identifies the parser, and what it returns, e.g. 
+     * {@code "long"}
+     * @param parser parses the value (never {@code null}); may return 
+     * {@code null}, e.g. if the value is invalid
+     * @return The parsed setting, or {@code null} if it's not set.
+     */
+    public <T> T getParsedValueForKey( Key key, String parserName, Function<String, T> parser ) {
+        String val = getValueForKey(key);
+        if (settingsCache == null) {
+            return val != null ? parser.apply(val) : null;
+        }
+        return settingsCache.getCache().parse(parserName, val, parser);
+    }
     
     
     /**
@@ -729,19 +757,15 @@ public class SettingsServiceBean {
      */
        public Long getValueForKeyAsLong(Key key){
         
-        String val = this.getValueForKey(key);
-
-        if (val == null){
-            return null;
-        }
-
-        try {
-            long valAsInt = Long.parseLong(val);
-            return valAsInt;
-        } catch (NumberFormatException ex) {
-            logger.log(Level.WARNING, "Incorrect setting.  Could not convert \"{0}\" from setting {1} to long.", new Object[]{val, key.toString()});
-            return null;
-        }
+        return getParsedValueForKey(key, "long", val -> {
+            try {
+                long valAsInt = Long.parseLong(val);
+                return valAsInt;
+            } catch (NumberFormatException ex) {
+                logger.log(Level.WARNING, "Incorrect setting.  Could not convert \"{0}\" from setting {1} to long.", new Object[]{val, key.toString()});
+                return null;
+            }
+        });
         
     }
     
@@ -763,11 +787,18 @@ public class SettingsServiceBean {
     		   return null;
     	   }
 
-    	   try {
-    		   return Long.parseLong(val);
-    	   } catch (NumberFormatException ex) {
+    	   Long singleValue = getParsedValueForKey(key, "long-or-compound", v -> {
+    		   try {
+    			   return Long.parseLong(v);
+    		   } catch (NumberFormatException ex) {
+    			   return null;
+    		   }
+    	   });
+    	   if (singleValue != null) {
+    		   return singleValue;
+    	   } else {
     		   try {
-    			   JsonObject settings = JsonUtil.getJsonObject(val);
+    			   JsonObject settings = getCompoundValue(key, val);
     			   if(settings.containsKey(param)) {
     				   return Long.parseLong(settings.getString(param));
     			   } else if(settings.containsKey("default")) {
@@ -801,7 +832,7 @@ public class SettingsServiceBean {
         }
 
         try {
-            JsonObject settings = JsonUtil.getJsonObject(val);
+            JsonObject settings = getCompoundValue(key, val);
             if (settings.containsKey(param)) {
                 return Boolean.parseBoolean(settings.getString(param));
             } else if (settings.containsKey("default")) {
@@ -816,6 +847,25 @@ public class SettingsServiceBean {
         }
 
     }
+    /**
+     * @return the JSON object of a compound setting, parsed once
+     * @throws RuntimeException if the value is not a JSON object
+     */
+    private JsonObject getCompoundValue(Key key, String val) {
+        JsonObject settings = getParsedValueForKey(key, "json-object", v -> {
+            try {
+                return JsonUtil.getJsonObject(v);
+            } catch (RuntimeException ex) {
+                return null;
+            }
+        });
+        if (settings == null) {
+            // (the value is either what the key was set to, or a mock's)
+            return JsonUtil.getJsonObject(val);
+        }
+        return settings;
+    }
+
     /**
      * Return the value stored, or the default value, in case no setting by that
      * name exists. The main difference between this method and the other {@code get()}s
@@ -831,6 +881,10 @@ public class SettingsServiceBean {
     }
 
     public String get(String name, String lang, String defaultValue ) {
+        if (settingsCache != null) {
+            String val = settingsCache.getCache().get(name, lang);
+            return (val!=null) ? val : defaultValue;
+        }
         List<Setting> tokens = em.createNamedQuery("Setting.findByNameAndLang", Setting.class)
                 .setParameter("name", name )
                 .setParameter("lang", lang )
@@ -868,6 +922,7 @@ public class SettingsServiceBean {
         }
         
         s = em.merge(s);
+        invalidateCache();
         actionLogSvc.log( new ActionLogRecord(ActionLogRecord.ActionType.Setting, "set")
                             .setInfo(name + ": " + content));
         return s;
@@ -892,6 +947,7 @@ public class SettingsServiceBean {
         }
         
         em.merge(s);
+        invalidateCache();
         actionLogSvc.log( new ActionLogRecord(ActionLogRecord.ActionType.Setting, "set")
                 .setInfo(name + ": " +lang + ": " + content));
         return s;
@@ -922,12 +978,11 @@ public class SettingsServiceBean {
     }
 
     public boolean containsCommaSeparatedValueForKey(Key key, String value) {
-        final String tokens = getValueForKey(key);
-        if (tokens == null || tokens.isEmpty()) {
-            return false;
-        }
-        return Collections.list(new StringTokenizer(tokens, ",")).stream()
-            .anyMatch(token -> ((String) token).trim().equals(value));
+        final Set<String> tokens = getParsedValueForKey(key, "comma-separated", val ->
+            Collections.list(new StringTokenizer(val, ",")).stream()
+                .map(token -> ((String) token).trim())
+                .collect(Collectors.toUnmodifiableSet()));
+        return tokens != null && tokens.contains(value);
     }
             
     public void deleteValueForKey( Key name ) {
@@ -940,6 +995,7 @@ public class SettingsServiceBean {
         em.createNamedQuery("Setting.deleteByName")
                 .setParameter("name", name)
                 .executeUpdate();
+        invalidateCache();
     }
 
     public void delete( String name, String lang ) {
@@ -949,6 +1005,13 @@ public class SettingsServiceBean {
                 .setParameter("name", name)
                 .setParameter("lang", lang)
                 .executeUpdate();
+        invalidateCache();
+    }
+
+    private void invalidateCache() {
+        if (settingsCache != null) {
+            settingsCache.invalidate();
+        }
     }
     
     public Set<Setting> listAll() {
@@ -0,0 +1,63 @@
+package edu.harvard.iq.dataverse.storageuse;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically folds the pending storage use increments (appended to the
+ * storageusedelta table on every file add or delete) into the storageuse
+ * totals of the datasets and collections; see
+ * {@link StorageUseServiceBean#foldStorageUseIncrements()}.
+ *
+ * This runs on every server of a cluster; whichever gets there first does
+ * the work. The increments are in the database, so nothing is lost if a
+ * server goes down before folding them, and the sizes reported in the
+ * meantime include them (see
+ * {@link StorageUseServiceBean#findStorageSizeByDvContainerId(Long)}).
+ */
+@Singleton
+@Startup
+public class StorageUseFoldingServiceBean {
+    private static final Logger logger = Logger.getLogger(StorageUseFoldingServiceBean.class.getCanonicalName());
+
+    private static final int DEFAULT_FOLD_INTERVAL = 30;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    @EJB
+    StorageUseServiceBean storageUseService;
+
+    @PostConstruct
+    public void init() {
+        int foldInterval = JvmSettings.STORAGEUSE_FOLD_INTERVAL.lookupOptional(Integer.class).orElse(DEFAULT_FOLD_INTERVAL);
+        if (foldInterval > 0) {
+            logger.info("Folding the storage use increments every " + foldInterval + " seconds");
+            scheduler.scheduleWithFixedDelay(this::fold, foldInterval, foldInterval, TimeUnit.SECONDS);
+        } else {
+            logger.warning("Folding of the storage use increments is disabled; the storageusedelta table will keep growing");
+        }
+    }
+
+    public void fold() {
+        try {
+            int updated = storageUseService.foldStorageUseIncrements();
+            if (updated < 0) {
+                logger.fine("The storage use increments are being folded by another server");
+            } else {
+                logger.fine("Folded the storage use increments into " + updated + " totals");
+            }
+        } catch (Exception ex) {
+            // will try again next time
+            logger.log(Level.WARNING, "Failed to fold the storage use increments", ex);
+        }
+    }
+}
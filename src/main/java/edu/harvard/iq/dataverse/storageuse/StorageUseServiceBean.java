@@ -7,6 +7,7 @@ import jakarta.ejb.TransactionAttributeType;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import java.util.List;
 import java.util.Optional;
 import java.util.logging.Logger;
 
@@ -18,6 +19,9 @@ import java.util.logging.Logger;
 @Named
 public class StorageUseServiceBean  implements java.io.Serializable {
     private static final Logger logger = Logger.getLogger(StorageUseServiceBean.class.getCanonicalName());
+    // (an arbitrary constant, identifying the lock among the advisory locks
+    // taken by the application)
+    private static final long FOLD_ADVISORY_LOCK_KEY = 8549001L;
     
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
@@ -27,46 +31,72 @@ public class StorageUseServiceBean  implements java.io.Serializable {
     }
     
     /**
-     * Looks up the current storage use size, using a named query in a new 
-     * transaction
+     * Looks up the current storage use size, in a new transaction. This is
+     * the folded total plus the increments that haven't been folded into it
+     * yet, read in one statement (so it's consistent even if the increments
+     * are being folded at the same time).
      * @param dvObjectId
      * @return 
      */
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     public Long findStorageSizeByDvContainerId(Long dvObjectId) {
-        Long res = em.createNamedQuery("StorageUse.findByteSizeByDvContainerId", Long.class).setParameter("dvObjectId", dvObjectId).getSingleResult();
-        return res == null ? 0L : res;
+        List<Object> res = em.createNativeQuery("SELECT COALESCE(su.sizeinbytes,0) + "
+                + "COALESCE((SELECT SUM(d.sizeinbytes) FROM storageusedelta d WHERE d.dvobjectcontainer_id = su.dvobjectcontainer_id),0) "
+                + "FROM storageuse su WHERE su.dvobjectcontainer_id = ?1")
+                .setParameter(1, dvObjectId)
+                .getResultList();
+        return res.isEmpty() || res.get(0) == null ? 0L : ((Number) res.get(0)).longValue();
     }
     
     /**
      * Increments the recorded storage size for all the dvobject parents of a
      * datafile, recursively. 
+     * The increment is appended to the storageusedelta table (one row for the 
+     * container and each of its ancestors, found with the dvobjectclosure 
+     * table), without locking the storageuse rows; it is added to the 
+     * storageuse totals later, by {@link #foldStorageUseIncrements()}. 
      * @param dvObjectContainerId database id of the immediate parent (dataset)
      * @param increment size in bytes of the file(s) being added 
      */
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     public void incrementStorageSizeRecursively(Long dvObjectContainerId, Long increment) {
-        if (dvObjectContainerId != null && increment != null) {
+        if (dvObjectContainerId != null && increment != null && increment != 0L) {
             Optional<Boolean> allow = JvmSettings.STORAGEUSE_DISABLE_UPDATES.lookupOptional(Boolean.class);
             if (!(allow.isPresent() && allow.get())) {
-                String queryString = "WITH RECURSIVE uptree (id, owner_id) AS\n"
-                        + "("
-                        + "    SELECT id, owner_id\n"
-                        + "    FROM dvobject\n"
-                        + "    WHERE id=" + dvObjectContainerId + "\n"
-                        + "    UNION ALL\n"
-                        + "    SELECT dvobject.id, dvobject.owner_id\n"
-                        + "    FROM dvobject\n"
-                        + "    JOIN uptree ON dvobject.id = uptree.owner_id)\n"
-                        + "UPDATE storageuse SET sizeinbytes=COALESCE(sizeinbytes,0)+" + increment + "\n"
-                        + "FROM uptree\n"
-                        + "WHERE dvobjectcontainer_id = uptree.id;";
-
-                int parentsUpdated = em.createNativeQuery(queryString).executeUpdate();
+                int parentsUpdated = em.createNativeQuery("INSERT INTO storageusedelta (dvobjectcontainer_id, sizeinbytes) "
+                        + "SELECT ancestor_id, ?1 FROM dvobjectclosure WHERE descendant_id = ?2")
+                        .setParameter(1, increment)
+                        .setParameter(2, dvObjectContainerId)
+                        .executeUpdate();
             }
         }
         // @todo throw an exception if the number of parent dvobjects updated by
         // the query is < 2 - ? 
     }
     
+    /**
+     * Adds the pending increments to the storageuse totals, and removes them
+     * from the storageusedelta table, in one transaction. Only one server of 
+     * a cluster folds the increments at a time (the others skip their turn, 
+     * if they find the advisory lock taken), so the totals are updated in 
+     * one place and the same increment can never be added twice.
+     * @return the number of storageuse totals updated, or -1 if another 
+     * server was busy folding the increments
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int foldStorageUseIncrements() {
+        Boolean locked = (Boolean) em.createNativeQuery("SELECT pg_try_advisory_xact_lock(?1)")
+                .setParameter(1, FOLD_ADVISORY_LOCK_KEY)
+                .getSingleResult();
+        if (!Boolean.TRUE.equals(locked)) {
+            return -1;
+        }
+        return em.createNativeQuery("WITH folded AS (DELETE FROM storageusedelta RETURNING dvobjectcontainer_id, sizeinbytes),\n"
+                + "totals AS (SELECT dvobjectcontainer_id, SUM(sizeinbytes) AS increment FROM folded GROUP BY dvobjectcontainer_id)\n"
+                + "UPDATE storageuse SET sizeinbytes=COALESCE(storageuse.sizeinbytes,0)+totals.increment\n"
+                + "FROM totals\n"
+                + "WHERE storageuse.dvobjectcontainer_id = totals.dvobjectcontainer_id;")
+                .executeUpdate();
+    }
+    
 }
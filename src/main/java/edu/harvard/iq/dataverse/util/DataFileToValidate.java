@@ -0,0 +1,70 @@
+package edu.harvard.iq.dataverse.util;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.Dataset;
+import edu.harvard.iq.dataverse.dataaccess.DataAccess;
+import edu.harvard.iq.dataverse.dataaccess.StorageIO;
+
+import java.io.IOException;
+
+/**
+ * What it takes to validate the checksum of a datafile, resolved from the
+ * (managed) DataFile on the thread that looked it up, so that the file can be
+ * validated on another thread without touching the entity: its lazy
+ * relations (the data tables, the ingest report, the alternative identifiers
+ * of the dataset...) can only be loaded on the thread of its persistence
+ * context.
+ *
+ * @param id the id of the datafile
+ * @param storageIdentifier the storage identifier of the datafile
+ * @param datasetAuthority the authority of the dataset, as used for the
+ * storage (see {@link Dataset#getAuthorityForFileStorage()})
+ * @param datasetIdentifier the identifier of the dataset, as used for the
+ * storage
+ * @param checksumType the type of the checksum saved for the datafile
+ * @param checksumValue the checksum saved for the datafile
+ * @param tabularData if the datafile was ingested as tabular data (its
+ * checksum is that of the saved original)
+ * @param ingestReported if there's an ingest report for the datafile (e.g.,
+ * its ingest failed)
+ */
+public record DataFileToValidate(Long id, String storageIdentifier, String datasetAuthority, String datasetIdentifier,
+        DataFile.ChecksumType checksumType, String checksumValue, boolean tabularData, boolean ingestReported) {
+
+    public static DataFileToValidate of(DataFile dataFile) {
+        Dataset owner = dataFile.getOwner();
+        return new DataFileToValidate(dataFile.getId(), dataFile.getStorageIdentifier(),
+                owner == null ? null : owner.getAuthorityForFileStorage(),
+                owner == null ? null : owner.getIdentifierForFileStorage(),
+                dataFile.getChecksumType(), dataFile.getChecksumValue(),
+                dataFile.isTabularData(), dataFile.getIngestReport() != null);
+    }
+
+    /**
+     * @return the id of the storage driver of the datafile; the default
+     * driver for the (legacy) storage identifiers without one
+     */
+    public String driverId() {
+        if (storageIdentifier == null) {
+            return DataAccess.DEFAULT_STORAGE_DRIVER_IDENTIFIER;
+        }
+        return DataAccess.getStorageDriverFromIdentifier(storageIdentifier);
+    }
+
+    /**
+     * @return access to the stored datafile, through an unmanaged copy of
+     * the datafile (and of its dataset), made of these values only
+     */
+    public StorageIO<DataFile> getStorageIO() throws IOException {
+        Dataset owner = new Dataset();
+        owner.setAuthority(datasetAuthority);
+        owner.setIdentifier(datasetIdentifier);
+
+        DataFile dataFile = new DataFile();
+        dataFile.setMergeable(false);
+        dataFile.setId(id);
+        dataFile.setStorageIdentifier(storageIdentifier);
+        dataFile.setOwner(owner);
+        return dataFile.getStorageIO();
+    }
+}
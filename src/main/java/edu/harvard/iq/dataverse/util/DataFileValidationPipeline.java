@@ -0,0 +1,138 @@
+package edu.harvard.iq.dataverse.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+/**
+ * Validates the checksums of a set of datafiles concurrently.
+ *
+ * The files are grouped by their storage driver, and each driver gets its own
+ * workers on the executor, as many as its parallelism; so a slow remote
+ * store doesn't hold up the files on a local one, and no store gets more
+ * concurrent reads than it's been configured for.
+ *
+ * Only the reading and digesting of the files happens on the worker threads,
+ * which get the files as plain values ({@link DataFileToValidate}, resolved
+ * on the caller's thread), not as entities. The progress callback is called
+ * on the caller's thread, so it can safely use the database.
+ */
+public class DataFileValidationPipeline {
+
+    private static final Logger logger = Logger.getLogger(DataFileValidationPipeline.class.getCanonicalName());
+
+    @FunctionalInterface
+    public interface Validator {
+        void validate(DataFileToValidate dataFile) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void validated(int done, int total);
+    }
+
+    private final Executor executor;
+    private final ToIntFunction<String> parallelismOf;
+    private final Validator validator;
+
+    /**
+     * @param executor where to run the workers (in the application server, a
+     * managed executor; see {@link DataFileValidationServiceBean})
+     * @param parallelismOf how many files of a given driver to validate at
+     * the same time
+     * @param validator validates one file (usually
+     * {@link FileUtil#validateDataFileChecksum(DataFileToValidate)})
+     */
+    public DataFileValidationPipeline(Executor executor, ToIntFunction<String> parallelismOf, Validator validator) {
+        this.executor = executor;
+        this.parallelismOf = parallelismOf;
+        this.validator = validator;
+    }
+
+    /**
+     * Validates all the files, stopping at the first one that fails.
+     *
+     * @param dataFiles the files to validate
+     * @param progress called (on this thread) each time a file has been
+     * validated
+     * @throws IOException the failure of the first file that failed; the
+     * remaining files are not validated.
+     * @throws InterruptedException if interrupted while waiting for the
+     * workers
+     */
+    public void validate(List<DataFileToValidate> dataFiles, ProgressListener progress) throws IOException, InterruptedException {
+        Map<String, List<DataFileToValidate>> filesByDriver = new LinkedHashMap<>();
+        for (DataFileToValidate dataFile : dataFiles) {
+            filesByDriver.computeIfAbsent(dataFile.driverId(), driverId -> new ArrayList<>()).add(dataFile);
+        }
+
+        BlockingQueue<Future<DataFileToValidate>> completed = new LinkedBlockingQueue<>();
+        List<FutureTask<DataFileToValidate>> tasks = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<DataFileToValidate>> driverFiles : filesByDriver.entrySet()) {
+                int workers = Math.max(1, Math.min(parallelismOf.applyAsInt(driverFiles.getKey()), driverFiles.getValue().size()));
+                logger.fine("Validating " + driverFiles.getValue().size() + " files in store " + driverFiles.getKey() + " with " + workers + " workers");
+
+                Queue<FutureTask<DataFileToValidate>> pending = new ConcurrentLinkedQueue<>();
+                for (DataFileToValidate dataFile : driverFiles.getValue()) {
+                    FutureTask<DataFileToValidate> task = new FutureTask<>(() -> {
+                        validator.validate(dataFile);
+                        return dataFile;
+                    });
+                    tasks.add(task);
+                    pending.add(task);
+                }
+                // the workers of a driver take its files one after the other,
+                // so that no more than its parallelism are read at the same
+                // time:
+                Runnable worker = () -> {
+                    FutureTask<DataFileToValidate> task;
+                    while ((task = pending.poll()) != null) {
+                        task.run();
+                        completed.add(task);
+                    }
+                };
+                for (int i = 0; i < workers; i++) {
+                    try {
+                        executor.execute(worker);
+                    } catch (RejectedExecutionException ex) {
+                        logger.fine("Validating the files in store " + driverFiles.getKey() + " on this thread: " + ex.getMessage());
+                        worker.run();
+                        break;
+                    }
+                }
+            }
+
+            for (int done = 1; done <= dataFiles.size(); done++) {
+                try {
+                    completed.take().get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException ioex) {
+                        throw ioex;
+                    }
+                    throw new IOException(cause.getMessage(), cause);
+                }
+                progress.validated(done, dataFiles.size());
+            }
+        } finally {
+            // on failure, this interrupts the files still being read and
+            // drops the ones that haven't been started (the workers are
+            // the executor's, which is not ours to shut down):
+            tasks.forEach(task -> task.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package edu.harvard.iq.dataverse.util;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+
+import static jakarta.ejb.LockType.READ;
+
+/**
+ * Gives the {@link DataFileValidationPipeline}s that validate the datafiles
+ * on publish their workers: the threads of the server's managed executor,
+ * rather than threads of their own.
+ */
+@Singleton
+@Lock(READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class DataFileValidationServiceBean {
+
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    /**
+     * @return a pipeline validating the checksums of the datafiles, as many
+     * of each store at the same time as configured for it
+     */
+    public DataFileValidationPipeline getPipeline() {
+        return new DataFileValidationPipeline(executorService,
+                driverId -> JvmSettings.FILES_DRIVER_VALIDATION_PARALLELISM.lookupOptional(Integer.class, driverId)
+                        .orElse(JvmSettings.FILES_VALIDATION_PARALLELISM.lookupOptional(Integer.class).orElse(DEFAULT_PARALLELISM)),
+                FileUtil::validateDataFileChecksum);
+    }
+}
@@ -739,7 +739,8 @@ public class FileUtil implements java.io.Serializable  {
             throw new RuntimeException(e);
         }
 
-        byte[] dataBytes = new byte[1024];
+        // (large reads, since this is mostly used on remote stores)
+        byte[] dataBytes = new byte[64 * 1024];
 
         int nread;
         try {
@@ -1454,9 +1455,17 @@ public class FileUtil implements java.io.Serializable  {
     }
 
     public static void validateDataFileChecksum(DataFile dataFile) throws IOException {
-        DataFile.ChecksumType checksumType = dataFile.getChecksumType();
+        validateDataFileChecksum(DataFileToValidate.of(dataFile));
+    }
+
+    /**
+     * Same as {@link #validateDataFileChecksum(DataFile)}, without touching
+     * the DataFile entity (so that it can run on another thread).
+     */
+    public static void validateDataFileChecksum(DataFileToValidate dataFile) throws IOException {
+        DataFile.ChecksumType checksumType = dataFile.checksumType();
         if (checksumType == null) {
-            String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.noChecksumType", Arrays.asList(dataFile.getId().toString()));
+            String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.noChecksumType", Arrays.asList(dataFile.id().toString()));
             logger.log(Level.INFO, info);
             throw new IOException(info);
         }
@@ -1464,10 +1473,10 @@ public class FileUtil implements java.io.Serializable  {
         StorageIO<DataFile> storage = dataFile.getStorageIO();
         String recalculatedChecksum = null;
 
-        try (InputStream inputStream = getOriginalFileInputStream(storage, dataFile.isTabularData())) {
+        try (InputStream inputStream = getOriginalFileInputStream(storage, dataFile.tabularData())) {
             recalculatedChecksum = FileUtil.calculateChecksum(inputStream, checksumType);
         } catch (IOException ioex) {
-            String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.failRead", Arrays.asList(dataFile.getId().toString()));
+            String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.failRead", Arrays.asList(dataFile.id().toString()));
             logger.log(Level.INFO, info);
             throw new IOException(info);
         } catch (RuntimeException rte) {
@@ -1477,13 +1486,13 @@ public class FileUtil implements java.io.Serializable  {
 
         if (recalculatedChecksum == null) { //retry once
             storage = dataFile.getStorageIO();
-            try (InputStream inputStream = getOriginalFileInputStream(storage, dataFile.isTabularData())) {
+            try (InputStream inputStream = getOriginalFileInputStream(storage, dataFile.tabularData())) {
                 recalculatedChecksum = FileUtil.calculateChecksum(inputStream, checksumType);
             }
         }
 
         if (recalculatedChecksum == null) {
-            String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.failCalculateChecksum", Arrays.asList(dataFile.getId().toString()));
+            String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.failCalculateChecksum", Arrays.asList(dataFile.id().toString()));
             logger.log(Level.INFO, info);
             throw new IOException(info);
         }
@@ -1491,11 +1500,11 @@ public class FileUtil implements java.io.Serializable  {
         // TODO? What should we do if the datafile does not have a non-null checksum?
         // Should we fail, or should we assume that the recalculated checksum
         // is correct, and populate the checksumValue field with it?
-        if (!recalculatedChecksum.equals(dataFile.getChecksumValue())) {
+        if (!recalculatedChecksum.equals(dataFile.checksumValue())) {
             // There's one possible condition that is 100% recoverable and can
             // be automatically fixed (issue #6660):
             boolean fixed = false;
-            if (!dataFile.isTabularData() && dataFile.getIngestReport() != null) {
+            if (!dataFile.tabularData() && dataFile.ingestReported()) {
                 // try again, see if the .orig file happens to be there:
                 try (InputStream in = storage.getAuxFileAsInputStream(FileUtil.SAVED_ORIGINAL_FILENAME_EXTENSION)) {
                     recalculatedChecksum = FileUtil.calculateChecksum(in, checksumType);
@@ -1504,7 +1513,7 @@ public class FileUtil implements java.io.Serializable  {
                 }
                 if (recalculatedChecksum != null) {
                     // try again:
-                    if (recalculatedChecksum.equals(dataFile.getChecksumValue())) {
+                    if (recalculatedChecksum.equals(dataFile.checksumValue())) {
                         fixed = true;
                         try {
                             storage.revertBackupAsAux(FileUtil.SAVED_ORIGINAL_FILENAME_EXTENSION);
@@ -1516,14 +1525,14 @@ public class FileUtil implements java.io.Serializable  {
             }
 
             if (!fixed) {
-                String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.wrongChecksumValue", Arrays.asList(dataFile.getId().toString()));
+                String info = BundleUtil.getStringFromBundle("dataset.publish.file.validation.error.wrongChecksumValue", Arrays.asList(dataFile.id().toString()));
                 logger.log(Level.INFO, info);
-                logger.fine("Expected: " + dataFile.getChecksumValue() +", calculated: " + recalculatedChecksum);
+                logger.fine("Expected: " + dataFile.checksumValue() +", calculated: " + recalculatedChecksum);
                 throw new IOException(info);
             }
         }
 
-        logger.log(Level.INFO, "successfully validated DataFile {0}; checksum {1}", new Object[]{dataFile.getId(), recalculatedChecksum});
+        logger.log(Level.INFO, "successfully validated DataFile {0}; checksum {1}", new Object[]{dataFile.id(), recalculatedChecksum});
     }
     
     public static String getStorageIdentifierFromLocation(String location) {
@@ -0,0 +1,45 @@
+package edu.harvard.iq.dataverse.util;
+
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+/**
+ * Counts the SQL calls EclipseLink makes on the current thread, between
+ * {@link #startCounting()} and {@link #stopCounting()}. Used to keep an eye
+ * on how many queries it takes to serve a page of search results.
+ *
+ * Registered for the persistence unit in persistence.xml
+ * ({@code eclipselink.session-event-listener}). When nobody is counting on
+ * the current thread, the only overhead is a {@link ThreadLocal} lookup.
+ */
+public class QueryCountingSessionListener extends SessionEventAdapter {
+
+    private static final ThreadLocal<int[]> CALL_COUNT = new ThreadLocal<>();
+
+    /**
+     * Starts (or restarts) counting the calls made on the current thread.
+     */
+    public static void startCounting() {
+        CALL_COUNT.set(new int[1]);
+    }
+
+    /**
+     * Stops counting on the current thread.
+     *
+     * @return the number of calls made since {@link #startCounting()}, or 0
+     * if we weren't counting.
+     */
+    public static int stopCounting() {
+        int[] count = CALL_COUNT.get();
+        CALL_COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    @Override
+    public void postExecuteCall(SessionEvent event) {
+        int[] count = CALL_COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+}
@@ -74,7 +74,39 @@ public class SumStatCalculator {
         nx[7] = Math.sqrt(StatUtils.variance(newx));
         logger.fine("calculated stdev: "+nx[7]);
         return nx;
-    }  
+    }
+
+    /**
+     * Same as above, but for a vector that has already been reduced to its
+     * valid (non-missing, non-NaN) values, as produced by the single-pass
+     * column reader at ingest. Saves us from boxing every value into a
+     * Number[] first.
+     *
+     * @param validValues the valid values of the vector; this array may be
+     * reordered (sorted) in the process.
+     * @param invalidCount the number of missing and NaN values in the vector
+     * @return the summary statistics, in the same order as above
+     */
+    public static double[] calculateSummaryStatistics(double[] validValues, int invalidCount) {
+        logger.fine("entering calculate summary statistics ("+validValues.length+" valid double values);");
+
+        double[] nx = new double[8];
+        //("mean", "medn", "mode", "vald", "invd", "min", "max", "stdev");
+
+        nx[4] = invalidCount;
+        nx[3] = validValues.length;
+
+        nx[0] = calculateMean(validValues);
+        nx[2] = 0.0;
+        nx[5] = StatUtils.min(validValues);
+        nx[6] = StatUtils.max(validValues);
+        nx[7] = Math.sqrt(StatUtils.variance(validValues));
+        // the median is calculated last, since we sort the vector in place,
+        // instead of making a copy of it:
+        nx[1] = calculateMedianInPlace(validValues);
+
+        return nx;
+    }
 
     private static double[] prepareForSummaryStats(Number[] x) {
         Double[] z = numberToDouble(x);
@@ -165,9 +197,13 @@ public class SumStatCalculator {
         double[] sorted = new double[values.length];
         System.arraycopy(values, 0, sorted, 0, values.length);
         logger.fine("made an extra copy of the vector;");
+        return calculateMedianInPlace(sorted);
+    }
+
+    private static double calculateMedianInPlace(double[] sorted) {
         Arrays.sort(sorted);
         logger.fine("sorted double vector for median calculations;");
-        
+
         if (sorted.length == 0) {
             return Double.NaN;
         }
@@ -532,8 +532,12 @@ public class JsonPrinter {
      * should the method be renamed?
      */
     public static JsonObjectBuilder jsonAsDatasetDto(DatasetVersion dsv) {
+        return jsonAsDatasetDto(dsv, true);
+    }
+
+    public static JsonObjectBuilder jsonAsDatasetDto(DatasetVersion dsv, boolean includeFiles) {
         JsonObjectBuilder datasetDtoAsJson = JsonPrinter.json(dsv.getDataset());
-        datasetDtoAsJson.add("datasetVersion", jsonWithCitation(dsv, true));
+        datasetDtoAsJson.add("datasetVersion", jsonWithCitation(dsv, includeFiles));
         return datasetDtoAsJson;
     }
 
@@ -764,6 +768,15 @@ public class JsonPrinter {
     }
 
     public static JsonObjectBuilder json(DataFile df, FileMetadata fileMetadata, boolean forExportDataProvider, boolean returnOwners) {
+        return json(df, fileMetadata, forExportDataProvider, returnOwners, true);
+    }
+
+    /**
+     * @param includeVariables for the export data provider: whether to include
+     * the variables of the data tables (and the variable groups), the bulk of
+     * the details of a tabular file.
+     */
+    public static JsonObjectBuilder json(DataFile df, FileMetadata fileMetadata, boolean forExportDataProvider, boolean returnOwners, boolean includeVariables) {
         // File names are no longer stored in the DataFile entity; 
         // (they are instead in the FileMetadata (as "labels") - this way 
         // the filename can change between versions... 
@@ -836,8 +849,8 @@ public class JsonPrinter {
         if (forExportDataProvider) {
             builder.add("restricted", df.isRestricted())
             .add("fileMetadataId", fileMetadata.getId())
-            .add("dataTables", df.getDataTables().isEmpty() ? null : JsonPrinter.jsonDT(df.getDataTables()))
-            .add("varGroups", fileMetadata.getVarGroups().isEmpty()
+            .add("dataTables", df.getDataTables().isEmpty() ? null : JsonPrinter.jsonDT(df.getDataTables(), includeVariables))
+            .add("varGroups", includeVariables && fileMetadata.getVarGroups().isEmpty()
                     ? JsonPrinter.jsonVarGroup(fileMetadata.getVarGroups())
                     : null);
         }
@@ -849,20 +862,28 @@ public class JsonPrinter {
 
     //Started from https://github.com/RENCI-NRIG/dataverse/, i.e. https://github.com/RENCI-NRIG/dataverse/commit/2b5a1225b42cf1caba85e18abfeb952171c6754a
     public static JsonArrayBuilder jsonDT(List<DataTable> ldt) {
+        return jsonDT(ldt, true);
+    }
+
+    public static JsonArrayBuilder jsonDT(List<DataTable> ldt, boolean includeVariables) {
         JsonArrayBuilder ldtArr = Json.createArrayBuilder();
         for(DataTable dt: ldt){
-            ldtArr.add(JsonPrinter.json(dt));
+            ldtArr.add(JsonPrinter.json(dt, includeVariables));
         }
         return ldtArr;
     }
 
     public static JsonObjectBuilder json(DataTable dt) {
+        return json(dt, true);
+    }
+
+    public static JsonObjectBuilder json(DataTable dt, boolean includeVariables) {
         return jsonObjectBuilder()
                 .add("varQuantity", dt.getVarQuantity())
                 .add("caseQuantity", dt.getCaseQuantity())
                 .add("recordsPerCase", dt.getRecordsPerCase())
                 .add("UNF", dt.getUnf())
-                .add("dataVariables", JsonPrinter.jsonDV(dt.getDataVariables()))
+                .add("dataVariables", includeVariables ? JsonPrinter.jsonDV(dt.getDataVariables()) : null)
                 ;
     }
 
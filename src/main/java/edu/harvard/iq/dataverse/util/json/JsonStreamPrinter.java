@@ -0,0 +1,67 @@
+package edu.harvard.iq.dataverse.util.json;
+
+import edu.harvard.iq.dataverse.FileMetadata;
+import jakarta.json.JsonObject;
+import jakarta.json.stream.JsonGenerator;
+
+import java.util.List;
+
+/**
+ * Writes the JSON of a dataset version's files to a {@link JsonGenerator} as
+ * it goes, fetching the {@link FileMetadata}s one page at a time, instead of
+ * building the whole array in memory first (see
+ * {@link JsonPrinter#jsonFileMetadatas(java.util.Collection)}). The output is
+ * the same: each file is still printed by {@link JsonPrinter#json(FileMetadata)}.
+ */
+public class JsonStreamPrinter {
+
+    public static final int PAGE_SIZE = 1000;
+
+    /**
+     * Where the files come from, e.g. {@link edu.harvard.iq.dataverse.DatasetVersionFilesServiceBean#getFileMetadatas}.
+     */
+    @FunctionalInterface
+    public interface FileMetadataPages {
+        List<FileMetadata> getPage(int offset, int limit);
+    }
+
+    private JsonStreamPrinter() {
+    }
+
+    /**
+     * Writes all the entries of the object, as if they were written one by one
+     * into the object the generator is in.
+     */
+    public static void writeEntries(JsonGenerator generator, JsonObject object) {
+        object.forEach(generator::write);
+    }
+
+    /**
+     * Writes the files as an array value (in an object, after
+     * {@link JsonGenerator#writeKey(String)}).
+     *
+     * @param offset the first file to write
+     * @param limit how many files to write at most; {@code null} for all the
+     * files from {@code offset} on
+     */
+    public static void writeFileMetadatas(JsonGenerator generator, FileMetadataPages pages, int offset, Integer limit) {
+        generator.writeStartArray();
+
+        int written = 0;
+        while (limit == null || written < limit) {
+            int pageSize = limit == null ? PAGE_SIZE : Math.min(PAGE_SIZE, limit - written);
+            List<FileMetadata> page = pages.getPage(offset + written, pageSize);
+            for (FileMetadata fileMetadata : page) {
+                generator.write(JsonPrinter.json(fileMetadata).build());
+            }
+            written += page.size();
+            // send what we have so far (the page can now be garbage collected):
+            generator.flush();
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        generator.writeEnd();
+    }
+}
@@ -0,0 +1,6 @@
+-- Indexes supporting the keyset ("seek") pagination of the OAI-PMH
+-- ListIdentifiers/ListRecords responses, and the lookups of the other sets
+-- the records on a page belong to.
+--
+CREATE INDEX IF NOT EXISTS INDEX_OAIRECORD_setname_globalid ON oairecord (setname, globalid);
+CREATE INDEX IF NOT EXISTS INDEX_OAIRECORD_globalid ON oairecord (globalid);
@@ -0,0 +1,84 @@
+-- Closure table of the containment hierarchy of the collections and datasets:
+-- one row for every (ancestor, descendant) pair, including each object paired
+-- with itself (depth 0). This answers "all the collections/datasets under X"
+-- and "all the ancestors of X" with a single indexed query, instead of one
+-- query per level (or per collection).
+--
+-- Files are not included (there are too many of them, and they are never
+-- more than one level under their dataset).
+--
+-- The table is maintained by the triggers below, so that every code path
+-- that creates or moves a collection or dataset (commands, imports,
+-- harvesting, direct SQL) keeps it up to date. Rows are removed along with
+-- the dvobjects, by the foreign keys.
+--
+CREATE TABLE IF NOT EXISTS dvobjectclosure (
+    ancestor_id BIGINT NOT NULL REFERENCES dvobject(id) ON DELETE CASCADE,
+    descendant_id BIGINT NOT NULL REFERENCES dvobject(id) ON DELETE CASCADE,
+    depth INTEGER NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id)
+);
+
+CREATE INDEX IF NOT EXISTS INDEX_DVOBJECTCLOSURE_descendant_id_depth ON dvobjectclosure (descendant_id, depth);
+
+CREATE OR REPLACE FUNCTION dvobjectclosure_insert() RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.dtype = 'DataFile' THEN
+        RETURN NULL;
+    END IF;
+
+    INSERT INTO dvobjectclosure (ancestor_id, descendant_id, depth)
+        SELECT NEW.id, NEW.id, 0
+        UNION ALL
+        SELECT c.ancestor_id, NEW.id, c.depth + 1
+            FROM dvobjectclosure c
+            WHERE c.descendant_id = NEW.owner_id;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION dvobjectclosure_move() RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.dtype = 'DataFile' THEN
+        RETURN NULL;
+    END IF;
+
+    -- detach the subtree from its old ancestors...
+    DELETE FROM dvobjectclosure
+        WHERE descendant_id IN (SELECT descendant_id FROM dvobjectclosure WHERE ancestor_id = NEW.id)
+        AND ancestor_id IN (SELECT ancestor_id FROM dvobjectclosure WHERE descendant_id = NEW.id AND ancestor_id != NEW.id);
+
+    -- ... and attach it under the new ones:
+    INSERT INTO dvobjectclosure (ancestor_id, descendant_id, depth)
+        SELECT above.ancestor_id, below.descendant_id, above.depth + below.depth + 1
+            FROM dvobjectclosure above, dvobjectclosure below
+            WHERE above.descendant_id = NEW.owner_id
+            AND below.ancestor_id = NEW.id;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS dvobjectclosure_insert_trigger ON dvobject;
+CREATE TRIGGER dvobjectclosure_insert_trigger
+    AFTER INSERT ON dvobject
+    FOR EACH ROW EXECUTE FUNCTION dvobjectclosure_insert();
+
+DROP TRIGGER IF EXISTS dvobjectclosure_move_trigger ON dvobject;
+CREATE TRIGGER dvobjectclosure_move_trigger
+    AFTER UPDATE OF owner_id ON dvobject
+    FOR EACH ROW WHEN (OLD.owner_id IS DISTINCT FROM NEW.owner_id)
+    EXECUTE FUNCTION dvobjectclosure_move();
+
+-- Populate the table for the existing collections and datasets:
+INSERT INTO dvobjectclosure (ancestor_id, descendant_id, depth)
+    WITH RECURSIVE closure (ancestor_id, descendant_id, depth) AS (
+        SELECT id, id, 0 FROM dvobject WHERE dtype != 'DataFile'
+        UNION ALL
+        SELECT c.ancestor_id, o.id, c.depth + 1
+            FROM closure c, dvobject o
+            WHERE o.owner_id = c.descendant_id AND o.dtype != 'DataFile'
+    )
+    SELECT ancestor_id, descendant_id, depth FROM closure
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,17 @@
+-- Pending increments of the recorded storage use. Instead of updating the
+-- storageuse row of every ancestor of a dataset (up to and including the
+-- root collection, i.e. the same row for every upload) on every file add,
+-- an increment is appended here, one row per ancestor, and the rows are
+-- periodically folded into the storageuse totals.
+--
+-- There is deliberately no foreign key to storageuse/dvobject: appending must
+-- not lock anything, and the increments of a container deleted before they
+-- are folded are simply dropped along with it.
+--
+CREATE TABLE IF NOT EXISTS storageusedelta (
+    id BIGSERIAL PRIMARY KEY,
+    dvobjectcontainer_id BIGINT NOT NULL,
+    sizeinbytes BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS INDEX_STORAGEUSEDELTA_dvobjectcontainer_id ON storageusedelta (dvobjectcontainer_id);
@@ -0,0 +1,4 @@
+-- When the checksum of the file was last verified against the stored file
+-- (see FinalizeDatasetPublicationCommand); lets the validation on publish skip
+-- the files that were validated recently.
+ALTER TABLE datafile ADD COLUMN IF NOT EXISTS checksumverifiedtime TIMESTAMP WITHOUT TIME ZONE;
@@ -0,0 +1,15 @@
+-- Checkpoints of the PID operations (registering, publicizing) run on the
+-- files of a dataset, see PidOperationServiceBean: the operation was done on
+-- the object, which had the given global id at the time. They let a
+-- publication that was interrupted skip the calls to the PID provider that
+-- were already made.
+CREATE TABLE IF NOT EXISTS pidoperationcheckpoint (
+    dvobject_id BIGINT NOT NULL REFERENCES dvobject(id) ON DELETE CASCADE,
+    operation VARCHAR(32) NOT NULL,
+    dataset_id BIGINT NOT NULL REFERENCES dvobject(id) ON DELETE CASCADE,
+    globalid VARCHAR(255),
+    completiontime TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (dvobject_id, operation)
+);
+
+CREATE INDEX IF NOT EXISTS INDEX_PIDOPERATIONCHECKPOINT_dataset_id ON pidoperationcheckpoint (dataset_id, operation);
@@ -0,0 +1,13 @@
+-- The indexing queue, see IndexQueueServiceBean: the datasets waiting to be
+-- (re)indexed, one row per dataset. Repeated requests for a dataset are merged
+-- into its row (and counted in "generation"); claimtime is set while a server
+-- is indexing it.
+CREATE TABLE IF NOT EXISTS indexqueue (
+    dataset_id BIGINT PRIMARY KEY,
+    donormalsolrdoccleanup BOOLEAN NOT NULL,
+    requesttime TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    generation BIGINT NOT NULL DEFAULT 1,
+    claimtime TIMESTAMP WITHOUT TIME ZONE
+);
+
+CREATE INDEX IF NOT EXISTS INDEX_INDEXQUEUE_requesttime ON indexqueue (requesttime);
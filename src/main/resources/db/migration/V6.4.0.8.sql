@@ -0,0 +1,20 @@
+-- The progress of the "index all" runs, see IndexAllCheckpointServiceBean:
+-- one row per partition (of the dvobject ids, MOD numpartitions), so that an
+-- interrupted run can continue after the last dataverse indexed and the last
+-- dataset queued.
+CREATE TABLE IF NOT EXISTS indexallcheckpoint (
+    numpartitions BIGINT NOT NULL,
+    partitionid BIGINT NOT NULL,
+    skipindexed BOOLEAN NOT NULL,
+    starttime TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    updatetime TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    finishtime TIMESTAMP WITHOUT TIME ZONE,
+    dataversecount BIGINT NOT NULL,
+    datasetcount BIGINT NOT NULL,
+    lastdataverseid BIGINT NOT NULL DEFAULT 0,
+    lastdatasetid BIGINT NOT NULL DEFAULT 0,
+    dataversesindexed BIGINT NOT NULL DEFAULT 0,
+    dataversefailures BIGINT NOT NULL DEFAULT 0,
+    datasetsqueued BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (numpartitions, partitionid)
+);
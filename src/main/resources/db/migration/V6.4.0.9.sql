@@ -0,0 +1,16 @@
+-- The progress of the export all (and reExportAll) jobs, see
+-- ExportAllCheckpointServiceBean: one row (id 1), for the last job, so that
+-- an interrupted job can continue after the last chunk of datasets exported.
+CREATE TABLE IF NOT EXISTS exportallcheckpoint (
+    id INTEGER NOT NULL,
+    forcereexport BOOLEAN NOT NULL,
+    starttime TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    updatetime TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    finishtime TIMESTAMP WITHOUT TIME ZONE,
+    datasetcount BIGINT NOT NULL,
+    lastdatasetid BIGINT NOT NULL DEFAULT 0,
+    datasetsexported BIGINT NOT NULL DEFAULT 0,
+    datasetsfailed BIGINT NOT NULL DEFAULT 0,
+    datasetsskipped BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id)
+);
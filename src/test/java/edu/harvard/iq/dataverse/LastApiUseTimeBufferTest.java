@@ -0,0 +1,97 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.testing.JvmSetting;
+import edu.harvard.iq.dataverse.util.testing.LocalJvmSettings;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@LocalJvmSettings
+class LastApiUseTimeBufferTest {
+
+    private LastApiUseTimeBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new LastApiUseTimeBuffer();
+        buffer.scheduler = Mockito.mock(ManagedScheduledExecutorService.class);
+        buffer.userService = Mockito.mock(UserServiceBean.class);
+        buffer.flushTimer = Mockito.mock(Timer.class);
+    }
+
+    @Test
+    void testKeepsLatestTimePerUser() {
+        buffer.init();
+
+        assertTrue(buffer.add(2L, new Timestamp(1000)));
+        assertTrue(buffer.add(2L, new Timestamp(3000)));
+        assertTrue(buffer.add(2L, new Timestamp(2000)));
+        assertTrue(buffer.add(1L, new Timestamp(500)));
+        assertEquals(2, buffer.getBufferedCount());
+
+        SortedMap<Long, Timestamp> batch = buffer.drain();
+        assertEquals(List.of(1L, 2L), List.copyOf(batch.keySet()));
+        assertEquals(new Timestamp(3000), batch.get(2L));
+        assertEquals(0, buffer.getBufferedCount());
+    }
+
+    @Test
+    @JvmSetting(key = JvmSettings.API_LAST_USE_FLUSH_INTERVAL, value = "0")
+    void testDisabled() {
+        buffer.init();
+
+        assertFalse(buffer.add(1L, new Timestamp(1000)));
+        assertEquals(0, buffer.getBufferedCount());
+    }
+
+    @Test
+    void testFlushWritesBatch() {
+        buffer.init();
+        buffer.add(1L, new Timestamp(1000));
+        buffer.add(2L, new Timestamp(2000));
+
+        buffer.flush();
+
+        ArgumentCaptor<Map<Long, Timestamp>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(buffer.userService).updateLastApiUseTimes(captor.capture());
+        assertEquals(Map.of(1L, new Timestamp(1000), 2L, new Timestamp(2000)), captor.getValue());
+        assertEquals(0, buffer.getBufferedCount());
+    }
+
+    @Test
+    void testFlushNothing() {
+        buffer.init();
+        buffer.flush();
+        verify(buffer.userService, never()).updateLastApiUseTimes(any());
+    }
+
+    @Test
+    void testFailedFlushIsRetried() {
+        buffer.init();
+        buffer.add(1L, new Timestamp(1000));
+        doThrow(new RuntimeException("database is down")).when(buffer.userService).updateLastApiUseTimes(any());
+
+        buffer.flush();
+        // a newer time coming in after the failed flush wins:
+        buffer.add(1L, new Timestamp(5000));
+
+        assertEquals(Map.of(1L, new Timestamp(5000)), buffer.drain());
+    }
+}
@@ -1,6 +1,11 @@
 package edu.harvard.iq.dataverse.api;
 
+import edu.harvard.iq.dataverse.dataaccess.InputStreamIO;
 import edu.harvard.iq.dataverse.dataaccess.Range;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.*;
@@ -76,18 +81,22 @@ public class DownloadInstanceWriterTest {
         assertNotNull(expectedException);
     }
 
-    // Attempt to get invalid range (multiple ranges).
+    // Get multiple ranges.
     @Test
-    public void testGetRangeInvalidMultipleRanges() {
-        Exception expectedException = null;
-        try {
-            List<Range> ranges = diw.getRanges("bytes=0-9,90-99", 100);
-        } catch (Exception ex) {
-            // "Only one range is allowed."
-            System.out.println("exception: " + ex);
-            expectedException = ex;
-        }
-        assertNotNull(expectedException);
+    public void testGetMultipleRanges() {
+        List<Range> ranges = diw.getRanges("bytes=0-9,90-99", 100);
+        assertEquals(2, ranges.size());
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(9, ranges.get(0).getEnd());
+        assertEquals(90, ranges.get(1).getStart());
+        assertEquals(99, ranges.get(1).getEnd());
+    }
+
+    // Attempt to get too many ranges.
+    @Test
+    public void testGetRangeInvalidTooManyRanges() {
+        String range = "bytes=0-0" + ",1-1".repeat(DownloadInstanceWriter.MAX_RANGES);
+        assertThrows(RuntimeException.class, () -> diw.getRanges(range, 1000));
     }
 
     // Attempt to get invalid range (multiple ranges, beyond file size).
@@ -97,8 +106,7 @@ public class DownloadInstanceWriterTest {
         try {
             List<Range> ranges = diw.getRanges("bytes=0-9,90-99", 40);
         } catch (Exception ex) {
-            // "Only one range is allowed."
-            // We report the multiple ranges error before reporting the "beyond filesize" error.
+            // "Start is larger than end or size of file." (for the second range)
             System.out.println("exception: " + ex);
             expectedException = ex;
         }
@@ -119,30 +127,78 @@ public class DownloadInstanceWriterTest {
         assertNotNull(expectedException);
     }
 
-    // Get first 10 bytes and last 10 bytes. Not currently supported.
+    // Get first 10 bytes and last 10 bytes.
     @Test
     public void testGetRanges0to0and90toNull() {
-        Exception expectedException = null;
-        try {
-            List<Range> ranges = diw.getRanges("bytes=0-9,-10", 100);
-            // These asserts on start, end, etc. don't actually
-            // run because we throw an expection that multiple
-            // ranges are not supported.
-            //
-            // first range
-            assertEquals(0, ranges.get(0).getStart());
-            assertEquals(9, ranges.get(0).getEnd());
-            assertEquals(10, ranges.get(0).getLength());
-            // second range
-            assertEquals(90, ranges.get(1).getStart());
-            assertEquals(99, ranges.get(1).getEnd());
-            assertEquals(10, ranges.get(1).getLength());
-        } catch (Exception ex) {
-            // Only one range is allowed.
-            System.out.println("exception: " + ex);
-            expectedException = ex;
+        List<Range> ranges = diw.getRanges("bytes=0-9,-10", 100);
+        // first range
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(9, ranges.get(0).getEnd());
+        assertEquals(10, ranges.get(0).getLength());
+        // second range
+        assertEquals(90, ranges.get(1).getStart());
+        assertEquals(99, ranges.get(1).getEnd());
+        assertEquals(10, ranges.get(1).getLength());
+    }
+
+    // Overlapping and adjacent ranges are merged, and sorted.
+    @Test
+    public void testCoalesce() {
+        List<Range> ranges = DownloadInstanceWriter.coalesce(diw.getRanges("bytes=50-59,0-9,5-14,15-19,-10", 100));
+        assertEquals(3, ranges.size());
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(19, ranges.get(0).getEnd());
+        assertEquals(50, ranges.get(1).getStart());
+        assertEquals(59, ranges.get(1).getEnd());
+        assertEquals(90, ranges.get(2).getStart());
+        assertEquals(99, ranges.get(2).getEnd());
+    }
+
+    // A driver that reads the ranges directly from the storage, in any order.
+    static class DirectReadIO extends InputStreamIO {
+        private final byte[] content;
+        long bytesRead = 0;
+
+        DirectReadIO(byte[] content) throws IOException {
+            super(new ByteArrayInputStream(content), content.length);
+            this.content = content;
         }
-        assertNotNull(expectedException);
+
+        @Override
+        public boolean supportsRangeReads() {
+            return true;
+        }
+
+        @Override
+        public void writeRange(long offset, long length, OutputStream outputStream) throws IOException {
+            bytesRead += length;
+            outputStream.write(content, (int) offset, (int) length);
+        }
+    }
+
+    // Overlapping ranges are merged on a direct-read driver too, so that the
+    // same bytes aren't read and sent more than once.
+    @Test
+    public void testOverlappingRangesReadDirectly() throws IOException {
+        byte[] content = new byte[100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        DirectReadIO storageIO = new DirectReadIO(content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        List<Range> ranges = diw.getRangesToWrite("bytes=5-14,0-9,0-14,0-14,90-", 100);
+        for (Range range : ranges) {
+            DownloadInstanceWriter.writeRange(storageIO, new byte[0], range, out);
+        }
+
+        assertEquals(2, ranges.size());
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(14, ranges.get(0).getEnd());
+        assertEquals(25, storageIO.bytesRead);
+        assertEquals(25, out.size());
+        assertEquals(14, out.toByteArray()[14]);
+        assertEquals(90, out.toByteArray()[15]);
     }
 
 }
@@ -0,0 +1,125 @@
+package edu.harvard.iq.dataverse.authorization;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PermissionCacheTest {
+
+    private final PermissionCache cache = new PermissionCache(100, Duration.ofMinutes(10));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Set<Permission> get(Set<String> assignees, long dvObjectId, Set<Long> ancestorIds) {
+        return cache.get(assignees, dvObjectId, () -> {
+            loads.incrementAndGet();
+            return new PermissionCache.Entry(EnumSet.of(Permission.ViewUnpublishedDataset), ancestorIds);
+        });
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        assertEquals(EnumSet.of(Permission.ViewUnpublishedDataset), get(Set.of("@user", "&explicit/1-group"), 3, Set.of(1L, 2L, 3L)));
+        get(Set.of("&explicit/1-group", "@user"), 3, Set.of(1L, 2L, 3L));
+        get(Set.of("@user"), 3, Set.of(1L, 2L, 3L));
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testReturnsCopies() {
+        get(Set.of("@user"), 3, Set.of(3L)).add(Permission.DeleteDatasetDraft);
+        assertEquals(EnumSet.of(Permission.ViewUnpublishedDataset), get(Set.of("@user"), 3, Set.of(3L)));
+    }
+
+    @Test
+    public void testInvalidateDvObject() {
+        get(Set.of("@user"), 3, Set.of(1L, 2L, 3L));
+        get(Set.of("@user"), 4, Set.of(1L, 4L));
+
+        // a role assigned on 2 changes the permissions on 3, not on 4:
+        cache.invalidateDvObject(2);
+        get(Set.of("@user"), 3, Set.of(1L, 2L, 3L));
+        get(Set.of("@user"), 4, Set.of(1L, 4L));
+        assertEquals(3, loads.get());
+
+        cache.invalidateDvObject(1);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidateAssignee() {
+        get(Set.of("@user", "&explicit/1-group"), 3, Set.of(3L));
+        get(Set.of("@other"), 3, Set.of(3L));
+
+        cache.invalidateAssignee("&explicit/1-group");
+        assertEquals(1, cache.getSize());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+    }
+
+    // what the other servers of a cluster are told to invalidate:
+    @Test
+    public void testInvalidationMessages() {
+        get(Set.of("@user", "&explicit/1-group"), 3, Set.of(1L, 3L));
+        get(Set.of("@other"), 4, Set.of(4L));
+        get(Set.of("@another"), 5, Set.of(5L));
+
+        PermissionCacheServiceBean.Invalidation.applyMessage(cache,
+                PermissionCacheServiceBean.Invalidation.message(PermissionCacheServiceBean.Invalidation.ASSIGNEE, "&explicit/1-group"));
+        assertEquals(2, cache.getSize());
+        PermissionCacheServiceBean.Invalidation.applyMessage(cache,
+                PermissionCacheServiceBean.Invalidation.message(PermissionCacheServiceBean.Invalidation.DVOBJECT, "4"));
+        assertEquals(1, cache.getSize());
+        // when in doubt, everything:
+        PermissionCacheServiceBean.Invalidation.applyMessage(cache, "junk");
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testNoSharedCache() {
+        PermissionCache disabled = new PermissionCache(0, Duration.ofMinutes(10));
+        AtomicInteger disabledLoads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            disabled.get(Set.of("@user"), 3, () -> {
+                disabledLoads.incrementAndGet();
+                return new PermissionCache.Entry(EnumSet.noneOf(Permission.class), Set.of(3L));
+            });
+        }
+        assertEquals(2, disabledLoads.get());
+        assertEquals(0, disabled.getSize());
+    }
+
+    @Test
+    public void testRequestLevel() {
+        PermissionCache.RequestLevel request = new PermissionCache.RequestLevel();
+        AtomicInteger requestLoads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            request.get(cache, 3, () -> {
+                requestLoads.incrementAndGet();
+                return get(Set.of("@user"), 3, Set.of(1L, 3L));
+            });
+        }
+        assertEquals(1, requestLoads.get());
+        assertEquals(2, cache.getRequestHitCount());
+
+        // anything invalidated in the shared cache empties the request's:
+        cache.invalidateDvObject(99);
+        Set<Permission> permissions = request.get(cache, 3, () -> {
+            requestLoads.incrementAndGet();
+            return EnumSet.noneOf(Permission.class);
+        });
+        assertEquals(2, requestLoads.get());
+        assertTrue(permissions.isEmpty());
+    }
+}
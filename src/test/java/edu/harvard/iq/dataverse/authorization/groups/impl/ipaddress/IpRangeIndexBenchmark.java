@@ -0,0 +1,140 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Range;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the IP groups of an address in an {@link IpRangeIndex}
+ * with checking every range, the way the database had to for the
+ * "IPv4Range.findGroupsContainingAddressAsLong" query that IpGroupsServiceBean
+ * used to run on every permission check (without the round trip, which cost
+ * far more than either).
+ *
+ * Half of the addresses looked up are in some range, half aren't. Run with
+ * {@code -prof gc} to see that the index doesn't allocate.
+ *
+ * Not run as part of the test suite. To run it, from the project root:
+ * <pre>
+ * mvn test-compile
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.IpRangeIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IpRangeIndexBenchmark {
+
+    private static final int ADDRESSES = 1024;
+
+    @Param({"10000"})
+    public int ranges;
+
+    @Param({"500"})
+    public int groups;
+
+    private IPv4Range[] ipv4Ranges;
+    private long[] ipv4Owners;
+    private IpRangeIndex index;
+    private IpAddress[] ipv4Addresses;
+    private IpAddress[] ipv6Addresses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createRanges() {
+        Random random = new Random(42);
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder();
+        ipv4Ranges = new IPv4Range[ranges];
+        ipv4Owners = new long[ranges];
+        for (int i = 0; i < ranges; i++) {
+            // mostly small subnets, some single addresses:
+            long bottom = random.nextInt() & 0xffffffffL;
+            long top = Math.min(0xffffffffL, bottom + (random.nextBoolean() ? 0 : random.nextInt(1 << 16)));
+            long owner = random.nextInt(groups);
+            ipv4Ranges[i] = new IPv4Range(new IPv4Address(bottom), new IPv4Address(top));
+            ipv4Owners[i] = owner;
+            builder.addIPv4Range(ipv4Ranges[i].getBottom(), ipv4Ranges[i].getTop(), owner);
+
+            int[] words = new int[8];
+            for (int w = 0; w < 8; w++) {
+                words[w] = random.nextInt(1 << 16);
+            }
+            int[] topWords = words.clone();
+            topWords[6] = 0xffff;
+            topWords[7] = 0xffff;
+            builder.addIPv6Range(new IPv6Address(words), new IPv6Address(topWords), owner);
+        }
+        index = builder.build();
+
+        ipv4Addresses = new IpAddress[ADDRESSES];
+        ipv6Addresses = new IpAddress[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            if (i % 2 == 0) {
+                IPv4Range range = ipv4Ranges[random.nextInt(ranges)];
+                ipv4Addresses[i] = range.getBottom();
+            } else {
+                ipv4Addresses[i] = new IPv4Address(random.nextInt() & 0xffffffffL);
+            }
+            int[] words = new int[8];
+            for (int w = 0; w < 8; w++) {
+                words[w] = random.nextInt(1 << 16);
+            }
+            ipv6Addresses[i] = new IPv6Address(words);
+        }
+    }
+
+    private int nextAddress() {
+        return next = (next + 1) & (ADDRESSES - 1);
+    }
+
+    @Benchmark
+    public void scanIPv4Ranges(Blackhole blackhole) {
+        IpAddress address = ipv4Addresses[nextAddress()];
+        for (int i = 0; i < ipv4Ranges.length; i++) {
+            if (ipv4Ranges[i].contains(address)) {
+                blackhole.consume(ipv4Owners[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public long[] indexIPv4() {
+        return index.findGroupIds(ipv4Addresses[nextAddress()]);
+    }
+
+    @Benchmark
+    public long[] indexIPv6() {
+        return index.findGroupIds(ipv6Addresses[nextAddress()]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IpRangeIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
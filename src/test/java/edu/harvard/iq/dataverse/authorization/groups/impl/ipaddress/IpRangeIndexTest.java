@@ -0,0 +1,99 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class IpRangeIndexTest {
+
+    private static long[] find(IpRangeIndex index, String address) {
+        return index.findGroupIds(IpAddress.valueOf(address));
+    }
+
+    @Test
+    public void testIPv4() {
+        IpRangeIndex index = new IpRangeIndex.Builder()
+                .addIPv4Range(IPv4Address.valueOf("10.0.0.0"), IPv4Address.valueOf("10.0.255.255"), 1)
+                .addIPv4Range(IPv4Address.valueOf("10.0.1.0"), IPv4Address.valueOf("10.0.1.255"), 2)
+                .addIPv4Range(IPv4Address.valueOf("10.0.1.128"), IPv4Address.valueOf("10.0.2.0"), 1)
+                .addIPv4Range(IPv4Address.valueOf("192.168.0.1"), IPv4Address.valueOf("192.168.0.1"), 3)
+                .build();
+
+        assertArrayEquals(new long[0], find(index, "9.255.255.255"));
+        assertArrayEquals(new long[]{1}, find(index, "10.0.0.0"));
+        assertArrayEquals(new long[]{1, 2}, find(index, "10.0.1.0"));
+        assertArrayEquals(new long[]{1, 2}, find(index, "10.0.1.200"));
+        assertArrayEquals(new long[]{1}, find(index, "10.0.2.0"));
+        assertArrayEquals(new long[]{1}, find(index, "10.0.255.255"));
+        assertArrayEquals(new long[0], find(index, "10.1.0.0"));
+        assertArrayEquals(new long[]{3}, find(index, "192.168.0.1"));
+        assertArrayEquals(new long[0], find(index, "192.168.0.2"));
+        assertArrayEquals(new long[0], find(index, "::ffff:10.0.0.1"));
+        assertEquals(4, index.getRangeCount());
+    }
+
+    @Test
+    public void testIPv6() {
+        IpRangeIndex index = new IpRangeIndex.Builder()
+                .addIPv6Range(IPv6Address.valueOf("fe80::"), IPv6Address.valueOf("fe80::ffff:ffff:ffff:ffff"), 1)
+                .addIPv6Range(IPv6Address.valueOf("::1"), IPv6Address.valueOf("::1"), 2)
+                .addIPv6Range(IPv6Address.valueOf("ffff:ffff:ffff:ffff:ffff:ffff:ffff:0"),
+                        IPv6Address.valueOf("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"), 3)
+                .build();
+
+        assertArrayEquals(new long[]{1}, find(index, "fe80::1"));
+        assertArrayEquals(new long[]{1}, find(index, "fe80::8000:0:0:0"));
+        assertArrayEquals(new long[0], find(index, "fe80:0:0:1::"));
+        assertArrayEquals(new long[]{2}, find(index, "::1"));
+        assertArrayEquals(new long[0], find(index, "::2"));
+        assertArrayEquals(new long[]{3}, find(index, "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertArrayEquals(new long[0], find(index, "127.0.0.1"));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertArrayEquals(new long[0], find(IpRangeIndex.EMPTY, "127.0.0.1"));
+        assertArrayEquals(new long[0], find(IpRangeIndex.EMPTY, "::1"));
+    }
+
+    @Test
+    public void testSharesResults() {
+        IpRangeIndex index = new IpRangeIndex.Builder()
+                .addIPv4Range(IPv4Address.valueOf("1.0.0.0"), IPv4Address.valueOf("1.0.0.10"), 7)
+                .addIPv4Range(IPv4Address.valueOf("2.0.0.0"), IPv4Address.valueOf("2.0.0.10"), 7)
+                .build();
+        assertSame(find(index, "1.0.0.5"), find(index, "2.0.0.5"));
+    }
+
+    @Test
+    public void testSameAsScanningTheRanges() {
+        Random random = new Random(42);
+        int count = 500;
+        long[][] ranges = new long[count][];
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder();
+        for (int i = 0; i < count; i++) {
+            long bottom = random.nextInt(1 << 20);
+            long top = bottom + random.nextInt(1 << 12);
+            long groupId = random.nextInt(50);
+            ranges[i] = new long[]{bottom, top, groupId};
+            builder.addIPv4Range(new IPv4Address(bottom), new IPv4Address(top), groupId);
+        }
+        IpRangeIndex index = builder.build();
+
+        for (int i = 0; i < 10000; i++) {
+            long address = random.nextInt((1 << 20) + (1 << 12));
+            long[] expected = java.util.Arrays.stream(ranges)
+                    .filter(range -> range[0] <= address && address <= range[1])
+                    .mapToLong(range -> range[2])
+                    .distinct().sorted().toArray();
+            assertArrayEquals(expected, index.findGroupIds(new IPv4Address(address)), "for " + new IPv4Address(address));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.mocks.MocksFactory;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataFileZipperTest {
+
+    private final Map<Long, String> fileNames = new HashMap<>();
+    private final Map<Long, byte[]> contents = new HashMap<>();
+    private final List<Long> failing = new ArrayList<>();
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Serves the files from memory, instead of a store.
+     */
+    private class TestZipper extends DataFileZipper {
+
+        TestZipper(ByteArrayOutputStream out, ZipReadAhead readAhead) {
+            super(out, readAhead);
+        }
+
+        @Override
+        protected InputStream openFile(DataFileToZip file, boolean original) throws IOException {
+            if (failing.contains(file.id())) {
+                throw new IOException("Failed to open " + file.id());
+            }
+            return new ByteArrayInputStream(contents.get(file.id()));
+        }
+    }
+
+    private ZipReadAhead readAhead(int parallelism, long budget) {
+        return parallelism > 1 ? new ZipReadAhead(executorService, parallelism, 10_000, budget) : null;
+    }
+
+    private DataFile makeFile(String fileName, String folder, byte[] content) {
+        DataFile dataFile = MocksFactory.makeDataFile();
+        dataFile.getFileMetadata().setLabel(fileName);
+        dataFile.getFileMetadata().setDirectoryLabel(folder);
+        dataFile.setContentType("application/octet-stream");
+        dataFile.setFilesize(content.length);
+        fileNames.put(dataFile.getId(), fileName);
+        contents.put(dataFile.getId(), content);
+        return dataFile;
+    }
+
+    private static byte[] text(int size) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < size) {
+            sb.append("line ").append(sb.length()).append('\n');
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void testZipHasAllFilesInOrder(int parallelism) throws IOException {
+        List<DataFile> dataFiles = List.of(
+                makeFile("small.txt", null, text(1000)),
+                makeFile("big.txt", "data", text(100_000)),
+                makeFile("image.jpg", "data", random(5000)),
+                makeFile("big.zip", "/data/archives", random(50_000)),
+                makeFile("small.txt", null, text(10)),
+                makeFile("empty.txt", null, new byte[0]));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipReadAhead readAhead = readAhead(parallelism, 1_000_000);
+        TestZipper zipper = new TestZipper(out, readAhead);
+        zipper.setFileManifest("");
+        for (DataFile dataFile : dataFiles) {
+            zipper.addFileToZipStream(dataFile);
+        }
+        zipper.addToManifest("skipped.txt IS RESTRICTED AND CANNOT BE DOWNLOADED\r\n");
+        zipper.finalizeZipStream();
+
+        Map<String, byte[]> entries = readZip(out.toByteArray());
+        assertEquals(List.of("small.txt", "data/", "data/big.txt", "data/image.jpg", "data/archives/",
+                "data/archives/big.zip", "small_1.txt", "empty.txt", "MANIFEST.TXT"), new ArrayList<>(entries.keySet()));
+        assertArrayEquals(contents.get(dataFiles.get(0).getId()), entries.get("small.txt"));
+        assertArrayEquals(contents.get(dataFiles.get(1).getId()), entries.get("data/big.txt"));
+        assertArrayEquals(contents.get(dataFiles.get(2).getId()), entries.get("data/image.jpg"));
+        assertArrayEquals(contents.get(dataFiles.get(3).getId()), entries.get("data/archives/big.zip"));
+        assertArrayEquals(contents.get(dataFiles.get(4).getId()), entries.get("small_1.txt"));
+
+        String manifest = new String(entries.get("MANIFEST.TXT"), StandardCharsets.UTF_8);
+        assertEquals("small.txt (application/octet-stream) 1000 bytes.\r\n"
+                + "data/big.txt (application/octet-stream) 100000 bytes.\r\n"
+                + "data/image.jpg (application/octet-stream) 5000 bytes.\r\n"
+                + "data/archives/big.zip (application/octet-stream) 50000 bytes.\r\n"
+                + "small_1.txt (application/octet-stream) 10 bytes.\r\n"
+                + "empty.txt (application/octet-stream) 0 bytes.\r\n"
+                + "skipped.txt IS RESTRICTED AND CANNOT BE DOWNLOADED\r\n", manifest);
+        if (readAhead != null) {
+            assertEquals(0, readAhead.getReserved());
+        }
+    }
+
+    @Test
+    void testFilesOverTheBudgetAreStreamed() throws IOException {
+        List<DataFile> dataFiles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            dataFiles.add(makeFile("file" + i + ".txt", null, text(4000 + i)));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // (room for two of them in memory)
+        ZipReadAhead readAhead = readAhead(4, 9000);
+        TestZipper zipper = new TestZipper(out, readAhead);
+        for (DataFile dataFile : dataFiles) {
+            zipper.addFileToZipStream(dataFile);
+            assertTrue(readAhead.getReserved() <= 9000);
+        }
+        zipper.finalizeZipStream();
+
+        Map<String, byte[]> entries = readZip(out.toByteArray());
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(contents.get(dataFiles.get(i).getId()), entries.get("file" + i + ".txt"));
+        }
+        assertEquals(0, readAhead.getReserved());
+    }
+
+    @Test
+    void testFailureToReadAFileIsThrown() throws IOException {
+        List<DataFile> dataFiles = List.of(
+                makeFile("a.txt", null, text(100)),
+                makeFile("b.txt", null, text(100)));
+        failing.add(dataFiles.get(1).getId());
+
+        ZipReadAhead readAhead = readAhead(4, 1_000_000);
+        TestZipper zipper = new TestZipper(new ByteArrayOutputStream(), readAhead);
+        for (DataFile dataFile : dataFiles) {
+            zipper.addFileToZipStream(dataFile);
+        }
+        assertThrows(IOException.class, zipper::finalizeZipStream);
+        zipper.close();
+        assertEquals(0, readAhead.getReserved());
+    }
+
+    @Test
+    void testClosingReleasesTheFilesReadAhead() throws Exception {
+        List<DataFile> dataFiles = List.of(
+                makeFile("a.txt", null, text(100)),
+                makeFile("b.txt", null, text(100)),
+                makeFile("c.txt", null, text(100)));
+
+        ZipReadAhead readAhead = readAhead(4, 1_000_000);
+        TestZipper zipper = new TestZipper(new ByteArrayOutputStream(), readAhead);
+        for (DataFile dataFile : dataFiles) {
+            zipper.addFileToZipStream(dataFile);
+        }
+        zipper.close();
+
+        // (the files being read are released once they're done)
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, readAhead.getReserved());
+    }
+
+    @Test
+    void testIsCompressedFormat() {
+        assertTrue(DataFileZipper.isCompressedFormat("photo.JPG", "application/octet-stream"));
+        assertTrue(DataFileZipper.isCompressedFormat("data", "application/zip"));
+        assertTrue(DataFileZipper.isCompressedFormat("clip.bin", "video/mp4"));
+        assertFalse(DataFileZipper.isCompressedFormat("data.tab", "text/tab-separated-values"));
+        assertFalse(DataFileZipper.isCompressedFormat("README", null));
+    }
+
+    private static Map<String, byte[]> readZip(byte[] zip) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entries.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
@@ -14,6 +14,8 @@ import edu.harvard.iq.dataverse.util.FileUtil;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -105,6 +107,23 @@ public class FileAccessIOTest {
         assertEquals(false, dataFileAccess.canWrite());
     }
 
+    @Test
+    public void testWriteRange() throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter("/tmp/files/tmp/dataset/DataFile"))) {
+            bw.write("This is a test string");
+        }
+        dataFileAccess.open(DataAccessOption.READ_ACCESS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // in any order, straight from the file:
+        assertTrue(dataFileAccess.supportsRangeReads());
+        dataFileAccess.writeRange(10, 4, out);
+        dataFileAccess.writeRange(0, 4, out);
+        dataFileAccess.writeRange(15, 6, out);
+        assertEquals("testThisstring", out.toString());
+        assertThrows(EOFException.class, () -> dataFileAccess.writeRange(15, 7, out));
+    }
+
     /**
      * Test of savePath method, of class FileAccessIO.
      *
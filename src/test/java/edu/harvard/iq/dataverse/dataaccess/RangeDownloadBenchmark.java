@@ -0,0 +1,141 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares partial reads of a large file, the way a NetCDF/HDF5 client reads
+ * the chunks of one variable (a handful of ranges scattered over the file):
+ * the way DownloadInstanceWriter used to serve them (one request per range,
+ * skipping through the input stream, copying through a 32 KB buffer) with
+ * FileAccessIO.writeRange() serving all of them in one multipart request.
+ *
+ * (The gain on S3 and Swift, where the ranges are now ranged GETs instead of
+ * reading the object up to them, depends on the network and isn't measured
+ * here.)
+ *
+ * Not run as part of the test suite. To run it, from the project root:
+ * <pre>
+ * mvn test-compile
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      edu.harvard.iq.dataverse.dataaccess.RangeDownloadBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RangeDownloadBenchmark {
+
+    @Param({"256"})
+    public int fileSizeMb;
+
+    @Param({"8"})
+    public int ranges;
+
+    @Param({"1048576"})
+    public int rangeLength;
+
+    private File file;
+    private long[] offsets;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = File.createTempFile("range-benchmark", ".h5");
+        Random random = new Random(42);
+        byte[] megabyte = new byte[1024 * 1024];
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            for (int i = 0; i < fileSizeMb; i++) {
+                random.nextBytes(megabyte);
+                out.write(megabyte);
+            }
+        }
+
+        offsets = new long[ranges];
+        for (int i = 0; i < ranges; i++) {
+            offsets[i] = (long) (random.nextDouble() * (file.length() - rangeLength));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void skipThroughStream(Blackhole blackhole) throws IOException {
+        for (long offset : offsets) {
+            try (InputStream instream = new FileInputStream(file)) {
+                instream.skip(offset);
+                long leftToRead = rangeLength;
+                int bufsize;
+                byte[] bffr = new byte[4 * 8192];
+                OutputStream outstream = sink(blackhole);
+                while ((bufsize = instream.read(bffr)) != -1) {
+                    if ((leftToRead -= bufsize) > 0) {
+                        outstream.write(bffr, 0, bufsize);
+                    } else {
+                        outstream.write(bffr, 0, (int) leftToRead + bufsize);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeRange(Blackhole blackhole) throws IOException {
+        FileAccessIO<?> storageIO = new FileAccessIO<>(file.getAbsolutePath(), DataAccess.FILE);
+        OutputStream outstream = sink(blackhole);
+        for (long offset : offsets) {
+            storageIO.writeRange(offset, rangeLength, outstream);
+        }
+    }
+
+    private static OutputStream sink(Blackhole blackhole) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(b[off]);
+            }
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RangeDownloadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
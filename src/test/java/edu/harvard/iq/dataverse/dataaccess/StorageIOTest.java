@@ -11,6 +11,7 @@ import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 //import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -255,4 +256,19 @@ public class StorageIOTest {
     public void testGetConfigParamWithDefault() {
     assertEquals(DataAccess.DEFAULT_STORAGE_DRIVER_IDENTIFIER, StorageIO.getConfigParamForDriver("globus", AbstractRemoteOverlayAccessIO.BASE_STORE, DataAccess.DEFAULT_STORAGE_DRIVER_IDENTIFIER));
     }
+
+    @Test
+    public void testWriteRangeFromInputStream() throws IOException {
+        InputStreamIO inputStreamIO = new InputStreamIO(new ByteArrayInputStream("This is a test string".getBytes()), 21);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertFalse(inputStreamIO.supportsRangeReads());
+        inputStreamIO.writeRange(0, 4, out);
+        inputStreamIO.writeRange(10, 4, out);
+        assertEquals("Thistest", out.toString());
+        // the stream doesn't go back:
+        assertThrows(IOException.class, () -> inputStreamIO.writeRange(5, 2, out));
+        // or beyond the end:
+        assertThrows(EOFException.class, () -> inputStreamIO.writeRange(15, 10, out));
+    }
 }
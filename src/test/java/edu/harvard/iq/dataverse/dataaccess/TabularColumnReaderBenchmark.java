@@ -0,0 +1,112 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.dataaccess.TabularColumnReader.ColumnType;
+import edu.harvard.iq.dataverse.util.SumStatCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares calculating the summary statistics for every column of a wide tab
+ * file the way ingest used to (one TabularSubsetGenerator.subsetDoubleVector()
+ * pass per column) with the single-pass TabularColumnReader.
+ *
+ * Not run as part of the test suite. To run it, from the project root:
+ * <pre>
+ * mvn test-compile
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      edu.harvard.iq.dataverse.dataaccess.TabularColumnReaderBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TabularColumnReaderBenchmark {
+
+    @Param({"200"})
+    public int columns;
+
+    @Param({"5000"})
+    public int rows;
+
+    private File tabFile;
+    private ColumnType[] columnTypes;
+
+    @Setup(Level.Trial)
+    public void createTabFile() throws IOException {
+        tabFile = File.createTempFile("sumstats-benchmark", ".tab");
+        Random random = new Random(42);
+
+        try (BufferedWriter out = Files.newBufferedWriter(tabFile.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if (j > 0) {
+                        out.write('\t');
+                    }
+                    // about 1% missing values:
+                    if (random.nextInt(100) > 0) {
+                        out.write(Double.toString(random.nextGaussian() * 1000));
+                    }
+                }
+                out.write('\n');
+            }
+        }
+
+        columnTypes = new ColumnType[columns];
+        Arrays.fill(columnTypes, ColumnType.DOUBLE);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTabFile() {
+        tabFile.delete();
+    }
+
+    @Benchmark
+    public void perColumnSubsetting(Blackhole blackhole) throws IOException {
+        for (int j = 0; j < columns; j++) {
+            Double[] vector = TabularSubsetGenerator.subsetDoubleVector(new FileInputStream(tabFile), j, rows, false);
+            blackhole.consume(SumStatCalculator.calculateSummaryStatistics(vector));
+        }
+    }
+
+    @Benchmark
+    public void singlePassColumnReader(Blackhole blackhole) throws IOException {
+        TabularColumnReader reader = new TabularColumnReader(tabFile, rows, false, Runtime.getRuntime().maxMemory() / 4);
+        reader.readColumns(columnTypes, vector
+                -> blackhole.consume(SumStatCalculator.calculateSummaryStatistics(vector.getValidValues(), vector.getInvalidCount())));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TabularColumnReaderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,118 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.dataaccess.TabularColumnReader.ColumnType;
+import edu.harvard.iq.dataverse.dataaccess.TabularColumnReader.ColumnVector;
+import edu.harvard.iq.dataverse.util.SumStatCalculator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TabularColumnReaderTest {
+
+    private static final ColumnType[] COLUMN_TYPES = {
+        ColumnType.LONG, ColumnType.DOUBLE, ColumnType.FLOAT, ColumnType.STRING, null, ColumnType.DOUBLE
+    };
+
+    @TempDir
+    Path tempDir;
+
+    private File tabFile;
+    private int numCases;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder("id\tx\ty\tname\tskipped\tz\n");
+        sb.append("1\t1.5\t0.25\t\"foo\"\tbar\tinf\n");
+        sb.append("2\t\t-inf\t\"tab\\there\"\tbar\tNaN\n");
+        sb.append("\t3.75\tNaN\t\t\t-1E10\n");
+        sb.append("4\tnotanumber\t1.0000001\t\"quoted \\\"string\\\"\"\tbar\t\n");
+        sb.append("5\t-2\t7\t\"back\\\\slash\"\tbar\t0.1\n");
+        sb.append("\n");
+        numCases = 5;
+
+        tabFile = tempDir.resolve("test.tab").toFile();
+        Files.writeString(tabFile.toPath(), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testSinglePassMatchesSubsetGenerator() throws IOException {
+        Map<Integer, ColumnVector> vectors = readAll(Long.MAX_VALUE, 1);
+
+        assertArrayEquals(TabularSubsetGenerator.subsetLongVector(new FileInputStream(tabFile), 0, numCases, true),
+                vectors.get(0).toLongVector());
+        assertArrayEquals(TabularSubsetGenerator.subsetDoubleVector(new FileInputStream(tabFile), 1, numCases, true),
+                vectors.get(1).toDoubleVector());
+        assertArrayEquals(TabularSubsetGenerator.subsetFloatVector(new FileInputStream(tabFile), 2, numCases, true),
+                vectors.get(2).toFloatVector());
+        assertArrayEquals(TabularSubsetGenerator.subsetStringVector(new FileInputStream(tabFile), 3, numCases, true),
+                vectors.get(3).getStringVector());
+        assertArrayEquals(TabularSubsetGenerator.subsetDoubleVector(new FileInputStream(tabFile), 5, numCases, true),
+                vectors.get(5).toDoubleVector());
+        assertEquals(5, vectors.size());
+    }
+
+    @Test
+    void testMultiplePassesWithSmallBudget() throws IOException {
+        // room for one vector per pass:
+        Map<Integer, ColumnVector> vectors = readAll(TabularColumnReader.estimateColumnSize(ColumnType.DOUBLE, numCases), 5);
+
+        assertArrayEquals(new Long[]{1L, 2L, null, 4L, 5L}, vectors.get(0).toLongVector());
+        assertArrayEquals(new String[]{"foo", "tab\there", null, "quoted \"string\"", "back\\slash"}, vectors.get(3).getStringVector());
+    }
+
+    @Test
+    void testSummaryStatisticsMatch() throws IOException {
+        Map<Integer, ColumnVector> vectors = readAll(Long.MAX_VALUE, 1);
+
+        for (int column : new int[]{0, 1, 2, 5}) {
+            Number[] boxed;
+            switch (COLUMN_TYPES[column]) {
+                case LONG:
+                    boxed = vectors.get(column).toLongVector();
+                    break;
+                case FLOAT:
+                    boxed = vectors.get(column).toFloatVector();
+                    break;
+                default:
+                    boxed = vectors.get(column).toDoubleVector();
+            }
+            ColumnVector vector = vectors.get(column);
+            assertArrayEquals(SumStatCalculator.calculateSummaryStatistics(boxed),
+                    SumStatCalculator.calculateSummaryStatistics(vector.getValidValues(), vector.getInvalidCount()),
+                    "column " + column);
+        }
+    }
+
+    @Test
+    void testTooFewRows() throws IOException {
+        TabularColumnReader reader = new TabularColumnReader(tabFile, numCases + 1, true, Long.MAX_VALUE);
+        assertThrows(IOException.class, () -> reader.readColumns(COLUMN_TYPES, vector -> {}));
+    }
+
+    @Test
+    void testTooManyRows() throws IOException {
+        TabularColumnReader reader = new TabularColumnReader(tabFile, numCases - 1, true, Long.MAX_VALUE);
+        assertThrows(IOException.class, () -> reader.readColumns(COLUMN_TYPES, vector -> {}));
+    }
+
+    private Map<Integer, ColumnVector> readAll(long memoryBudget, int expectedPasses) throws IOException {
+        Map<Integer, ColumnVector> vectors = new HashMap<>();
+        TabularColumnReader reader = new TabularColumnReader(tabFile, numCases, true, memoryBudget);
+        int passes = reader.readColumns(COLUMN_TYPES, vector -> vectors.put(vector.getColumn(), vector));
+        assertEquals(expectedPasses, passes);
+        return vectors;
+    }
+}
@@ -0,0 +1,145 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares subsetting 3 columns of a wide and of a tall tab file the way the
+ * access API used to (TabularSubsetGenerator.subsetFile(), into a temp file,
+ * then read back) with TabularSubsetInputStream, reading the whole file or,
+ * with a TabularRowIndex, only the column blocks of the requested columns.
+ *
+ * Not run as part of the test suite. To run it, from the project root:
+ * <pre>
+ * mvn test-compile
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      edu.harvard.iq.dataverse.dataaccess.TabularSubsetBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TabularSubsetBenchmark {
+
+    // columns x rows
+    @Param({"2000x2000", "20x200000"})
+    public String shape;
+
+    private int rows;
+    private File tabFile;
+    private File rowIndex;
+    private List<Integer> subsetColumns;
+
+    @Setup(Level.Trial)
+    public void createTabFile() throws IOException {
+        String[] dimensions = shape.split("x");
+        int columns = Integer.parseInt(dimensions[0]);
+        rows = Integer.parseInt(dimensions[1]);
+        tabFile = File.createTempFile("subset-benchmark", ".tab");
+        Random random = new Random(42);
+
+        try (BufferedWriter out = Files.newBufferedWriter(tabFile.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if (j > 0) {
+                        out.write('\t');
+                    }
+                    out.write(Double.toString(random.nextGaussian() * 1000));
+                }
+                out.write('\n');
+            }
+        }
+
+        rowIndex = File.createTempFile("subset-benchmark", ".rowindex");
+        // (the index of a narrow file has no column blocks, and is not used)
+        int columnBlockSize = TabularRowIndex.columnBlockSizeFor(columns);
+        try (InputStream in = new FileInputStream(tabFile); FileOutputStream out = new FileOutputStream(rowIndex)) {
+            TabularRowIndex.write(in, tabFile.length(), columnBlockSize, out);
+        }
+
+        subsetColumns = Arrays.asList(1, columns / 2, columns - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTabFile() {
+        tabFile.delete();
+        rowIndex.delete();
+    }
+
+    @Benchmark
+    public void subsetFileToTempFile(Blackhole blackhole) throws IOException {
+        File tempSubsetFile = File.createTempFile("tempSubsetFile", ".tmp");
+        try {
+            new TabularSubsetGenerator().subsetFile(new FileInputStream(tabFile), tempSubsetFile.getAbsolutePath(),
+                    subsetColumns, (long) rows, "\t");
+            consume(new FileInputStream(tempSubsetFile), blackhole);
+        } finally {
+            tempSubsetFile.delete();
+        }
+    }
+
+    @Benchmark
+    public void subsetStream(Blackhole blackhole) throws IOException {
+        consume(new TabularSubsetInputStream(new FileInputStream(tabFile), subsetColumns, rows), blackhole);
+    }
+
+    @Benchmark
+    public void subsetStreamWithRowIndex(Blackhole blackhole) throws IOException {
+        TabularRowIndex.Reader index = new TabularRowIndex.Reader(new FileInputStream(rowIndex));
+        if (index.getColumnBlockSize() == 0) {
+            index.close();
+            subsetStream(blackhole);
+            return;
+        }
+        consume(new TabularSubsetInputStream(FileChannel.open(tabFile.toPath()), index, subsetColumns, rows), blackhole);
+    }
+
+    private static void consume(InputStream in, Blackhole blackhole) throws IOException {
+        try (in) {
+            byte[] buffer = new byte[4 * 8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                blackhole.consume(read);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TabularSubsetBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,154 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TabularSubsetInputStreamTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testNarrowFileMatchesSubsetFile() throws IOException {
+        Path tabFile = writeTabFile(5, 20, true);
+        List<Integer> columns = Arrays.asList(3, 0, 3, 1);
+
+        String subset = readAll(new TabularSubsetInputStream(new FileInputStream(tabFile.toFile()), columns, 21));
+
+        assertEquals(subsetFile(tabFile, columns, 21), subset);
+    }
+
+    @Test
+    void testWideFileWithRowIndexMatchesSubsetFile() throws IOException {
+        int columns = 300;
+        Path tabFile = writeTabFile(columns, 50, false);
+        int columnBlockSize = TabularRowIndex.columnBlockSizeFor(columns);
+        assertTrue(columnBlockSize > 0);
+        Path index = writeRowIndex(tabFile, columnBlockSize);
+
+        for (List<Integer> subsetColumns : Arrays.asList(
+                Arrays.asList(0),
+                Arrays.asList(columnBlockSize - 1, columnBlockSize),
+                Arrays.asList(299, 5, 150),
+                Arrays.asList(2 * columnBlockSize, 299))) {
+            String subset = readAll(new TabularSubsetInputStream(FileChannel.open(tabFile),
+                    new TabularRowIndex.Reader(Files.newInputStream(index)), subsetColumns, 50));
+
+            assertEquals(subsetFile(tabFile, subsetColumns, 50), subset);
+        }
+    }
+
+    @Test
+    void testRowIndexOfNarrowFileHasNoColumnBlocks() throws IOException {
+        Path tabFile = writeTabFile(5, 10, false);
+        Path index = writeRowIndex(tabFile, TabularRowIndex.columnBlockSizeFor(5));
+
+        try (TabularRowIndex.Reader reader = new TabularRowIndex.Reader(Files.newInputStream(index))) {
+            assertEquals(Files.size(tabFile), reader.getFileSize());
+            assertEquals(0, reader.getColumnBlockSize());
+            long rows = 0;
+            long size = 0;
+            while (reader.next()) {
+                assertEquals(size, reader.getRowStart());
+                size += reader.getRowLength();
+                rows++;
+            }
+            assertEquals(10, rows);
+            assertEquals(Files.size(tabFile), size);
+        }
+    }
+
+    @Test
+    void testRowIndexOfOtherFileIsRejected() throws IOException {
+        Path tabFile = writeTabFile(5, 10, false);
+
+        assertThrows(IOException.class, () -> TabularRowIndex.write(Files.newInputStream(tabFile),
+                Files.size(tabFile) + 1, 0, new ByteArrayOutputStream()));
+        assertThrows(IOException.class, () -> new TabularRowIndex.Reader(Files.newInputStream(tabFile)));
+    }
+
+    @Test
+    void testWrongNumberOfRows() throws IOException {
+        Path tabFile = writeTabFile(5, 10, false);
+
+        assertThrows(IOException.class,
+                () -> readAll(new TabularSubsetInputStream(new FileInputStream(tabFile.toFile()), Arrays.asList(1), 11)));
+        assertThrows(IOException.class,
+                () -> readAll(new TabularSubsetInputStream(new FileInputStream(tabFile.toFile()), Arrays.asList(1), 9)));
+        // trailing empty rows are fine:
+        InputStream withBlankRows = new ByteArrayInputStream("a\tb\nc\td\n\n\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("b\nd\n", readAll(new TabularSubsetInputStream(withBlankRows, Arrays.asList(1), 2)));
+    }
+
+    @Test
+    void testTooFewColumns() {
+        InputStream in = new ByteArrayInputStream("a\tb\tc\nd\te\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> readAll(new TabularSubsetInputStream(in, Arrays.asList(2), 2)));
+    }
+
+    private Path writeTabFile(int columns, int rows, boolean withHeader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        if (withHeader) {
+            for (int j = 0; j < columns; j++) {
+                sb.append(j > 0 ? "\t" : "").append("var").append(j);
+            }
+            sb.append('\n');
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (j > 0) {
+                    sb.append('\t');
+                }
+                // some empty fields, and fields of varying lengths:
+                if ((i + j) % 7 != 0) {
+                    sb.append(i * j).append(j % 3 == 0 ? ".5" : "");
+                }
+            }
+            sb.append('\n');
+        }
+        Path tabFile = Files.createTempFile(tempDir, "subset", ".tab");
+        Files.writeString(tabFile, sb.toString(), StandardCharsets.UTF_8);
+        return tabFile;
+    }
+
+    private Path writeRowIndex(Path tabFile, int columnBlockSize) throws IOException {
+        Path index = Files.createTempFile(tempDir, "subset", ".rowindex");
+        try (InputStream in = Files.newInputStream(tabFile); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            TabularRowIndex.write(in, Files.size(tabFile), columnBlockSize, out);
+            Files.write(index, out.toByteArray());
+        }
+        return index;
+    }
+
+    private String subsetFile(Path tabFile, List<Integer> columns, long numLines) throws IOException {
+        Path outFile = Files.createTempFile(tempDir, "subset", ".out");
+        new TabularSubsetGenerator().subsetFile(tabFile.toString(), outFile.toString(), columns, numLines);
+        return Files.readString(outFile, StandardCharsets.UTF_8);
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try (in) {
+            String subset = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertFalse(subset.isEmpty());
+            return subset;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThumbnailCacheCheckerTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static List<DataFile> dataFiles(int count) {
+        List<DataFile> dataFiles = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            DataFile dataFile = new DataFile();
+            dataFile.setId(id);
+            dataFiles.add(dataFile);
+        }
+        return dataFiles;
+    }
+
+    @Test
+    void testChecksAllInParallel() {
+        ThumbnailCacheChecker checker = new ThumbnailCacheChecker(executorService, 4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        Map<Long, Boolean> cached = checker.check(dataFiles(20), dataFile -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return dataFile.getId() % 2 == 0;
+        });
+
+        assertEquals(20, cached.size());
+        assertTrue(cached.get(2L));
+        assertFalse(cached.get(3L));
+        assertTrue(maxRunning.get() <= 4, "max running: " + maxRunning.get());
+        assertTrue(maxRunning.get() > 1, "max running: " + maxRunning.get());
+    }
+
+    @Test
+    void testFailedChecksAreLeftOut() {
+        ThumbnailCacheChecker checker = new ThumbnailCacheChecker(executorService, 4);
+
+        Map<Long, Boolean> cached = checker.check(dataFiles(6), dataFile -> {
+            if (dataFile.getId() == 3) {
+                throw new IllegalStateException("storage unavailable");
+            }
+            return true;
+        });
+
+        assertEquals(5, cached.size());
+        assertFalse(cached.containsKey(3L));
+    }
+
+    @Test
+    void testRejectedChecksOnTheCallingThread() {
+        ThumbnailCacheChecker checker = new ThumbnailCacheChecker(command -> {
+            throw new RejectedExecutionException("shutting down");
+        }, 4);
+        Thread caller = Thread.currentThread();
+
+        Map<Long, Boolean> cached = checker.check(dataFiles(5), dataFile -> Thread.currentThread() == caller);
+
+        assertEquals(5, cached.size());
+        assertTrue(cached.values().stream().allMatch(Boolean::booleanValue));
+        assertTrue(checker.check(List.<DataFile>of(), dataFile -> true).isEmpty());
+    }
+}
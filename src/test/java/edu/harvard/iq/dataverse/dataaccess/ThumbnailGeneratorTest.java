@@ -0,0 +1,145 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThumbnailGeneratorTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void testLimitedWorkers() throws Exception {
+        ThumbnailGenerator generator = new ThumbnailGenerator(executorService, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(generator.submit("file" + i + ".thumb64", () -> {
+                assertTrue(Thread.currentThread() != caller);
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                running.decrementAndGet();
+                return true;
+            }, i % 2 == 0));
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void testSameThumbnailIsGeneratedOnce() throws Exception {
+        ThumbnailGenerator generator = new ThumbnailGenerator(executorService, 4);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger generations = new AtomicInteger();
+
+        CompletableFuture<Boolean> first = generator.submit("file.thumb64", () -> {
+            generations.incrementAndGet();
+            started.countDown();
+            release.await();
+            return true;
+        }, true);
+        started.await();
+        CompletableFuture<Boolean> second = generator.submit("file.thumb64", () -> generations.incrementAndGet() > 0, true);
+        CompletableFuture<Boolean> otherSize = generator.submit("file.thumb48", () -> generations.incrementAndGet() > 0, true);
+
+        assertSame(first, second);
+        assertTrue(otherSize.get(10, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertEquals(2, generations.get());
+
+        // (once it's done, it's either generated again, or this gets the
+        // result that was just completed)
+        assertTrue(generator.generate("file.thumb64", () -> generations.incrementAndGet() > 0));
+    }
+
+    @Test
+    void testRequestedThumbnailsGoFirst() throws Exception {
+        ThumbnailGenerator generator = new ThumbnailGenerator(executorService, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger generationsOfC = new AtomicInteger();
+
+        generator.submit("busy", () -> {
+            started.countDown();
+            release.await();
+            return true;
+        }, false);
+        started.await();
+        generator.submit("a", () -> order.add("a"), false);
+        generator.submit("b", () -> order.add("b"), false);
+        CompletableFuture<Boolean> c = generator.submit("c", () -> generationsOfC.incrementAndGet() > 0 && order.add("c"), false);
+        CompletableFuture<Boolean> d = generator.submit("d", () -> order.add("d"), true);
+        // (somebody's now waiting for c, which was to be generated in the background)
+        CompletableFuture<Boolean> cRequested = generator.submit("c", () -> generationsOfC.incrementAndGet() > 0, true);
+        release.countDown();
+
+        assertSame(c, cRequested);
+        assertTrue(cRequested.get(10, TimeUnit.SECONDS));
+        assertTrue(d.get(10, TimeUnit.SECONDS));
+        generator.submit("b", () -> true, false).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("c", "d", "a", "b"), order);
+        assertEquals(1, generationsOfC.get());
+    }
+
+    @Test
+    void testFailures() throws Exception {
+        ThumbnailGenerator generator = new ThumbnailGenerator(executorService, 1);
+
+        assertFalse(generator.generate("broken.pdf.thumb64", () -> {
+            throw new IllegalStateException("broken PDF");
+        }));
+        assertFalse(generator.generate("stack.pdf.thumb64", () -> {
+            throw new StackOverflowError();
+        }));
+        assertFalse(generator.generate("unsupported.thumb64", () -> false));
+        // (the worker went on)
+        assertTrue(generator.generate("image.thumb64", () -> true));
+    }
+
+    @Test
+    void testRejectedGeneratesOnTheCallingThread() {
+        ThumbnailGenerator generator = new ThumbnailGenerator(command -> {
+            throw new RejectedExecutionException("shutting down");
+        }, 2);
+        Thread caller = Thread.currentThread();
+
+        assertTrue(generator.generate("file.thumb64", () -> Thread.currentThread() == caller));
+        AtomicInteger generations = new AtomicInteger();
+        generator.generateLater("file.thumb48", () -> generations.incrementAndGet() > 0);
+        assertEquals(1, generations.get());
+    }
+}
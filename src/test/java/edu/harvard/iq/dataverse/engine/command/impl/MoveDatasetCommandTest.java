@@ -258,6 +258,10 @@ public class MoveDatasetCommandTest {
                             return false;
                         }
                     }
+
+                    @Override
+                    public void invalidateCachedPermissions(DvObject dvObject) {
+                    }
                 };
             }
 
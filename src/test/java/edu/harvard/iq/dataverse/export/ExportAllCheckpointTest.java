@@ -0,0 +1,37 @@
+package edu.harvard.iq.dataverse.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExportAllCheckpointTest {
+
+    private static ExportAllCheckpoint checkpoint(boolean forceReExport, long updateTime, Long finishTime) {
+        return new ExportAllCheckpoint(forceReExport, new Timestamp(0), new Timestamp(updateTime),
+                finishTime == null ? null : new Timestamp(finishTime), 1000, 500, 300, 2, 198);
+    }
+
+    @Test
+    public void testIsRunning() {
+        long now = 100 * ExportAllCheckpoint.STALE_AFTER;
+        assertTrue(checkpoint(false, now - 1000, null).isRunning(now));
+        assertFalse(checkpoint(false, now - ExportAllCheckpoint.STALE_AFTER, null).isRunning(now));
+        assertFalse(checkpoint(false, now - 1000, now - 1000).isRunning(now));
+    }
+
+    @Test
+    public void testCanResume() {
+        assertTrue(checkpoint(true, 0, null).canResume(true));
+        assertFalse(checkpoint(true, 0, null).canResume(false));
+        assertFalse(checkpoint(false, 0, 1000L).canResume(false));
+    }
+
+    @Test
+    public void testDatasetsDone() {
+        assertEquals(500, checkpoint(false, 0, null).getDatasetsDone());
+    }
+}
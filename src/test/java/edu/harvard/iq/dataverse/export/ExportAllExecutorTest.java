@@ -0,0 +1,134 @@
+package edu.harvard.iq.dataverse.export;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportAllExecutorTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * "datasets" named after their store: "a1", "a2", ..., "b1", ...
+     */
+    private static String driverOf(String dataset) {
+        return dataset.substring(0, 1);
+    }
+
+    @Test
+    void testExportsAllAndReportsFailures() throws Exception {
+        List<String> datasets = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            datasets.add((i % 2 == 0 ? "a" : "b") + i);
+        }
+        Thread caller = Thread.currentThread();
+        Map<String, Throwable> results = new ConcurrentHashMap<>();
+        IOException failure = new IOException("disk full");
+
+        new ExportAllExecutor(executorService, 4, driverId -> 2).execute(datasets.iterator(), ExportAllExecutorTest::driverOf, dataset -> {
+            if (dataset.equals("a10") || dataset.equals("b21")) {
+                throw failure;
+            }
+        }, (dataset, exception) -> {
+            assertSame(caller, Thread.currentThread());
+            results.put(dataset, exception == null ? new Throwable("ok") : exception);
+        });
+
+        assertEquals(50, results.size());
+        assertSame(failure, results.get("a10"));
+        assertSame(failure, results.get("b21"));
+        assertEquals("ok", results.get("a12").getMessage());
+    }
+
+    @Test
+    void testLimitsWorkersAndDrivers() throws Exception {
+        List<String> datasets = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            datasets.add((i < 30 ? "a" : i % 2 == 0 ? "b" : "c") + i);
+        }
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+        AtomicInteger runningInAll = new AtomicInteger();
+        AtomicInteger maxRunningInAll = new AtomicInteger();
+        AtomicInteger exported = new AtomicInteger();
+
+        new ExportAllExecutor(executorService, 3, driverId -> driverId.equals("a") ? 2 : 1).execute(datasets.iterator(), ExportAllExecutorTest::driverOf, dataset -> {
+            String driverId = driverOf(dataset);
+            int now = running.computeIfAbsent(driverId, id -> new AtomicInteger()).incrementAndGet();
+            maxRunning.computeIfAbsent(driverId, id -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+            maxRunningInAll.accumulateAndGet(runningInAll.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            runningInAll.decrementAndGet();
+            running.get(driverId).decrementAndGet();
+        }, (dataset, exception) -> {
+            assertNull(exception);
+            exported.incrementAndGet();
+        });
+
+        assertEquals(40, exported.get());
+        assertTrue(maxRunningInAll.get() <= 3, "at most 3 at the same time, was " + maxRunningInAll.get());
+        assertTrue(maxRunning.get("a").get() <= 2);
+        assertEquals(1, maxRunning.get("b").get());
+        assertEquals(1, maxRunning.get("c").get());
+    }
+
+    @Test
+    void testBusyStoreDoesNotHoldUpTheOthers() throws Exception {
+        CountDownLatch otherStoreStarted = new CountDownLatch(1);
+        boolean[] startedWhileBusy = new boolean[1];
+
+        new ExportAllExecutor(executorService, 4, driverId -> 1).execute(List.of("a1", "a2", "a3", "b1").iterator(), ExportAllExecutorTest::driverOf, dataset -> {
+            if (dataset.equals("a1")) {
+                // "b1" comes after two more of store a, that can't start until this one's done:
+                startedWhileBusy[0] = otherStoreStarted.await(10, TimeUnit.SECONDS);
+            } else if (dataset.equals("b1")) {
+                otherStoreStarted.countDown();
+            }
+        }, (dataset, exception) -> assertNull(exception));
+
+        assertTrue(startedWhileBusy[0]);
+    }
+
+    @Test
+    void testRuntimeExceptionIsReported() throws Exception {
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        new ExportAllExecutor(executorService, 2, driverId -> 2).execute(List.of("a1", "a2").iterator(), ExportAllExecutorTest::driverOf, dataset -> {
+            if (dataset.equals("a2")) {
+                throw new IllegalStateException("no released version");
+            }
+        }, (dataset, exception) -> {
+            if (exception != null) {
+                failures.put(dataset, exception);
+            }
+        });
+        assertEquals(1, failures.size());
+        assertInstanceOf(IllegalStateException.class, failures.get("a2"));
+    }
+}
@@ -0,0 +1,117 @@
+package edu.harvard.iq.dataverse.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ExportCacheTest {
+
+    private static final Date EXPORTED = new Date(1_700_000_000_000L);
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReadAndGet() throws IOException {
+        ExportCache cache = new ExportCache(1000, 100, Duration.ofMinutes(1));
+        ExportCache.Key key = ExportCache.key(1, 10L, EXPORTED, "ddi");
+        assertNull(cache.get(key));
+
+        assertEquals("<codeBook/>", read(cache.read(key, stream("<codeBook/>"))));
+        ExportCache.CachedExport cached = cache.get(key);
+        assertNotNull(cached);
+        assertEquals("<codeBook/>", read(cached.getInputStream()));
+        assertEquals(LocalDate.now(), cached.getReadOn());
+        assertEquals(32, cached.getETag().length());
+
+        // another export time (e.g. exported again by another server), version or format is another export:
+        assertNull(cache.get(ExportCache.key(1, 10L, new Date(EXPORTED.getTime() + 1), "ddi")));
+        assertNull(cache.get(ExportCache.key(1, 11L, EXPORTED, "ddi")));
+        assertNull(cache.get(ExportCache.key(1, 10L, EXPORTED, "oai_dc")));
+    }
+
+    @Test
+    public void testETag() throws IOException {
+        ExportCache cache = new ExportCache(1000, 100, Duration.ofMinutes(1));
+        cache.read(ExportCache.key(1, 10L, EXPORTED, "ddi"), stream("one"));
+        cache.read(ExportCache.key(2, 20L, EXPORTED, "ddi"), stream("one"));
+        cache.read(ExportCache.key(3, 30L, EXPORTED, "ddi"), stream("two"));
+        String etag = cache.get(ExportCache.key(1, 10L, EXPORTED, "ddi")).getETag();
+        assertEquals(etag, cache.get(ExportCache.key(2, 20L, EXPORTED, "ddi")).getETag());
+        assertNotEquals(etag, cache.get(ExportCache.key(3, 30L, EXPORTED, "ddi")).getETag());
+    }
+
+    @Test
+    public void testTooBig() throws IOException {
+        ExportCache cache = new ExportCache(1000, 10, Duration.ofMinutes(1));
+        ExportCache.Key key = ExportCache.key(1, 10L, EXPORTED, "ddi");
+        String big = "0123456789abcdef".repeat(100);
+        assertEquals(big, read(cache.read(key, stream(big))));
+        assertNull(cache.get(key));
+
+        String small = "0123456789";
+        assertEquals(small, read(cache.read(key, stream(small))));
+        assertNotNull(cache.get(key));
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        ExportCache cache = new ExportCache(1000, 100, Duration.ofMinutes(1));
+        ExportCache.Key ddi = ExportCache.key(1, 10L, EXPORTED, "ddi");
+        ExportCache.Key dc = ExportCache.key(1, 10L, EXPORTED, "oai_dc");
+        ExportCache.Key other = ExportCache.key(2, 20L, EXPORTED, "ddi");
+        cache.read(ddi, stream("a"));
+        cache.read(dc, stream("b"));
+        cache.read(other, stream("c"));
+
+        cache.invalidate(1, "ddi");
+        assertNull(cache.get(ddi));
+        assertNotNull(cache.get(dc));
+
+        cache.invalidate(1);
+        assertNull(cache.get(dc));
+        assertNotNull(cache.get(other));
+    }
+
+    @Test
+    public void testInvalidatedWhileReading() throws IOException {
+        ExportCache cache = new ExportCache(1000, 100, Duration.ofMinutes(1));
+        ExportCache.Key key = ExportCache.key(1, 10L, EXPORTED, "ddi");
+        InputStream exportedAgainWhileReading = new ByteArrayInputStream("old".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                cache.invalidate(1, "ddi");
+                return super.read(b, off, len);
+            }
+        };
+        assertEquals("old", read(cache.read(key, exportedAgainWhileReading)));
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        ExportCache cache = new ExportCache(0, 100, Duration.ofMinutes(1));
+        ExportCache.Key key = ExportCache.key(1, 10L, EXPORTED, "ddi");
+        InputStream inputStream = stream("a");
+        assertSame(inputStream, cache.read(key, inputStream));
+        assertNull(cache.get(key));
+        assertNull(cache.read(key, null));
+    }
+}
@@ -1,6 +1,7 @@
 package edu.harvard.iq.dataverse.export.ddi;
 
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
+import edu.harvard.iq.dataverse.util.json.JsonUtil;
 import edu.harvard.iq.dataverse.util.xml.XmlPrinter;
 
 import java.io.ByteArrayOutputStream;
@@ -11,9 +12,16 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.logging.Logger;
 
 import edu.harvard.iq.dataverse.util.xml.html.HtmlPrinter;
+import io.gdcc.spi.export.ExportDataProvider;
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
 
 import org.jsoup.Jsoup;
 import org.jsoup.helper.W3CDom;
@@ -110,6 +118,46 @@ public class DdiExportUtilTest {
         }
     }
 
+    @Test
+    public void testJson2DdiFileDetailsOneAtATime() throws Exception {
+        // given
+        JsonObject datasetJson = JsonUtil.getJsonObject(Files.readString(
+                Path.of("src/test/java/edu/harvard/iq/dataverse/export/ddi/dataset-finch1.json"), StandardCharsets.UTF_8));
+        JsonArray fileDetails = JsonUtil.getJsonArray(Files.readString(
+                Path.of("src/test/java/edu/harvard/iq/dataverse/export/ddi/dataset-finch1-file-details.json"), StandardCharsets.UTF_8));
+        ByteArrayOutputStream fromArray = new ByteArrayOutputStream();
+        DdiExportUtil.datasetJson2ddi(datasetJson, fileDetails, fromArray);
+
+        // when
+        // (the way the DDIExporter gets them from the InternalExportDataProvider)
+        ExportDataProvider dataProvider = Mockito.mock(ExportDataProvider.class, Mockito.CALLS_REAL_METHODS);
+        Mockito.doReturn(datasetJson).when(dataProvider).getDatasetJson();
+        List<JsonObject> withoutVariables = fileDetails.getValuesAs(JsonObject.class).stream()
+                .map(DdiExportUtilTest::withoutVariables).toList();
+        ByteArrayOutputStream oneAtATime = new ByteArrayOutputStream();
+        DdiExportUtil.datasetJson2ddi(dataProvider.getDatasetJsonWithoutFiles(), withoutVariables,
+                fileDetails.getValuesAs(JsonObject.class), oneAtATime);
+
+        // then
+        String xml = fromArray.toString(StandardCharsets.UTF_8);
+        assertTrue(xml.contains("<fileDscr ID=\"f12\""));
+        assertTrue(xml.contains("<var ID=\"v57\""));
+        assertTrue(xml.contains("<otherMat ID=\"f13\""));
+        assertEquals(xml, oneAtATime.toString(StandardCharsets.UTF_8));
+    }
+
+    private static JsonObject withoutVariables(JsonObject fileJson) {
+        JsonObjectBuilder file = Json.createObjectBuilder(fileJson).remove("varGroups");
+        if (fileJson.containsKey("dataTables")) {
+            JsonArrayBuilder dataTables = Json.createArrayBuilder();
+            for (JsonObject dataTable : fileJson.getJsonArray("dataTables").getValuesAs(JsonObject.class)) {
+                dataTables.add(Json.createObjectBuilder(dataTable).remove("dataVariables"));
+            }
+            file.add("dataTables", dataTables);
+        }
+        return file.build();
+    }
+
     @Test
     public void testDatasetHtmlDDI() throws IOException, XMLStreamException {
         // given
@@ -0,0 +1,267 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Harvests from a local OAI stub server.
+ */
+public class FastListRecordsTest {
+
+    private static final String OAI_HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+            + "<responseDate>2024-01-01T00:00:00Z</responseDate><request verb=\"ListRecords\">http://localhost/oai</request>";
+    private static final String OAI_TAIL = "</OAI-PMH>";
+
+    private HttpServer server;
+    private String baseUrl;
+    private final List<String> queries = new ArrayList<>();
+    // the responses, by resumption token ("" for the first page)
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private boolean gzip;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/oai", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            synchronized (queries) {
+                queries.add(query);
+            }
+            String token = "";
+            for (String param : query.split("&")) {
+                if (param.startsWith("resumptionToken=")) {
+                    token = java.net.URLDecoder.decode(param.substring("resumptionToken=".length()), StandardCharsets.UTF_8);
+                }
+            }
+            String page = pages.get(token);
+            if (page == null) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = page.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml");
+            if (gzip) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                    out.write(body);
+                }
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/oai";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private static String record(String identifier, String title) {
+        return "<record><header><identifier>" + identifier + "</identifier><datestamp>2024-03-01T12:00:00Z</datestamp>"
+                + "<setSpec>set</setSpec></header><metadata>"
+                + "<oai_dc:dc xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\""
+                + " xsi:schemaLocation=\"http://www.openarchives.org/OAI/2.0/oai_dc/ http://www.openarchives.org/OAI/2.0/oai_dc.xsd\">"
+                + "<dc:title>" + title + "</dc:title><dc:description><metadata>nested</metadata></dc:description></oai_dc:dc>"
+                + "</metadata></record>";
+    }
+
+    private static String deletedRecord(String identifier) {
+        return "<record><header status=\"deleted\"><identifier>" + identifier + "</identifier>"
+                + "<datestamp>2024-03-02</datestamp></header></record>";
+    }
+
+    private static String page(String token, String... records) {
+        return OAI_HEAD + "<ListRecords>" + String.join("\n", records)
+                + (token != null ? "<resumptionToken cursor=\"0\">" + token + "</resumptionToken>" : "<resumptionToken/>")
+                + "</ListRecords>" + OAI_TAIL;
+    }
+
+    private FastListRecords listRecords() {
+        OaiHandler oaiHandler = new OaiHandler(baseUrl, "oai_dc");
+        oaiHandler.withSetName("my:set");
+        oaiHandler.withFromDate(Date.from(Instant.parse("2024-01-01T10:20:30.400Z")));
+        return new FastListRecords(oaiHandler, HttpClient.newHttpClient());
+    }
+
+    private static List<HarvestedRecord> readAll(FastListRecords listRecords) throws IOException {
+        List<HarvestedRecord> records = new ArrayList<>();
+        HarvestedRecord record;
+        while ((record = listRecords.next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    void testReadsAllThePages() throws IOException {
+        pages.put("", page("token 1", record("oai:1", "One"), record("oai:2", "Two &amp; a half")));
+        pages.put("token 1", page("token 2", deletedRecord("oai:3")));
+        pages.put("token 2", page(null, record("oai:4", "Four")));
+
+        FastListRecords listRecords = listRecords();
+        List<HarvestedRecord> records = readAll(listRecords);
+
+        assertEquals(List.of("oai:1", "oai:2", "oai:3", "oai:4"), records.stream().map(HarvestedRecord::identifier).toList());
+        assertEquals(3, listRecords.getPageCount());
+        assertEquals(List.of("verb=ListRecords&metadataPrefix=oai_dc&from=2024-01-01T10%3A20%3A30Z&set=my%3Aset",
+                "verb=ListRecords&resumptionToken=token+1",
+                "verb=ListRecords&resumptionToken=token+2"), queries);
+
+        HarvestedRecord deleted = records.get(2);
+        assertTrue(deleted.deleted());
+        assertNull(deleted.metadataFile());
+        assertEquals(Date.from(Instant.parse("2024-03-02T00:00:00Z")), deleted.dateStamp());
+
+        HarvestedRecord second = records.get(1);
+        assertFalse(second.deleted());
+        assertEquals(Date.from(Instant.parse("2024-03-01T12:00:00Z")), second.dateStamp());
+        String metadata = Files.readString(second.metadataFile().toPath());
+        assertTrue(metadata.contains("<dc:title>Two &amp; a half</dc:title>"), metadata);
+        // (a metadata element inside the metadata record, in the default
+        // namespace of the response)
+        assertTrue(metadata.contains("<metadata xmlns=\"http://www.openarchives.org/OAI/2.0/\">nested</metadata>"), metadata);
+        // (the prefix declared on the OAI-PMH element is declared again)
+        assertTrue(metadata.contains("xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""), metadata);
+        assertTrue(metadata.trim().endsWith("</oai_dc:dc>"), metadata);
+
+        for (HarvestedRecord record : records) {
+            if (record.metadataFile() != null) {
+                record.metadataFile().delete();
+            }
+        }
+    }
+
+    @Test
+    void testAboutSectionIsNotReadAsTheHeader() throws IOException {
+        String provenance = "<about><provenance xmlns=\"http://www.openarchives.org/OAI/2.0/provenance\">"
+                + "<originDescription harvestDate=\"2023-05-01T00:00:00Z\" altered=\"true\">"
+                + "<baseURL>http://elsewhere.example.org/oai</baseURL><identifier>oai:elsewhere:1</identifier>"
+                + "<datestamp>2001-01-01</datestamp>"
+                + "<metadataNamespace>http://www.openarchives.org/OAI/2.0/oai_dc/</metadataNamespace>"
+                + "</originDescription></provenance></about>";
+        String record = record("oai:1", "One");
+        pages.put("", page(null, record.substring(0, record.length() - "</record>".length()) + provenance + "</record>",
+                record("oai:2", "Two")));
+
+        List<HarvestedRecord> records = readAll(listRecords());
+
+        assertEquals(List.of("oai:1", "oai:2"), records.stream().map(HarvestedRecord::identifier).toList());
+        assertEquals(Date.from(Instant.parse("2024-03-01T12:00:00Z")), records.get(0).dateStamp());
+        String metadata = Files.readString(records.get(0).metadataFile().toPath());
+        assertTrue(metadata.contains("<dc:title>One</dc:title>"), metadata);
+        assertFalse(metadata.contains("originDescription"), metadata);
+        for (HarvestedRecord harvested : records) {
+            harvested.metadataFile().delete();
+        }
+    }
+
+    @Test
+    void testGzippedResponses() throws IOException {
+        gzip = true;
+        pages.put("", page(null, record("oai:1", "One")));
+
+        List<HarvestedRecord> records = readAll(listRecords());
+
+        assertEquals(1, records.size());
+        assertTrue(Files.readString(records.get(0).metadataFile().toPath()).contains("One"));
+        records.get(0).metadataFile().delete();
+    }
+
+    @Test
+    void testNoRecordsMatch() throws IOException {
+        pages.put("", OAI_HEAD + "<error code=\"noRecordsMatch\">No matching records</error>" + OAI_TAIL);
+
+        assertEquals(List.of(), readAll(listRecords()));
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        pages.put("", OAI_HEAD + "<error code=\"badResumptionToken\">Expired</error>" + OAI_TAIL);
+        IOException error = assertThrows(IOException.class, () -> readAll(listRecords()));
+        assertTrue(error.getMessage().contains("badResumptionToken"));
+
+        // (no page for this token: an HTTP error)
+        pages.put("", page("missing", record("oai:1", "One")));
+        FastListRecords listRecords = listRecords();
+        HarvestedRecord first = listRecords.next();
+        assertEquals("oai:1", first.identifier());
+        first.metadataFile().delete();
+        error = assertThrows(IOException.class, listRecords::next);
+        assertTrue(error.getMessage().contains("500"));
+
+        pages.put("", OAI_HEAD + "<ListRecords><record><header><identifier>oai:1</identifier>");
+        assertThrows(IOException.class, () -> readAll(listRecords()));
+    }
+
+    @Test
+    void testHarvestPipeline() throws Exception {
+        List<String> pageRecords = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            pageRecords.add(record("oai:" + i, "Title " + i));
+            if (pageRecords.size() == 100 || i == 249) {
+                String token = i == 249 ? null : "after " + i;
+                pages.put(i < 100 ? "" : "after " + (i - pageRecords.size()), page(token, pageRecords.toArray(new String[0])));
+                pageRecords.clear();
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<String, String> imported = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (FastListRecords listRecords = listRecords()) {
+            new HarvestPipeline<HarvestedRecord>(executor, 3, 6).run(listRecords::next, HarvestedRecord::identifier, record -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    imported.put(record.identifier(), Files.readString(record.metadataFile().toPath()));
+                    record.metadataFile().delete();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(250, imported.size());
+        assertTrue(imported.get("oai:249").contains("Title 249"));
+        assertTrue(maxRunning.get() <= 3);
+        assertEquals(3, queries.size());
+    }
+}
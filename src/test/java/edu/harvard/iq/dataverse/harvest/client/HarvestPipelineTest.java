@@ -0,0 +1,129 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HarvestPipelineTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static HarvestPipeline.Source<String> sourceOf(List<String> records) {
+        Iterator<String> iterator = records.iterator();
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Test
+    void testProcessesAllWithLimitedWorkers() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add("oai:" + i);
+        }
+        Map<String, String> processed = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+
+        new HarvestPipeline<String>(executorService, 4, 8).run(sourceOf(records), record -> record, record -> {
+            assertTrue(Thread.currentThread() != caller);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            processed.put(record, Thread.currentThread().getName());
+            running.decrementAndGet();
+        });
+
+        assertEquals(100, processed.size());
+        assertTrue(maxRunning.get() <= 4, "max running: " + maxRunning.get());
+        assertTrue(maxRunning.get() > 1, "max running: " + maxRunning.get());
+    }
+
+    @Test
+    void testSameKeyIsNotProcessedTogether() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            records.add(i % 5 == 0 ? "oai:same" : "oai:" + i);
+        }
+        AtomicInteger runningSame = new AtomicInteger();
+        AtomicInteger maxRunningSame = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+
+        new HarvestPipeline<String>(executorService, 8, 8).run(sourceOf(records), record -> record, record -> {
+            if (record.equals("oai:same")) {
+                maxRunningSame.accumulateAndGet(runningSame.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                runningSame.decrementAndGet();
+            }
+            processed.incrementAndGet();
+        });
+
+        assertEquals(50, processed.get());
+        assertEquals(1, maxRunningSame.get());
+    }
+
+    @Test
+    void testRecordsReadBeforeAFailureAreProcessed() {
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+        StopHarvestException stop = new StopHarvestException("Harvesting stopped by external request");
+
+        StopHarvestException thrown = assertThrows(StopHarvestException.class, () ->
+                new HarvestPipeline<String>(executorService, 2, 4).run(() -> {
+                    if (read.get() == 10) {
+                        throw stop;
+                    }
+                    return "oai:" + read.incrementAndGet();
+                }, record -> record, record -> processed.incrementAndGet()));
+
+        assertSame(stop, thrown);
+        assertEquals(10, processed.get());
+    }
+
+    @Test
+    void testUnhandledProcessorFailureIsThrownAtTheEnd() {
+        AtomicInteger processed = new AtomicInteger();
+        IllegalStateException failure = new IllegalStateException("import failed");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+                new HarvestPipeline<String>(executorService, 2, 2).run(sourceOf(List.of("a", "b", "c", "d")), record -> record, record -> {
+                    processed.incrementAndGet();
+                    if (record.equals("b")) {
+                        throw failure;
+                    }
+                }));
+
+        assertSame(failure, thrown);
+        assertEquals(4, processed.get());
+    }
+}
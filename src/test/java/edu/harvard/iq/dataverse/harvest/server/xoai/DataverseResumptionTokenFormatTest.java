@@ -0,0 +1,64 @@
+package edu.harvard.iq.dataverse.harvest.server.xoai;
+
+import edu.harvard.iq.dataverse.harvest.server.xoai.DataverseResumptionTokenFormat.PageCursor;
+import io.gdcc.xoai.exceptions.BadResumptionTokenException;
+import io.gdcc.xoai.model.oaipmh.Granularity;
+import io.gdcc.xoai.model.oaipmh.ResumptionToken;
+import io.gdcc.xoai.services.impl.SimpleResumptionTokenFormat;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DataverseResumptionTokenFormatTest {
+
+    private final ResumptionToken.Value value = new ResumptionToken.ValueBuilder()
+            .withOffset(100)
+            .withSetSpec("my_set")
+            .withFrom(Instant.parse("2024-01-01T00:00:00Z"))
+            .withMetadataPrefix("oai_dc")
+            .build();
+
+    @Test
+    void testCursorRoundTrip() throws BadResumptionTokenException {
+        DataverseResumptionTokenFormat issuingNode = new DataverseResumptionTokenFormat();
+        issuingNode.withGranularity(Granularity.Second);
+        issuingNode.rememberCursor(value, new PageCursor("doi:10.5072/FK2/ABC:DEF", 300000));
+
+        String token = issuingNode.format(value);
+
+        // the token may come back to a different node:
+        DataverseResumptionTokenFormat otherNode = new DataverseResumptionTokenFormat();
+        otherNode.withGranularity(Granularity.Second);
+        ResumptionToken.Value parsed = otherNode.parse(token);
+
+        assertEquals(value, parsed);
+        PageCursor cursor = otherNode.getCursor(parsed);
+        assertEquals("doi:10.5072/FK2/ABC:DEF", cursor.getLastIdentifier());
+        assertEquals(300000, cursor.getCompleteListSize());
+    }
+
+    @Test
+    void testTokenWithoutCursor() throws BadResumptionTokenException {
+        String legacyToken = new SimpleResumptionTokenFormat().withGranularity(Granularity.Second).format(value);
+
+        DataverseResumptionTokenFormat format = new DataverseResumptionTokenFormat();
+        format.withGranularity(Granularity.Second);
+
+        assertEquals(legacyToken, format.format(value));
+        ResumptionToken.Value parsed = format.parse(legacyToken);
+        assertEquals(value, parsed);
+        assertNull(format.getCursor(parsed));
+    }
+
+    @Test
+    void testBadCursor() {
+        DataverseResumptionTokenFormat format = new DataverseResumptionTokenFormat();
+        String token = new SimpleResumptionTokenFormat().format(value);
+
+        assertThrows(BadResumptionTokenException.class, () -> format.parse(token + ".bm90LWEtY3Vyc29y"));
+    }
+}
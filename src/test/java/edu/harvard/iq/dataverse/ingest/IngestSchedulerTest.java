@@ -0,0 +1,242 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestSchedulerTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * "files" named after their size: "100", "5000", ...
+     */
+    private static long sizeOf(String file) {
+        return Long.parseLong(file.split("-")[0]);
+    }
+
+    @Test
+    void testIngestsAllAndReportsFailures() throws Exception {
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            files.add(i * 1000 + "-" + i);
+        }
+        Thread caller = Thread.currentThread();
+        Map<String, String> results = new ConcurrentHashMap<>();
+        IOException failure = new IOException("corrupt file");
+
+        new IngestScheduler(executorService, 4, 4).ingestAll(files, IngestSchedulerTest::sizeOf, file -> null, file -> {
+            if (file.endsWith("-7")) {
+                throw failure;
+            }
+            return !file.endsWith("-8");
+        }, (file, successful, exception) -> {
+            assertSame(caller, Thread.currentThread());
+            if (exception != null) {
+                assertSame(failure, exception);
+            }
+            results.put(file, exception != null ? "failed" : successful ? "ingested" : "not ingested");
+        });
+
+        assertEquals(30, results.size());
+        assertEquals("failed", results.get("7000-7"));
+        assertEquals("not ingested", results.get("8000-8"));
+        assertEquals("ingested", results.get("9000-9"));
+    }
+
+    @Test
+    void testLimitsWorkersAndDatasets() throws Exception {
+        IngestScheduler scheduler = new IngestScheduler(executorService, 4, 2);
+        AtomicInteger runningInAll = new AtomicInteger();
+        AtomicInteger maxRunningInAll = new AtomicInteger();
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+        AtomicInteger ingested = new AtomicInteger();
+
+        // three datasets at the same time, as from three message beans:
+        List<Thread> datasets = new ArrayList<>();
+        for (String dataset : List.of("a", "b", "c")) {
+            running.put(dataset, new AtomicInteger());
+            maxRunning.put(dataset, new AtomicInteger());
+            List<String> files = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                files.add(i + "-" + dataset);
+            }
+            datasets.add(new Thread(() -> {
+                try {
+                    scheduler.ingestAll(files, IngestSchedulerTest::sizeOf, file -> null, file -> {
+                        maxRunningInAll.accumulateAndGet(runningInAll.incrementAndGet(), Math::max);
+                        maxRunning.get(dataset).accumulateAndGet(running.get(dataset).incrementAndGet(), Math::max);
+                        Thread.sleep(5);
+                        running.get(dataset).decrementAndGet();
+                        runningInAll.decrementAndGet();
+                        return true;
+                    }, (file, successful, exception) -> ingested.incrementAndGet());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread thread : datasets) {
+            thread.start();
+        }
+        for (Thread thread : datasets) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        assertEquals(30, ingested.get());
+        assertTrue(maxRunningInAll.get() <= 4, "max running: " + maxRunningInAll.get());
+        for (String dataset : List.of("a", "b", "c")) {
+            assertTrue(maxRunning.get(dataset).get() <= 2, dataset + " max running: " + maxRunning.get(dataset).get());
+        }
+    }
+
+    @Test
+    void testSmallFilesGoFirst() throws Exception {
+        // one worker, so the files run one after the other
+        IngestScheduler scheduler = new IngestScheduler(executorService, 1, 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // a file of another dataset holds the only worker, while these are queued:
+        Thread other = new Thread(() -> {
+            try {
+                scheduler.ingestAll(List.of("1-other"), IngestSchedulerTest::sizeOf, file -> null, file -> {
+                    blocked.countDown();
+                    release.await();
+                    return true;
+                }, (file, successful, exception) -> { });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        other.start();
+        blocked.await();
+
+        // (the files are queued holding the scheduler's lock, which the
+        // released worker needs to take the next file: once the last one is
+        // being queued, they'll all be waiting by the time it does)
+        CountDownLatch queued = new CountDownLatch(4);
+        Thread dataset = new Thread(() -> {
+            try {
+                scheduler.ingestAll(List.of("900000000-huge", "20-small", "5000-medium", "10-tiny"), IngestSchedulerTest::sizeOf,
+                        file -> {
+                            queued.countDown();
+                            return null;
+                        }, file -> order.add(file), (file, successful, exception) -> { });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dataset.start();
+        assertTrue(queued.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        dataset.join(TimeUnit.SECONDS.toMillis(30));
+        other.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertEquals(List.of("10-tiny", "20-small", "5000-medium", "900000000-huge"), order);
+    }
+
+    @Test
+    void testLargeFilesAreNotOvertakenForEver() throws Exception {
+        AtomicLong now = new AtomicLong(0);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        // not started until run() is called:
+        List<Runnable> queued = Collections.synchronizedList(new ArrayList<>());
+        IngestScheduler scheduler = new IngestScheduler(queued::add, 1, 1, 1000, now::get);
+
+        Thread first = new Thread(() -> {
+            try {
+                scheduler.ingestAll(List.of("1-running", "10000000-big"), IngestSchedulerTest::sizeOf, file -> null,
+                        file -> order.add(file), (file, successful, exception) -> { });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        first.start();
+        waitFor(() -> queued.size() == 1);
+
+        // queued 20 seconds later: 10 MB smaller, but it has waited 20 s, at 1 MB/s
+        now.set(20_000);
+        // (queued holding the scheduler's lock, see testSmallFilesGoFirst)
+        CountDownLatch queuedLate = new CountDownLatch(1);
+        Thread second = new Thread(() -> {
+            try {
+                scheduler.ingestAll(List.of("10-late"), IngestSchedulerTest::sizeOf, file -> {
+                    queuedLate.countDown();
+                    return null;
+                }, file -> order.add(file), (file, successful, exception) -> { });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        second.start();
+        assertTrue(queuedLate.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            waitFor(() -> !queued.isEmpty());
+            queued.remove(0).run();
+        }
+        first.join(TimeUnit.SECONDS.toMillis(30));
+        second.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertEquals(List.of("1-running", "10000000-big", "10-late"), order);
+    }
+
+    @Test
+    void testConflictingFilesAreNotIngestedTogether() throws Exception {
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(i + "-" + (i % 2 == 0 ? "data" : "other" + i));
+        }
+        AtomicInteger runningData = new AtomicInteger();
+        AtomicInteger maxRunningData = new AtomicInteger();
+
+        new IngestScheduler(executorService, 8, 8).ingestAll(files, IngestSchedulerTest::sizeOf, file -> file.split("-")[1], file -> {
+            if (file.endsWith("-data")) {
+                maxRunningData.accumulateAndGet(runningData.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                runningData.decrementAndGet();
+            }
+            return true;
+        }, (file, successful, exception) -> { });
+
+        assertEquals(1, maxRunningData.get());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package edu.harvard.iq.dataverse.pidproviders;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.GlobalId;
+import edu.harvard.iq.dataverse.pidproviders.doi.AbstractDOIProvider;
+import edu.harvard.iq.dataverse.pidproviders.doi.fake.FakeDOIProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PidOperationExecutorTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static List<DataFile> dataFiles(int count) {
+        List<DataFile> dataFiles = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            DataFile dataFile = new DataFile();
+            dataFile.setId(id);
+            dataFile.setGlobalId(new GlobalId(AbstractDOIProvider.DOI_PROTOCOL, "10.5072", "FK2/FILE" + id, "/", AbstractDOIProvider.DOI_RESOLVER_URL, "fake"));
+            dataFiles.add(dataFile);
+        }
+        return dataFiles;
+    }
+
+    @Test
+    void testPublicizeWithFakeProvider() throws Exception {
+        FakeDOIProvider fakeProvider = new FakeDOIProvider("fake", "Fake", "10.5072", "FK2/", "randomString",
+                "DEPENDENT", "", "");
+        List<DataFile> dataFiles = dataFiles(250);
+        List<Integer> batchSizes = new ArrayList<>();
+        List<DataFile> completed = new ArrayList<>();
+
+        new PidOperationExecutor(executorService, 4, 3, 0, 0).execute(dataFiles, fakeProvider::publicizeIdentifier, batch -> {
+            batchSizes.add(batch.size());
+            completed.addAll(batch);
+        });
+
+        assertEquals(List.of(100, 100, 50), batchSizes);
+        assertEquals(250, completed.size());
+        assertTrue(completed.containsAll(dataFiles));
+    }
+
+    @Test
+    void testPreparedCalls() throws Exception {
+        FakeDOIProvider fakeProvider = new FakeDOIProvider("fake", "Fake", "10.5072", "FK2/", "randomString",
+                "DEPENDENT", "", "");
+        List<PreparedPidCall> calls = new ArrayList<>();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        for (DataFile dataFile : dataFiles(10)) {
+            PreparedPidCall prepared = fakeProvider.preparePublicizeIdentifier(dataFile);
+            calls.add(new PreparedPidCall(prepared.globalId(), () -> {
+                threads.add(Thread.currentThread());
+                return prepared.make();
+            }));
+        }
+        List<PreparedPidCall> completed = new ArrayList<>();
+
+        new PidOperationExecutor(executorService, 4, 1, 0, 0).execute(calls, PreparedPidCall::make, completed::addAll);
+
+        assertEquals(10, completed.size());
+        assertEquals("doi:10.5072/FK2/FILE1", completed.stream().map(PreparedPidCall::globalId).sorted().findFirst().get());
+        assertFalse(threads.isEmpty());
+        assertFalse(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    void testParallelism() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        new PidOperationExecutor(executorService, 3, 1, 0, 0).execute(dataFiles(20), dataFile -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            running.decrementAndGet();
+            return true;
+        }, batch -> {});
+
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    void testRetries() throws Exception {
+        Map<Long, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        List<DataFile> completed = new ArrayList<>();
+
+        // every file fails twice before it works:
+        new PidOperationExecutor(executorService, 2, 3, 1, 0).execute(dataFiles(5),
+                dataFile -> attempts.computeIfAbsent(dataFile.getId(), id -> new AtomicInteger()).incrementAndGet() == 3,
+                completed::addAll);
+
+        assertEquals(5, completed.size());
+        attempts.values().forEach(count -> assertEquals(3, count.get()));
+    }
+
+    @Test
+    void testGivesUp() {
+        List<DataFile> dataFiles = dataFiles(5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        PidOperationExecutor.PidOperationException ex = assertThrows(PidOperationExecutor.PidOperationException.class, () ->
+                new PidOperationExecutor(executorService, 1, 2, 1, 0).execute(dataFiles, dataFile -> {
+                    attempts.incrementAndGet();
+                    return dataFile.getId() != 3;
+                }, batch -> {}));
+
+        assertSame(dataFiles.get(2), ex.getItem());
+        assertNull(ex.getCause());
+        // 1, 2, and 3 twice:
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    void testExceptionsAreNotRetried() {
+        List<DataFile> dataFiles = dataFiles(3);
+        AtomicInteger attempts = new AtomicInteger();
+
+        PidOperationExecutor.PidOperationException ex = assertThrows(PidOperationExecutor.PidOperationException.class, () ->
+                new PidOperationExecutor(executorService, 1, 3, 1, 0).execute(dataFiles, dataFile -> {
+                    attempts.incrementAndGet();
+                    throw new IOException("identifier already in use");
+                }, batch -> {}));
+
+        assertInstanceOf(IOException.class, ex.getCause());
+        assertSame(dataFiles.get(0), ex.getItem());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void testCompletedBeforeFailureAreReported() {
+        List<DataFile> completed = new ArrayList<>();
+
+        assertThrows(PidOperationExecutor.PidOperationException.class, () ->
+                new PidOperationExecutor(executorService, 1, 1, 0, 0).execute(dataFiles(10),
+                        dataFile -> dataFile.getId() < 6, completed::addAll));
+
+        assertEquals(5, completed.size());
+    }
+
+    @Test
+    void testRateLimit() throws Exception {
+        long start = System.nanoTime();
+
+        // 11 calls at 100 per second: at least 100ms
+        new PidOperationExecutor(executorService, 4, 1, 0, 100).execute(dataFiles(11), dataFile -> true, batch -> {});
+
+        assertTrue(System.nanoTime() - start >= 95_000_000L);
+    }
+}
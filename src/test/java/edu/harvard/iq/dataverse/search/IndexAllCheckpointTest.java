@@ -0,0 +1,48 @@
+package edu.harvard.iq.dataverse.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexAllCheckpointTest {
+
+    private static IndexAllCheckpoint checkpoint(boolean skipIndexed, long updateTime, Long finishTime) {
+        return new IndexAllCheckpoint(4, 1, skipIndexed, new Timestamp(0), new Timestamp(updateTime),
+                finishTime == null ? null : new Timestamp(finishTime), 10, 1000, 9, 500, 3, 0, 500);
+    }
+
+    @Test
+    public void testIsRunning() {
+        long now = 100 * IndexAllCheckpoint.STALE_AFTER;
+        assertTrue(checkpoint(false, now - 1000, null).isRunning(now));
+        assertFalse(checkpoint(false, now - IndexAllCheckpoint.STALE_AFTER, null).isRunning(now));
+        assertFalse(checkpoint(false, now - 1000, now - 1000).isRunning(now));
+    }
+
+    @Test
+    public void testCanResume() {
+        assertTrue(checkpoint(false, 0, null).canResume(false));
+        assertFalse(checkpoint(true, 0, null).canResume(false));
+        assertFalse(checkpoint(false, 0, 1000L).canResume(false));
+    }
+
+    @Test
+    public void testObjectsPerSecond() {
+        assertEquals(2.5, IndexAllCheckpoint.getObjectsPerSecond(250, 100_000));
+        assertNull(IndexAllCheckpoint.getObjectsPerSecond(0, 100_000));
+        assertNull(IndexAllCheckpoint.getObjectsPerSecond(10, 0));
+    }
+
+    @Test
+    public void testEtaSeconds() {
+        assertEquals(400L, IndexAllCheckpoint.getEtaSeconds(1000, 2.5));
+        assertEquals(1L, IndexAllCheckpoint.getEtaSeconds(1, 2.5));
+        assertEquals(0L, IndexAllCheckpoint.getEtaSeconds(0, null));
+        assertNull(IndexAllCheckpoint.getEtaSeconds(1000, null));
+    }
+}
@@ -0,0 +1,142 @@
+package edu.harvard.iq.dataverse.search;
+
+import edu.harvard.iq.dataverse.util.testing.Tags;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the statements of {@link IndexQueueServiceBean} on a PostgreSQL
+ * database, with plain JDBC, from several connections at once (the way
+ * several servers of a cluster would).
+ */
+@Tag(Tags.INTEGRATION_TEST)
+@Tag(Tags.USES_TESTCONTAINERS)
+@Testcontainers(disabledWithoutDocker = true)
+class IndexQueueServiceBeanIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS indexqueue");
+            statement.execute(Files.readString(Path.of("src/main/resources/db/migration/V6.4.0.7.sql")));
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    // The statements use the JPA positional parameters (?1, ?2...), each
+    // once, in order.
+    private static PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        return connection.prepareStatement(sql.replaceAll("\\?\\d+", "?"));
+    }
+
+    private static void enqueue(Connection connection, long datasetId, long requestTime) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, IndexQueueServiceBean.ENQUEUE)) {
+            statement.setLong(1, datasetId);
+            statement.setBoolean(2, false);
+            statement.setTimestamp(3, new Timestamp(requestTime));
+            statement.executeUpdate();
+        }
+    }
+
+    private static List<Long> claim(Connection connection, int limit) throws SQLException {
+        long now = System.currentTimeMillis();
+        List<Long> claimed = new ArrayList<>();
+        try (PreparedStatement statement = prepare(connection, IndexQueueServiceBean.CLAIM)) {
+            statement.setTimestamp(1, new Timestamp(now));
+            statement.setTimestamp(2, new Timestamp(now - IndexQueueServiceBean.CLAIM_TIMEOUT));
+            statement.setInt(3, limit);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    claimed.add(rs.getLong(1));
+                }
+            }
+        }
+        return claimed;
+    }
+
+    @Test
+    void testClaimSkipsLockedRows() throws Exception {
+        try (Connection connection = connect()) {
+            for (long id = 1; id <= 5; id++) {
+                enqueue(connection, id, 1000 * id);
+            }
+        }
+        try (Connection first = connect(); Connection second = connect(); Connection third = connect()) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+            // the oldest two, claimed but not committed yet:
+            assertEquals(List.of(1L, 2L), claim(first, 2));
+            // a server claiming at the same time skips them, without waiting:
+            second.createStatement().execute("SET LOCAL lock_timeout = '1s'");
+            assertEquals(List.of(3L, 4L, 5L), claim(second, 10));
+            first.commit();
+            second.commit();
+            // once committed, the claims stand:
+            assertTrue(claim(third, 10).isEmpty());
+        }
+    }
+
+    @Test
+    void testClaimSkipsRowsLockedByEnqueue() throws Exception {
+        try (Connection connection = connect()) {
+            enqueue(connection, 1, 1000);
+            enqueue(connection, 2, 2000);
+        }
+        try (Connection caller = connect(); Connection worker = connect()) {
+            caller.setAutoCommit(false);
+            // a transaction queueing dataset 1 again holds its row until it ends:
+            enqueue(caller, 1, 3000);
+            worker.createStatement().execute("SET lock_timeout = '1s'");
+            assertEquals(List.of(2L), claim(worker, 10));
+            caller.commit();
+            assertEquals(List.of(1L), claim(worker, 10));
+        }
+    }
+
+    @Test
+    void testRequestWhileClaimedIsKept() throws Exception {
+        try (Connection connection = connect()) {
+            enqueue(connection, 1, 1000);
+            assertEquals(List.of(1L), claim(connection, 10));
+            // requested again while being indexed:
+            enqueue(connection, 1, 2000);
+            int deleted;
+            try (PreparedStatement statement = prepare(connection, IndexQueueServiceBean.COMPLETE)) {
+                statement.setLong(1, 1);
+                statement.setLong(2, 1);
+                deleted = statement.executeUpdate();
+            }
+            assertEquals(0, deleted);
+            try (PreparedStatement statement = prepare(connection, IndexQueueServiceBean.UNCLAIM)) {
+                statement.setLong(1, 1);
+                statement.executeUpdate();
+            }
+            assertEquals(List.of(1L), claim(connection, 10));
+        }
+    }
+}
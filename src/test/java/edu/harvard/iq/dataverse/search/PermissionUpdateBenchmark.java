@@ -0,0 +1,156 @@
+package edu.harvard.iq.dataverse.search;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways of sending new permissions to Solr for all the files
+ * of a large collection (a synthetic tree of {@code datasets} draft datasets
+ * of {@code filesPerDataset} files each; 1M files by default): re-adding
+ * whole permission documents, the way
+ * SolrIndexServiceBean.indexPermissionsOnSelfAndChildren() does (in batches
+ * of 20 to 100), and atomic updates of their discoverableBy field, the way
+ * SolrIndexServiceBean.updatePermissionsOnSelfAndChildren() does; with
+ * different batch sizes.
+ *
+ * (The other half of the gain, finding the files with a query instead of
+ * loading every dataset version and file, depends on the database and isn't
+ * measured here.)
+ *
+ * Needs a Solr with the Dataverse schema; the synthetic documents (for
+ * files with ids from 900000000 on) are deleted at the end. Not run as part of the test
+ * suite. To run it, from the project root:
+ * <pre>
+ * mvn test-compile
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      edu.harvard.iq.dataverse.search.PermissionUpdateBenchmark \
+ *      [-p solrUrl=http://localhost:8983/solr/collection1]
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class PermissionUpdateBenchmark {
+
+    private static final long FIRST_ID = 900_000_000L;
+
+    @Param({"http://localhost:8983/solr/collection1"})
+    public String solrUrl;
+
+    @Param({"1000"})
+    public int datasets;
+
+    @Param({"1000"})
+    public int filesPerDataset;
+
+    @Param({"100", "1000", "5000"})
+    public int batchSize;
+
+    private SolrClient solrClient;
+    private final List<String> perms = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void createTree() throws SolrServerException, IOException {
+        solrClient = new HttpSolrClient.Builder(solrUrl).build();
+        perms.add(IndexServiceBean.getGroupPerUserPrefix() + "1");
+        sendFullDocuments(10_000);
+        solrClient.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws SolrServerException, IOException {
+        List<String> ids = new ArrayList<>();
+        for (long file = 0; file < (long) datasets * filesPerDataset; file++) {
+            ids.add(fileSolrId(file) + IndexServiceBean.discoverabilityPermissionSuffix);
+            if (ids.size() >= 10_000) {
+                solrClient.deleteById(ids);
+                ids.clear();
+            }
+        }
+        if (!ids.isEmpty()) {
+            solrClient.deleteById(ids);
+        }
+        solrClient.commit();
+        solrClient.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void grantRole() {
+        // every invocation sends different permissions, as a new role assignment would
+        perms.add(IndexServiceBean.getGroupPerUserPrefix() + (perms.size() + 1));
+    }
+
+    @Benchmark
+    public void fullDocuments() throws SolrServerException, IOException {
+        sendFullDocuments(batchSize);
+        solrClient.commit();
+    }
+
+    @Benchmark
+    public void atomicUpdates() throws SolrServerException, IOException {
+        List<SolrInputDocument> docs = new ArrayList<>();
+        for (long file = 0; file < (long) datasets * filesPerDataset; file++) {
+            docs.add(SearchUtil.createPermissionUpdate(fileSolrId(file), FIRST_ID + file, perms));
+            if (docs.size() >= batchSize) {
+                solrClient.add(docs);
+                docs.clear();
+            }
+        }
+        if (!docs.isEmpty()) {
+            solrClient.add(docs);
+        }
+        solrClient.commit();
+    }
+
+    private void sendFullDocuments(int batchSize) throws SolrServerException, IOException {
+        List<SolrInputDocument> docs = new ArrayList<>();
+        for (long file = 0; file < (long) datasets * filesPerDataset; file++) {
+            long datasetVersionId = FIRST_ID + file / filesPerDataset;
+            docs.add(SearchUtil.createSolrDoc(new DvObjectSolrDoc(String.valueOf(FIRST_ID + file), fileSolrId(file), datasetVersionId, "file" + file, perms)));
+            if (docs.size() >= batchSize) {
+                solrClient.add(docs);
+                docs.clear();
+            }
+        }
+        if (!docs.isEmpty()) {
+            solrClient.add(docs);
+        }
+    }
+
+    private static String fileSolrId(long file) {
+        return IndexServiceBean.solrDocIdentifierFile + (FIRST_ID + file) + IndexServiceBean.draftSuffix;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PermissionUpdateBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
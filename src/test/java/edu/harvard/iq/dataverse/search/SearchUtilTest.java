@@ -8,6 +8,7 @@ package edu.harvard.iq.dataverse.search;
 import edu.harvard.iq.dataverse.DatasetFieldConstant;
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.Map;
 import org.apache.solr.common.SolrInputDocument;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -44,6 +45,17 @@ public class SearchUtilTest {
         assertEquals(SearchFields.DISCOVERABLE_BY + "=" + Arrays.asList(IndexServiceBean.getPublicGroupString()), solrInputDocument.get(SearchFields.DISCOVERABLE_BY).toString());
     }
 
+    @Test
+    public void testCreatePermissionUpdate() {
+        SolrInputDocument solrInputDocument = SearchUtil.createPermissionUpdate("datafile_12345_draft", 12345L, Arrays.asList("group_user7", "group_ip/ipGroup3"));
+        assertEquals(IndexServiceBean.solrDocIdentifierFile + "12345" + IndexServiceBean.draftSuffix + IndexServiceBean.discoverabilityPermissionSuffix, solrInputDocument.getFieldValue(SearchFields.ID));
+        assertEquals(Map.of("set", Arrays.asList("group_user7", "group_ip/ipGroup3")), solrInputDocument.getFieldValue(SearchFields.DISCOVERABLE_BY));
+        // the same fields as a full permission document, in case there's none yet:
+        assertEquals(Map.of("set", "datafile_12345_draft"), solrInputDocument.getFieldValue(SearchFields.DEFINITION_POINT));
+        assertEquals(Map.of("set", 12345L), solrInputDocument.getFieldValue(SearchFields.DEFINITION_POINT_DVOBJECT_ID));
+        assertEquals(4, solrInputDocument.size());
+    }
+
     @Test
     public void testGetTimestampOrNull() {
         assertNull(SearchUtil.getTimestampOrNull(null));
@@ -0,0 +1,83 @@
+package edu.harvard.iq.dataverse.settings;
+
+import edu.harvard.iq.dataverse.util.json.JsonUtil;
+import jakarta.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a settings lookup in the SettingsCache, as a plain string and
+ * as a compound (JSON) setting parsed once, compared with parsing the JSON on
+ * every lookup, as SettingsServiceBean used to (on top of the query for the
+ * setting, which is not measured here).
+ *
+ * Not run as part of the test suite. To run it, from the project root:
+ * <pre>
+ * mvn test-compile
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      edu.harvard.iq.dataverse.settings.SettingsCacheBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SettingsCacheBenchmark {
+
+    private static final String COMPOUND_SETTING = ":MaxFileUploadSizeInBytes";
+
+    private SettingsCache cache;
+
+    @Setup
+    public void loadSettings() {
+        List<Setting> settings = new ArrayList<>();
+        // about as many as a typical installation has:
+        for (int i = 0; i < 150; i++) {
+            settings.add(new Setting(":Setting" + i, "value " + i));
+        }
+        settings.add(new Setting(COMPOUND_SETTING, "{\"default\":\"2147483648\",\"s3\":\"10737418240\",\"file\":\"1073741824\"}"));
+        cache = new SettingsCache(() -> settings, Duration.ofHours(1));
+    }
+
+    @Benchmark
+    public String lookup() {
+        return cache.get(":Setting42");
+    }
+
+    @Benchmark
+    public long compoundLookupParsedOnce() {
+        JsonObject settings = cache.parse("json-object", cache.get(COMPOUND_SETTING), JsonUtil::getJsonObject);
+        return Long.parseLong(settings.getString("s3"));
+    }
+
+    @Benchmark
+    public long compoundLookupParsedEveryTime() {
+        JsonObject settings = JsonUtil.getJsonObject(cache.get(COMPOUND_SETTING));
+        return Long.parseLong(settings.getString("s3"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SettingsCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
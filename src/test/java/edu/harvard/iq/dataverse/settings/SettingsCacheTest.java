@@ -0,0 +1,168 @@
+package edu.harvard.iq.dataverse.settings;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SettingsCacheTest {
+
+    private final List<Setting> table = new ArrayList<>();
+    private final MutableClock clock = new MutableClock();
+    private SettingsCache cache;
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        table.add(new Setting(":SiteUrl", "https://demo.dataverse.org"));
+        table.add(new Setting(":ApplicationTermsOfUse", "Terms"));
+        table.add(new Setting(":ApplicationTermsOfUse", "fr", "Conditions"));
+        table.add(new Setting(":MaxFileUploadSizeInBytes", "1024"));
+        cache = new SettingsCache(() -> new ArrayList<>(table), Duration.ofSeconds(60), clock);
+    }
+
+    @Test
+    void testLoadsAllSettingsOnce() {
+        assertEquals("https://demo.dataverse.org", cache.get(":SiteUrl"));
+        assertEquals("Terms", cache.get(":ApplicationTermsOfUse"));
+        assertEquals("Conditions", cache.get(":ApplicationTermsOfUse", "fr"));
+        assertNull(cache.get(":ApplicationTermsOfUse", "de"));
+        assertNull(cache.get(":NoSuchSetting"));
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    @Test
+    void testInvalidateLoadsAgain() {
+        assertEquals("1024", cache.get(":MaxFileUploadSizeInBytes"));
+        long version = cache.getVersion();
+
+        table.set(3, new Setting(":MaxFileUploadSizeInBytes", "2048"));
+        assertEquals("1024", cache.get(":MaxFileUploadSizeInBytes"));
+
+        cache.invalidate();
+        assertEquals("2048", cache.get(":MaxFileUploadSizeInBytes"));
+        assertEquals(2, cache.getLoadCount());
+        assertNotEquals(version, cache.getVersion());
+    }
+
+    @Test
+    void testLoadsAgainAfterMaxAge() {
+        cache.get(":SiteUrl");
+        table.remove(0);
+
+        clock.now = clock.now.plusSeconds(59);
+        assertEquals("https://demo.dataverse.org", cache.get(":SiteUrl"));
+
+        clock.now = clock.now.plusSeconds(1);
+        assertNull(cache.get(":SiteUrl"));
+        assertEquals(2, cache.getLoadCount());
+    }
+
+    @Test
+    void testInvalidatedWhileLoading() {
+        AtomicInteger loads = new AtomicInteger();
+        SettingsCache[] racyCache = new SettingsCache[1];
+        racyCache[0] = new SettingsCache(() -> {
+            if (loads.incrementAndGet() == 1) {
+                // a setting changed (and the cache invalidated) while the
+                // settings are read:
+                table.set(0, new Setting(":SiteUrl", "https://changed.example"));
+                racyCache[0].invalidate();
+                return List.of(new Setting(":SiteUrl", "https://demo.dataverse.org"));
+            }
+            return new ArrayList<>(table);
+        }, Duration.ofSeconds(60), clock);
+
+        // (this lookup gets what was read)
+        assertEquals("https://demo.dataverse.org", racyCache[0].get(":SiteUrl"));
+        // but it's not kept:
+        assertEquals("https://changed.example", racyCache[0].get(":SiteUrl"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testNotKeptIfLoadedInAChangingTransaction() {
+        // (the changes of a transaction that isn't committed yet)
+        boolean[] changing = {true};
+        SettingsCache changingCache = new SettingsCache(() -> new ArrayList<>(table), () -> !changing[0],
+                Duration.ofSeconds(60), clock);
+        table.set(0, new Setting(":SiteUrl", "https://uncommitted.example"));
+
+        // (the transaction sees its changes)
+        assertEquals("https://uncommitted.example", changingCache.get(":SiteUrl"));
+        assertEquals("https://uncommitted.example", changingCache.get(":SiteUrl"));
+        assertEquals(2, changingCache.getLoadCount());
+
+        // rolled back; the others don't get what it saw:
+        changing[0] = false;
+        table.set(0, new Setting(":SiteUrl", "https://demo.dataverse.org"));
+        assertEquals("https://demo.dataverse.org", changingCache.get(":SiteUrl"));
+        assertEquals("https://demo.dataverse.org", changingCache.get(":SiteUrl"));
+        assertEquals(3, changingCache.getLoadCount());
+    }
+
+    @Test
+    void testParsesOnce() {
+        AtomicInteger parses = new AtomicInteger();
+        Long first = cache.parse("long", cache.get(":MaxFileUploadSizeInBytes"), val -> {
+            parses.incrementAndGet();
+            return Long.valueOf(val);
+        });
+        Long second = cache.parse("long", cache.get(":MaxFileUploadSizeInBytes"), val -> {
+            parses.incrementAndGet();
+            return Long.valueOf(val);
+        });
+        assertEquals(1024L, first);
+        assertSame(first, second);
+        assertEquals(1, parses.get());
+
+        // invalid values are parsed once, too:
+        assertNull(cache.parse("long", "abc", val -> {
+            parses.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.parse("long", "abc", val -> {
+            parses.incrementAndGet();
+            return null;
+        }));
+        assertEquals(2, parses.get());
+
+        assertNull(cache.parse("long", null, Long::valueOf));
+
+        cache.invalidate();
+        cache.parse("long", "1024", val -> {
+            parses.incrementAndGet();
+            return Long.valueOf(val);
+        });
+        assertEquals(3, parses.get());
+    }
+}
@@ -0,0 +1,186 @@
+package edu.harvard.iq.dataverse.util;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.Dataset;
+import edu.harvard.iq.dataverse.dataaccess.DataAccess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataFileValidationPipelineTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // files with ids under 100 are in "local", the others in "s3"
+    private static List<DataFileToValidate> dataFiles(int count, long firstId) {
+        List<DataFileToValidate> dataFiles = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; id++) {
+            String storageIdentifier = (id < 100 ? "local://" : "s3://bucket:") + "18b39722140-" + id;
+            dataFiles.add(new DataFileToValidate(id, storageIdentifier, "10.5072", "FK2/ABCDEF",
+                    DataFile.ChecksumType.MD5, "d41d8cd98f00b204e9800998ecf8427e", false, false));
+        }
+        return dataFiles;
+    }
+
+    @Test
+    void testValidatesAllFilesAndReportsProgress() throws Exception {
+        List<DataFileToValidate> dataFiles = dataFiles(10, 1);
+        dataFiles.addAll(dataFiles(10, 100));
+        Set<Long> validated = ConcurrentHashMap.newKeySet();
+        List<Integer> progress = new ArrayList<>();
+
+        new DataFileValidationPipeline(executor, driverId -> 3,
+                dataFile -> validated.add(dataFile.id()))
+                .validate(dataFiles, (done, total) -> {
+                    assertEquals(20, total);
+                    progress.add(done);
+                });
+
+        assertEquals(20, validated.size());
+        assertEquals(20, progress.size());
+        assertEquals(20, progress.get(19));
+    }
+
+    @Test
+    void testParallelismPerDriver() throws Exception {
+        List<DataFileToValidate> dataFiles = dataFiles(12, 1);
+        dataFiles.addAll(dataFiles(12, 100));
+        Map<String, AtomicInteger> running = Map.of("local", new AtomicInteger(), "s3", new AtomicInteger());
+        Map<String, AtomicInteger> maxRunning = Map.of("local", new AtomicInteger(), "s3", new AtomicInteger());
+
+        new DataFileValidationPipeline(executor, driverId -> driverId.equals("s3") ? 1 : 4,
+                dataFile -> {
+                    String driverId = dataFile.driverId();
+                    int now = running.get(driverId).incrementAndGet();
+                    maxRunning.get(driverId).accumulateAndGet(now, Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                    running.get(driverId).decrementAndGet();
+                })
+                .validate(dataFiles, (done, total) -> {});
+
+        assertEquals(1, maxRunning.get("s3").get());
+        assertTrue(maxRunning.get("local").get() <= 4);
+    }
+
+    @Test
+    void testValidatesOnThisThreadIfTheExecutorIsFull() throws Exception {
+        Set<Long> validated = ConcurrentHashMap.newKeySet();
+        Thread caller = Thread.currentThread();
+
+        new DataFileValidationPipeline(command -> {
+                    throw new RejectedExecutionException("full");
+                }, driverId -> 2,
+                dataFile -> {
+                    assertEquals(caller, Thread.currentThread());
+                    validated.add(dataFile.id());
+                })
+                .validate(dataFiles(4, 1), (done, total) -> {});
+
+        assertEquals(4, validated.size());
+    }
+
+    @Test
+    void testLegacyStorageIdentifiers() throws Exception {
+        // (stored before the storage identifiers were prefixed with their
+        // driver, so in the default store:)
+        List<DataFileToValidate> dataFiles = List.of(
+                new DataFileToValidate(1L, "18b39722140-50eb7d3c5ece", "10.5072", "FK2/ABCDEF",
+                        DataFile.ChecksumType.MD5, "d41d8cd98f00b204e9800998ecf8427e", false, false),
+                new DataFileToValidate(2L, null, "10.5072", "FK2/ABCDEF",
+                        DataFile.ChecksumType.MD5, "d41d8cd98f00b204e9800998ecf8427e", false, false));
+        Set<String> driverIds = ConcurrentHashMap.newKeySet();
+
+        new DataFileValidationPipeline(executor, driverId -> {
+                    driverIds.add(driverId);
+                    return 2;
+                },
+                dataFile -> {})
+                .validate(dataFiles, (done, total) -> {});
+
+        assertEquals(Set.of(DataAccess.DEFAULT_STORAGE_DRIVER_IDENTIFIER), driverIds);
+    }
+
+    @Test
+    void testFailure() {
+        List<DataFileToValidate> dataFiles = dataFiles(5, 1);
+
+        IOException ex = assertThrows(IOException.class, () ->
+                new DataFileValidationPipeline(executor, driverId -> 2,
+                        dataFile -> {
+                            if (dataFile.id() == 3) {
+                                throw new IOException("Checksum mismatch for datafile id 3");
+                            }
+                        })
+                        .validate(dataFiles, (done, total) -> {}));
+        assertEquals("Checksum mismatch for datafile id 3", ex.getMessage());
+    }
+
+    @Test
+    void testRuntimeFailure() {
+        IOException ex = assertThrows(IOException.class, () ->
+                new DataFileValidationPipeline(executor, driverId -> 2,
+                        dataFile -> {
+                            throw new IllegalStateException("no storage");
+                        })
+                        .validate(dataFiles(2, 1), (done, total) -> {}));
+        assertEquals("no storage", ex.getMessage());
+    }
+
+    @Test
+    void testNothingToValidate() throws Exception {
+        new DataFileValidationPipeline(executor, driverId -> 2,
+                dataFile -> {
+                    throw new IOException("should not be called");
+                })
+                .validate(List.of(), (done, total) -> {
+                    throw new IllegalStateException("should not be called");
+                });
+    }
+
+    @Test
+    void testResolvedFromTheDataFile() {
+        Dataset dataset = new Dataset();
+        dataset.setAuthority("10.5072");
+        dataset.setIdentifier("FK2/ABCDEF");
+        DataFile dataFile = new DataFile();
+        dataFile.setId(42L);
+        dataFile.setOwner(dataset);
+        dataFile.setStorageIdentifier("s3://bucket:18b39722140-50eb7d3c5ece");
+        dataFile.setChecksumType(DataFile.ChecksumType.SHA1);
+        dataFile.setChecksumValue("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+
+        assertEquals(new DataFileToValidate(42L, "s3://bucket:18b39722140-50eb7d3c5ece", "10.5072", "FK2/ABCDEF",
+                DataFile.ChecksumType.SHA1, "da39a3ee5e6b4b0d3255bfef95601890afd80709", false, false),
+                DataFileToValidate.of(dataFile));
+        assertEquals("s3", DataFileToValidate.of(dataFile).driverId());
+    }
+}
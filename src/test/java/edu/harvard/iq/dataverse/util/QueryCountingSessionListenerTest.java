@@ -0,0 +1,58 @@
+package edu.harvard.iq.dataverse.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QueryCountingSessionListenerTest {
+
+    private final QueryCountingSessionListener listener = new QueryCountingSessionListener();
+
+    @AfterEach
+    void tearDown() {
+        QueryCountingSessionListener.stopCounting();
+    }
+
+    @Test
+    void testCountsCallsWhileCounting() {
+        listener.postExecuteCall(null);
+
+        QueryCountingSessionListener.startCounting();
+        listener.postExecuteCall(null);
+        listener.postExecuteCall(null);
+        listener.postExecuteCall(null);
+
+        assertEquals(3, QueryCountingSessionListener.stopCounting());
+        // not counting anymore:
+        listener.postExecuteCall(null);
+        assertEquals(0, QueryCountingSessionListener.stopCounting());
+    }
+
+    @Test
+    void testRestartResetsCount() {
+        QueryCountingSessionListener.startCounting();
+        listener.postExecuteCall(null);
+        QueryCountingSessionListener.startCounting();
+        listener.postExecuteCall(null);
+
+        assertEquals(1, QueryCountingSessionListener.stopCounting());
+    }
+
+    @Test
+    void testOnlyCountsCurrentThread() throws Exception {
+        QueryCountingSessionListener.startCounting();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> listener.postExecuteCall(null)).get();
+        } finally {
+            executor.shutdown();
+        }
+        listener.postExecuteCall(null);
+
+        assertEquals(1, QueryCountingSessionListener.stopCounting());
+    }
+}
@@ -0,0 +1,117 @@
+package edu.harvard.iq.dataverse.util.json;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.DataFileCategory;
+import edu.harvard.iq.dataverse.DatasetVersion;
+import edu.harvard.iq.dataverse.FileMetadata;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JsonStreamPrinterTest {
+
+    private static List<FileMetadata> fileMetadatas(int count) {
+        DatasetVersion datasetVersion = new DatasetVersion();
+        datasetVersion.setId(7L);
+        List<FileMetadata> fileMetadatas = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            DataFile dataFile = new DataFile();
+            dataFile.setId(id);
+            dataFile.setFilesize(id * 100);
+            dataFile.setContentType("text/plain");
+            FileMetadata fileMetadata = new FileMetadata();
+            fileMetadata.setId(id);
+            fileMetadata.setLabel("file" + id + ".txt");
+            fileMetadata.setDescription(id % 2 == 0 ? "even" : null);
+            fileMetadata.setDatasetVersion(datasetVersion);
+            fileMetadata.setDataFile(dataFile);
+            DataFileCategory category = new DataFileCategory();
+            category.setName("Data");
+            fileMetadata.setCategories(new ArrayList<>(List.of(category)));
+            fileMetadatas.add(fileMetadata);
+        }
+        return fileMetadatas;
+    }
+
+    private static JsonStreamPrinter.FileMetadataPages pagesOf(List<FileMetadata> fileMetadatas, List<Integer> requestedLimits) {
+        return (offset, limit) -> {
+            requestedLimits.add(limit);
+            return fileMetadatas.subList(Math.min(offset, fileMetadatas.size()), Math.min(offset + limit, fileMetadatas.size()));
+        };
+    }
+
+    private static String stream(JsonStreamPrinter.FileMetadataPages pages, int offset, Integer limit) {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = Json.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeKey("files");
+            JsonStreamPrinter.writeFileMetadatas(generator, pages, offset, limit);
+            generator.writeEnd();
+        }
+        return out.toString();
+    }
+
+    private static String build(List<FileMetadata> fileMetadatas) {
+        return Json.createObjectBuilder().add("files", JsonPrinter.jsonFileMetadatas(fileMetadatas)).build().toString();
+    }
+
+    @Test
+    public void testSameAsBuiltJson() {
+        List<FileMetadata> fileMetadatas = fileMetadatas(2 * JsonStreamPrinter.PAGE_SIZE + 3);
+        List<Integer> requestedLimits = new ArrayList<>();
+
+        String streamed = stream(pagesOf(fileMetadatas, requestedLimits), 0, null);
+
+        assertEquals(build(fileMetadatas), streamed);
+        assertEquals(3, requestedLimits.size());
+    }
+
+    @Test
+    public void testExactlyOnePage() {
+        List<FileMetadata> fileMetadatas = fileMetadatas(JsonStreamPrinter.PAGE_SIZE);
+        List<Integer> requestedLimits = new ArrayList<>();
+
+        assertEquals(build(fileMetadatas), stream(pagesOf(fileMetadatas, requestedLimits), 0, null));
+        // (one more, to find out there's nothing left)
+        assertEquals(2, requestedLimits.size());
+    }
+
+    @Test
+    public void testOffsetAndLimit() {
+        List<FileMetadata> fileMetadatas = fileMetadatas(JsonStreamPrinter.PAGE_SIZE + 500);
+        List<Integer> requestedLimits = new ArrayList<>();
+
+        String streamed = stream(pagesOf(fileMetadatas, requestedLimits), 10, JsonStreamPrinter.PAGE_SIZE + 5);
+
+        assertEquals(build(fileMetadatas.subList(10, 10 + JsonStreamPrinter.PAGE_SIZE + 5)), streamed);
+        assertEquals(List.of(JsonStreamPrinter.PAGE_SIZE, 5), requestedLimits);
+    }
+
+    @Test
+    public void testNoFiles() {
+        assertEquals("{\"files\":[]}", stream(pagesOf(List.of(), new ArrayList<>()), 0, null));
+    }
+
+    @Test
+    public void testWriteEntries() {
+        JsonObject object = Json.createObjectBuilder()
+                .add("id", 1)
+                .add("name", "x")
+                .add("nested", Json.createObjectBuilder().add("a", true))
+                .build();
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = Json.createGenerator(out)) {
+            generator.writeStartObject();
+            JsonStreamPrinter.writeEntries(generator, object);
+            generator.writeEnd();
+        }
+        assertEquals(object.toString(), out.toString());
+    }
+}